@@ -19,6 +19,7 @@ package interactivespaces.activity.component.ros;
 import interactivespaces.SimpleInteractiveSpacesException;
 import interactivespaces.activity.component.BaseActivityComponent;
 import interactivespaces.configuration.Configuration;
+import interactivespaces.util.ros.SharedRosNodeManager;
 
 import org.ros.node.ConnectedNode;
 import org.ros.node.NodeConfiguration;
@@ -51,6 +52,11 @@ public class BasicRosActivityComponent extends BaseActivityComponent implements
    */
   private String rosNodeName;
 
+  /**
+   * The manager for the container's shared node, {@code null} if the activity has its own node.
+   */
+  private SharedRosNodeManager sharedNodeManager;
+
   @Override
   public String getName() {
     return COMPONENT_NAME;
@@ -72,11 +78,25 @@ public class BasicRosActivityComponent extends BaseActivityComponent implements
       throw new SimpleInteractiveSpacesException(String.format("While processing node '%s' from configuration '%s'",
           rosNodeName, CONFIGURATION_ACTIVITY_ROS_NODE_NAME), e);
     }
+
+    if (configuration.getPropertyBoolean(CONFIGURATION_ACTIVITY_ROS_NODE_SHARED,
+        CONFIGURATION_ACTIVITY_ROS_NODE_SHARED_DEFAULT)) {
+      sharedNodeManager =
+          componentContext.getActivity().getSpaceEnvironment().getValue(SharedRosNodeManager.ENVIRONMENT_VALUE_NAME);
+      if (sharedNodeManager == null) {
+        componentContext.getActivity().getLog()
+            .warn("Shared ROS node requested but the container has no shared node manager, using a private node");
+      }
+    }
   }
 
   @Override
   public void startupComponent() {
-    node = rosEnvironment.newNode(nodeConfiguration);
+    if (sharedNodeManager != null) {
+      node = sharedNodeManager.newScopedNode(nodeConfiguration);
+    } else {
+      node = rosEnvironment.newNode(nodeConfiguration);
+    }
 
     getComponentContext()
         .getActivity()
@@ -40,6 +40,20 @@ public interface RosActivityComponent extends ActivityComponent {
    */
   String CONFIGURATION_ACTIVITY_ROS_NODE_NAME = "space.activity.ros.node.name";
 
+  /**
+   * Configuration property for whether the activity should use the ROS node shared by all activities in the container
+   * rather than its own node.
+   *
+   * <p>
+   * Names are still resolved relative to {@link #CONFIGURATION_ACTIVITY_ROS_NODE_NAME}.
+   */
+  String CONFIGURATION_ACTIVITY_ROS_NODE_SHARED = "space.activity.ros.node.shared";
+
+  /**
+   * Default value for {@link #CONFIGURATION_ACTIVITY_ROS_NODE_SHARED}.
+   */
+  boolean CONFIGURATION_ACTIVITY_ROS_NODE_SHARED_DEFAULT = false;
+
   /**
    * Get the ROS node name for the activity.
    *
@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.activity.component.route;
+
+import interactivespaces.SimpleInteractiveSpacesException;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The options for a route, parsed from a route's topic configuration.
+ *
+ * <p>
+ * A route configuration value is an optional list of {@code name=value} options followed by the topic names, all
+ * separated by {@code ;}, e.g. {@code latch=true;encoding=smile;/foo/bar:/foo/bletch}.
+ *
+ * @author Keith M. Hughes
+ */
+public class MessageRouteOptions {
+
+  /**
+   * Separator between the options and the topic names.
+   */
+  public static final String OPTIONS_SEPARATOR = ";";
+
+  /**
+   * Separator between an option name and its value.
+   */
+  public static final String OPTION_VALUE_SEPARATOR = "=";
+
+  /**
+   * Option for whether an output route is latched.
+   */
+  public static final String OPTION_LATCH = "latch";
+
+  /**
+   * Option for the encoding of JSON messages on a route.
+   */
+  public static final String OPTION_ENCODING = "encoding";
+
+  /**
+   * Value of {@link #OPTION_ENCODING} for JSON text.
+   */
+  public static final String ENCODING_JSON = "json";
+
+  /**
+   * Value of {@link #OPTION_ENCODING} for the Smile binary JSON encoding.
+   *
+   * <p>
+   * Smile routes use a binary ROS message type, so the input and output ends of a route have to agree on the encoding.
+   * Smile routes only carry JSON messages.
+   */
+  public static final String ENCODING_SMILE = "smile";
+
+  /**
+   * Option for what a route's message queue does when it is full.
+   */
+  public static final String OPTION_QUEUE = "queue";
+
+  /**
+   * Value of {@link #OPTION_QUEUE} for blocking the producer until there is room.
+   */
+  public static final String QUEUE_BLOCK = "block";
+
+  /**
+   * Value of {@link #OPTION_QUEUE} for dropping the newest message.
+   */
+  public static final String QUEUE_DROP_NEWEST = "drop_newest";
+
+  /**
+   * Value of {@link #OPTION_QUEUE} for dropping the oldest queued message.
+   */
+  public static final String QUEUE_DROP_OLDEST = "drop_oldest";
+
+  /**
+   * Value of {@link #OPTION_QUEUE} for replacing a queued message with a newer one with the same key.
+   */
+  public static final String QUEUE_CONFLATE = "conflate";
+
+  /**
+   * Option for the maximum number of messages in a route's message queue.
+   */
+  public static final String OPTION_QUEUE_CAPACITY = "capacity";
+
+  /**
+   * The default for {@link #OPTION_QUEUE_CAPACITY}.
+   */
+  public static final int QUEUE_CAPACITY_DEFAULT = 512;
+
+  /**
+   * Option for the maximum number of times per second an output route sends its conflated messages. Giving the option
+   * makes the output route conflating.
+   */
+  public static final String OPTION_CONFLATE_RATE = "conflate_rate";
+
+  /**
+   * The largest value allowed for {@link #OPTION_CONFLATE_RATE}.
+   */
+  public static final double CONFLATE_RATE_MAXIMUM = 1000.0;
+
+  /**
+   * The options for a route with no options.
+   */
+  public static final MessageRouteOptions DEFAULT_OPTIONS = new MessageRouteOptions(
+      ImmutableMap.<String, String> of(), "");
+
+  /**
+   * The options, keyed by name.
+   */
+  private final Map<String, String> options;
+
+  /**
+   * The topic names part of the route configuration.
+   */
+  private final String topicNames;
+
+  /**
+   * Construct new route options.
+   *
+   * @param options
+   *          the options, keyed by name
+   * @param topicNames
+   *          the topic names part of the route configuration
+   */
+  public MessageRouteOptions(Map<String, String> options, String topicNames) {
+    this.options = options;
+    this.topicNames = topicNames;
+  }
+
+  /**
+   * Parse a route configuration value.
+   *
+   * <p>
+   * Blank parts, such as from a trailing separator, are ignored. The last part is the topic names unless it is itself
+   * an option.
+   *
+   * @param routeConfiguration
+   *          the route configuration value
+   *
+   * @return the options for the route
+   *
+   * @throws SimpleInteractiveSpacesException
+   *           an option was not of the form {@code name=value}
+   */
+  public static MessageRouteOptions parse(String routeConfiguration) throws SimpleInteractiveSpacesException {
+    List<String> parts = Lists.newArrayList();
+    for (String part : routeConfiguration.split(OPTIONS_SEPARATOR)) {
+      part = part.trim();
+      if (!part.isEmpty()) {
+        parts.add(part);
+      }
+    }
+
+    String topicNames = "";
+    if (!parts.isEmpty() && !parts.get(parts.size() - 1).contains(OPTION_VALUE_SEPARATOR)) {
+      topicNames = parts.remove(parts.size() - 1);
+    }
+
+    Map<String, String> options = Maps.newHashMap();
+    for (String option : parts) {
+      int valuePos = option.indexOf(OPTION_VALUE_SEPARATOR);
+      String name = (valuePos != -1) ? option.substring(0, valuePos).trim() : "";
+      String value = (valuePos != -1) ? option.substring(valuePos + 1).trim() : "";
+      if (name.isEmpty() || value.isEmpty()) {
+        throw SimpleInteractiveSpacesException.newFormattedException("Route option %s is not of the form name=value",
+            option);
+      }
+      options.put(name, value);
+    }
+
+    return new MessageRouteOptions(options, topicNames);
+  }
+
+  /**
+   * Get the topic names part of the route configuration.
+   *
+   * @return the topic names, separated by {@link MessageRouterActivityComponent#CONFIGURATION_VALUES_SEPARATOR}
+   */
+  public String getTopicNames() {
+    return topicNames;
+  }
+
+  /**
+   * Get the value of an option.
+   *
+   * @param name
+   *          name of the option
+   *
+   * @return the value of the option, or {@code null} if not given
+   */
+  public String getOption(String name) {
+    return options.get(name);
+  }
+
+  /**
+   * Is the route latched?
+   *
+   * @return {@code true} if latched
+   */
+  public boolean isLatch() {
+    return "true".equals(options.get(OPTION_LATCH));
+  }
+
+  /**
+   * Get the encoding for JSON messages on the route.
+   *
+   * @return the encoding, {@link #ENCODING_JSON} if not given
+   */
+  public String getEncoding() {
+    String encoding = options.get(OPTION_ENCODING);
+    return (encoding != null) ? encoding : ENCODING_JSON;
+  }
+
+  /**
+   * Does the route ask for its own message queue policy?
+   *
+   * @return {@code true} if either the queue or the queue capacity options are given
+   */
+  public boolean hasQueuePolicy() {
+    return options.containsKey(OPTION_QUEUE) || options.containsKey(OPTION_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Get what the route's message queue does when it is full.
+   *
+   * @return the queue policy, {@link #QUEUE_BLOCK} if not given
+   */
+  public String getQueue() {
+    String queue = options.get(OPTION_QUEUE);
+    return (queue != null) ? queue : QUEUE_BLOCK;
+  }
+
+  /**
+   * Get the maximum number of messages in the route's message queue.
+   *
+   * @return the capacity, {@link #QUEUE_CAPACITY_DEFAULT} if not given
+   *
+   * @throws NumberFormatException
+   *           the capacity is not a number
+   */
+  public int getQueueCapacity() throws NumberFormatException {
+    String capacity = options.get(OPTION_QUEUE_CAPACITY);
+    return (capacity != null) ? Integer.parseInt(capacity) : QUEUE_CAPACITY_DEFAULT;
+  }
+
+  /**
+   * Is the route conflating?
+   *
+   * @return {@code true} if the conflate rate option is given
+   */
+  public boolean isConflating() {
+    return options.containsKey(OPTION_CONFLATE_RATE);
+  }
+
+  /**
+   * Get the maximum number of times per second a conflating route sends its messages.
+   *
+   * @return the rate, or 0 if the route is not conflating
+   *
+   * @throws NumberFormatException
+   *           the rate is not a number
+   */
+  public double getConflateRate() throws NumberFormatException {
+    String rate = options.get(OPTION_CONFLATE_RATE);
+    return (rate != null) ? Double.parseDouble(rate) : 0;
+  }
+
+  /**
+   * Check the options for errors.
+   *
+   * @return a description of the errors, or {@code null} if there were none
+   */
+  public String validate() {
+    String encoding = getEncoding();
+    if (!ENCODING_JSON.equals(encoding) && !ENCODING_SMILE.equals(encoding)) {
+      return String.format("Unknown route encoding %s", encoding);
+    }
+
+    String queue = getQueue();
+    if (!QUEUE_BLOCK.equals(queue) && !QUEUE_DROP_NEWEST.equals(queue) && !QUEUE_DROP_OLDEST.equals(queue)
+        && !QUEUE_CONFLATE.equals(queue)) {
+      return String.format("Unknown route queue policy %s", queue);
+    }
+
+    try {
+      if (getQueueCapacity() <= 0) {
+        return String.format("Route queue capacity %s must be positive", options.get(OPTION_QUEUE_CAPACITY));
+      }
+    } catch (NumberFormatException e) {
+      return String.format("Route queue capacity %s is not a number", options.get(OPTION_QUEUE_CAPACITY));
+    }
+
+    try {
+      double conflateRate = getConflateRate();
+      if (isConflating() && (conflateRate <= 0 || conflateRate > CONFLATE_RATE_MAXIMUM)) {
+        return String.format("Route conflate rate %s must be greater than 0 and no more than %s",
+            options.get(OPTION_CONFLATE_RATE), CONFLATE_RATE_MAXIMUM);
+      }
+    } catch (NumberFormatException e) {
+      return String.format("Route conflate rate %s is not a number", options.get(OPTION_CONFLATE_RATE));
+    }
+
+    return null;
+  }
+}
@@ -149,6 +149,28 @@ public interface MessageRouterActivityComponent<T> extends ActivityComponent {
    */
   Set<String> getOutputChannelIds();
 
+  /**
+   * Get the options for an output channel.
+   *
+   * @param outputChannelId
+   *          the output channel ID
+   *
+   * @return the options for the channel, or {@link MessageRouteOptions#DEFAULT_OPTIONS} if none found for the
+   *         specified ID
+   */
+  MessageRouteOptions getOutputChannelOptions(String outputChannelId);
+
+  /**
+   * Get the options for an input channel.
+   *
+   * @param inputChannelId
+   *          the input channel ID
+   *
+   * @return the options for the channel, or {@link MessageRouteOptions#DEFAULT_OPTIONS} if none found for the
+   *         specified ID
+   */
+  MessageRouteOptions getInputChannelOptions(String inputChannelId);
+
   /**
    * get the output publisher for a given route.
    *
@@ -32,4 +32,13 @@ public class MessageRouterSupportedMessageTypes {
    * Messages will be just strings.
    */
   public static final String STRING_MESSAGE_TYPE = "string";
+
+  /**
+   * Messages will be Smile-encoded JSON objects.
+   *
+   * <p>
+   * These messages are only sent on Smile routes, which carry the Smile bytes in the binary body of a
+   * {@code interactivespaces_msgs/GenericBinaryMessage}.
+   */
+  public static final String JSON_SMILE_MESSAGE_TYPE = "json.smile";
 }
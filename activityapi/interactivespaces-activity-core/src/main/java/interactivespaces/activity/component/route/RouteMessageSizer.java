@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.activity.component.route;
+
+/**
+ * Gives the size of route messages for metrics.
+ *
+ * @param <T>
+ *          the type of the messages
+ *
+ * @author Keith M. Hughes
+ */
+public interface RouteMessageSizer<T> {
+
+  /**
+   * Get the size of a message.
+   *
+   * @param message
+   *          the message
+   *
+   * @return the size of the message in bytes, or a negative number if it is not known
+   */
+  long getSize(T message);
+}
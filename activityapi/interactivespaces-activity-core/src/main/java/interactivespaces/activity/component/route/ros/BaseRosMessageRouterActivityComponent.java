@@ -5,15 +5,18 @@ package interactivespaces.activity.component.route.ros;
 
 import interactivespaces.SimpleInteractiveSpacesException;
 import interactivespaces.activity.component.BaseActivityComponent;
+import interactivespaces.activity.component.route.MessageRouteOptions;
 import interactivespaces.activity.component.route.MessageRouterActivityComponentListener;
 import interactivespaces.configuration.Configuration;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import org.ros.namespace.GraphName;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -32,6 +35,16 @@ public abstract class BaseRosMessageRouterActivityComponent<T> extends BaseActiv
    */
   private final List<MessageRouterActivityComponentListener> listeners = Lists.newCopyOnWriteArrayList();
 
+  /**
+   * The options for all input channels, keyed by channel ID.
+   */
+  private final Map<String, MessageRouteOptions> inputChannelOptions = Maps.newConcurrentMap();
+
+  /**
+   * The options for all output channels, keyed by channel ID.
+   */
+  private final Map<String, MessageRouteOptions> outputChannelOptions = Maps.newConcurrentMap();
+
   @Override
   public void addListener(MessageRouterActivityComponentListener listener) {
     listeners.add(listener);
@@ -55,7 +68,8 @@ public abstract class BaseRosMessageRouterActivityComponent<T> extends BaseActiv
         String propertyName = CONFIGURATION_ROUTE_INPUT_TOPIC_PREFIX + inputName;
         String topicNames = configuration.getPropertyString(propertyName);
         if (topicNames != null) {
-          for (String topicName : parseTopicNames(topicNames)) {
+          MessageRouteOptions options = parseRouteOptions(topicNames, routeErrors);
+          for (String topicName : parseTopicNames(options.getTopicNames())) {
             if (!isSyntacticallyCorrectTopicName(topicName)) {
               String message = String.format("Input route topic name %s is of the wrong form", topicName);
               handleError(message, null);
@@ -79,7 +93,8 @@ public abstract class BaseRosMessageRouterActivityComponent<T> extends BaseActiv
         String propertyName = CONFIGURATION_ROUTE_OUTPUT_TOPIC_PREFIX + outputName;
         String topicNames = configuration.getPropertyString(propertyName);
         if (topicNames != null) {
-          for (String topicName : parseTopicNames(topicNames)) {
+          MessageRouteOptions options = parseRouteOptions(topicNames, routeErrors);
+          for (String topicName : parseTopicNames(options.getTopicNames())) {
             if (!isSyntacticallyCorrectTopicName(topicName)) {
               String message = String.format("Output route topic name %s is of the wrong form", topicName);
               handleError(message, null);
@@ -120,7 +135,10 @@ public abstract class BaseRosMessageRouterActivityComponent<T> extends BaseActiv
         if (!inputName.isEmpty()) {
           String inputTopicNames =
               configuration.getRequiredPropertyString(CONFIGURATION_ROUTE_INPUT_TOPIC_PREFIX + inputName);
-          registerInputChannelTopic(inputName, parseTopicNames(inputTopicNames));
+          MessageRouteOptions options = MessageRouteOptions.parse(inputTopicNames);
+
+          inputChannelOptions.put(inputName, options);
+          registerInputChannelTopic(inputName, parseTopicNames(options.getTopicNames()));
         }
       }
     }
@@ -132,22 +150,10 @@ public abstract class BaseRosMessageRouterActivityComponent<T> extends BaseActiv
         if (!outputName.isEmpty()) {
           String outputTopicNames =
               configuration.getRequiredPropertyString(CONFIGURATION_ROUTE_OUTPUT_TOPIC_PREFIX + outputName);
+          MessageRouteOptions options = MessageRouteOptions.parse(outputTopicNames);
 
-          boolean latch = false;
-          int semiPos = outputTopicNames.indexOf(';');
-          if (semiPos != -1) {
-            String extra = outputTopicNames.substring(0, semiPos);
-            outputTopicNames = outputTopicNames.substring(semiPos + 1);
-
-            String[] pair = extra.split("=");
-            if (pair.length > 1) {
-              if ("latch".equals(pair[0].trim())) {
-                latch = "true".equals(pair[1].trim());
-              }
-            }
-          }
-
-          registerOutputChannelTopic(outputName, parseTopicNames(outputTopicNames), latch);
+          outputChannelOptions.put(outputName, options);
+          registerOutputChannelTopic(outputName, parseTopicNames(options.getTopicNames()), options.isLatch());
         }
       }
     }
@@ -155,6 +161,47 @@ public abstract class BaseRosMessageRouterActivityComponent<T> extends BaseActiv
     onPostStartupComponent();
   }
 
+  @Override
+  public MessageRouteOptions getInputChannelOptions(String inputChannelId) {
+    MessageRouteOptions options = inputChannelOptions.get(inputChannelId);
+    return (options != null) ? options : MessageRouteOptions.DEFAULT_OPTIONS;
+  }
+
+  @Override
+  public MessageRouteOptions getOutputChannelOptions(String outputChannelId) {
+    MessageRouteOptions options = outputChannelOptions.get(outputChannelId);
+    return (options != null) ? options : MessageRouteOptions.DEFAULT_OPTIONS;
+  }
+
+  /**
+   * Parse the options out of a route configuration value, recording any errors.
+   *
+   * @param routeConfiguration
+   *          the route configuration value
+   * @param routeErrors
+   *          where to record errors
+   *
+   * @return the options for the route, or empty options with the whole value as the topic names if the options were
+   *         not usable
+   */
+  private MessageRouteOptions parseRouteOptions(String routeConfiguration, StringBuilder routeErrors) {
+    String message;
+    try {
+      MessageRouteOptions options = MessageRouteOptions.parse(routeConfiguration);
+      message = options.validate();
+      if (message == null) {
+        return options;
+      }
+    } catch (SimpleInteractiveSpacesException e) {
+      message = e.getMessage();
+    }
+
+    handleError(message, null);
+    routeErrors.append(routeErrors.length() > 0 ? ", " : "").append(message);
+
+    return new MessageRouteOptions(Maps.<String, String> newHashMap(), routeConfiguration);
+  }
+
   /**
    * Parse topic names out of a string.
    *
@@ -19,15 +19,21 @@ package interactivespaces.activity.component.route.ros;
 import interactivespaces.InteractiveSpacesException;
 import interactivespaces.SimpleInteractiveSpacesException;
 import interactivespaces.activity.component.ros.RosActivityComponent;
+import interactivespaces.activity.component.route.MessageRouteOptions;
 import interactivespaces.activity.component.route.RoutableInputMessageListener;
+import interactivespaces.activity.component.route.RouteMessageSizer;
 import interactivespaces.activity.impl.StatusDetail;
 import interactivespaces.configuration.Configuration;
 import interactivespaces.messaging.route.InternalRouteMessagePublisher;
 import interactivespaces.messaging.route.RouteMessagePublisher;
 import interactivespaces.messaging.route.ros.RosRouteMessagePublisher;
 import interactivespaces.time.TimeProvider;
+import interactivespaces.util.metrics.RouteChannelMetrics;
+import interactivespaces.util.metrics.RouteChannelMetrics.Direction;
+import interactivespaces.util.metrics.RouteMetricsRegistry;
 import interactivespaces.util.ros.BasePublisherListener;
 import interactivespaces.util.ros.BaseSubscriberListener;
+import interactivespaces.util.ros.InProcessRosTopicRegistry;
 import interactivespaces.util.ros.RosPublishers;
 import interactivespaces.util.ros.RosSubscribers;
 import interactivespaces.util.ros.StandardRosPublishers;
@@ -38,6 +44,11 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import org.apache.commons.logging.Log;
+import org.ros.concurrent.EventDispatcher;
+import org.ros.concurrent.QueueDropListener;
+import org.ros.concurrent.QueueKeyFunction;
+import org.ros.concurrent.QueueOverflowAction;
+import org.ros.concurrent.QueuePolicy;
 import org.ros.internal.node.topic.PublisherIdentifier;
 import org.ros.internal.node.topic.SubscriberIdentifier;
 import org.ros.message.MessageListener;
@@ -67,6 +78,26 @@ public class BasicRosMessageRouterActivityComponent<T> extends BaseRosMessageRou
    */
   private RosActivityComponent rosActivityComponent;
 
+  /**
+   * The registry for in-process route delivery, {@code null} if routes always go through TCPROS.
+   */
+  private InProcessRosTopicRegistry inProcessRegistry;
+
+  /**
+   * The registry for route metrics, {@code null} if the container has none.
+   */
+  private RouteMetricsRegistry metricsRegistry;
+
+  /**
+   * Gives the size of messages for metrics, {@code null} if sizes are not known.
+   */
+  private RouteMessageSizer<T> messageSizer;
+
+  /**
+   * Gives the keys for conflating route queues, {@code null} if all messages on a route share a key.
+   */
+  private QueueKeyFunction<? super T> conflationKeyFunction;
+
   /**
    * {@code true} if the component is "running", false otherwise.
    */
@@ -82,6 +113,11 @@ public class BasicRosMessageRouterActivityComponent<T> extends BaseRosMessageRou
    */
   private final String rosMessageType;
 
+  /**
+   * The names of the ROS message types for routes with an encoding other than the default, keyed by the encoding.
+   */
+  private final Map<String, String> encodingRosMessageTypes = Maps.newConcurrentMap();
+
   /**
    * All topic inputs mapped to their subscribers.
    */
@@ -102,6 +138,16 @@ public class BasicRosMessageRouterActivityComponent<T> extends BaseRosMessageRou
    */
   private final Map<String, String> outputTopics = new ConcurrentSkipListMap<String, String>();
 
+  /**
+   * Metrics for all input channels, keyed by channel ID.
+   */
+  private final Map<String, RouteChannelMetrics> inputMetrics = Maps.newConcurrentMap();
+
+  /**
+   * Metrics for all output channels, keyed by channel ID.
+   */
+  private final Map<String, RouteChannelMetrics> outputMetrics = Maps.newConcurrentMap();
+
   /**
    * A publisher collection to be used as a message factory.
    *
@@ -149,6 +195,70 @@ public class BasicRosMessageRouterActivityComponent<T> extends BaseRosMessageRou
     this.messageListener = messageListener;
   }
 
+  /**
+   * Set the ROS message type for routes with a given encoding.
+   *
+   * <p>
+   * A route whose {@link MessageRouteOptions#OPTION_ENCODING} option is the encoding uses this message type rather than
+   * the type given to the constructor. Both ends of such a route have to ask for the encoding.
+   *
+   * @param encoding
+   *          the encoding
+   * @param rosMessageType
+   *          the ROS message type for routes with the encoding
+   */
+  public void setEncodingRosMessageType(String encoding, String rosMessageType) {
+    encodingRosMessageTypes.put(encoding, rosMessageType);
+  }
+
+  /**
+   * Set the sizer for messages, used to count the bytes going through each channel.
+   *
+   * @param messageSizer
+   *          the message sizer, can be {@code null} if sizes are not known
+   */
+  public void setMessageSizer(RouteMessageSizer<T> messageSizer) {
+    this.messageSizer = messageSizer;
+  }
+
+  /**
+   * Set the function which gives the keys for routes using the {@link MessageRouteOptions#QUEUE_CONFLATE} queue and
+   * for conflating output routes.
+   *
+   * <p>
+   * A queued message is replaced by a newer message with the same key.
+   *
+   * @param conflationKeyFunction
+   *          the key function, can be {@code null} to give all messages the same key so only the newest is kept
+   */
+  public void setConflationKeyFunction(QueueKeyFunction<? super T> conflationKeyFunction) {
+    this.conflationKeyFunction = conflationKeyFunction;
+  }
+
+  /**
+   * Get the metrics for an input channel.
+   *
+   * @param channelId
+   *          ID of the channel
+   *
+   * @return the metrics, or {@code null} if there is no such input channel
+   */
+  public RouteChannelMetrics getInputChannelMetrics(String channelId) {
+    return inputMetrics.get(channelId);
+  }
+
+  /**
+   * Get the metrics for an output channel.
+   *
+   * @param channelId
+   *          ID of the channel
+   *
+   * @return the metrics, or {@code null} if there is no such output channel
+   */
+  public RouteChannelMetrics getOutputChannelMetrics(String channelId) {
+    return outputMetrics.get(channelId);
+  }
+
   @Override
   public String getName() {
     return COMPONENT_NAME;
@@ -167,6 +277,18 @@ public class BasicRosMessageRouterActivityComponent<T> extends BaseRosMessageRou
   @Override
   protected void onConfigureComponent(Configuration configuration) {
     rosActivityComponent = componentContext.getRequiredActivityComponent(RosActivityComponent.COMPONENT_NAME);
+    metricsRegistry =
+        componentContext.getActivity().getSpaceEnvironment().getValue(RouteMetricsRegistry.ENVIRONMENT_VALUE_NAME);
+
+    if (configuration.getPropertyBoolean(CONFIGURATION_ROUTES_INPROCESS, CONFIGURATION_ROUTES_INPROCESS_DEFAULT)) {
+      inProcessRegistry =
+          componentContext.getActivity().getSpaceEnvironment()
+              .getValue(InProcessRosTopicRegistry.ENVIRONMENT_VALUE_NAME);
+      if (inProcessRegistry == null) {
+        getComponentContext().getActivity().getLog()
+            .warn("In-process routes requested but the container has no in-process registry, using TCPROS");
+      }
+    }
   }
 
   @Override
@@ -221,16 +343,33 @@ public class BasicRosMessageRouterActivityComponent<T> extends BaseRosMessageRou
 
     RosPublishers<T> publishers = new StandardRosPublishers<T>(getComponentContext().getActivity().getLog());
     publishers.addPublisherListener(publisherListener);
-    publishers.addPublishers(rosActivityComponent.getNode(), rosMessageType, topicNames, latch);
+    publishers.setInProcessRosTopicRegistry(inProcessRegistry);
+
+    RouteChannelMetrics metrics = newChannelMetrics(channelId, Direction.OUTPUT);
+    outputMetrics.put(channelId, metrics);
+    publishers.setQueuePolicy(newQueuePolicy(getOutputChannelOptions(channelId), metrics));
+    String channelRosMessageType = getRosMessageType(getOutputChannelOptions(channelId));
+    publishers.addPublishers(rosActivityComponent.getNode(), channelRosMessageType, topicNames, latch);
 
     InternalRouteMessagePublisher<T> routeMessagePublisher = new RosRouteMessagePublisher<>(channelId, publishers);
 
+    MessageRouteOptions options = getOutputChannelOptions(channelId);
+    if (options.isConflating()) {
+      ConflatingRouteMessagePublisher<T> conflatingPublisher =
+          new ConflatingRouteMessagePublisher<T>(routeMessagePublisher, conflationKeyFunction,
+              newDropListener(metrics), getComponentContext().getActivity().getLog());
+      conflatingPublisher.startup(getComponentContext().getActivity().getManagedCommands(),
+          options.getConflateRate());
+      routeMessagePublisher = conflatingPublisher;
+    }
+
     outputs.put(channelId, routeMessagePublisher);
     outputTopics.put(channelId, Joiner.on(CONFIGURATION_VALUES_SEPARATOR).join(topicNames));
 
-    // Only matters that we get one. They are all for the same
-    // message type, so will take the last one.
-    messageFactory = routeMessagePublisher;
+    // Only matters that we get one for the default message type, so will take the last one.
+    if (rosMessageType.equals(channelRosMessageType)) {
+      messageFactory = routeMessagePublisher;
+    }
 
     return routeMessagePublisher;
   }
@@ -244,16 +383,23 @@ public class BasicRosMessageRouterActivityComponent<T> extends BaseRosMessageRou
 
     RosSubscribers<T> subscribers = new StandardRosSubscribers<T>(getComponentContext().getActivity().getLog());
     subscribers.addSubscriberListener(subscriberListener);
+    subscribers.setInProcessRosTopicRegistry(inProcessRegistry);
+
+    RouteChannelMetrics metrics = newChannelMetrics(channelId, Direction.INPUT);
+    subscribers.setQueuePolicy(newQueuePolicy(getInputChannelOptions(channelId), metrics));
 
     inputs.put(channelId, subscribers);
+    inputMetrics.put(channelId, metrics);
     inputTopics.put(channelId, Joiner.on(CONFIGURATION_VALUES_SEPARATOR).join(topicNames));
 
-    subscribers.addSubscribers(rosActivityComponent.getNode(), rosMessageType, topicNames, new MessageListener<T>() {
-      @Override
-      public void onNewMessage(T message) {
-        handleNewIncomingMessage(channelId, message);
-      }
-    });
+    String channelRosMessageType = getRosMessageType(getInputChannelOptions(channelId));
+    subscribers.addSubscribers(rosActivityComponent.getNode(), channelRosMessageType, topicNames,
+        new MessageListener<T>() {
+          @Override
+          public void onNewMessage(T message) {
+            handleNewIncomingMessage(channelId, message, EventDispatcher.takeCurrentSignalTime());
+          }
+        });
   }
 
   @Override
@@ -269,6 +415,108 @@ public class BasicRosMessageRouterActivityComponent<T> extends BaseRosMessageRou
     }
     outputs.clear();
     outputTopics.clear();
+
+    if (metricsRegistry != null) {
+      for (RouteChannelMetrics metrics : inputMetrics.values()) {
+        metricsRegistry.removeChannelMetrics(metrics);
+      }
+      for (RouteChannelMetrics metrics : outputMetrics.values()) {
+        metricsRegistry.removeChannelMetrics(metrics);
+      }
+    }
+    inputMetrics.clear();
+    outputMetrics.clear();
+  }
+
+  /**
+   * Get the ROS message type for a channel.
+   *
+   * @param options
+   *          the options for the channel
+   *
+   * @return the ROS message type
+   */
+  private String getRosMessageType(MessageRouteOptions options) {
+    String encodingRosMessageType = encodingRosMessageTypes.get(options.getEncoding());
+    return (encodingRosMessageType != null) ? encodingRosMessageType : rosMessageType;
+  }
+
+  /**
+   * Create the metrics for a channel.
+   *
+   * <p>
+   * Metrics are always kept, they are only registered if the container has a metrics registry.
+   *
+   * @param channelId
+   *          ID of the channel
+   * @param direction
+   *          the direction of the channel
+   *
+   * @return the metrics for the channel
+   */
+  private RouteChannelMetrics newChannelMetrics(String channelId, Direction direction) {
+    String owner = getComponentContext().getActivity().getName();
+    if (metricsRegistry == null) {
+      return new RouteChannelMetrics(owner, channelId, direction);
+    } else if (direction == Direction.INPUT) {
+      return metricsRegistry.newInputChannelMetrics(owner, channelId);
+    } else {
+      return metricsRegistry.newOutputChannelMetrics(owner, channelId);
+    }
+  }
+
+  /**
+   * Create the queue policy for a channel.
+   *
+   * @param options
+   *          the options for the channel
+   * @param metrics
+   *          the metrics for the channel, drops are counted here
+   *
+   * @return the queue policy, or {@code null} if the channel uses the ROS default
+   */
+  private QueuePolicy<T> newQueuePolicy(MessageRouteOptions options, RouteChannelMetrics metrics) {
+    if (!options.hasQueuePolicy()) {
+      return null;
+    }
+
+    QueueOverflowAction overflowAction;
+    switch (options.getQueue()) {
+      case MessageRouteOptions.QUEUE_DROP_NEWEST:
+        overflowAction = QueueOverflowAction.DROP_NEWEST;
+        break;
+
+      case MessageRouteOptions.QUEUE_DROP_OLDEST:
+        overflowAction = QueueOverflowAction.DROP_OLDEST;
+        break;
+
+      case MessageRouteOptions.QUEUE_CONFLATE:
+        overflowAction = QueueOverflowAction.CONFLATE;
+        break;
+
+      default:
+        overflowAction = QueueOverflowAction.BLOCK;
+    }
+
+    return new QueuePolicy<T>(overflowAction, options.getQueueCapacity(), conflationKeyFunction,
+        newDropListener(metrics));
+  }
+
+  /**
+   * Create a listener which counts dropped messages for a channel.
+   *
+   * @param metrics
+   *          the metrics for the channel
+   *
+   * @return the drop listener
+   */
+  private QueueDropListener newDropListener(final RouteChannelMetrics metrics) {
+    return new QueueDropListener() {
+      @Override
+      public void onEntryDropped() {
+        metrics.recordDrop();
+      }
+    };
   }
 
   /**
@@ -280,10 +528,25 @@ public class BasicRosMessageRouterActivityComponent<T> extends BaseRosMessageRou
    *          the message that came in
    */
   void handleNewIncomingMessage(String channelId, T message) {
+    handleNewIncomingMessage(channelId, message, -1);
+  }
+
+  /**
+   * Handle a new route message.
+   *
+   * @param channelId
+   *          ID of the channel the message came in on
+   * @param message
+   *          the message that came in
+   * @param signalTime
+   *          the {@link System#nanoTime()} when the message was queued for the handler, or -1 if not known
+   */
+  void handleNewIncomingMessage(String channelId, T message, long signalTime) {
     if (!getComponentContext().canHandlerRun()) {
       return;
     }
 
+    long handlerStart = System.nanoTime();
     try {
       getComponentContext().enterHandler();
 
@@ -306,6 +569,12 @@ public class BasicRosMessageRouterActivityComponent<T> extends BaseRosMessageRou
       handleError(String.format("Error after receiving routing message for channel %s", channelId), e);
     } finally {
       getComponentContext().exitHandler();
+
+      RouteChannelMetrics metrics = inputMetrics.get(channelId);
+      if (metrics != null) {
+        long queueWait = (signalTime >= 0) ? handlerStart - signalTime : -1;
+        metrics.recordMessage(getMessageSize(message), queueWait, System.nanoTime() - handlerStart);
+      }
     }
   }
 
@@ -317,8 +586,14 @@ public class BasicRosMessageRouterActivityComponent<T> extends BaseRosMessageRou
       if (outputChannelId != null) {
         final RouteMessagePublisher<T> output = outputs.get(outputChannelId);
         if (output != null) {
+          long publishStart = System.nanoTime();
           output.writeOutputMessage(message);
 
+          RouteChannelMetrics metrics = outputMetrics.get(outputChannelId);
+          if (metrics != null) {
+            metrics.recordMessage(getMessageSize(message), -1, System.nanoTime() - publishStart);
+          }
+
         } else {
           handleError(String.format("Unknown route output channel %s. Message dropped.", outputChannelId), null);
         }
@@ -332,6 +607,18 @@ public class BasicRosMessageRouterActivityComponent<T> extends BaseRosMessageRou
     }
   }
 
+  /**
+   * Get the size of a message.
+   *
+   * @param message
+   *          the message
+   *
+   * @return the size in bytes, or -1 if not known
+   */
+  private long getMessageSize(T message) {
+    return (messageSizer != null) ? messageSizer.getSize(message) : -1;
+  }
+
   /**
    * Create a new handler invocation ID.
    *
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.activity.component.route.ros;
+
+import interactivespaces.messaging.route.InternalRouteMessagePublisher;
+import interactivespaces.util.concurrency.ManagedCommand;
+import interactivespaces.util.concurrency.ManagedCommands;
+import interactivespaces.util.events.EventFrequency;
+
+import com.google.common.collect.Maps;
+
+import org.apache.commons.logging.Log;
+import org.ros.concurrent.QueueDropListener;
+import org.ros.concurrent.QueueKeyFunction;
+
+import java.util.Map;
+
+/**
+ * A route message publisher which only sends the newest message for each key, at no more than a maximum rate.
+ *
+ * <p>
+ * Messages are held until the next flush. A held message is replaced by a newer message with the same key, so a
+ * consumer which only needs the latest value does not pay for every intermediate one.
+ *
+ * <p>
+ * Flushes are serialized, so messages go out in the order they were flushed, and shutting down waits for any flush in
+ * progress before sending the remaining messages and shutting down the delegate.
+ *
+ * @param <T>
+ *          the message type for the publisher
+ *
+ * @author Keith M. Hughes
+ */
+public class ConflatingRouteMessagePublisher<T> implements InternalRouteMessagePublisher<T> {
+
+  /**
+   * The publisher which actually sends the messages.
+   */
+  private final InternalRouteMessagePublisher<T> delegate;
+
+  /**
+   * Gives the key for each message, {@code null} if all messages share a key.
+   */
+  private final QueueKeyFunction<? super T> keyFunction;
+
+  /**
+   * Told about every message which is replaced before being sent, can be {@code null}.
+   */
+  private final QueueDropListener dropListener;
+
+  /**
+   * The logger to use.
+   */
+  private final Log log;
+
+  /**
+   * Messages waiting for the next flush, in the order their keys were first written.
+   */
+  private Map<Object, T> pendingMessages = Maps.newLinkedHashMap();
+
+  /**
+   * The command flushing the messages, {@code null} if not started.
+   */
+  private ManagedCommand flushCommand;
+
+  /**
+   * Held across the whole of a flush so flushes do not interleave their writes.
+   */
+  private final Object flushLock = new Object();
+
+  /**
+   * {@code true} if the publisher has been shut down. Only accessed while holding {@link #flushLock}.
+   */
+  private boolean shutdown;
+
+  /**
+   * Construct a new conflating publisher.
+   *
+   * @param delegate
+   *          the publisher which actually sends the messages
+   * @param keyFunction
+   *          gives the key for each message, can be {@code null} to only send the newest message
+   * @param dropListener
+   *          told about every message which is replaced before being sent, can be {@code null}
+   * @param log
+   *          the logger to use
+   */
+  public ConflatingRouteMessagePublisher(InternalRouteMessagePublisher<T> delegate,
+      QueueKeyFunction<? super T> keyFunction, QueueDropListener dropListener, Log log) {
+    this.delegate = delegate;
+    this.keyFunction = keyFunction;
+    this.dropListener = dropListener;
+    this.log = log;
+  }
+
+  /**
+   * Start flushing messages.
+   *
+   * @param managedCommands
+   *          the managed commands to run the flushes with
+   * @param maximumRate
+   *          the maximum number of flushes per second
+   */
+  public synchronized void startup(ManagedCommands managedCommands, double maximumRate) {
+    flushCommand = managedCommands.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        flush();
+      }
+    }, EventFrequency.eventsPerSecond(maximumRate));
+  }
+
+  @Override
+  public String getChannelId() {
+    return delegate.getChannelId();
+  }
+
+  @Override
+  public void writeOutputMessage(T message) {
+    Object key = (keyFunction != null) ? keyFunction.getKey(message) : ConflatingRouteMessagePublisher.class;
+
+    T replacedMessage;
+    synchronized (this) {
+      replacedMessage = pendingMessages.put(key, message);
+    }
+
+    if (replacedMessage != null && dropListener != null) {
+      dropListener.onEntryDropped();
+    }
+  }
+
+  @Override
+  public T newMessage() {
+    return delegate.newMessage();
+  }
+
+  /**
+   * Send all messages waiting to go out.
+   *
+   * <p>
+   * Does nothing once the publisher is shut down.
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      if (!shutdown) {
+        writePendingMessages();
+      }
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    synchronized (this) {
+      if (flushCommand != null) {
+        flushCommand.cancel();
+        flushCommand = null;
+      }
+    }
+
+    synchronized (flushLock) {
+      if (shutdown) {
+        return;
+      }
+      shutdown = true;
+
+      // The newest values are sent so subscribers end up with the final state.
+      writePendingMessages();
+      delegate.shutdown();
+    }
+  }
+
+  /**
+   * Write all pending messages to the delegate.
+   *
+   * <p>
+   * The caller must hold {@link #flushLock}.
+   */
+  private void writePendingMessages() {
+    Map<Object, T> messages;
+    synchronized (this) {
+      if (pendingMessages.isEmpty()) {
+        return;
+      }
+
+      messages = pendingMessages;
+      pendingMessages = Maps.newLinkedHashMap();
+    }
+
+    for (T message : messages.values()) {
+      try {
+        delegate.writeOutputMessage(message);
+      } catch (Throwable e) {
+        log.error("Error writing conflated route message", e);
+      }
+    }
+  }
+}
@@ -49,4 +49,17 @@ public interface RosMessageRouterActivityComponent<T> extends MessageRouterActiv
    * Dependencies for the component.
    */
   List<String> BASE_COMPONENT_DEPENDENCIES = ImmutableList.of(RosActivityComponent.COMPONENT_NAME);
+
+  /**
+   * Configuration property for whether route messages between activities in the same container should skip TCPROS.
+   *
+   * <p>
+   * Messages delivered in-process are handed to the receiving activity on the sending thread and are not copied.
+   */
+  String CONFIGURATION_ROUTES_INPROCESS = "space.activity.routes.inprocess";
+
+  /**
+   * Default value for {@link #CONFIGURATION_ROUTES_INPROCESS}.
+   */
+  boolean CONFIGURATION_ROUTES_INPROCESS_DEFAULT = false;
 }
@@ -37,6 +37,7 @@ import com.google.common.collect.Lists;
 import org.apache.commons.logging.Log;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -529,6 +530,24 @@ public class BasicWebServerActivityComponent extends BaseActivityComponent imple
       }
     }
 
+    @Override
+    public void onReceiveBinary(final ByteBuffer data) {
+      ActivityComponentContext activityComponentContext = activityComponent.getComponentContext();
+      if (!activityComponentContext.canHandlerRun()) {
+        return;
+      }
+
+      try {
+        activityComponentContext.enterHandler();
+
+        delegate.onReceiveBinary(data);
+      } catch (Throwable e) {
+        activityComponent.handleError("Error during web socket binary data receive", e);
+      } finally {
+        activityComponentContext.exitHandler();
+      }
+    }
+
     @Override
     public void sendJson(final Object data) {
       ActivityComponentContext activityComponentContext = activityComponent.getComponentContext();
@@ -556,5 +575,33 @@ public class BasicWebServerActivityComponent extends BaseActivityComponent imple
         activityComponentContext.exitHandler();
       }
     }
+
+    @Override
+    public void sendBinary(final byte[] data) {
+      ActivityComponentContext activityComponentContext = activityComponent.getComponentContext();
+      try {
+        activityComponentContext.enterHandler();
+
+        delegate.sendBinary(data);
+      } catch (Throwable e) {
+        activityComponent.handleError("Error during web socket binary sending", e);
+      } finally {
+        activityComponentContext.exitHandler();
+      }
+    }
+
+    @Override
+    public void sendBinary(final ByteBuffer data) {
+      ActivityComponentContext activityComponentContext = activityComponent.getComponentContext();
+      try {
+        activityComponentContext.enterHandler();
+
+        delegate.sendBinary(data);
+      } catch (Throwable e) {
+        activityComponent.handleError("Error during web socket binary sending", e);
+      } finally {
+        activityComponentContext.exitHandler();
+      }
+    }
   }
 }
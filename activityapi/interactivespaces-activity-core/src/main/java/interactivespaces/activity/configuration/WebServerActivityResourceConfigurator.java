@@ -20,7 +20,9 @@ import interactivespaces.SimpleInteractiveSpacesException;
 import interactivespaces.activity.Activity;
 import interactivespaces.activity.ActivityResourceConfigurator;
 import interactivespaces.configuration.Configuration;
+import interactivespaces.service.web.WebSocketConnection;
 import interactivespaces.service.web.server.WebServer;
+import interactivespaces.service.web.server.WebSocketOverflowPolicy;
 import interactivespaces.system.InteractiveSpacesEnvironment;
 
 import java.io.File;
@@ -68,6 +70,68 @@ public class WebServerActivityResourceConfigurator implements ActivityResourceCo
    */
   public static final String CONFIGURATION_SUFFIX_WEBAPP_SSL_PRIVATE_KEY = ".ssl.privatekey";
 
+  /**
+   * Configuration property suffix giving the number of messages a web socket connection will queue for a slow client.
+   */
+  public static final String CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_WEBSOCKET_QUEUE_CAPACITY =
+      ".web.server.websocket.queue.capacity";
+
+  /**
+   * Configuration property suffix giving what a web socket connection does when its queue is full. One of
+   * {@code drop}, {@code drop_oldest} or {@code disconnect}.
+   */
+  public static final String CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_WEBSOCKET_QUEUE_POLICY =
+      ".web.server.websocket.queue.policy";
+
+  /**
+   * Configuration property suffix giving the smallest web socket message, in bytes, which will be compressed. A
+   * negative value turns off compression.
+   */
+  public static final String CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_WEBSOCKET_COMPRESSION_THRESHOLD =
+      ".web.server.websocket.compression.threshold";
+
+  /**
+   * Configuration property suffix giving the number of threads for dynamic requests. Dynamic requests are handled on
+   * the network threads if there are none.
+   */
+  public static final String CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_DYNAMIC_THREADS = ".web.server.dynamic.threads";
+
+  /**
+   * Configuration property suffix giving the number of requests each dynamic handler can have waiting or running.
+   */
+  public static final String CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_DYNAMIC_QUEUE_CAPACITY =
+      ".web.server.dynamic.queue.capacity";
+
+  /**
+   * Configuration property suffix giving how long, in milliseconds, a dynamic request can take. {@code 0} means no
+   * limit.
+   */
+  public static final String CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_DYNAMIC_TIMEOUT = ".web.server.dynamic.timeout";
+
+  /**
+   * Configuration property suffix giving the largest part of an HTTP upload, in bytes, which is kept in memory rather
+   * than written to disk.
+   */
+  public static final String CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_UPLOAD_MEMORY_THRESHOLD =
+      ".web.server.upload.memory.threshold";
+
+  /**
+   * Configuration property suffix giving the largest HTTP upload, in bytes, which will be accepted. A negative value
+   * means no limit.
+   */
+  public static final String CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_UPLOAD_MAXIMUM_SIZE =
+      ".web.server.upload.maximum.size";
+
+  /**
+   * Default number of requests each dynamic handler can have waiting or running.
+   */
+  public static final int WEB_SERVER_DYNAMIC_QUEUE_CAPACITY_DEFAULT = 100;
+
+  /**
+   * Default time, in milliseconds, a dynamic request can take.
+   */
+  public static final long WEB_SERVER_DYNAMIC_TIMEOUT_DEFAULT = 30000;
+
   /**
    * Default port to give to the web server.
    */
@@ -166,6 +230,55 @@ public class WebServerActivityResourceConfigurator implements ActivityResourceCo
       }
     }
 
+    int webSocketQueueCapacity =
+        configuration.getPropertyInteger(configurationPrefix
+            + CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_WEBSOCKET_QUEUE_CAPACITY,
+            WebServer.WEBSOCKET_OUTBOUND_QUEUE_CAPACITY_DEFAULT);
+    String webSocketQueuePolicy =
+        configuration.getPropertyString(configurationPrefix
+            + CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_WEBSOCKET_QUEUE_POLICY);
+    WebSocketOverflowPolicy webSocketOverflowPolicy = WebServer.WEBSOCKET_OVERFLOW_POLICY_DEFAULT;
+    if (webSocketQueuePolicy != null) {
+      try {
+        webSocketOverflowPolicy = WebSocketOverflowPolicy.valueOf(webSocketQueuePolicy.trim().toUpperCase());
+      } catch (IllegalArgumentException e) {
+        throw new SimpleInteractiveSpacesException(String.format("Unknown web socket queue policy %s",
+            webSocketQueuePolicy));
+      }
+    }
+    webServer.setWebSocketOutboundQueue(webSocketQueueCapacity, webSocketOverflowPolicy);
+
+    int webSocketCompressionThreshold =
+        configuration.getPropertyInteger(configurationPrefix
+            + CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_WEBSOCKET_COMPRESSION_THRESHOLD,
+            WebSocketConnection.COMPRESSION_THRESHOLD_DEFAULT);
+    webServer.setWebSocketCompressionThreshold((webSocketCompressionThreshold < 0)
+        ? WebSocketConnection.COMPRESSION_DISABLED : webSocketCompressionThreshold);
+
+    int dynamicThreads =
+        configuration.getPropertyInteger(configurationPrefix + CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_DYNAMIC_THREADS,
+            WebServer.DYNAMIC_REQUEST_EXECUTION_DISABLED);
+    if (dynamicThreads != WebServer.DYNAMIC_REQUEST_EXECUTION_DISABLED) {
+      int dynamicQueueCapacity =
+          configuration.getPropertyInteger(configurationPrefix
+              + CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_DYNAMIC_QUEUE_CAPACITY,
+              WEB_SERVER_DYNAMIC_QUEUE_CAPACITY_DEFAULT);
+      long dynamicTimeout =
+          configuration.getPropertyLong(configurationPrefix + CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_DYNAMIC_TIMEOUT,
+              WEB_SERVER_DYNAMIC_TIMEOUT_DEFAULT);
+      webServer.setDynamicRequestExecution(dynamicThreads, dynamicQueueCapacity, dynamicTimeout);
+    }
+
+    long uploadMemoryThreshold =
+        configuration.getPropertyLong(configurationPrefix
+            + CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_UPLOAD_MEMORY_THRESHOLD,
+            WebServer.HTTP_UPLOAD_MEMORY_THRESHOLD_DEFAULT);
+    long uploadMaximumSize =
+        configuration.getPropertyLong(configurationPrefix + CONFIGURATION_SUFFIX_WEBAPP_WEB_SERVER_UPLOAD_MAXIMUM_SIZE,
+            WebServer.HTTP_UPLOAD_SIZE_UNLIMITED);
+    webServer.setHttpUploadLimits(uploadMemoryThreshold, (uploadMaximumSize < 0) ? WebServer.HTTP_UPLOAD_SIZE_UNLIMITED
+        : uploadMaximumSize);
+
     boolean debugMode =
         configuration.getPropertyBoolean(WebActivityConfiguration.CONFIGURATION_WEBAPP_DEBUG, false);
     webServer.setDebugMode(debugMode);
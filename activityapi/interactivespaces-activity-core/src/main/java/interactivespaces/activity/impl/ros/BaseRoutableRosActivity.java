@@ -16,16 +16,24 @@
 
 package interactivespaces.activity.impl.ros;
 
+import interactivespaces.activity.component.route.MessageRouteOptions;
 import interactivespaces.activity.component.route.MessageRouterSupportedMessageTypes;
 import interactivespaces.activity.component.route.RoutableInputMessageListener;
+import interactivespaces.activity.component.route.RouteMessageSizer;
 import interactivespaces.activity.component.route.ros.BasicRosMessageRouterActivityComponent;
 import interactivespaces.activity.component.route.ros.RosMessageRouterActivityComponent;
 import interactivespaces.activity.execution.ActivityMethodInvocation;
+import interactivespaces.util.data.json.BinaryJsonMapper;
 import interactivespaces.util.data.json.JsonBuilder;
 import interactivespaces.util.data.json.JsonMapper;
+import interactivespaces.util.data.json.SmileJsonMapper;
 import interactivespaces.util.data.json.StandardJsonMapper;
 
+import interactivespaces_msgs.GenericBinaryMessage;
 import interactivespaces_msgs.GenericMessage;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.ros.internal.message.Message;
 
 import java.util.Map;
 
@@ -42,24 +50,71 @@ public class BaseRoutableRosActivity extends BaseRosActivity {
    */
   private static final JsonMapper MAPPER = StandardJsonMapper.INSTANCE;
 
+  /**
+   * The mapper for Smile-encoded JSON.
+   */
+  private static final BinaryJsonMapper SMILE_MAPPER = SmileJsonMapper.INSTANCE;
+
   /**
    * Router for input and output messages.
+   *
+   * <p>
+   * Routes carry {@link GenericMessage} messages, except for Smile routes which carry {@link GenericBinaryMessage}
+   * messages.
    */
-  private RosMessageRouterActivityComponent<GenericMessage> router;
+  private RosMessageRouterActivityComponent<Message> router;
 
   @Override
   public void commonActivitySetup() {
     super.commonActivitySetup();
 
-    router =
-        addActivityComponent(new BasicRosMessageRouterActivityComponent<GenericMessage>(GenericMessage._TYPE,
-            new RoutableInputMessageListener<GenericMessage>() {
+    BasicRosMessageRouterActivityComponent<Message> basicRouter =
+        new BasicRosMessageRouterActivityComponent<Message>(GenericMessage._TYPE,
+            new RoutableInputMessageListener<Message>() {
               @SuppressWarnings("unchecked")
               @Override
-              public void onNewRoutableInputMessage(String channelName, GenericMessage message) {
-                handleRoutableInputMessage(channelName, message);
+              public void onNewRoutableInputMessage(String channelName, Message message) {
+                if (message instanceof GenericBinaryMessage) {
+                  handleRoutableInputMessage(channelName, (GenericBinaryMessage) message);
+                } else {
+                  handleRoutableInputMessage(channelName, (GenericMessage) message);
+                }
               }
-            }));
+            });
+    basicRouter.setEncodingRosMessageType(MessageRouteOptions.ENCODING_SMILE, GenericBinaryMessage._TYPE);
+    basicRouter.setMessageSizer(new RouteMessageSizer<Message>() {
+      @Override
+      public long getSize(Message message) {
+        if (message instanceof GenericBinaryMessage) {
+          return ((GenericBinaryMessage) message).getData().readableBytes();
+        } else {
+          // Close enough for metrics, string messages are almost always ASCII.
+          return ((GenericMessage) message).getMessage().length();
+        }
+      }
+    });
+    router = addActivityComponent(basicRouter);
+  }
+
+  /**
+   * Handle a new binary input message.
+   *
+   * @param channelName
+   *          the name of the channel
+   * @param message
+   *          the binary message
+   */
+  private void handleRoutableInputMessage(String channelName, GenericBinaryMessage message) {
+    if (MessageRouterSupportedMessageTypes.JSON_SMILE_MESSAGE_TYPE.equals(message.getType())) {
+      try {
+        callOnNewInputJson(channelName,
+            SMILE_MAPPER.parseObject(new ChannelBufferInputStream(message.getData().duplicate())));
+      } catch (Exception e) {
+        getLog().error("Could not process input message", e);
+      }
+    } else {
+      getLog().warn(String.format("Dropped message on channel %s of unknown type %s", channelName, message.getType()));
+    }
   }
 
   /**
@@ -73,7 +128,7 @@ public class BaseRoutableRosActivity extends BaseRosActivity {
   private void handleRoutableInputMessage(String channelName, GenericMessage message) {
     if (MessageRouterSupportedMessageTypes.JSON_MESSAGE_TYPE.equals(message.getType())) {
       try {
-        callOnNewInputJson(channelName, message);
+        callOnNewInputJson(channelName, MAPPER.parseObject(message.getMessage()));
       } catch (Exception e) {
         getLog().error("Could not process input message", e);
       }
@@ -135,19 +190,29 @@ public class BaseRoutableRosActivity extends BaseRosActivity {
   /**
    * Send an output JSON message.
    *
+   * <p>
+   * The message is encoded as JSON text unless the output route asks for another encoding.
+   *
    * @param channelName
    *          the name of the output channel to send the message on
    * @param message
    *          the message to send
    */
   public void sendOutputJson(String channelName, Map<String, Object> message) {
-    GenericMessage outgoing = router.newMessage();
-
     try {
-      outgoing.setType(MessageRouterSupportedMessageTypes.JSON_MESSAGE_TYPE);
-      outgoing.setMessage(MAPPER.toString(message));
+      if (MessageRouteOptions.ENCODING_SMILE.equals(router.getOutputChannelOptions(channelName).getEncoding())) {
+        GenericBinaryMessage outgoing = (GenericBinaryMessage) router.getMessagePublisher(channelName).newMessage();
+        outgoing.setType(MessageRouterSupportedMessageTypes.JSON_SMILE_MESSAGE_TYPE);
+        outgoing.setData(ChannelBuffers.wrappedBuffer(SMILE_MAPPER.toBytes(message)));
 
-      router.writeOutputMessage(channelName, outgoing);
+        router.writeOutputMessage(channelName, outgoing);
+      } else {
+        GenericMessage outgoing = (GenericMessage) router.newMessage();
+        outgoing.setType(MessageRouterSupportedMessageTypes.JSON_MESSAGE_TYPE);
+        outgoing.setMessage(MAPPER.toString(message));
+
+        router.writeOutputMessage(channelName, outgoing);
+      }
     } catch (Throwable e) {
       getLog().error(String.format("Could not write JSON message on output channel %s", channelName), e);
     }
@@ -174,8 +239,13 @@ public class BaseRoutableRosActivity extends BaseRosActivity {
    *          the message to send
    */
   public void sendOutputString(String channelName, String message) {
-    GenericMessage outgoing = router.newMessage();
+    if (MessageRouteOptions.ENCODING_SMILE.equals(router.getOutputChannelOptions(channelName).getEncoding())) {
+      getLog().error(String.format("Could not write string message on Smile output channel %s", channelName));
+      return;
+    }
+
     try {
+      GenericMessage outgoing = (GenericMessage) router.newMessage();
       outgoing.setType(MessageRouterSupportedMessageTypes.STRING_MESSAGE_TYPE);
       outgoing.setMessage(message);
 
@@ -191,15 +261,13 @@ public class BaseRoutableRosActivity extends BaseRosActivity {
    * @param channelName
    *          the name of the channel
    * @param message
-   *          the message in JSON format
+   *          the decoded message
    */
-  private void callOnNewInputJson(String channelName, GenericMessage message) {
+  private void callOnNewInputJson(String channelName, Map<String, Object> message) {
     ActivityMethodInvocation invocation = getExecutionContext().enterMethod();
 
     try {
-      String msg = message.getMessage();
-
-      onNewInputJson(channelName, MAPPER.parseObject(msg));
+      onNewInputJson(channelName, message);
     } finally {
       getExecutionContext().exitMethod(invocation);
     }
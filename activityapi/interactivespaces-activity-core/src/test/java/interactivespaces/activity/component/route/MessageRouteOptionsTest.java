@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.activity.component.route;
+
+import interactivespaces.SimpleInteractiveSpacesException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MessageRouteOptions}.
+ *
+ * @author Keith M. Hughes
+ */
+public class MessageRouteOptionsTest {
+
+  /**
+   * A route with no options only has topic names.
+   */
+  @Test
+  public void testNoOptions() {
+    MessageRouteOptions options = MessageRouteOptions.parse("/foo/bar:/foo/bletch");
+
+    Assert.assertEquals("/foo/bar:/foo/bletch", options.getTopicNames());
+    Assert.assertFalse(options.isLatch());
+    Assert.assertEquals(MessageRouteOptions.ENCODING_JSON, options.getEncoding());
+    Assert.assertNull(options.validate());
+  }
+
+  /**
+   * Several options can come before the topic names.
+   */
+  @Test
+  public void testMultipleOptions() {
+    MessageRouteOptions options = MessageRouteOptions.parse(" latch = true ; encoding=smile;/foo/bar");
+
+    Assert.assertEquals("/foo/bar", options.getTopicNames());
+    Assert.assertTrue(options.isLatch());
+    Assert.assertEquals(MessageRouteOptions.ENCODING_SMILE, options.getEncoding());
+    Assert.assertNull(options.validate());
+  }
+
+  /**
+   * An unknown encoding does not validate.
+   */
+  @Test
+  public void testUnknownEncoding() {
+    MessageRouteOptions options = MessageRouteOptions.parse("encoding=morse;/foo/bar");
+
+    Assert.assertNotNull(options.validate());
+  }
+
+  /**
+   * A conflate rate makes the route conflating and must be in range.
+   */
+  @Test
+  public void testConflateRate() {
+    MessageRouteOptions options = MessageRouteOptions.parse("conflate_rate=30;/foo/bar");
+
+    Assert.assertTrue(options.isConflating());
+    Assert.assertEquals(30.0, options.getConflateRate(), 0.0);
+    Assert.assertNull(options.validate());
+
+    Assert.assertFalse(MessageRouteOptions.parse("/foo/bar").isConflating());
+    Assert.assertNotNull(MessageRouteOptions.parse("conflate_rate=0;/foo/bar").validate());
+    Assert.assertNotNull(MessageRouteOptions.parse("conflate_rate=fast;/foo/bar").validate());
+  }
+
+  /**
+   * Options must have values.
+   */
+  @Test(expected = SimpleInteractiveSpacesException.class)
+  public void testOptionWithoutValue() {
+    MessageRouteOptions.parse("latch;/foo/bar");
+  }
+
+  /**
+   * Blank parts and whitespace around parts are ignored.
+   */
+  @Test
+  public void testTrailingSeparatorAndWhitespace() {
+    MessageRouteOptions options = MessageRouteOptions.parse("latch=true;;  ; /foo/bar:/foo/bletch ; ");
+
+    Assert.assertEquals("/foo/bar:/foo/bletch", options.getTopicNames());
+    Assert.assertTrue(options.isLatch());
+    Assert.assertNull(options.validate());
+
+    options = MessageRouteOptions.parse(" latch = true ;\t");
+    Assert.assertEquals("", options.getTopicNames());
+    Assert.assertTrue(options.isLatch());
+
+    Assert.assertEquals("", MessageRouteOptions.parse("  ").getTopicNames());
+  }
+
+  /**
+   * Options must have both a name and a value.
+   */
+  @Test
+  public void testMalformedOptions() {
+    for (String routeConfiguration : new String[] { "=true;/foo/bar", "latch=;/foo/bar", "latch = ;/foo/bar",
+        "latch;encoding=smile;/foo/bar" }) {
+      try {
+        MessageRouteOptions.parse(routeConfiguration);
+        Assert.fail(routeConfiguration);
+      } catch (SimpleInteractiveSpacesException e) {
+        // Expected
+      }
+    }
+  }
+}
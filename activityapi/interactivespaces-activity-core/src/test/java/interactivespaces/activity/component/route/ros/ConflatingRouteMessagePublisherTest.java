@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.activity.component.route.ros;
+
+import interactivespaces.messaging.route.InternalRouteMessagePublisher;
+
+import org.apache.commons.logging.Log;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ros.concurrent.QueueDropListener;
+import org.ros.concurrent.QueueKeyFunction;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link ConflatingRouteMessagePublisher}.
+ *
+ * @author Keith M. Hughes
+ */
+public class ConflatingRouteMessagePublisherTest {
+
+  private ConflatingRouteMessagePublisher<String> publisher;
+
+  private InternalRouteMessagePublisher<String> delegate;
+
+  private QueueDropListener dropListener;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    delegate = Mockito.mock(InternalRouteMessagePublisher.class);
+    dropListener = Mockito.mock(QueueDropListener.class);
+
+    QueueKeyFunction<String> firstLetter = new QueueKeyFunction<String>() {
+      @Override
+      public Object getKey(String message) {
+        return message.charAt(0);
+      }
+    };
+
+    publisher =
+        new ConflatingRouteMessagePublisher<String>(delegate, firstLetter, dropListener, Mockito.mock(Log.class));
+  }
+
+  /**
+   * Only the newest message for each key is sent, in the order the keys were first written.
+   */
+  @Test
+  public void testFlushNewestPerKey() {
+    publisher.writeOutputMessage("a1");
+    publisher.writeOutputMessage("b1");
+    publisher.writeOutputMessage("a2");
+
+    Mockito.verify(delegate, Mockito.never()).writeOutputMessage(Mockito.anyString());
+    Mockito.verify(dropListener, Mockito.times(1)).onEntryDropped();
+
+    publisher.flush();
+
+    InOrder inOrder = Mockito.inOrder(delegate);
+    inOrder.verify(delegate).writeOutputMessage("a2");
+    inOrder.verify(delegate).writeOutputMessage("b1");
+    Mockito.verify(delegate, Mockito.times(2)).writeOutputMessage(Mockito.anyString());
+
+    // Nothing new to send.
+    publisher.flush();
+    Mockito.verify(delegate, Mockito.times(2)).writeOutputMessage(Mockito.anyString());
+  }
+
+  /**
+   * Shutting down sends anything still waiting.
+   */
+  @Test
+  public void testShutdownFlushes() {
+    publisher.writeOutputMessage("a1");
+
+    publisher.shutdown();
+
+    InOrder inOrder = Mockito.inOrder(delegate);
+    inOrder.verify(delegate).writeOutputMessage("a1");
+    inOrder.verify(delegate).shutdown();
+  }
+
+  /**
+   * Shutting down waits for a flush in progress, then sends what arrived meanwhile before shutting down the delegate.
+   */
+  @Test(timeout = 10000)
+  public void testShutdownDuringFlush() throws Exception {
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        writing.countDown();
+        release.await();
+        return null;
+      }
+    }).when(delegate).writeOutputMessage("a1");
+
+    publisher.writeOutputMessage("a1");
+    Thread flusher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        publisher.flush();
+      }
+    });
+    flusher.start();
+    Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+    publisher.writeOutputMessage("b1");
+    Thread shutdowner = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        publisher.shutdown();
+      }
+    });
+    shutdowner.start();
+    shutdowner.join(200);
+
+    Assert.assertTrue(shutdowner.isAlive());
+    Mockito.verify(delegate, Mockito.never()).writeOutputMessage("b1");
+    Mockito.verify(delegate, Mockito.never()).shutdown();
+
+    release.countDown();
+    flusher.join();
+    shutdowner.join();
+
+    InOrder inOrder = Mockito.inOrder(delegate);
+    inOrder.verify(delegate).writeOutputMessage("a1");
+    inOrder.verify(delegate).writeOutputMessage("b1");
+    inOrder.verify(delegate).shutdown();
+
+    // A flush tick arriving after shutdown sends nothing.
+    publisher.writeOutputMessage("c1");
+    publisher.flush();
+    Mockito.verify(delegate, Mockito.never()).writeOutputMessage("c1");
+  }
+}
@@ -20,6 +20,7 @@ import interactivespaces.activity.Activity;
 import interactivespaces.activity.ActivityFilesystem;
 import interactivespaces.configuration.SimpleConfiguration;
 import interactivespaces.service.web.server.WebServer;
+import interactivespaces.service.web.server.WebSocketOverflowPolicy;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -116,4 +117,43 @@ public class WebServerActivityResourceConfiguratorTest {
     Assert.assertEquals(webContentUrl, configurator.getWebContentUrl());
     Assert.assertEquals(webContentUrl + "/" + initialUrl + "?" + query, configurator.getWebInitialPage());
   }
+
+  /**
+   * Test configuring the web socket outbound queue.
+   */
+  @Test
+  public void testWebSocketQueueConfigure() {
+    configuration.setValue("space.activity.webapp.web.server.websocket.queue.capacity", "50");
+    configuration.setValue("space.activity.webapp.web.server.websocket.queue.policy", "drop_oldest");
+
+    configurator.configure(null, activity, webServer);
+
+    Mockito.verify(webServer).setWebSocketOutboundQueue(50, WebSocketOverflowPolicy.DROP_OLDEST);
+  }
+
+  /**
+   * Test that the dynamic request pool is configured.
+   */
+  @Test
+  public void testDynamicExecutionConfigure() {
+    configuration.setValue("space.activity.webapp.web.server.dynamic.threads", "4");
+    configuration.setValue("space.activity.webapp.web.server.dynamic.timeout", "5000");
+
+    configurator.configure(null, activity, webServer);
+
+    Mockito.verify(webServer).setDynamicRequestExecution(4,
+        WebServerActivityResourceConfigurator.WEB_SERVER_DYNAMIC_QUEUE_CAPACITY_DEFAULT, 5000);
+  }
+
+  /**
+   * Test configuring the HTTP upload limits.
+   */
+  @Test
+  public void testUploadLimitsConfigure() {
+    configuration.setValue("space.activity.webapp.web.server.upload.maximum.size", "1048576");
+
+    configurator.configure(null, activity, webServer);
+
+    Mockito.verify(webServer).setHttpUploadLimits(WebServer.HTTP_UPLOAD_MEMORY_THRESHOLD_DEFAULT, 1048576);
+  }
 }
@@ -27,6 +27,7 @@ import interactivespaces.service.web.server.handler.barcode.ZXingBarcodeHttpDyna
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 /**
@@ -95,6 +96,11 @@ public class ExternalProxyInternalExampleActivity extends BaseRoutableRosWebActi
 
           sendOutputJson("output1", data);
         }
+
+        @Override
+        public void onReceiveBinary(ByteBuffer data) {
+          // The proxy only sends JSON.
+        }
       }, getSpaceEnvironment().getExecutorService(), getLog());
 
       addManagedResource(proxyClient);
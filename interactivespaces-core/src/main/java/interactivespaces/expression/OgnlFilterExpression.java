@@ -54,4 +54,13 @@ public class OgnlFilterExpression implements FilterExpression {
           expression), e);
     }
   }
+
+  /**
+   * Get the text of the expression.
+   *
+   * @return the OGNL expression
+   */
+  public String getExpression() {
+    return expression;
+  }
 }
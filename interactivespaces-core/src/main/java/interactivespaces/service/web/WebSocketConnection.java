@@ -16,6 +16,8 @@
 
 package interactivespaces.service.web;
 
+import java.nio.ByteBuffer;
+
 /**
  * A web socket connection for a web socket server.
  *
@@ -26,6 +28,17 @@ package interactivespaces.service.web;
  */
 public interface WebSocketConnection {
 
+  /**
+   * The default for the smallest message, in bytes, which is compressed when the permessage-deflate extension is in
+   * use.
+   */
+  int COMPRESSION_THRESHOLD_DEFAULT = 1024;
+
+  /**
+   * The compression threshold which turns off compression.
+   */
+  int COMPRESSION_DISABLED = -1;
+
   /**
    * Is the connection still open?
    *
@@ -54,6 +67,47 @@ public interface WebSocketConnection {
    */
   void writeDataAsString(String data);
 
+  /**
+   * Write text data out to the remote endpoint which has already been encoded as UTF-8.
+   *
+   * <p>
+   * The connection never modifies the array, so one encoding can be written to many connections.
+   *
+   * @param data
+   *          the UTF-8 encoded text to write
+   */
+  void writeEncodedText(byte[] data);
+
+  /**
+   * Write data out to the remote endpoint as a binary message.
+   *
+   * <p>
+   * The array is not copied, so must not be modified after the call.
+   *
+   * @param data
+   *          data to write
+   */
+  void writeDataAsBinary(byte[] data);
+
+  /**
+   * Write data out to the remote endpoint as a binary message.
+   *
+   * <p>
+   * The data between the buffer's position and limit is written. The buffer is not copied, so its contents must not be
+   * modified after the call.
+   *
+   * @param data
+   *          data to write
+   */
+  void writeDataAsBinary(ByteBuffer data);
+
+  /**
+   * Get the number of messages waiting to be sent because the remote endpoint is not keeping up.
+   *
+   * @return the number of waiting messages, always {@code 0} for connections which do not queue messages
+   */
+  int getOutboundQueueDepth();
+
   /**
    * Get the user id of the user who opened this socket connection.
    *
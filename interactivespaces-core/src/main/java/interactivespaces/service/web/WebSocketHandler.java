@@ -16,6 +16,8 @@
 
 package interactivespaces.service.web;
 
+import java.nio.ByteBuffer;
+
 /**
  * Handle web socket requests.
  *
@@ -40,4 +42,15 @@ public interface WebSocketHandler {
    *          The data to process.
    */
   void onReceive(Object data);
+
+  /**
+   * Binary data has been received from the remote endpoint. Process it.
+   *
+   * <p>
+   * The data is between the buffer's position and limit. The buffer must not be used after the call returns.
+   *
+   * @param data
+   *          the data to process
+   */
+  void onReceiveBinary(ByteBuffer data);
 }
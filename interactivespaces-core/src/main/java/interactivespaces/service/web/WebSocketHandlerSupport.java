@@ -16,6 +16,8 @@
 
 package interactivespaces.service.web;
 
+import java.nio.ByteBuffer;
+
 /**
  * A useful support class for {@link WebSocketHandler} instances
  *
@@ -37,4 +39,9 @@ public class WebSocketHandlerSupport implements WebSocketHandler {
   public void onReceive(Object data) {
     // Default is nothing.
   }
+
+  @Override
+  public void onReceiveBinary(ByteBuffer data) {
+    // Default is nothing.
+  }
 }
@@ -38,6 +38,19 @@ public interface WebSocketClient extends WebSocketConnection, ManagedResource {
    */
   void setWebSocketHandler(WebSocketHandler handler);
 
+  /**
+   * Set the compression threshold for the connection.
+   *
+   * <p>
+   * The permessage-deflate extension is offered to the server unless compression is disabled. Messages smaller than the
+   * threshold are sent uncompressed. This must be set before {@link #startup()} is called.
+   *
+   * @param threshold
+   *          the smallest message size, in bytes, which will be compressed, or
+   *          {@link WebSocketConnection#COMPRESSION_DISABLED} to turn off compression
+   */
+  void setCompressionThreshold(int threshold);
+
   /**
    * Ping the server.
    */
@@ -20,9 +20,12 @@ import interactivespaces.InteractiveSpacesException;
 import interactivespaces.SimpleInteractiveSpacesException;
 import interactivespaces.service.web.WebSocketHandler;
 import interactivespaces.service.web.client.WebSocketClient;
+import interactivespaces.service.web.internal.netty.NettyPerMessageDeflateHandler;
 import interactivespaces.util.data.json.JsonMapper;
 import interactivespaces.util.data.json.StandardJsonMapper;
 
+import com.google.common.collect.Maps;
+
 import org.apache.commons.logging.Log;
 import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -36,6 +39,7 @@ import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
 import org.jboss.netty.channel.socket.nio.NioWorkerPool;
 import org.jboss.netty.handler.codec.http.HttpRequestEncoder;
 import org.jboss.netty.handler.codec.http.HttpResponseDecoder;
+import org.jboss.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.PingWebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.TextWebSocketFrame;
@@ -45,6 +49,8 @@ import org.jboss.netty.handler.codec.http.websocketx.WebSocketVersion;
 
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.concurrent.Executor;
 
 /**
@@ -109,6 +115,11 @@ public class NettyWebSocketClient implements WebSocketClient {
    */
   private ClientBootstrap bootstrap;
 
+  /**
+   * The smallest message size, in bytes, which will be compressed.
+   */
+  private int compressionThreshold = COMPRESSION_THRESHOLD_DEFAULT;
+
   /**
    * Construct a Netty websocket client.
    *
@@ -150,8 +161,15 @@ public class NettyWebSocketClient implements WebSocketClient {
       // Connect with V13 (RFC 6455 aka HyBi-17). You can change it to V08
       // or V00. If you change it to V00, ping is not supported and remember to
       // change HttpResponseDecoder to WebSocketHttpResponseDecoder in the pipeline.
+      boolean compressionEnabled = compressionThreshold != COMPRESSION_DISABLED;
+      Map<String, String> customHeaders = Maps.newHashMap();
+      if (compressionEnabled) {
+        customHeaders.put(NettyPerMessageDeflateHandler.HTTP_HEADER_WEBSOCKET_EXTENSIONS,
+            NettyPerMessageDeflateHandler.EXTENSION_NAME);
+      }
       final WebSocketClientHandshaker handshaker =
-          new WebSocketClientHandshakerFactory().newHandshaker(uri, WebSocketVersion.V13, null, false, null);
+          new WebSocketClientHandshakerFactory().newHandshaker(uri, WebSocketVersion.V13, null, compressionEnabled,
+              customHeaders);
 
       bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
         @Override
@@ -161,7 +179,7 @@ public class NettyWebSocketClient implements WebSocketClient {
           pipeline.addLast(CHANNEL_PIPELINE_NAME_DECODER, new HttpResponseDecoder());
           pipeline.addLast(CHANNEL_PIPELINE_NAME_ENCODER, new HttpRequestEncoder());
           pipeline.addLast(CHANNEL_PIPELINE_NAME_WEBSOCKET_HANDLER, new NettyWebSocketClientHandler(handshaker,
-              handler, log));
+              handler, compressionThreshold, log));
           return pipeline;
         }
       });
@@ -188,6 +206,15 @@ public class NettyWebSocketClient implements WebSocketClient {
     this.handler = handler;
   }
 
+  @Override
+  public void setCompressionThreshold(int threshold) {
+    if (channel != null) {
+      throw new SimpleInteractiveSpacesException("The web socket client is already running");
+    }
+
+    compressionThreshold = threshold;
+  }
+
   @Override
   public void writeDataAsJson(Object data) {
     try {
@@ -206,6 +233,38 @@ public class NettyWebSocketClient implements WebSocketClient {
     }
   }
 
+  @Override
+  public void writeEncodedText(byte[] data) {
+    try {
+      channel.write(new TextWebSocketFrame(ChannelBuffers.wrappedBuffer(data)));
+    } catch (Exception e) {
+      throw new InteractiveSpacesException("Could not write web socket client data", e);
+    }
+  }
+
+  @Override
+  public void writeDataAsBinary(byte[] data) {
+    try {
+      channel.write(new BinaryWebSocketFrame(ChannelBuffers.wrappedBuffer(data)));
+    } catch (Exception e) {
+      throw new InteractiveSpacesException("Could not write web socket client data", e);
+    }
+  }
+
+  @Override
+  public void writeDataAsBinary(ByteBuffer data) {
+    try {
+      channel.write(new BinaryWebSocketFrame(ChannelBuffers.wrappedBuffer(data)));
+    } catch (Exception e) {
+      throw new InteractiveSpacesException("Could not write web socket client data", e);
+    }
+  }
+
+  @Override
+  public int getOutboundQueueDepth() {
+    return 0;
+  }
+
   @Override
   public void ping() {
     if (channel != null) {
@@ -17,24 +17,34 @@
 package interactivespaces.service.web.client.internal.netty;
 
 import interactivespaces.service.web.WebSocketHandler;
+import interactivespaces.service.web.internal.netty.NettyPerMessageDeflateHandler;
 import interactivespaces.util.data.json.JsonMapper;
 import interactivespaces.util.data.json.StandardJsonMapper;
 
+import com.google.common.collect.Lists;
+
 import org.apache.commons.logging.Log;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.PongWebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.WebSocketClientHandshaker;
 import org.jboss.netty.handler.codec.http.websocketx.WebSocketFrame;
 import org.jboss.netty.util.CharsetUtil;
 
+import java.util.List;
+
 /**
  * A Netty-based websocket client handler.
  *
@@ -63,6 +73,21 @@ public class NettyWebSocketClientHandler extends SimpleChannelUpstreamHandler {
    */
   private Log log;
 
+  /**
+   * The smallest message size, in bytes, which will be compressed if the server accepts compression.
+   */
+  private final int compressionThreshold;
+
+  /**
+   * The frames of a fragmented message seen to date.
+   */
+  private final List<ChannelBuffer> continuationFrameData = Lists.newArrayList();
+
+  /**
+   * {@code true} if the fragmented message being collected is binary.
+   */
+  private boolean continuationBinary;
+
   /**
    * Construct a new client handler.
    *
@@ -70,12 +95,16 @@ public class NettyWebSocketClientHandler extends SimpleChannelUpstreamHandler {
    *          the web socket handshaker
    * @param handler
    *          the handler for socket requests
+   * @param compressionThreshold
+   *          the smallest message size, in bytes, which will be compressed if the server accepts compression
    * @param log
    *          the logger
    */
-  public NettyWebSocketClientHandler(WebSocketClientHandshaker handshaker, WebSocketHandler handler, Log log) {
+  public NettyWebSocketClientHandler(WebSocketClientHandshaker handshaker, WebSocketHandler handler,
+      int compressionThreshold, Log log) {
     this.handshaker = handshaker;
     this.handler = handler;
+    this.compressionThreshold = compressionThreshold;
     this.log = log;
   }
 
@@ -88,7 +117,17 @@ public class NettyWebSocketClientHandler extends SimpleChannelUpstreamHandler {
   public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
     Channel ch = ctx.getChannel();
     if (!handshaker.isHandshakeComplete()) {
-      handshaker.finishHandshake(ch, (HttpResponse) e.getMessage());
+      HttpResponse response = (HttpResponse) e.getMessage();
+      handshaker.finishHandshake(ch, response);
+
+      NettyPerMessageDeflateHandler deflateHandler =
+          NettyPerMessageDeflateHandler.newClientHandler(
+              HttpHeaders.getHeader(response, NettyPerMessageDeflateHandler.HTTP_HEADER_WEBSOCKET_EXTENSIONS),
+              compressionThreshold);
+      if (deflateHandler != null) {
+        ctx.getPipeline().addBefore(ctx.getName(), NettyPerMessageDeflateHandler.CHANNEL_PIPELINE_NAME,
+            deflateHandler);
+      }
 
       handler.onConnect();
 
@@ -106,12 +145,33 @@ public class NettyWebSocketClientHandler extends SimpleChannelUpstreamHandler {
     }
 
     WebSocketFrame frame = (WebSocketFrame) e.getMessage();
-    if (frame instanceof TextWebSocketFrame) {
-      TextWebSocketFrame textFrame = (TextWebSocketFrame) frame;
-      try {
-        handler.onReceive(MAPPER.parseObject(textFrame.getText()));
-      } catch (Exception e1) {
-        log.error("Error while decoding JSON websocket message", e1);
+    if (frame instanceof TextWebSocketFrame || frame instanceof BinaryWebSocketFrame) {
+      if (!continuationFrameData.isEmpty()) {
+        log.warn("Improper web socket communication, received a new message when in process"
+            + " with continuation frames. Dropping continuation data.");
+        continuationFrameData.clear();
+      }
+
+      boolean binary = frame instanceof BinaryWebSocketFrame;
+      if (frame.isFinalFragment()) {
+        handleMessage(frame.getBinaryData(), binary);
+      } else {
+        continuationBinary = binary;
+        continuationFrameData.add(frame.getBinaryData());
+      }
+    } else if (frame instanceof ContinuationWebSocketFrame) {
+      if (continuationFrameData.isEmpty()) {
+        log.warn("Improper web socket communication, received a continuation frame with no starting frame");
+        return;
+      }
+
+      continuationFrameData.add(frame.getBinaryData());
+      if (frame.isFinalFragment()) {
+        ChannelBuffer data =
+            ChannelBuffers.wrappedBuffer(continuationFrameData.toArray(new ChannelBuffer[continuationFrameData
+                .size()]));
+        continuationFrameData.clear();
+        handleMessage(data, continuationBinary);
       }
     } else if (frame instanceof PongWebSocketFrame) {
       // TODO(keith): What should be done with a pong?
@@ -120,6 +180,33 @@ public class NettyWebSocketClientHandler extends SimpleChannelUpstreamHandler {
     }
   }
 
+  /**
+   * Handle the complete data of a message.
+   *
+   * <p>
+   * This includes concatenated continuation frame data.
+   *
+   * @param data
+   *          the complete data of the message
+   * @param binary
+   *          {@code true} if the message is binary, {@code false} if it is JSON text
+   */
+  private void handleMessage(ChannelBuffer data, boolean binary) {
+    if (binary) {
+      try {
+        handler.onReceiveBinary(data.toByteBuffer());
+      } catch (Exception e) {
+        log.error("Error while handling binary websocket message", e);
+      }
+    } else {
+      try {
+        handler.onReceive(MAPPER.parseObject(data.toString(CharsetUtil.UTF_8)));
+      } catch (Exception e) {
+        log.error("Error while decoding JSON websocket message", e);
+      }
+    }
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
     log.error("Error during web socket client connection, closing connecton", e.getCause());
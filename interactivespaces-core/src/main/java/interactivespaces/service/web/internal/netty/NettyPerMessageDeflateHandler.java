@@ -0,0 +1,469 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.internal.netty;
+
+import interactivespaces.SimpleInteractiveSpacesException;
+
+import com.google.common.collect.Lists;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A Netty handler for the web socket permessage-deflate extension from RFC 7692.
+ *
+ * <p>
+ * The handler sits in a web socket pipeline just before the handler for the connection. Compressed messages coming in
+ * are inflated, and text and binary messages going out are deflated if they are at least as large as the compression
+ * threshold. Smaller messages go out as they are, which the extension allows.
+ *
+ * <p>
+ * The compression context is kept from message to message unless the other side asked for no context takeover, so
+ * repetitive messages like JSON status updates compress very well.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyPerMessageDeflateHandler extends SimpleChannelHandler {
+
+  /**
+   * The name of the handler in a Netty pipeline.
+   */
+  public static final String CHANNEL_PIPELINE_NAME = "ws-deflate";
+
+  /**
+   * The HTTP header for negotiating web socket extensions.
+   */
+  public static final String HTTP_HEADER_WEBSOCKET_EXTENSIONS = "Sec-WebSocket-Extensions";
+
+  /**
+   * The name of the extension.
+   */
+  public static final String EXTENSION_NAME = "permessage-deflate";
+
+  /**
+   * Extension parameter asking the server not to keep its compression context between messages.
+   */
+  public static final String PARAMETER_SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+
+  /**
+   * Extension parameter asking the client not to keep its compression context between messages.
+   */
+  public static final String PARAMETER_CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+
+  /**
+   * Extension parameter limiting the server's compression window.
+   */
+  public static final String PARAMETER_SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+
+  /**
+   * Extension parameter limiting the client's compression window.
+   */
+  public static final String PARAMETER_CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+
+  /**
+   * The compression window size used by the JDK deflater, which cannot be changed.
+   */
+  public static final int WINDOW_BITS = 15;
+
+  /**
+   * The largest message, in bytes, which will be inflated.
+   */
+  public static final int MAXIMUM_INFLATED_MESSAGE_SIZE = 10 * 1024 * 1024;
+
+  /**
+   * The frame reserved bit which marks a compressed message.
+   */
+  private static final int RSV_COMPRESSED = 4;
+
+  /**
+   * The bytes which end every sync flushed deflate block, which are removed from compressed messages.
+   */
+  private static final byte[] DEFLATE_TAIL = new byte[] { 0, 0, (byte) 0xff, (byte) 0xff };
+
+  /**
+   * Size of the working buffers for compression and decompression.
+   */
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Create a handler for a server if a client's extension offer can be accepted.
+   *
+   * @param extensionOffer
+   *          the value of the client's extensions header, can be {@code null}
+   * @param compressionThreshold
+   *          the smallest message size, in bytes, which will be compressed
+   *
+   * @return the handler, or {@code null} if the client did not offer an acceptable permessage-deflate extension
+   */
+  public static NettyPerMessageDeflateHandler newServerHandler(String extensionOffer, int compressionThreshold) {
+    if (extensionOffer == null) {
+      return null;
+    }
+
+    for (String offer : extensionOffer.split(",")) {
+      String[] parts = offer.split(";");
+      if (!EXTENSION_NAME.equals(parts[0].trim())) {
+        continue;
+      }
+
+      boolean acceptable = true;
+      boolean serverNoContextTakeover = false;
+      for (int i = 1; i < parts.length && acceptable; i++) {
+        String[] parameter = parts[i].split("=", 2);
+        String name = parameter[0].trim();
+        String value = (parameter.length > 1) ? parameter[1].trim().replace("\"", "") : null;
+        if (PARAMETER_SERVER_NO_CONTEXT_TAKEOVER.equals(name)) {
+          serverNoContextTakeover = true;
+        } else if (PARAMETER_SERVER_MAX_WINDOW_BITS.equals(name)) {
+          // The JDK deflater always uses the largest window.
+          acceptable = Integer.toString(WINDOW_BITS).equals(value);
+        } else if (!PARAMETER_CLIENT_NO_CONTEXT_TAKEOVER.equals(name)
+            && !PARAMETER_CLIENT_MAX_WINDOW_BITS.equals(name)) {
+          acceptable = false;
+        }
+      }
+
+      if (acceptable) {
+        String response = EXTENSION_NAME;
+        if (serverNoContextTakeover) {
+          response += "; " + PARAMETER_SERVER_NO_CONTEXT_TAKEOVER;
+        }
+
+        return new NettyPerMessageDeflateHandler(compressionThreshold, serverNoContextTakeover, response);
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Create a handler for a client if the server accepted the extension.
+   *
+   * @param extensionResponse
+   *          the value of the server's extensions header, can be {@code null}
+   * @param compressionThreshold
+   *          the smallest message size, in bytes, which will be compressed
+   *
+   * @return the handler, or {@code null} if the server did not accept the extension
+   *
+   * @throws SimpleInteractiveSpacesException
+   *           the server's response cannot be honored
+   */
+  public static NettyPerMessageDeflateHandler newClientHandler(String extensionResponse, int compressionThreshold)
+      throws SimpleInteractiveSpacesException {
+    if (extensionResponse == null) {
+      return null;
+    }
+
+    for (String extension : extensionResponse.split(",")) {
+      String[] parts = extension.split(";");
+      if (!EXTENSION_NAME.equals(parts[0].trim())) {
+        continue;
+      }
+
+      boolean clientNoContextTakeover = false;
+      for (int i = 1; i < parts.length; i++) {
+        String[] parameter = parts[i].split("=", 2);
+        String name = parameter[0].trim();
+        if (PARAMETER_CLIENT_NO_CONTEXT_TAKEOVER.equals(name)) {
+          clientNoContextTakeover = true;
+        } else if (!PARAMETER_SERVER_NO_CONTEXT_TAKEOVER.equals(name)
+            && !PARAMETER_SERVER_MAX_WINDOW_BITS.equals(name)) {
+          throw new SimpleInteractiveSpacesException(String.format(
+              "Web socket server responded with unsupported %s parameter %s", EXTENSION_NAME, name));
+        }
+      }
+
+      return new NettyPerMessageDeflateHandler(compressionThreshold, clientNoContextTakeover, null);
+    }
+
+    return null;
+  }
+
+  /**
+   * The smallest message size, in bytes, which will be compressed.
+   */
+  private final int compressionThreshold;
+
+  /**
+   * {@code true} if the compression context must be reset after every message.
+   */
+  private final boolean noContextTakeover;
+
+  /**
+   * The extension header to add to the server handshake response, {@code null} once added or for clients.
+   */
+  private volatile String handshakeResponseExtension;
+
+  /**
+   * The compressor for outgoing messages.
+   */
+  private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+  /**
+   * Working buffer for the compressor.
+   */
+  private final byte[] deflateBuffer = new byte[BUFFER_SIZE];
+
+  /**
+   * {@code true} once the channel has closed and the compressor and decompressor have been released.
+   *
+   * <p>
+   * Guarded by the compressor.
+   */
+  private boolean closed;
+
+  /**
+   * The decompressor for incoming messages.
+   */
+  private final Inflater inflater = new Inflater(true);
+
+  /**
+   * Working buffer for the decompressor.
+   */
+  private final byte[] inflateBuffer = new byte[BUFFER_SIZE];
+
+  /**
+   * The first frame of a fragmented compressed message being received, {@code null} if there is none.
+   */
+  private WebSocketFrame compressedMessageStart;
+
+  /**
+   * The data of all frames of the fragmented compressed message being received.
+   */
+  private final List<ChannelBuffer> compressedMessageFragments = Lists.newArrayList();
+
+  /**
+   * Construct a new handler.
+   *
+   * @param compressionThreshold
+   *          the smallest message size, in bytes, which will be compressed
+   * @param noContextTakeover
+   *          {@code true} if the compression context must be reset after every message
+   * @param handshakeResponseExtension
+   *          the extension header to add to the server handshake response, {@code null} for a client
+   */
+  public NettyPerMessageDeflateHandler(int compressionThreshold, boolean noContextTakeover,
+      String handshakeResponseExtension) {
+    this.compressionThreshold = compressionThreshold;
+    this.noContextTakeover = noContextTakeover;
+    this.handshakeResponseExtension = handshakeResponseExtension;
+  }
+
+  @Override
+  public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    Object message = e.getMessage();
+    if (message instanceof TextWebSocketFrame || message instanceof BinaryWebSocketFrame) {
+      WebSocketFrame frame = (WebSocketFrame) message;
+      if ((frame.getRsv() & RSV_COMPRESSED) != 0) {
+        if (frame.isFinalFragment()) {
+          Channels.fireMessageReceived(ctx, newFrame(frame, inflate(frame.getBinaryData()), 0),
+              e.getRemoteAddress());
+        } else {
+          compressedMessageStart = frame;
+          compressedMessageFragments.clear();
+          compressedMessageFragments.add(frame.getBinaryData());
+        }
+
+        return;
+      }
+    } else if (message instanceof ContinuationWebSocketFrame && compressedMessageStart != null) {
+      WebSocketFrame frame = (WebSocketFrame) message;
+      compressedMessageFragments.add(frame.getBinaryData());
+      if (frame.isFinalFragment()) {
+        ChannelBuffer data =
+            ChannelBuffers.wrappedBuffer(compressedMessageFragments
+                .toArray(new ChannelBuffer[compressedMessageFragments.size()]));
+        WebSocketFrame start = compressedMessageStart;
+        compressedMessageStart = null;
+        compressedMessageFragments.clear();
+
+        Channels.fireMessageReceived(ctx, newFrame(start, inflate(data), 0), e.getRemoteAddress());
+      }
+
+      return;
+    }
+
+    ctx.sendUpstream(e);
+  }
+
+  @Override
+  public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    Object message = e.getMessage();
+    if (message instanceof HttpResponse) {
+      HttpResponse response = (HttpResponse) message;
+      String extension = handshakeResponseExtension;
+      if (extension != null && HttpResponseStatus.SWITCHING_PROTOCOLS.equals(response.getStatus())) {
+        HttpHeaders.setHeader(response, HTTP_HEADER_WEBSOCKET_EXTENSIONS, extension);
+        handshakeResponseExtension = null;
+      }
+    } else if (message instanceof TextWebSocketFrame || message instanceof BinaryWebSocketFrame) {
+      WebSocketFrame frame = (WebSocketFrame) message;
+      if (frame.isFinalFragment() && frame.getRsv() == 0
+          && frame.getBinaryData().readableBytes() >= compressionThreshold) {
+        // Compressed messages must go down the pipeline in the order they were compressed in.
+        synchronized (deflater) {
+          if (!closed) {
+            Channels.write(ctx, e.getFuture(), newFrame(frame, deflate(frame.getBinaryData()), RSV_COMPRESSED),
+                e.getRemoteAddress());
+
+            return;
+          }
+        }
+      }
+    }
+
+    ctx.sendDownstream(e);
+  }
+
+  @Override
+  public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    // The compressor and decompressor hold native memory which is only freed when they are ended.
+    synchronized (deflater) {
+      closed = true;
+      deflater.end();
+      inflater.end();
+    }
+
+    ctx.sendUpstream(e);
+  }
+
+  /**
+   * Compress the data of a message.
+   *
+   * @param data
+   *          the data to compress
+   *
+   * @return the compressed data
+   */
+  private ChannelBuffer deflate(ChannelBuffer data) {
+    int length = data.readableBytes();
+    if (data.hasArray()) {
+      deflater.setInput(data.array(), data.arrayOffset() + data.readerIndex(), length);
+    } else {
+      byte[] input = new byte[length];
+      data.getBytes(data.readerIndex(), input);
+      deflater.setInput(input);
+    }
+
+    ChannelBuffer compressed = ChannelBuffers.dynamicBuffer(length / 2 + DEFLATE_TAIL.length);
+    int count;
+    do {
+      count = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.SYNC_FLUSH);
+      compressed.writeBytes(deflateBuffer, 0, count);
+    } while (count == deflateBuffer.length);
+
+    // Every sync flush ends with the same empty block, which the extension leaves off.
+    compressed.writerIndex(compressed.writerIndex() - DEFLATE_TAIL.length);
+
+    if (noContextTakeover) {
+      deflater.reset();
+    }
+
+    return compressed;
+  }
+
+  /**
+   * Decompress the data of a message.
+   *
+   * @param data
+   *          the compressed data
+   *
+   * @return the decompressed data
+   *
+   * @throws DataFormatException
+   *           the data was not properly compressed
+   */
+  private ChannelBuffer inflate(ChannelBuffer data) throws DataFormatException {
+    byte[] input = new byte[data.readableBytes()];
+    data.getBytes(data.readerIndex(), input);
+
+    ChannelBuffer decompressed = ChannelBuffers.dynamicBuffer(input.length * 2 + 1);
+    inflateInput(input, decompressed);
+    inflateInput(DEFLATE_TAIL, decompressed);
+
+    // A final deflate block means the next message starts a new context.
+    if (inflater.finished()) {
+      inflater.reset();
+    }
+
+    return decompressed;
+  }
+
+  /**
+   * Decompress a block of input.
+   *
+   * @param input
+   *          the compressed input
+   * @param decompressed
+   *          the buffer to add the decompressed data to
+   *
+   * @throws DataFormatException
+   *           the data was not properly compressed
+   */
+  private void inflateInput(byte[] input, ChannelBuffer decompressed) throws DataFormatException {
+    inflater.setInput(input);
+    while (!inflater.needsInput() && !inflater.finished()) {
+      int count = inflater.inflate(inflateBuffer);
+      if (count == 0 && inflater.needsDictionary()) {
+        throw new DataFormatException("Compressed web socket message needs a dictionary");
+      }
+
+      decompressed.writeBytes(inflateBuffer, 0, count);
+      if (decompressed.readableBytes() > MAXIMUM_INFLATED_MESSAGE_SIZE) {
+        throw new DataFormatException("Compressed web socket message is too large");
+      }
+    }
+  }
+
+  /**
+   * Create a complete frame of the same type as another frame.
+   *
+   * @param type
+   *          the frame giving the type
+   * @param data
+   *          the data for the new frame
+   * @param rsv
+   *          the reserved bits for the new frame
+   *
+   * @return the new frame
+   */
+  private WebSocketFrame newFrame(WebSocketFrame type, ChannelBuffer data, int rsv) {
+    if (type instanceof TextWebSocketFrame) {
+      return new TextWebSocketFrame(true, rsv, data);
+    } else {
+      return new BinaryWebSocketFrame(true, rsv, data);
+    }
+  }
+}
@@ -17,7 +17,11 @@
 package interactivespaces.service.web.server;
 
 import interactivespaces.service.web.WebSocketConnection;
+import interactivespaces.util.data.json.JsonMapper;
+import interactivespaces.util.data.json.StandardJsonMapper;
+import interactivespaces.util.metrics.LatencyHistogram;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Maps;
 
 import org.apache.commons.logging.Log;
@@ -34,6 +38,11 @@ import java.util.concurrent.atomic.AtomicLong;
 public class BasicMultipleConnectionWebServerWebSocketHandlerFactory implements
     MultipleConnectionWebServerWebSocketHandlerFactory {
 
+  /**
+   * The JSON mapper.
+   */
+  private static final JsonMapper MAPPER = StandardJsonMapper.INSTANCE;
+
   /**
    * The client handler.
    */
@@ -49,6 +58,11 @@ public class BasicMultipleConnectionWebServerWebSocketHandlerFactory implements
    */
   private final AtomicLong connectionIdFactory = new AtomicLong(System.currentTimeMillis());
 
+  /**
+   * The times taken to write broadcasts to all connections, in nanoseconds.
+   */
+  private final LatencyHistogram broadcastTimes = new LatencyHistogram();
+
   /**
    * Log.
    */
@@ -90,9 +104,19 @@ public class BasicMultipleConnectionWebServerWebSocketHandlerFactory implements
 
   @Override
   public void sendJson(Object data) {
-    for (MyWebServerWebSocketHandler handler : handlers.values()) {
-      handler.sendJson(data);
+    if (handlers.isEmpty()) {
+      return;
+    }
+
+    String json;
+    try {
+      json = MAPPER.toString(data);
+    } catch (Exception e) {
+      log.error("Could not serialize JSON object for web socket broadcast", e);
+      return;
     }
+
+    broadcast(json.getBytes(Charsets.UTF_8), false);
   }
 
   @Override
@@ -107,8 +131,77 @@ public class BasicMultipleConnectionWebServerWebSocketHandlerFactory implements
 
   @Override
   public void sendString(String data) {
+    if (handlers.isEmpty()) {
+      return;
+    }
+
+    broadcast(data.getBytes(Charsets.UTF_8), false);
+  }
+
+  @Override
+  public void sendBinary(String connectionId, byte[] data) {
+    MyWebServerWebSocketHandler handler = handlers.get(connectionId);
+    if (handler != null) {
+      handler.sendBinary(data);
+    } else {
+      log.error(String.format("Unknown web socket connection ID %s", connectionId));
+    }
+  }
+
+  @Override
+  public void sendBinary(byte[] data) {
+    if (handlers.isEmpty()) {
+      return;
+    }
+
+    broadcast(data, true);
+  }
+
+  @Override
+  public Map<String, Integer> getOutboundQueueDepths() {
+    Map<String, Integer> depths = Maps.newHashMap();
+    for (Map.Entry<String, MyWebServerWebSocketHandler> entry : handlers.entrySet()) {
+      depths.put(entry.getKey(), entry.getValue().getOutboundQueueDepth());
+    }
+
+    return depths;
+  }
+
+  @Override
+  public LatencyHistogram getBroadcastTimes() {
+    return broadcastTimes;
+  }
+
+  /**
+   * Write data to every connection.
+   *
+   * <p>
+   * All connections share the one array.
+   *
+   * @param data
+   *          the UTF-8 encoded text or the binary data
+   * @param binary
+   *          {@code true} if the data is binary
+   */
+  private void broadcast(byte[] data, boolean binary) {
+    long start = System.nanoTime();
+
+    int numberConnections = 0;
     for (MyWebServerWebSocketHandler handler : handlers.values()) {
-      handler.sendString(data);
+      if (binary) {
+        handler.sendBinary(data);
+      } else {
+        handler.sendEncodedText(data);
+      }
+      numberConnections++;
+    }
+
+    long elapsed = System.nanoTime() - start;
+    broadcastTimes.record(elapsed);
+
+    if (log.isDebugEnabled()) {
+      log.debug(String.format("Web socket broadcast of %d bytes to %d connections took %d usec", data.length,
+          numberConnections, elapsed / 1000));
     }
   }
 
@@ -146,6 +239,25 @@ public class BasicMultipleConnectionWebServerWebSocketHandlerFactory implements
       handlers.put(connectionId, this);
     }
 
+    /**
+     * Send text which has already been encoded as UTF-8.
+     *
+     * @param data
+     *          the encoded text, which will not be modified
+     */
+    public void sendEncodedText(byte[] data) {
+      connection.writeEncodedText(data);
+    }
+
+    /**
+     * Get the number of messages waiting to be sent on the connection.
+     *
+     * @return the number of waiting messages
+     */
+    public int getOutboundQueueDepth() {
+      return connection.getOutboundQueueDepth();
+    }
+
     @Override
     public void onReceive(Object data) {
       clientHandler.handleWebSocketReceive(connectionId, data);
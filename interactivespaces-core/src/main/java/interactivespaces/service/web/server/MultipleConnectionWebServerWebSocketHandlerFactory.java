@@ -16,6 +16,10 @@
 
 package interactivespaces.service.web.server;
 
+import interactivespaces.util.metrics.LatencyHistogram;
+
+import java.util.Map;
+
 /**
  * A factory for web socket handlers that support multiple connections.
  *
@@ -43,6 +47,9 @@ public interface MultipleConnectionWebServerWebSocketHandlerFactory extends WebS
   /**
    * Send a JSON message to all web socket connections.
    *
+   * <p>
+   * The data is serialized only once, no matter how many connections there are.
+   *
    * @param data
    *          the data to send
    */
@@ -65,4 +72,42 @@ public interface MultipleConnectionWebServerWebSocketHandlerFactory extends WebS
    *          the data to send
    */
   void sendString(String data);
+
+  /**
+   * Send binary data to a specific web socket connection.
+   *
+   * @param connectionId
+   *          the ID of the connection
+   * @param data
+   *          the data to send, which must not be modified afterwards
+   */
+  void sendBinary(String connectionId, byte[] data);
+
+  /**
+   * Send binary data to all web socket connections.
+   *
+   * <p>
+   * All connections share the one array.
+   *
+   * @param data
+   *          the data to send, which must not be modified afterwards
+   */
+  void sendBinary(byte[] data);
+
+  /**
+   * Get the outbound queue depth for every web socket connection.
+   *
+   * @return a map from connection ID to the number of messages waiting to be sent on the connection
+   */
+  Map<String, Integer> getOutboundQueueDepths();
+
+  /**
+   * Get the times taken to write each broadcast to all connections.
+   *
+   * <p>
+   * Times are in nanoseconds and do not include serializing the data.
+   *
+   * @return the broadcast fan-out times
+   */
+  LatencyHistogram getBroadcastTimes();
 }
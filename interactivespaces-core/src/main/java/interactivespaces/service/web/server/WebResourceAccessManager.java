@@ -48,7 +48,8 @@ public interface WebResourceAccessManager {
    * @param userID
    *          The identifier for the user making the specified websocketCall
    * @param websocketCall
-   *          The websocket call being attempted by the user.
+   *          The websocket call being attempted by the user, {@code null} for
+   *          binary data.
    * @return {@code true} if the given user is allowed to make the given
    *         websocket call, {@code false} otherwise.
    */
@@ -16,6 +16,7 @@
 
 package interactivespaces.service.web.server;
 
+import interactivespaces.util.metrics.LatencyHistogram;
 import interactivespaces.util.resource.ManagedResource;
 import interactivespaces.util.web.MimeResolver;
 
@@ -38,6 +39,56 @@ public interface WebServer extends ManagedResource {
    */
   String WEBSOCKET_URI_PREFIX_DEFAULT = "websocket";
 
+  /**
+   * The default for the number of messages a web socket connection will queue for a slow remote endpoint.
+   */
+  int WEBSOCKET_OUTBOUND_QUEUE_CAPACITY_DEFAULT = 1000;
+
+  /**
+   * The default for what a web socket connection does when its outbound queue is full.
+   */
+  WebSocketOverflowPolicy WEBSOCKET_OVERFLOW_POLICY_DEFAULT = WebSocketOverflowPolicy.DISCONNECT;
+
+  /**
+   * The default for the number of bytes of static content kept in memory.
+   */
+  long STATIC_CONTENT_CACHE_CAPACITY_DEFAULT = 16 * 1024 * 1024;
+
+  /**
+   * The default for the largest static file, in bytes, which will be kept in memory.
+   */
+  int STATIC_CONTENT_CACHE_MAXIMUM_FILE_SIZE_DEFAULT = 64 * 1024;
+
+  /**
+   * The default for the smallest HTTP response, in bytes, which will be compressed.
+   */
+  int HTTP_COMPRESSION_THRESHOLD_DEFAULT = 1024;
+
+  /**
+   * The HTTP compression threshold which turns off compression of responses.
+   */
+  int HTTP_COMPRESSION_DISABLED = -1;
+
+  /**
+   * The number of dynamic request threads which has dynamic requests handled on the network threads.
+   */
+  int DYNAMIC_REQUEST_EXECUTION_DISABLED = 0;
+
+  /**
+   * The dynamic request timeout which has a handler use the timeout set for the server.
+   */
+  long DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT = -1;
+
+  /**
+   * The default for the largest part of an HTTP upload, in bytes, which is kept in memory rather than on disk.
+   */
+  long HTTP_UPLOAD_MEMORY_THRESHOLD_DEFAULT = 16 * 1024;
+
+  /**
+   * The HTTP upload size limit which allows uploads of any size.
+   */
+  long HTTP_UPLOAD_SIZE_UNLIMITED = -1;
+
   /**
    * Add in a new static content handler to the server.
    *
@@ -118,6 +169,27 @@ public interface WebServer extends ManagedResource {
   void addDynamicContentHandler(String uriPrefix, boolean usePath, HttpDynamicRequestHandler handler,
       Map<String, String> extraHttpContentHeaders);
 
+  /**
+   * Add in a new dynamic content handler to the server with its own request timeout.
+   *
+   * <p>
+   * Content handlers are attempted in the order added. The first prefix which matches will be run.
+   *
+   * @param uriPrefix
+   *          URI prefix for the content
+   * @param usePath
+   *          {@code true} if the path will be used for processing requests
+   * @param handler
+   *          dynamic request handler
+   * @param extraHttpContentHeaders
+   *          extra HTTP content headers to add to all responses to the handler, can be {@code null}
+   * @param timeout
+   *          how long, in milliseconds, a request to the handler can take when the server has dynamic request threads,
+   *          {@code 0} for no limit, or {@link #DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT}
+   */
+  void addDynamicContentHandler(String uriPrefix, boolean usePath, HttpDynamicRequestHandler handler,
+      Map<String, String> extraHttpContentHeaders, long timeout);
+
   /**
    * Add in a new dynamic POSt request handler to the server.
    *
@@ -152,6 +224,27 @@ public interface WebServer extends ManagedResource {
   void addDynamicPostRequestHandler(String uriPrefix, boolean usePath, HttpDynamicPostRequestHandler handler,
       Map<String, String> extraHttpContentHeaders);
 
+  /**
+   * Add in a new dynamic POST request handler to the server with its own request timeout.
+   *
+   * <p>
+   * Content handlers are attempted in the order added. The first prefix which matches will be run.
+   *
+   * @param uriPrefix
+   *          URI prefix for the content
+   * @param usePath
+   *          {@code true} if the path will be used for processing requests
+   * @param handler
+   *          dynamic request handler
+   * @param extraHttpContentHeaders
+   *          extra HTTP content headers to add to all responses to the handler, can be {@code null}
+   * @param timeout
+   *          how long, in milliseconds, a request to the handler can take when the server has dynamic request threads,
+   *          {@code 0} for no limit, or {@link #DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT}
+   */
+  void addDynamicPostRequestHandler(String uriPrefix, boolean usePath, HttpDynamicPostRequestHandler handler,
+      Map<String, String> extraHttpContentHeaders, long timeout);
+
   /**
    * Get all static content request handlers.
    *
@@ -323,4 +416,98 @@ public interface WebServer extends ManagedResource {
    *          the access manager
    */
   void setAccessManager(WebResourceAccessManager accessManager);
+
+  /**
+   * Set the outbound queue for all web socket connections made after the call.
+   *
+   * <p>
+   * Messages are only queued when the network buffers for the connection are full.
+   *
+   * @param capacity
+   *          the maximum number of messages each connection will queue
+   * @param overflowPolicy
+   *          what a connection does when its queue is full
+   */
+  void setWebSocketOutboundQueue(int capacity, WebSocketOverflowPolicy overflowPolicy);
+
+  /**
+   * Set the compression threshold for all web socket connections made after the call.
+   *
+   * <p>
+   * Compression is only used with clients which offer the permessage-deflate extension. Messages smaller than the
+   * threshold are sent uncompressed.
+   *
+   * @param threshold
+   *          the smallest message size, in bytes, which will be compressed, or
+   *          {@link interactivespaces.service.web.WebSocketConnection#COMPRESSION_DISABLED} to turn off compression
+   */
+  void setWebSocketCompressionThreshold(int threshold);
+
+  /**
+   * Set the in-memory cache for the content of small static files.
+   *
+   * <p>
+   * Any content already cached is dropped.
+   *
+   * @param capacity
+   *          the maximum number of bytes kept in memory, {@code 0} turns off the cache
+   * @param maximumFileSize
+   *          the largest file, in bytes, which will be kept in memory
+   */
+  void setStaticContentCache(long capacity, int maximumFileSize);
+
+  /**
+   * Set the compression threshold for HTTP responses.
+   *
+   * <p>
+   * Dynamic responses and cached static files with textual content are gzipped when the client accepts it. Static files
+   * with a precompressed {@code .br} or {@code .gz} sibling are served from the sibling whatever the threshold.
+   *
+   * @param threshold
+   *          the smallest response size, in bytes, which will be compressed, or {@link #HTTP_COMPRESSION_DISABLED} to
+   *          turn off compression
+   */
+  void setHttpCompressionThreshold(int threshold);
+
+  /**
+   * Set how dynamic requests are run, for a server which has not been started yet.
+   *
+   * <p>
+   * By default dynamic request handlers and file upload listeners run on the network threads, so a slow handler holds
+   * up every connection sharing its thread. Giving the server dynamic request threads moves them onto a pool of their
+   * own. Static content is always served from the network threads.
+   *
+   * @param threads
+   *          the number of threads for dynamic requests, or {@link #DYNAMIC_REQUEST_EXECUTION_DISABLED} to run them on
+   *          the network threads
+   * @param maximumPendingRequests
+   *          the maximum number of requests each handler can have waiting or running, further requests get
+   *          {@code 503 Service Unavailable}
+   * @param timeout
+   *          how long, in milliseconds, a request can take before the client gets {@code 503 Service Unavailable},
+   *          {@code 0} for no limit, used for handlers which were not added with a timeout of their own
+   */
+  void setDynamicRequestExecution(int threads, int maximumPendingRequests, long timeout);
+
+  /**
+   * Set the limits for HTTP uploads.
+   *
+   * <p>
+   * Uploads are decoded as they arrive. Any part of an upload larger than the memory threshold is written to a
+   * temporary file, so large uploads do not have to fit in memory.
+   *
+   * @param memoryThreshold
+   *          the largest part of an upload, in bytes, which is kept in memory
+   * @param maximumSize
+   *          the largest upload, in bytes, which will be accepted, or {@link #HTTP_UPLOAD_SIZE_UNLIMITED} for no limit,
+   *          larger uploads get {@code 413 Request Entity Too Large}
+   */
+  void setHttpUploadLimits(long memoryThreshold, long maximumSize);
+
+  /**
+   * Get the times taken to find the handler for each HTTP request.
+   *
+   * @return the routing times, in nanoseconds
+   */
+  LatencyHistogram getRequestRoutingTimes();
 }
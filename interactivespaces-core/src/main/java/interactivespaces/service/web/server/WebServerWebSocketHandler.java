@@ -18,6 +18,8 @@ package interactivespaces.service.web.server;
 
 import interactivespaces.service.web.WebSocketHandler;
 
+import java.nio.ByteBuffer;
+
 /**
  * A {@link WebSocketHandler} which can also send data
  *
@@ -40,4 +42,20 @@ public interface WebServerWebSocketHandler extends WebSocketHandler {
    *          The data to send.
    */
   void sendString(String data);
+
+  /**
+   * Send binary data to the remote endpoint.
+   *
+   * @param data
+   *          the data to send, which must not be modified afterwards
+   */
+  void sendBinary(byte[] data);
+
+  /**
+   * Send binary data to the remote endpoint.
+   *
+   * @param data
+   *          the data to send, from the buffer's position to its limit, which must not be modified afterwards
+   */
+  void sendBinary(ByteBuffer data);
 }
@@ -19,6 +19,8 @@ package interactivespaces.service.web.server;
 import interactivespaces.service.web.WebSocketConnection;
 import interactivespaces.service.web.WebSocketHandlerSupport;
 
+import java.nio.ByteBuffer;
+
 /**
  * A support class which implements do nothing default methods for
  * {@link WebServerWebSocketHandler} classes.
@@ -46,4 +48,14 @@ public class WebServerWebSocketHandlerSupport extends WebSocketHandlerSupport im
   public void sendString(String data) {
     connection.writeDataAsString(data);
   }
+
+  @Override
+  public void sendBinary(byte[] data) {
+    connection.writeDataAsBinary(data);
+  }
+
+  @Override
+  public void sendBinary(ByteBuffer data) {
+    connection.writeDataAsBinary(data);
+  }
 }
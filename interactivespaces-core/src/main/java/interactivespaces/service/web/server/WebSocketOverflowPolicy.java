@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.server;
+
+/**
+ * What a web socket connection does when its outbound queue is full.
+ *
+ * <p>
+ * Messages are only queued when the remote endpoint is not reading fast enough to keep the network buffers clear.
+ *
+ * @author Keith M. Hughes
+ */
+public enum WebSocketOverflowPolicy {
+
+  /**
+   * Drop the new message.
+   */
+  DROP,
+
+  /**
+   * Drop the oldest queued message to make room for the new one, so a slow endpoint always gets the latest data.
+   */
+  DROP_OLDEST,
+
+  /**
+   * Close the connection.
+   */
+  DISCONNECT
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.server.internal.netty;
+
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A range of bytes from an HTTP {@code Range} header.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyHttpByteRange {
+
+  /**
+   * The most ranges a request can have once overlapping ranges have been merged. Requests with more are answered with
+   * the whole file.
+   */
+  public static final int MAXIMUM_RANGES = 32;
+
+  /**
+   * The prefix of a range header for byte ranges.
+   */
+  private static final String RANGE_UNIT_PREFIX = "bytes=";
+
+  /**
+   * The first portion of a content range header.
+   */
+  private static final String CONTENT_RANGE_PREFIX = "bytes ";
+
+  /**
+   * The separator between the ranges in a range header.
+   */
+  private static final String RANGE_SEPARATOR = ",";
+
+  /**
+   * The separator between the start and end of the range.
+   */
+  private static final char RANGE_START_END_SEPARATOR = '-';
+
+  /**
+   * The separator between the range and the file size in a content range header.
+   */
+  private static final String CONTENT_RANGE_RANGE_SIZE_SEPARATOR = "/";
+
+  /**
+   * The range in a content range header when no range could be satisfied.
+   */
+  private static final String CONTENT_RANGE_UNSATISFIED = "*";
+
+  /**
+   * Orders ranges by their first byte.
+   */
+  private static final Comparator<NettyHttpByteRange> START_ORDER = new Comparator<NettyHttpByteRange>() {
+    @Override
+    public int compare(NettyHttpByteRange range1, NettyHttpByteRange range2) {
+      return Long.compare(range1.start, range2.start);
+    }
+  };
+
+  /**
+   * The position of the first byte in the range.
+   */
+  private final long start;
+
+  /**
+   * The position of the last byte in the range.
+   */
+  private final long end;
+
+  /**
+   * Construct a new range.
+   *
+   * @param start
+   *          the position of the first byte in the range
+   * @param end
+   *          the position of the last byte in the range
+   */
+  public NettyHttpByteRange(long start, long end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Get the position of the first byte in the range.
+   *
+   * @return the position
+   */
+  public long getStart() {
+    return start;
+  }
+
+  /**
+   * Get the position of the last byte in the range.
+   *
+   * @return the position
+   */
+  public long getEnd() {
+    return end;
+  }
+
+  /**
+   * Get the number of bytes in the range.
+   *
+   * @return the number of bytes in the range
+   */
+  public long getLength() {
+    return end - start + 1;
+  }
+
+  /**
+   * Get the {@code Content-Range} header value for the range.
+   *
+   * @param totalLength
+   *          the total length of the content the range is from
+   *
+   * @return the header value
+   */
+  public String getContentRange(long totalLength) {
+    return CONTENT_RANGE_PREFIX + start + RANGE_START_END_SEPARATOR + end + CONTENT_RANGE_RANGE_SIZE_SEPARATOR
+        + totalLength;
+  }
+
+  @Override
+  public String toString() {
+    return "NettyHttpByteRange [start=" + start + ", end=" + end + "]";
+  }
+
+  /**
+   * Get the {@code Content-Range} header value for a response to a request where none of the ranges could be
+   * satisfied.
+   *
+   * @param totalLength
+   *          the total length of the content
+   *
+   * @return the header value
+   */
+  public static String getUnsatisfiedContentRange(long totalLength) {
+    return CONTENT_RANGE_PREFIX + CONTENT_RANGE_UNSATISFIED + CONTENT_RANGE_RANGE_SIZE_SEPARATOR + totalLength;
+  }
+
+  /**
+   * Parse the ranges in a {@code Range} header.
+   *
+   * <p>
+   * Ranges which end past the end of the content are cut short and ranges which start past it are dropped. The
+   * remaining ranges are put in order and any which overlap or touch are merged.
+   *
+   * @param rangeHeader
+   *          the range header, can be {@code null}
+   * @param availableLength
+   *          the number of bytes in the content
+   *
+   * @return the ranges, an empty list if none of the ranges can be satisfied, or {@code null} if the header should be
+   *         ignored because it is missing, is not a valid byte range header or asks for too many ranges
+   */
+  public static List<NettyHttpByteRange> parseRangeHeader(String rangeHeader, long availableLength) {
+    if (rangeHeader == null) {
+      return null;
+    }
+
+    rangeHeader = rangeHeader.trim();
+    if (!rangeHeader.regionMatches(true, 0, RANGE_UNIT_PREFIX, 0, RANGE_UNIT_PREFIX.length())) {
+      return null;
+    }
+
+    List<NettyHttpByteRange> ranges = Lists.newArrayList();
+    boolean hasRangeSpec = false;
+    for (String rangeSpec : rangeHeader.substring(RANGE_UNIT_PREFIX.length()).split(RANGE_SEPARATOR)) {
+      rangeSpec = rangeSpec.trim();
+      if (rangeSpec.isEmpty()) {
+        continue;
+      }
+      hasRangeSpec = true;
+
+      int separatorPos = rangeSpec.indexOf(RANGE_START_END_SEPARATOR);
+      if (separatorPos == -1) {
+        return null;
+      }
+
+      String startSpec = rangeSpec.substring(0, separatorPos).trim();
+      String endSpec = rangeSpec.substring(separatorPos + 1).trim();
+      if (startSpec.isEmpty()) {
+        // A suffix range, the last bytes of the content.
+        long suffixLength = parsePosition(endSpec);
+        if (suffixLength < 0) {
+          return null;
+        }
+        if (suffixLength > 0 && availableLength > 0) {
+          ranges.add(new NettyHttpByteRange(Math.max(0, availableLength - suffixLength), availableLength - 1));
+        }
+      } else {
+        long start = parsePosition(startSpec);
+        long end = endSpec.isEmpty() ? Long.MAX_VALUE : parsePosition(endSpec);
+        if (start < 0 || end < start) {
+          return null;
+        }
+        if (start < availableLength) {
+          ranges.add(new NettyHttpByteRange(start, Math.min(end, availableLength - 1)));
+        }
+      }
+    }
+
+    if (!hasRangeSpec) {
+      return null;
+    }
+
+    if (ranges.size() > 1) {
+      ranges = mergeRanges(ranges);
+      if (ranges.size() > MAXIMUM_RANGES) {
+        return null;
+      }
+    }
+
+    return ranges;
+  }
+
+  /**
+   * Put ranges in order and merge any which overlap or touch.
+   *
+   * @param ranges
+   *          the ranges
+   *
+   * @return the merged ranges
+   */
+  private static List<NettyHttpByteRange> mergeRanges(List<NettyHttpByteRange> ranges) {
+    Collections.sort(ranges, START_ORDER);
+
+    List<NettyHttpByteRange> mergedRanges = Lists.newArrayList();
+    NettyHttpByteRange current = ranges.get(0);
+    for (int i = 1; i < ranges.size(); i++) {
+      NettyHttpByteRange next = ranges.get(i);
+      if (next.start <= current.end + 1) {
+        if (next.end > current.end) {
+          current = new NettyHttpByteRange(current.start, next.end);
+        }
+      } else {
+        mergedRanges.add(current);
+        current = next;
+      }
+    }
+    mergedRanges.add(current);
+
+    return mergedRanges;
+  }
+
+  /**
+   * Parse a byte position from a range.
+   *
+   * @param position
+   *          the position
+   *
+   * @return the position, or {@code -1} if it is not a valid position
+   */
+  private static long parsePosition(String position) {
+    if (position.isEmpty()) {
+      return -1;
+    }
+    for (int i = 0; i < position.length(); i++) {
+      char c = position.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+    }
+
+    try {
+      return Long.parseLong(position);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
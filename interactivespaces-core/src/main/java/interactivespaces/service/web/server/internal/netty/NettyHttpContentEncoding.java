@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.server.internal.netty;
+
+import static org.jboss.netty.handler.codec.http.HttpHeaders.getHeader;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Support for HTTP content encodings.
+ *
+ * @author Keith M. Hughes
+ */
+public final class NettyHttpContentEncoding {
+
+  /**
+   * Hidden constructor for utility class.
+   */
+  private NettyHttpContentEncoding() {
+  }
+
+  /**
+   * The content encoding for gzip.
+   */
+  public static final String CONTENT_ENCODING_GZIP = "gzip";
+
+  /**
+   * The content encoding for Brotli.
+   */
+  public static final String CONTENT_ENCODING_BROTLI = "br";
+
+  /**
+   * The file extension for gzip compressed files.
+   */
+  public static final String FILE_EXTENSION_GZIP = ".gz";
+
+  /**
+   * The file extension for Brotli compressed files.
+   */
+  public static final String FILE_EXTENSION_BROTLI = ".br";
+
+  /**
+   * The encoding name which matches any encoding in an {@code Accept-Encoding} header.
+   */
+  private static final String ACCEPT_ENCODING_WILDCARD = "*";
+
+  /**
+   * The separator between the encodings in an {@code Accept-Encoding} header.
+   */
+  private static final String ACCEPT_ENCODING_SEPARATOR = ",";
+
+  /**
+   * The separator between an encoding and its parameters in an {@code Accept-Encoding} header.
+   */
+  private static final String ACCEPT_ENCODING_PARAMETER_SEPARATOR = ";";
+
+  /**
+   * The prefix for the quality parameter of an encoding.
+   */
+  private static final String QUALITY_PARAMETER_PREFIX = "q=";
+
+  /**
+   * Check if a request accepts a content encoding.
+   *
+   * @param request
+   *          the request
+   * @param encoding
+   *          the content encoding
+   *
+   * @return {@code true} if the encoding is acceptable
+   */
+  public static boolean isAcceptedEncoding(HttpRequest request, String encoding) {
+    String acceptEncoding = getHeader(request, HttpHeaders.Names.ACCEPT_ENCODING);
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    boolean wildcardAccepted = false;
+    for (String component : acceptEncoding.split(ACCEPT_ENCODING_SEPARATOR)) {
+      String[] parts = component.split(ACCEPT_ENCODING_PARAMETER_SEPARATOR);
+      String name = parts[0].trim();
+
+      boolean accepted = true;
+      for (int i = 1; i < parts.length; i++) {
+        String parameter = parts[i].trim();
+        if (parameter.startsWith(QUALITY_PARAMETER_PREFIX)) {
+          try {
+            accepted = Double.parseDouble(parameter.substring(QUALITY_PARAMETER_PREFIX.length())) > 0;
+          } catch (NumberFormatException e) {
+            accepted = false;
+          }
+        }
+      }
+
+      if (name.equalsIgnoreCase(encoding)) {
+        return accepted;
+      } else if (ACCEPT_ENCODING_WILDCARD.equals(name)) {
+        wildcardAccepted = accepted;
+      }
+    }
+
+    return wildcardAccepted;
+  }
+
+  /**
+   * Check if content of a given MIME type is worth compressing.
+   *
+   * @param contentType
+   *          the content type, can be {@code null}
+   *
+   * @return {@code true} if the content is textual and so will compress well
+   */
+  public static boolean isCompressible(String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+
+    String mimeType = contentType.toLowerCase();
+    return mimeType.startsWith("text/") || mimeType.contains("javascript") || mimeType.contains("json")
+        || mimeType.contains("xml") || mimeType.contains("svg");
+  }
+
+  /**
+   * Compress content with gzip.
+   *
+   * @param content
+   *          the content to compress, its reader index is not changed
+   *
+   * @return a buffer with the compressed content
+   *
+   * @throws IOException
+   *           the content could not be compressed
+   */
+  public static ChannelBuffer gzip(ChannelBuffer content) throws IOException {
+    ChannelBuffer compressed = ChannelBuffers.dynamicBuffer(Math.max(content.readableBytes() / 2, 64));
+    GZIPOutputStream out = new GZIPOutputStream(new ChannelBufferOutputStream(compressed));
+    try {
+      content.getBytes(content.readerIndex(), out, content.readableBytes());
+    } finally {
+      out.close();
+    }
+
+    return compressed;
+  }
+}
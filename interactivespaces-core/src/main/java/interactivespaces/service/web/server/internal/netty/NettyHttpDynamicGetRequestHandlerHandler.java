@@ -19,6 +19,7 @@ package interactivespaces.service.web.server.internal.netty;
 import static org.jboss.netty.handler.codec.http.HttpHeaders.addHeader;
 
 import interactivespaces.service.web.server.HttpDynamicRequestHandler;
+import interactivespaces.service.web.server.WebServer;
 
 import com.google.common.collect.Maps;
 
@@ -61,6 +62,11 @@ public class NettyHttpDynamicGetRequestHandlerHandler implements NettyHttpGetReq
    */
   private Map<String, String> extraHttpContentHeaders = Maps.newHashMap();
 
+  /**
+   * How long a request can take, in milliseconds.
+   */
+  private final long timeout;
+
   /**
    * Construct a dynamic request handler.
    *
@@ -74,10 +80,15 @@ public class NettyHttpDynamicGetRequestHandlerHandler implements NettyHttpGetReq
    *          the handler which handles the dynamic request
    * @param extraHttpContentHeaders
    *          any extra HTTP content headers to be added to the response
+   * @param timeout
+   *          how long a request can take, in milliseconds, {@code 0} for no limit, or
+   *          {@link WebServer#DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT}
    */
   public NettyHttpDynamicGetRequestHandlerHandler(NettyWebServerHandler parentHandler, String uriPrefixBase,
-      boolean usePath, HttpDynamicRequestHandler requestHandler, Map<String, String> extraHttpContentHeaders) {
+      boolean usePath, HttpDynamicRequestHandler requestHandler, Map<String, String> extraHttpContentHeaders,
+      long timeout) {
     this.parentHandler = parentHandler;
+    this.timeout = timeout;
 
     if (extraHttpContentHeaders != null) {
       this.extraHttpContentHeaders.putAll(extraHttpContentHeaders);
@@ -96,14 +107,38 @@ public class NettyHttpDynamicGetRequestHandlerHandler implements NettyHttpGetReq
     this.requestHandler = requestHandler;
   }
 
+  @Override
+  public String getUriPrefix() {
+    return uriPrefix;
+  }
+
   @Override
   public boolean isHandledBy(HttpRequest req) {
     return req.getUri().startsWith(uriPrefix);
   }
 
   @Override
-  public void handleWebRequest(ChannelHandlerContext ctx, HttpRequest req, Set<HttpCookie> cookiesToAdd)
-      throws IOException {
+  public void handleWebRequest(final ChannelHandlerContext ctx, final HttpRequest req,
+      final Set<HttpCookie> cookiesToAdd) throws IOException {
+    parentHandler.executeDynamicRequest(ctx, this, timeout, new Runnable() {
+      @Override
+      public void run() {
+        handleDynamicWebRequest(ctx, req, cookiesToAdd);
+      }
+    }, null);
+  }
+
+  /**
+   * Handle the web request by calling the dynamic request handler.
+   *
+   * @param ctx
+   *          the channel handler context
+   * @param req
+   *          the Netty HTTP request
+   * @param cookiesToAdd
+   *          cookies to be set on the response
+   */
+  private void handleDynamicWebRequest(ChannelHandlerContext ctx, HttpRequest req, Set<HttpCookie> cookiesToAdd) {
     NettyHttpRequest request = new NettyHttpRequest(req, parentHandler.getWebServer().getLog());
     NettyHttpResponse response = new NettyHttpResponse(ctx, extraHttpContentHeaders);
     response.addCookies(cookiesToAdd);
@@ -121,6 +156,7 @@ public class NettyHttpDynamicGetRequestHandlerHandler implements NettyHttpGetReq
       }
 
       parentHandler.addHttpResponseHeaders(res, response.getContentHeaders());
+      parentHandler.compressHttpResponseContent(req, res);
       parentHandler.sendHttpResponse(ctx, req, res, true, false);
 
       parentHandler.getWebServer().getLog().debug(String.format("Dynamic content handler for %s completed", uriPrefix));
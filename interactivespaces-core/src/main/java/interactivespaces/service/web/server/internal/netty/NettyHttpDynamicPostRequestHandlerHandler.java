@@ -20,6 +20,7 @@ import static org.jboss.netty.handler.codec.http.HttpHeaders.addHeader;
 
 import interactivespaces.service.web.server.HttpDynamicPostRequestHandler;
 import interactivespaces.service.web.server.HttpFileUpload;
+import interactivespaces.service.web.server.WebServer;
 
 import com.google.common.collect.Maps;
 
@@ -62,6 +63,11 @@ public class NettyHttpDynamicPostRequestHandlerHandler implements NettyHttpPostR
    */
   private Map<String, String> extraHttpContentHeaders = Maps.newHashMap();
 
+  /**
+   * How long a request can take, in milliseconds.
+   */
+  private final long timeout;
+
   /**
    * Construct a dynamic request handler.
    *
@@ -75,10 +81,15 @@ public class NettyHttpDynamicPostRequestHandlerHandler implements NettyHttpPostR
    *          the handler which handles the dynamic request
    * @param extraHttpContentHeaders
    *          any extra HTTP content headers to be added to the response
+   * @param timeout
+   *          how long a request can take, in milliseconds, {@code 0} for no limit, or
+   *          {@link WebServer#DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT}
    */
   public NettyHttpDynamicPostRequestHandlerHandler(NettyWebServerHandler parentHandler, String uriPrefixBase,
-      boolean usePath, HttpDynamicPostRequestHandler requestHandler, Map<String, String> extraHttpContentHeaders) {
+      boolean usePath, HttpDynamicPostRequestHandler requestHandler, Map<String, String> extraHttpContentHeaders,
+      long timeout) {
     this.parentHandler = parentHandler;
+    this.timeout = timeout;
 
     if (extraHttpContentHeaders != null) {
       this.extraHttpContentHeaders.putAll(extraHttpContentHeaders);
@@ -97,14 +108,50 @@ public class NettyHttpDynamicPostRequestHandlerHandler implements NettyHttpPostR
     this.requestHandler = requestHandler;
   }
 
+  @Override
+  public String getUriPrefix() {
+    return uriPrefix;
+  }
+
   @Override
   public boolean isHandledBy(HttpRequest req) {
     return req.getUri().startsWith(uriPrefix);
   }
 
   @Override
-  public void handleWebRequest(ChannelHandlerContext ctx, HttpRequest nettyRequest, HttpFileUpload upload,
-      Set<HttpCookie> cookiesToAdd) throws IOException {
+  public void handleWebRequest(final ChannelHandlerContext ctx, final HttpRequest nettyRequest,
+      final NettyHttpFileUpload upload, final Set<HttpCookie> cookiesToAdd) throws IOException {
+    parentHandler.executeDynamicRequest(ctx, this, timeout, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          handleDynamicWebRequest(ctx, nettyRequest, upload, cookiesToAdd);
+        } finally {
+          upload.clean();
+        }
+      }
+    }, new Runnable() {
+      @Override
+      public void run() {
+        upload.clean();
+      }
+    });
+  }
+
+  /**
+   * Handle the web request by calling the dynamic request handler.
+   *
+   * @param ctx
+   *          the channel handler context
+   * @param nettyRequest
+   *          the Netty HTTP request
+   * @param upload
+   *          the file upload, can be {@code null}
+   * @param cookiesToAdd
+   *          cookies to be set on the response
+   */
+  private void handleDynamicWebRequest(ChannelHandlerContext ctx, HttpRequest nettyRequest, HttpFileUpload upload,
+      Set<HttpCookie> cookiesToAdd) {
     NettyHttpRequest request = new NettyHttpRequest(nettyRequest, parentHandler.getWebServer().getLog());
     NettyHttpResponse response = new NettyHttpResponse(ctx, extraHttpContentHeaders);
     response.addCookies(cookiesToAdd);
@@ -122,6 +169,7 @@ public class NettyHttpDynamicPostRequestHandlerHandler implements NettyHttpPostR
       }
 
       parentHandler.addHttpResponseHeaders(res, response.getContentHeaders());
+      parentHandler.compressHttpResponseContent(nettyRequest, res);
       parentHandler.sendHttpResponse(ctx, nettyRequest, res, true, false);
 
       parentHandler.getWebServer().getLog()
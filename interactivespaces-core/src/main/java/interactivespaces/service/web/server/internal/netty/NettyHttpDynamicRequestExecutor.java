@@ -0,0 +1,609 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.server.internal.netty;
+
+import interactivespaces.util.metrics.LatencyHistogram;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs dynamic HTTP request handlers on a bounded pool of threads rather than on the Netty I/O threads.
+ *
+ * <p>
+ * A connection stops being read while it has requests in the pool. Requests which were already read from a connection,
+ * such as pipelined requests, wait in a queue for the connection and are run one at a time, so responses on a
+ * connection are always written in the order the requests came in. Each handler can only have a limited number of
+ * requests waiting or running, and requests which take longer than the timeout of their handler are answered with
+ * {@code 503 Service Unavailable} and their connection is closed.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyHttpDynamicRequestExecutor {
+
+  /**
+   * The request is waiting or running and has not written its response.
+   */
+  private static final int REQUEST_STATE_RUNNING = 0;
+
+  /**
+   * The request has started writing its response.
+   */
+  private static final int REQUEST_STATE_RESPONDED = 1;
+
+  /**
+   * The request took too long and has been answered with an error.
+   */
+  private static final int REQUEST_STATE_TIMED_OUT = 2;
+
+  /**
+   * The web server handler the requests come from.
+   */
+  private final NettyWebServerHandler parentHandler;
+
+  /**
+   * The threads running the requests.
+   */
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * The executor for timing out requests.
+   */
+  private final ScheduledExecutorService timeoutExecutor;
+
+  /**
+   * The maximum number of requests each handler can have waiting or running.
+   */
+  private final int maximumPendingRequests;
+
+  /**
+   * How long a request can take, in milliseconds, for handlers without a timeout of their own. {@code 0} if there is
+   * no limit.
+   */
+  private final long defaultTimeout;
+
+  /**
+   * The number of requests waiting or running, indexed by the handler.
+   */
+  private final ConcurrentMap<Object, AtomicInteger> pendingRequestCounts = Maps.newConcurrentMap();
+
+  /**
+   * The requests waiting or running for each channel, in the order they came in, indexed by the ID of their channel.
+   * The first request for a channel is the one in the pool.
+   *
+   * <p>
+   * Only accessed while synchronized on the map.
+   */
+  private final Map<Integer, Queue<PendingRequest>> channelRequests = Maps.newHashMap();
+
+  /**
+   * The request being run by the current thread, if it is a pool thread.
+   */
+  private final ThreadLocal<PendingRequest> currentRequest = new ThreadLocal<PendingRequest>();
+
+  /**
+   * The times requests waited for a thread, in nanoseconds.
+   */
+  private final LatencyHistogram queueTimes = new LatencyHistogram();
+
+  /**
+   * The times requests took to run, in nanoseconds.
+   */
+  private final LatencyHistogram executionTimes = new LatencyHistogram();
+
+  /**
+   * The number of requests turned away because their handler had too many pending requests.
+   */
+  private final AtomicLong rejectedRequestCount = new AtomicLong();
+
+  /**
+   * The number of requests which took too long.
+   */
+  private final AtomicLong timedOutRequestCount = new AtomicLong();
+
+  /**
+   * Construct a new executor.
+   *
+   * @param parentHandler
+   *          the web server handler the requests come from
+   * @param threads
+   *          the number of threads for running requests
+   * @param maximumPendingRequests
+   *          the maximum number of requests each handler can have waiting or running
+   * @param defaultTimeout
+   *          how long a request can take, in milliseconds, for handlers without a timeout of their own, {@code 0} if
+   *          there is no limit
+   * @param timeoutExecutor
+   *          the executor for timing out requests
+   */
+  public NettyHttpDynamicRequestExecutor(NettyWebServerHandler parentHandler, int threads,
+      int maximumPendingRequests, long defaultTimeout, ScheduledExecutorService timeoutExecutor) {
+    this.parentHandler = parentHandler;
+    this.maximumPendingRequests = maximumPendingRequests;
+    this.defaultTimeout = defaultTimeout;
+    this.timeoutExecutor = timeoutExecutor;
+
+    executor =
+        new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setNameFormat("web-server-dynamic-%d").setDaemon(true).build());
+  }
+
+  /**
+   * Run a request in the pool.
+   *
+   * <p>
+   * The request runs once all earlier requests from its connection are done. If it never runs, because it was turned
+   * away or its connection was closed first, the cleanup is run instead. A request turned away is still answered in
+   * order, once the earlier requests from its connection are done, and the connection is then closed.
+   *
+   * @param context
+   *          the context for the request
+   * @param handler
+   *          the handler the request is for, used for the pending request limit
+   * @param timeout
+   *          how long the request can take, in milliseconds, {@code 0} for no limit, or
+   *          {@link interactivespaces.service.web.server.WebServer#DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT} for the
+   *          default timeout
+   * @param request
+   *          the request
+   * @param cleanup
+   *          what to do if the request is never run, can be {@code null}
+   *
+   * @return {@code true} if the request will be run, {@code false} if it was turned away
+   */
+  public boolean execute(final ChannelHandlerContext context, Object handler, long timeout, Runnable request,
+      Runnable cleanup) {
+    AtomicInteger pendingRequestCount = getPendingRequestCount(handler);
+    if (pendingRequestCount.incrementAndGet() > maximumPendingRequests) {
+      pendingRequestCount.decrementAndGet();
+      if (cleanup != null) {
+        cleanup.run();
+      }
+
+      // The error response must not get ahead of the responses for earlier requests on the connection.
+      queueRequest(new PendingRequest(context, new Runnable() {
+        @Override
+        public void run() {
+          rejectRequest(context, "too many pending requests for its handler");
+        }
+      }, null, null, 0, true));
+
+      return false;
+    }
+
+    return queueRequest(new PendingRequest(context, request, cleanup, pendingRequestCount,
+        (timeout >= 0) ? timeout : defaultTimeout, false));
+  }
+
+  /**
+   * Check if a response can be written on a channel and claim the response for the request running for the channel,
+   * if any.
+   *
+   * <p>
+   * The request is the one the calling thread is running, or the request in the pool for the channel if the response
+   * is being written from some other thread.
+   *
+   * @param channel
+   *          the channel
+   *
+   * @return {@code true} if the response can be written, {@code false} if the request has timed out
+   */
+  public boolean claimResponse(Channel channel) {
+    PendingRequest pendingRequest = currentRequest.get();
+    if (pendingRequest == null || pendingRequest.context.getChannel() != channel) {
+      synchronized (channelRequests) {
+        Queue<PendingRequest> requests = channelRequests.get(channel.getId());
+        pendingRequest = (requests != null) ? requests.peek() : null;
+      }
+      if (pendingRequest == null) {
+        return true;
+      }
+    }
+
+    pendingRequest.state.compareAndSet(REQUEST_STATE_RUNNING, REQUEST_STATE_RESPONDED);
+
+    return pendingRequest.state.get() == REQUEST_STATE_RESPONDED;
+  }
+
+  /**
+   * Shut down the executor.
+   *
+   * <p>
+   * Requests already in the pool are interrupted.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Get the times requests waited for a thread.
+   *
+   * @return the queue times, in nanoseconds
+   */
+  public LatencyHistogram getQueueTimes() {
+    return queueTimes;
+  }
+
+  /**
+   * Get the times requests took to run.
+   *
+   * @return the execution times, in nanoseconds
+   */
+  public LatencyHistogram getExecutionTimes() {
+    return executionTimes;
+  }
+
+  /**
+   * Get the number of requests waiting for a thread.
+   *
+   * @return the number of requests
+   */
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * Get the number of requests turned away.
+   *
+   * @return the number of requests
+   */
+  public long getRejectedRequestCount() {
+    return rejectedRequestCount.get();
+  }
+
+  /**
+   * Get the number of requests which took too long.
+   *
+   * @return the number of requests
+   */
+  public long getTimedOutRequestCount() {
+    return timedOutRequestCount.get();
+  }
+
+  /**
+   * Get the count of pending requests for a handler.
+   *
+   * @param handler
+   *          the handler
+   *
+   * @return the count
+   */
+  private AtomicInteger getPendingRequestCount(Object handler) {
+    AtomicInteger count = pendingRequestCounts.get(handler);
+    if (count == null) {
+      AtomicInteger newCount = new AtomicInteger();
+      count = pendingRequestCounts.putIfAbsent(handler, newCount);
+      if (count == null) {
+        count = newCount;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Add a request to the queue for its channel, and put it in the pool if there is nothing before it.
+   *
+   * @param pendingRequest
+   *          the request
+   *
+   * @return {@code true} if the request will be run, {@code false} if the pool turned it away
+   */
+  private boolean queueRequest(PendingRequest pendingRequest) {
+    Channel channel = pendingRequest.context.getChannel();
+    boolean first;
+    synchronized (channelRequests) {
+      Queue<PendingRequest> requests = channelRequests.get(channel.getId());
+      if (requests == null) {
+        requests = Lists.newLinkedList();
+        channelRequests.put(channel.getId(), requests);
+      }
+      requests.add(pendingRequest);
+      first = requests.size() == 1;
+    }
+
+    // No more requests are read from the connection until its requests are done, so responses stay in order.
+    channel.setReadable(false);
+
+    if (first) {
+      return startRequest(pendingRequest);
+    }
+
+    return true;
+  }
+
+  /**
+   * Put the first request for a channel in the pool.
+   *
+   * @param pendingRequest
+   *          the request
+   *
+   * @return {@code true} if the request will be run, {@code false} if the pool turned it away
+   */
+  private boolean startRequest(final PendingRequest pendingRequest) {
+    pendingRequest.startTime = System.nanoTime();
+    try {
+      pendingRequest.future = executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          runRequest(pendingRequest);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      abandonRequests(pendingRequest.context.getChannel());
+      rejectRequest(pendingRequest.context, "the web server is shutting down");
+      return false;
+    }
+
+    if (pendingRequest.timeout > 0) {
+      pendingRequest.timeoutFuture = timeoutExecutor.schedule(new Runnable() {
+        @Override
+        public void run() {
+          timeOutRequest(pendingRequest);
+        }
+      }, pendingRequest.timeout, TimeUnit.MILLISECONDS);
+    }
+
+    return true;
+  }
+
+  /**
+   * Run a request on a pool thread.
+   *
+   * @param pendingRequest
+   *          the request
+   */
+  private void runRequest(PendingRequest pendingRequest) {
+    if (!pendingRequest.started.compareAndSet(false, true)) {
+      // The request was thrown away before it got a thread.
+      return;
+    }
+
+    long runTime = System.nanoTime();
+    queueTimes.record(runTime - pendingRequest.startTime);
+    currentRequest.set(pendingRequest);
+    try {
+      pendingRequest.request.run();
+    } finally {
+      currentRequest.remove();
+      executionTimes.record(System.nanoTime() - runTime);
+      completeRequest(pendingRequest);
+    }
+  }
+
+  /**
+   * A request is done, successfully or not. The next request for its channel, if any, is put in the pool.
+   *
+   * @param pendingRequest
+   *          the request
+   */
+  private void completeRequest(PendingRequest pendingRequest) {
+    Channel channel = pendingRequest.context.getChannel();
+    PendingRequest nextRequest;
+    synchronized (channelRequests) {
+      Queue<PendingRequest> requests = channelRequests.get(channel.getId());
+      if (requests == null || requests.peek() != pendingRequest) {
+        return;
+      }
+
+      requests.poll();
+      nextRequest = requests.peek();
+      if (nextRequest == null) {
+        channelRequests.remove(channel.getId());
+      }
+    }
+
+    if (pendingRequest.pendingRequestCount != null) {
+      pendingRequest.pendingRequestCount.decrementAndGet();
+    }
+
+    Future<?> timeoutFuture = pendingRequest.timeoutFuture;
+    if (timeoutFuture != null) {
+      timeoutFuture.cancel(false);
+    }
+
+    if (!channel.isOpen() || pendingRequest.closesConnection) {
+      // Nothing else is run for a closed connection.
+      abandonRequests(channel);
+    } else if (nextRequest != null) {
+      startRequest(nextRequest);
+    } else {
+      channel.setReadable(true);
+    }
+  }
+
+  /**
+   * Throw away all requests waiting or running for a channel.
+   *
+   * @param channel
+   *          the channel
+   */
+  private void abandonRequests(Channel channel) {
+    Queue<PendingRequest> requests;
+    synchronized (channelRequests) {
+      requests = channelRequests.remove(channel.getId());
+    }
+
+    if (requests != null) {
+      for (PendingRequest pendingRequest : requests) {
+        if (pendingRequest.pendingRequestCount != null) {
+          pendingRequest.pendingRequestCount.decrementAndGet();
+        }
+        if (pendingRequest.started.compareAndSet(false, true) && pendingRequest.cleanup != null) {
+          try {
+            pendingRequest.cleanup.run();
+          } catch (Throwable e) {
+            parentHandler.getWebServer().getLog().error("Error cleaning up abandoned dynamic HTTP request", e);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * A request has taken too long.
+   *
+   * <p>
+   * The connection is closed, so the request and everything waiting behind it are thrown away.
+   *
+   * @param pendingRequest
+   *          the request
+   */
+  private void timeOutRequest(PendingRequest pendingRequest) {
+    Channel channel = pendingRequest.context.getChannel();
+    synchronized (channelRequests) {
+      Queue<PendingRequest> requests = channelRequests.get(channel.getId());
+      if (requests == null || requests.peek() != pendingRequest
+          || !pendingRequest.state.compareAndSet(REQUEST_STATE_RUNNING, REQUEST_STATE_TIMED_OUT)) {
+        return;
+      }
+    }
+
+    // The request may be cancelled before it starts, so its completion can't be counted on to clean up.
+    abandonRequests(channel);
+
+    timedOutRequestCount.incrementAndGet();
+    parentHandler.getWebServer().getLog()
+        .warn(String.format("Dynamic HTTP request took longer than %d msec, abandoning it", pendingRequest.timeout));
+
+    pendingRequest.future.cancel(true);
+    parentHandler.writeError(pendingRequest.context, HttpResponseStatus.SERVICE_UNAVAILABLE);
+  }
+
+  /**
+   * Turn a request away.
+   *
+   * @param context
+   *          the context for the request
+   * @param reason
+   *          why the request is being turned away
+   */
+  private void rejectRequest(ChannelHandlerContext context, String reason) {
+    rejectedRequestCount.incrementAndGet();
+    parentHandler.getWebServer().getLog().warn(String.format("Dynamic HTTP request rejected, %s", reason));
+
+    parentHandler.writeError(context, HttpResponseStatus.SERVICE_UNAVAILABLE);
+  }
+
+  /**
+   * A request which is waiting or running.
+   *
+   * @author Keith M. Hughes
+   */
+  private static class PendingRequest {
+
+    /**
+     * The context for the request.
+     */
+    private final ChannelHandlerContext context;
+
+    /**
+     * The request to run.
+     */
+    private final Runnable request;
+
+    /**
+     * What to do if the request is never run, can be {@code null}.
+     */
+    private final Runnable cleanup;
+
+    /**
+     * The count of pending requests for the handler of the request, {@code null} if the request is not counted.
+     */
+    private final AtomicInteger pendingRequestCount;
+
+    /**
+     * How long the request can take once it is in the pool, in milliseconds, {@code 0} if there is no limit.
+     */
+    private final long timeout;
+
+    /**
+     * {@code true} if the connection is closed once the request is done.
+     */
+    private final boolean closesConnection;
+
+    /**
+     * The state of the request.
+     */
+    private final AtomicInteger state = new AtomicInteger(REQUEST_STATE_RUNNING);
+
+    /**
+     * {@code true} once the request has been run or thrown away.
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * When the request was put in the pool, from {@link System#nanoTime()}.
+     */
+    private volatile long startTime;
+
+    /**
+     * The future for the running request.
+     */
+    private volatile Future<?> future;
+
+    /**
+     * The future for timing out the request, {@code null} if there is no timeout.
+     */
+    private volatile Future<?> timeoutFuture;
+
+    /**
+     * Construct a new pending request.
+     *
+     * @param context
+     *          the context for the request
+     * @param request
+     *          the request to run
+     * @param cleanup
+     *          what to do if the request is never run, can be {@code null}
+     * @param pendingRequestCount
+     *          the count of pending requests for the handler of the request, {@code null} if the request is not
+     *          counted
+     * @param timeout
+     *          how long the request can take once it is in the pool, in milliseconds, {@code 0} if there is no limit
+     * @param closesConnection
+     *          {@code true} if the connection is closed once the request is done
+     */
+    public PendingRequest(ChannelHandlerContext context, Runnable request, Runnable cleanup,
+        AtomicInteger pendingRequestCount, long timeout, boolean closesConnection) {
+      this.context = context;
+      this.request = request;
+      this.cleanup = cleanup;
+      this.pendingRequestCount = pendingRequestCount;
+      this.timeout = timeout;
+      this.closesConnection = closesConnection;
+    }
+  }
+}
@@ -18,6 +18,9 @@ package interactivespaces.service.web.server.internal.netty;
 
 import interactivespaces.InteractiveSpacesException;
 import interactivespaces.service.web.server.HttpFileUpload;
+import interactivespaces.service.web.server.WebServer;
+import interactivespaces.util.io.FileSupport;
+import interactivespaces.util.io.FileSupportImpl;
 
 import com.google.common.collect.Maps;
 
@@ -38,12 +41,19 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.HttpCookie;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * A Netty-based {@link HttpFileUpload}.
  *
+ * <p>
+ * The upload is decoded a chunk at a time as it arrives, and files are kept on disk once they get past the memory
+ * threshold of the data factory the decoder uses.
+ *
  * @author Keith M. Hughes
  */
 public class NettyHttpFileUpload implements HttpFileUpload {
@@ -83,6 +93,21 @@ public class NettyHttpFileUpload implements HttpFileUpload {
    */
   private Set<HttpCookie> cookies;
 
+  /**
+   * The largest upload, in bytes, which will be accepted.
+   */
+  private final long maximumSize;
+
+  /**
+   * The number of bytes of the upload received so far.
+   */
+  private long bytesReceived;
+
+  /**
+   * The file support to use.
+   */
+  private final FileSupport fileSupport = FileSupportImpl.INSTANCE;
+
   /**
    * Create a new instance.
    *
@@ -96,14 +121,18 @@ public class NettyHttpFileUpload implements HttpFileUpload {
    *          underlying web server handler
    * @param cookies
    *          any cookies to add to responses
+   * @param maximumSize
+   *          the largest upload, in bytes, which will be accepted, or {@link WebServer#HTTP_UPLOAD_SIZE_UNLIMITED}
    */
   public NettyHttpFileUpload(HttpRequest nettyHttpRequest, HttpPostRequestDecoder decoder,
-      NettyHttpPostRequestHandler handler, NettyWebServerHandler webServerHandler, Set<HttpCookie> cookies) {
+      NettyHttpPostRequestHandler handler, NettyWebServerHandler webServerHandler, Set<HttpCookie> cookies,
+      long maximumSize) {
     this.nettyHttpRequest = nettyHttpRequest;
     this.decoder = decoder;
     this.handler = handler;
     this.webServerHandler = webServerHandler;
     this.cookies = cookies;
+    this.maximumSize = maximumSize;
   }
 
   /**
@@ -115,6 +144,15 @@ public class NettyHttpFileUpload implements HttpFileUpload {
     return nettyHttpRequest;
   }
 
+  /**
+   * Get the largest upload which will be accepted.
+   *
+   * @return the maximum size, in bytes, or {@link WebServer#HTTP_UPLOAD_SIZE_UNLIMITED}
+   */
+  public long getMaximumSize() {
+    return maximumSize;
+  }
+
   /**
    * Add a new chunk of data to the upload.
    *
@@ -123,13 +161,20 @@ public class NettyHttpFileUpload implements HttpFileUpload {
    * @param chunk
    *          the chunked data
    *
+   * @return {@code true} if the chunk was added, {@code false} if it makes the upload larger than the maximum size
+   *
    * @throws Exception
    *           problem adding chunk
    *
    */
-  public void addChunk(ChannelHandlerContext ctx, HttpChunk chunk) throws Exception {
+  public boolean addChunk(ChannelHandlerContext ctx, HttpChunk chunk) throws Exception {
     if (!chunk.getContent().readable() && !chunk.isLast()) {
-      return;
+      return true;
+    }
+
+    bytesReceived += chunk.getContent().readableBytes();
+    if (maximumSize != WebServer.HTTP_UPLOAD_SIZE_UNLIMITED && bytesReceived > maximumSize) {
+      return false;
     }
 
     decoder.offer(chunk);
@@ -146,6 +191,8 @@ public class NettyHttpFileUpload implements HttpFileUpload {
     } catch (EndOfDataDecoderException e) {
       getLog().error("Error while adding HTTP chunked POST data", e);
     }
+
+    return true;
   }
 
   /**
@@ -174,11 +221,22 @@ public class NettyHttpFileUpload implements HttpFileUpload {
    * @param context
    *          the context for the channel handler
    */
-  public void fileUploadComplete(ChannelHandlerContext context) {
+  public void fileUploadComplete(final ChannelHandlerContext context) {
     if (handler != null) {
       handleFileUploadCompleteThroughHandler(context);
     } else {
-      handleFileUploadCompleteThroughListener(context);
+      webServerHandler.executeDynamicRequest(context, webServerHandler.getHttpFileUploadListener(),
+          WebServer.DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT, new Runnable() {
+            @Override
+            public void run() {
+              handleFileUploadCompleteThroughListener(context);
+            }
+          }, new Runnable() {
+            @Override
+            public void run() {
+              clean();
+            }
+          });
     }
   }
 
@@ -255,7 +313,7 @@ public class NettyHttpFileUpload implements HttpFileUpload {
   public boolean moveTo(File destination) {
     if (hasFile()) {
       try {
-        fileUpload.renameTo(destination);
+        moveFileUpload(destination);
 
         return true;
       } catch (Exception e) {
@@ -270,8 +328,7 @@ public class NettyHttpFileUpload implements HttpFileUpload {
   public boolean copyTo(OutputStream destination) {
     if (hasFile()) {
       try {
-        ChannelBuffer channelBuffer = fileUpload.getChannelBuffer();
-        channelBuffer.getBytes(0, destination, channelBuffer.readableBytes());
+        copyFileUpload(destination);
 
         return true;
       } catch (Exception e) {
@@ -282,6 +339,69 @@ public class NettyHttpFileUpload implements HttpFileUpload {
     }
   }
 
+  /**
+   * Move the uploaded file to its destination.
+   *
+   * <p>
+   * The destination only ever appears with the complete file. A file on disk is renamed into place if it is on the
+   * same file system as the destination, otherwise it is copied next to the destination and then renamed.
+   *
+   * @param destination
+   *          the destination file
+   *
+   * @throws IOException
+   *           the file could not be moved
+   */
+  private void moveFileUpload(File destination) throws IOException {
+    if (!fileUpload.isInMemory()) {
+      try {
+        Files.move(fileUpload.getFile().toPath(), destination.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+        return;
+      } catch (AtomicMoveNotSupportedException e) {
+        // The destination is on another file system, so copy the file over first.
+      }
+    }
+
+    File destinationDirectory = fileSupport.getParentFile(fileSupport.getAbsoluteFile(destination));
+    File temporaryFile = fileSupport.createTempFile(destinationDirectory, ".upload-", ".tmp");
+    try {
+      OutputStream out = fileSupport.newFileOutputStream(temporaryFile);
+      try {
+        copyFileUpload(out);
+      } finally {
+        fileSupport.close(out, true);
+      }
+
+      Files.move(temporaryFile.toPath(), destination.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      if (fileSupport.exists(temporaryFile)) {
+        fileSupport.delete(temporaryFile);
+      }
+    }
+  }
+
+  /**
+   * Copy the uploaded file to a stream.
+   *
+   * <p>
+   * A file on disk is streamed rather than read into memory.
+   *
+   * @param destination
+   *          the stream to copy to
+   *
+   * @throws IOException
+   *           the file could not be copied
+   */
+  private void copyFileUpload(OutputStream destination) throws IOException {
+    if (fileUpload.isInMemory()) {
+      ChannelBuffer channelBuffer = fileUpload.getChannelBuffer();
+      channelBuffer.getBytes(channelBuffer.readerIndex(), destination, channelBuffer.readableBytes());
+    } else {
+      fileSupport.copyFileToStream(fileUpload.getFile(), destination, false);
+    }
+  }
+
   @Override
   public String getFormName() {
     return fileUpload.getName();
@@ -40,6 +40,16 @@ public interface NettyHttpGetRequestHandler {
    */
   boolean isHandledBy(HttpRequest req);
 
+  /**
+   * Get the URI prefix of the requests this handler can handle.
+   *
+   * <p>
+   * Only requests whose URI starts with the prefix are offered to {@link #isHandledBy(HttpRequest)}.
+   *
+   * @return the URI prefix
+   */
+  String getUriPrefix();
+
   /**
    * Handle the web request.
    *
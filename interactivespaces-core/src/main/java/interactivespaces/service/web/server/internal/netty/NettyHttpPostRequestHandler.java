@@ -16,8 +16,6 @@
 
 package interactivespaces.service.web.server.internal.netty;
 
-import interactivespaces.service.web.server.HttpFileUpload;
-
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 
@@ -42,6 +40,16 @@ public interface NettyHttpPostRequestHandler {
    */
   boolean isHandledBy(HttpRequest nettyRequest);
 
+  /**
+   * Get the URI prefix of the requests this handler can handle.
+   *
+   * <p>
+   * Only requests whose URI starts with the prefix are offered to {@link #isHandledBy(HttpRequest)}.
+   *
+   * @return the URI prefix
+   */
+  String getUriPrefix();
+
   /**
    * Handle the web request.
    *
@@ -49,6 +57,9 @@ public interface NettyHttpPostRequestHandler {
    *          the channel handler context
    * @param nettyRequest
    *          the Netty HTTP request
+   * <p>
+   * The handler cleans up the upload once the request has been handled.
+   *
    * @param upload
    *          the HTTP file upload
    * @param cookiesToAdd
@@ -57,6 +68,6 @@ public interface NettyHttpPostRequestHandler {
    * @throws IOException
    *           something bad happened
    */
-  void handleWebRequest(ChannelHandlerContext ctx, HttpRequest nettyRequest, HttpFileUpload upload,
+  void handleWebRequest(ChannelHandlerContext ctx, HttpRequest nettyRequest, NettyHttpFileUpload upload,
       Set<HttpCookie> cookiesToAdd) throws IOException;
 }
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.server.internal.netty;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * An in-memory cache of the content of small static files.
+ *
+ * <p>
+ * Content is kept in direct buffers so it can be written to a channel without further copies. The cache is bounded by
+ * the total number of bytes it holds and drops the least recently used files first. A cached file is only served while
+ * its length and modification time are the same as when it was read.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyStaticContentCache {
+
+  /**
+   * The file contents, weighed by their size.
+   */
+  private final Cache<File, CachedFile> cache;
+
+  /**
+   * The largest file, in bytes, which will be cached.
+   */
+  private final int maximumFileSize;
+
+  /**
+   * Construct a new cache.
+   *
+   * @param capacity
+   *          the maximum number of bytes the cache will hold, {@code 0} disables the cache
+   * @param maximumFileSize
+   *          the largest file, in bytes, which will be cached
+   */
+  public NettyStaticContentCache(long capacity, int maximumFileSize) {
+    this.maximumFileSize = (capacity > 0) ? maximumFileSize : -1;
+
+    cache = CacheBuilder.newBuilder().maximumWeight(capacity).weigher(new Weigher<File, CachedFile>() {
+      @Override
+      public int weigh(File file, CachedFile cachedFile) {
+        int weight = cachedFile.content.capacity();
+        if (cachedFile.gzippedContent != null && cachedFile.gzippedContent != cachedFile.content) {
+          weight += cachedFile.gzippedContent.capacity();
+        }
+
+        return weight;
+      }
+    }).build();
+  }
+
+  /**
+   * Get the content of a file.
+   *
+   * <p>
+   * Files which are small enough are read into the cache if they are not there already, or if they have changed since
+   * they were cached.
+   *
+   * @param file
+   *          the file
+   * @param length
+   *          the current length of the file
+   * @param lastModified
+   *          the current modification time of the file
+   *
+   * @return a buffer with the complete content of the file, or {@code null} if the file is not cacheable
+   *
+   * @throws IOException
+   *           the file could not be read
+   */
+  public ChannelBuffer getContent(File file, long length, long lastModified) throws IOException {
+    CachedFile cachedFile = getCachedFile(file, length, lastModified);
+
+    return (cachedFile != null) ? cachedFile.content.duplicate() : null;
+  }
+
+  /**
+   * Get the gzip compressed content of a file.
+   *
+   * <p>
+   * The content is only compressed the first time it is asked for.
+   *
+   * @param file
+   *          the file
+   * @param length
+   *          the current length of the file
+   * @param lastModified
+   *          the current modification time of the file
+   *
+   * @return a buffer with the compressed content of the file, or {@code null} if the file is not cacheable or does not
+   *         get smaller when compressed
+   *
+   * @throws IOException
+   *           the file could not be read
+   */
+  public ChannelBuffer getGzippedContent(File file, long length, long lastModified) throws IOException {
+    CachedFile cachedFile = getCachedFile(file, length, lastModified);
+    if (cachedFile == null) {
+      return null;
+    }
+
+    if (cachedFile.gzippedContent == null) {
+      ChannelBuffer compressed = NettyHttpContentEncoding.gzip(cachedFile.content);
+      ChannelBuffer gzippedContent = cachedFile.content;
+      if (compressed.readableBytes() < cachedFile.content.readableBytes()) {
+        gzippedContent = ChannelBuffers.directBuffer(compressed.readableBytes());
+        gzippedContent.writeBytes(compressed);
+      }
+
+      // Replacing the entry has the cache weigh it again with the compressed content.
+      cachedFile = new CachedFile(cachedFile.content, gzippedContent, length, lastModified);
+      cache.put(file, cachedFile);
+    }
+
+    return (cachedFile.gzippedContent != cachedFile.content) ? cachedFile.gzippedContent.duplicate() : null;
+  }
+
+  /**
+   * Get the cache entry for the current version of a file, reading the file if necessary.
+   *
+   * @param file
+   *          the file
+   * @param length
+   *          the current length of the file
+   * @param lastModified
+   *          the current modification time of the file
+   *
+   * @return the cache entry, or {@code null} if the file is not cacheable
+   *
+   * @throws IOException
+   *           the file could not be read
+   */
+  private CachedFile getCachedFile(File file, long length, long lastModified) throws IOException {
+    if (length > maximumFileSize) {
+      return null;
+    }
+
+    CachedFile cachedFile = cache.getIfPresent(file);
+    if (cachedFile != null && cachedFile.length == length && cachedFile.lastModified == lastModified) {
+      return cachedFile;
+    }
+
+    byte[] data = Files.readAllBytes(file.toPath());
+    if (data.length != length || file.lastModified() != lastModified) {
+      // The file changed while it was being read, the caller will have to go to the file.
+      cache.invalidate(file);
+      return null;
+    }
+
+    ChannelBuffer content = ChannelBuffers.directBuffer(data.length);
+    content.writeBytes(data);
+    cachedFile = new CachedFile(content, null, length, lastModified);
+    cache.put(file, cachedFile);
+
+    return cachedFile;
+  }
+
+  /**
+   * Get the number of files currently cached.
+   *
+   * @return the number of files
+   */
+  public long getNumberCachedFiles() {
+    return cache.size();
+  }
+
+  /**
+   * Remove everything from the cache.
+   */
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * The cached content of a file.
+   *
+   * @author Keith M. Hughes
+   */
+  private static class CachedFile {
+
+    /**
+     * The content of the file.
+     */
+    private final ChannelBuffer content;
+
+    /**
+     * The gzip compressed content of the file.
+     *
+     * <p>
+     * Is {@code null} if the content has not been compressed yet, and the same as {@link #content} if compressing did
+     * not make it smaller.
+     */
+    private final ChannelBuffer gzippedContent;
+
+    /**
+     * The length of the file when it was read.
+     */
+    private final long length;
+
+    /**
+     * The modification time of the file when it was read.
+     */
+    private final long lastModified;
+
+    /**
+     * Construct a new cached file.
+     *
+     * @param content
+     *          the content of the file
+     * @param gzippedContent
+     *          the compressed content of the file, can be {@code null}
+     * @param length
+     *          the length of the file when it was read
+     * @param lastModified
+     *          the modification time of the file when it was read
+     */
+    public CachedFile(ChannelBuffer content, ChannelBuffer gzippedContent, long length, long lastModified) {
+      this.content = content;
+      this.gzippedContent = gzippedContent;
+      this.length = length;
+      this.lastModified = lastModified;
+    }
+  }
+}
@@ -22,14 +22,17 @@ import static org.jboss.netty.handler.codec.http.HttpHeaders.isKeepAlive;
 import static org.jboss.netty.handler.codec.http.HttpHeaders.setContentLength;
 import static org.jboss.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
-import interactivespaces.SimpleInteractiveSpacesException;
 import interactivespaces.service.web.server.HttpStaticContentRequestHandler;
+import interactivespaces.service.web.server.WebServer;
 import interactivespaces.util.io.FileSupport;
 import interactivespaces.util.io.FileSupportImpl;
 import interactivespaces.util.web.MimeResolver;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
@@ -54,10 +57,15 @@ import java.io.RandomAccessFile;
 import java.net.HttpCookie;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TimeZone;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Handle static web content using Netty.
@@ -66,11 +74,6 @@ import java.util.regex.Pattern;
  */
 public class NettyStaticContentHandler implements NettyHttpGetRequestHandler, HttpStaticContentRequestHandler {
 
-  /**
-   * The first portion of a content range header.
-   */
-  private static final String CONTENT_RANGE_PREFIX = "bytes ";
-
   /**
    * The separator between the start and end of the range.
    */
@@ -87,9 +90,67 @@ public class NettyStaticContentHandler implements NettyHttpGetRequestHandler, Ht
   private static final int COPY_CHUNK_SIZE = 8192;
 
   /**
-   * Regex for an HTTP range header.
+   * The content type of a response with several ranges, up to the boundary.
+   */
+  private static final String MULTIPART_BYTERANGES_CONTENT_TYPE = "multipart/byteranges; boundary=";
+
+  /**
+   * The characters before and, for the last one, after a boundary in a multipart body.
+   */
+  private static final String MULTIPART_BOUNDARY_PREFIX = "--";
+
+  /**
+   * The line separator in a multipart body.
    */
-  private static final Pattern RANGE_HEADER_REGEX = Pattern.compile("bytes=(\\d+)\\-(\\d+)?");
+  private static final String MULTIPART_LINE_SEPARATOR = "\r\n";
+
+  /**
+   * The separator between the name and value of a header in a multipart body.
+   */
+  private static final String MULTIPART_HEADER_SEPARATOR = ": ";
+
+  /**
+   * The content encodings which can be served from precompressed files, in order of preference.
+   */
+  private static final String[] PRECOMPRESSED_CONTENT_ENCODINGS = {
+    NettyHttpContentEncoding.CONTENT_ENCODING_BROTLI, NettyHttpContentEncoding.CONTENT_ENCODING_GZIP };
+
+  /**
+   * The file extensions of precompressed files, in the same order as {@link #PRECOMPRESSED_CONTENT_ENCODINGS}.
+   */
+  private static final String[] PRECOMPRESSED_FILE_EXTENSIONS = {
+    NettyHttpContentEncoding.FILE_EXTENSION_BROTLI, NettyHttpContentEncoding.FILE_EXTENSION_GZIP };
+
+  /**
+   * The prefix marking an entity tag as weak.
+   */
+  private static final String WEAK_ENTITY_TAG_PREFIX = "W/";
+
+  /**
+   * The entity tag which matches any version of a file.
+   */
+  private static final String ENTITY_TAG_WILDCARD = "*";
+
+  /**
+   * The number of milliseconds in a second.
+   */
+  private static final long MILLISECONDS_PER_SECOND = 1000;
+
+  /**
+   * The format for dates in HTTP headers.
+   *
+   * <p>
+   * Date formats are not thread safe so each thread gets its own.
+   */
+  private static final ThreadLocal<SimpleDateFormat> HTTP_DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+    @Override
+    protected SimpleDateFormat initialValue() {
+      SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+      format.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+      return format;
+    }
+  };
 
   /**
    * The parent content handler for this handler.
@@ -182,6 +243,11 @@ public class NettyStaticContentHandler implements NettyHttpGetRequestHandler, Ht
     return (T) mimeResolver;
   }
 
+  @Override
+  public String getUriPrefix() {
+    return uriPrefix;
+  }
+
   @Override
   public boolean isHandledBy(HttpRequest request) {
     if (request.getUri().startsWith(uriPrefix)) {
@@ -219,21 +285,10 @@ public class NettyStaticContentHandler implements NettyHttpGetRequestHandler, Ht
       return;
     }
 
-    RandomAccessFile raf;
-    try {
-      raf = new RandomAccessFile(file, "r");
-    } catch (FileNotFoundException fnfe) {
-      if (fallbackHandler != null) {
-        fallbackHandler.handleWebRequest(ctx, request, cookiesToAdd);
-      } else {
-        HttpResponseStatus status = HttpResponseStatus.NOT_FOUND;
-        parentHandler.getWebServer().getLog().warn(
-                String.format("HTTP [%s] %s --> (File Not Found)", status.getCode(), originalUrl));
-        parentHandler.sendError(ctx, status);
-      }
+    if (!file.isFile()) {
+      handleFileNotFound(ctx, request, cookiesToAdd, originalUrl);
       return;
     }
-    long fileLength = raf.length();
 
     // Start with an initial OK response which will be modified as needed.
     HttpResponse response = new DefaultHttpResponse(HTTP_1_1, HttpResponseStatus.OK);
@@ -243,6 +298,48 @@ public class NettyStaticContentHandler implements NettyHttpGetRequestHandler, Ht
     parentHandler.addHttpResponseHeaders(response, extraHttpContentHeaders);
     parentHandler.addHeaderIfNotExists(response, HttpHeaders.Names.ACCEPT_RANGES, HttpHeaders.Values.BYTES);
 
+    // Ranges are always for the unencoded file.
+    boolean rangeRequested = getHeader(request, HttpHeaders.Names.RANGE) != null;
+
+    String contentEncoding = null;
+    File contentFile = file;
+    if (!rangeRequested) {
+      for (int i = 0; i < PRECOMPRESSED_CONTENT_ENCODINGS.length; i++) {
+        File precompressedFile = new File(file.getPath() + PRECOMPRESSED_FILE_EXTENSIONS[i]);
+        if (NettyHttpContentEncoding.isAcceptedEncoding(request, PRECOMPRESSED_CONTENT_ENCODINGS[i])
+            && precompressedFile.isFile() && precompressedFile.lastModified() >= file.lastModified()) {
+          contentEncoding = PRECOMPRESSED_CONTENT_ENCODINGS[i];
+          contentFile = precompressedFile;
+          break;
+        }
+      }
+    }
+
+    // The file is only opened if its content is needed, everything else can be answered from its attributes.
+    long fileLength = contentFile.length();
+    long lastModified = contentFile.lastModified();
+
+    boolean compressible = NettyHttpContentEncoding.isCompressible(getHeader(response, HttpHeaders.Names.CONTENT_TYPE));
+    ChannelBuffer encodedContent = null;
+    if (contentEncoding == null && !rangeRequested && compressible && shouldCompress(request, fileLength)) {
+      encodedContent = getCachedGzippedContent(file, fileLength, lastModified);
+      if (encodedContent != null) {
+        contentEncoding = NettyHttpContentEncoding.CONTENT_ENCODING_GZIP;
+      }
+    }
+
+    if (contentEncoding != null) {
+      HttpHeaders.setHeader(response, HttpHeaders.Names.CONTENT_ENCODING, contentEncoding);
+    }
+    if (contentEncoding != null || compressible) {
+      addHeader(response, HttpHeaders.Names.VARY, HttpHeaders.Names.ACCEPT_ENCODING);
+    }
+
+    String entityTag = getEntityTag(fileLength, lastModified, contentEncoding);
+    HttpHeaders.setHeader(response, HttpHeaders.Names.ETAG, entityTag);
+    HttpHeaders.setHeader(response, HttpHeaders.Names.LAST_MODIFIED, HTTP_DATE_FORMAT.get().format(new Date(
+        lastModified)));
+
     if (cookiesToAdd != null) {
       CookieEncoder encoder = new CookieEncoder(true);
       for (HttpCookie value : cookiesToAdd) {
@@ -251,171 +348,525 @@ public class NettyStaticContentHandler implements NettyHttpGetRequestHandler, Ht
       }
     }
 
-    RangeRequest rangeRequest = null;
-    try {
-      rangeRequest = parseRangeRequest(request, fileLength);
-    } catch (Exception e) {
-      try {
-        HttpResponseStatus status = HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
-        parentHandler.getWebServer().getLog().error(String.format("[%s] HTTP %s --> %s",
-            status.getCode(), originalUrl, e.getMessage()));
-        response.setStatus(status);
-        parentHandler.sendError(ctx, status);
-      } finally {
-        try {
-          raf.close();
-        } catch (Exception e1) {
-          parentHandler.getWebServer().getLog().warn("Unable to close static content file", e1);
-        }
-      }
-      return;
-    }
+    Channel ch = ctx.getChannel();
 
-    HttpResponseStatus status = HttpResponseStatus.OK;
-    if (rangeRequest == null) {
-      setContentLength(response, fileLength);
-    } else {
-      setContentLength(response, rangeRequest.getRangeLength());
-      addHeader(response, HttpHeaders.Names.CONTENT_RANGE, CONTENT_RANGE_PREFIX + rangeRequest.begin
-          + CONTENT_RANGE_RANGE_SEPARATOR + rangeRequest.end + CONTENT_RANGE_RANGE_SIZE_SEPARATOR + fileLength);
-      status = HttpResponseStatus.PARTIAL_CONTENT;
+    if (isNotModified(request, entityTag, lastModified)) {
+      HttpResponseStatus status = HttpResponseStatus.NOT_MODIFIED;
       response.setStatus(status);
-    }
+      closeIfNotKeepAlive(request, ch.write(response));
 
-    Channel ch = ctx.getChannel();
+      parentHandler.getWebServer().getLog().trace(String.format("[%s] HTTP %s --> %s",
+          status.getCode(), originalUrl, contentFile.getPath()));
+      return;
+    }
 
-    // Write the initial line and the header.
-    ChannelFuture writeFuture = ch.write(response);
+    List<NettyHttpByteRange> ranges = null;
+    if (rangeRequested && isIfRangeMatched(request, entityTag, lastModified)) {
+      ranges = NettyHttpByteRange.parseRangeHeader(getHeader(request, HttpHeaders.Names.RANGE), fileLength);
+      if (ranges != null && ranges.isEmpty()) {
+        sendRangeNotSatisfiable(ctx, request, fileLength, originalUrl);
+        return;
+      }
+    }
 
-    // Write the content if there have been no errors and we are a GET request.
-    if (HttpMethod.GET == request.getMethod()) {
-      if (ch.getPipeline().get(SslHandler.class) != null) {
-        // Cannot use zero-copy with HTTPS.
-        writeFuture = ch.write(new ChunkedFile(raf, 0, fileLength, COPY_CHUNK_SIZE));
+    HttpResponseStatus status = HttpResponseStatus.OK;
+    ChannelFuture writeFuture;
+    if (ranges != null && ranges.size() > 1) {
+      status = HttpResponseStatus.PARTIAL_CONTENT;
+      writeFuture = writeMultipleRanges(ch, request, response, contentFile, fileLength, lastModified, ranges);
+    } else {
+      long contentStart = 0;
+      long contentLength = (encodedContent != null) ? encodedContent.readableBytes() : fileLength;
+      if (ranges != null) {
+        NettyHttpByteRange range = ranges.get(0);
+        contentStart = range.getStart();
+        contentLength = range.getLength();
+        HttpHeaders.setHeader(response, HttpHeaders.Names.CONTENT_RANGE, range.getContentRange(fileLength));
+        status = HttpResponseStatus.PARTIAL_CONTENT;
+        response.setStatus(status);
+      }
+      setContentLength(response, contentLength);
+
+      if (HttpMethod.GET != request.getMethod()) {
+        // Write the initial line and the header.
+        writeFuture = ch.write(response);
+      } else if (encodedContent != null) {
+        response.setContent(encodedContent);
+        writeFuture = ch.write(response);
       } else {
-        // No encryption - use zero-copy.
-        final FileRegion region =
-            new DefaultFileRegion(raf.getChannel(), rangeRequest != null ? rangeRequest.begin : 0,
-                rangeRequest != null ? rangeRequest.getRangeLength() : fileLength);
-        writeFuture = ch.write(region);
-        writeFuture.addListener(new ChannelFutureProgressListener() {
-          @Override
-          public void operationComplete(ChannelFuture future) {
-            region.releaseExternalResources();
-          }
-
-          @Override
-          public void operationProgressed(ChannelFuture arg0, long arg1, long arg2, long arg3) throws Exception {
-            // Do nothing
-          }
-        });
+        writeFuture = writeRange(ch, response, contentFile, fileLength, lastModified, contentStart, contentLength);
       }
     }
 
-    // Decide whether to close the connection or not.
-    if (!isKeepAlive(request)) {
-      // Close the connection when the whole content is written out.
-      writeFuture.addListener(ChannelFutureListener.CLOSE);
+    if (writeFuture == null) {
+      handleFileNotFound(ctx, request, cookiesToAdd, originalUrl);
+      return;
     }
 
+    closeIfNotKeepAlive(request, writeFuture);
+
     parentHandler.getWebServer().getLog().trace(String.format("[%s] HTTP %s --> %s",
-            status.getCode(), originalUrl, file.getPath()));
+            status.getCode(), originalUrl, contentFile.getPath()));
   }
 
   /**
-   * Set the MIME type of the content, if we can.
+   * Write a response whose content is a single range of a file.
    *
-   * @param filepath
-   *          the filepath for the content
+   * @param ch
+   *          the channel to write to
    * @param response
-   *          the HTTP response
+   *          the response, with all of its headers
+   * @param file
+   *          the file
+   * @param fileLength
+   *          the length of the file
+   * @param lastModified
+   *          the modification time of the file
+   * @param start
+   *          the position of the first byte to write
+   * @param length
+   *          the number of bytes to write
+   *
+   * @return the future for the last write, or {@code null} if the file could not be opened and nothing was written
+   *
+   * @throws IOException
+   *           the file could not be read
    */
-  private void setMimeType(String filepath, HttpResponse response) {
-    if (mimeResolver != null) {
-      String mimeType = mimeResolver.resolve(filepath);
-      if (mimeType != null) {
-        HttpHeaders.setHeader(response, HttpHeaders.Names.CONTENT_TYPE, mimeType);
-      }
+  private ChannelFuture writeRange(Channel ch, HttpResponse response, File file, long fileLength, long lastModified,
+      long start, long length) throws IOException {
+    ChannelBuffer cachedContent = getCachedContent(file, fileLength, lastModified);
+    if (cachedContent != null) {
+      response.setContent(cachedContent.slice((int) start, (int) length));
+      return ch.write(response);
+    }
+
+    RandomAccessFile raf = openFile(file);
+    if (raf == null) {
+      return null;
     }
+
+    // Write the initial line and the header.
+    ch.write(response);
+
+    return writeFileRegion(ch, raf, start, length);
   }
 
   /**
-   * Get a range header from the request, if there is one.
+   * Write a response whose content is several ranges of a file as a {@code multipart/byteranges} body.
    *
+   * @param ch
+   *          the channel to write to
    * @param request
    *          the request
-   * @param availableLength
-   *          the available number of bytes for the file requested
+   * @param response
+   *          the response, with all of its headers but the content type and length
+   * @param file
+   *          the file
+   * @param fileLength
+   *          the length of the file
+   * @param lastModified
+   *          the modification time of the file
+   * @param ranges
+   *          the ranges to write, in order and not overlapping
    *
-   * @return a parsed range header, or {@code null} if there is no range request header or there was some sort of error
+   * @return the future for the last write, or {@code null} if the file could not be opened and nothing was written
+   *
+   * @throws IOException
+   *           the file could not be read
    */
-  private RangeRequest parseRangeRequest(HttpRequest request, long availableLength) {
-    String rangeHeader = getHeader(request, HttpHeaders.Names.RANGE);
-    if (rangeHeader == null || rangeHeader.trim().isEmpty()) {
-      return null;
+  private ChannelFuture writeMultipleRanges(Channel ch, HttpRequest request, HttpResponse response, File file,
+      long fileLength, long lastModified, List<NettyHttpByteRange> ranges) throws IOException {
+    String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    String contentType = getHeader(response, HttpHeaders.Names.CONTENT_TYPE);
+
+    // Every part starts with its own headers, the length of the whole body has to be known before it is sent.
+    List<ChannelBuffer> partHeaders = Lists.newArrayList();
+    long contentLength = 0;
+    for (NettyHttpByteRange range : ranges) {
+      StringBuilder partHeader = new StringBuilder(MULTIPART_LINE_SEPARATOR).append(MULTIPART_BOUNDARY_PREFIX)
+          .append(boundary).append(MULTIPART_LINE_SEPARATOR);
+      if (contentType != null) {
+        partHeader.append(HttpHeaders.Names.CONTENT_TYPE).append(MULTIPART_HEADER_SEPARATOR).append(contentType)
+            .append(MULTIPART_LINE_SEPARATOR);
+      }
+      partHeader.append(HttpHeaders.Names.CONTENT_RANGE).append(MULTIPART_HEADER_SEPARATOR)
+          .append(range.getContentRange(fileLength)).append(MULTIPART_LINE_SEPARATOR).append(MULTIPART_LINE_SEPARATOR);
+
+      ChannelBuffer partHeaderBuffer = ChannelBuffers.copiedBuffer(partHeader, StandardCharsets.US_ASCII);
+      partHeaders.add(partHeaderBuffer);
+      contentLength += partHeaderBuffer.readableBytes() + range.getLength();
+    }
+    ChannelBuffer trailer =
+        ChannelBuffers.copiedBuffer(MULTIPART_LINE_SEPARATOR + MULTIPART_BOUNDARY_PREFIX + boundary
+            + MULTIPART_BOUNDARY_PREFIX + MULTIPART_LINE_SEPARATOR, StandardCharsets.US_ASCII);
+    contentLength += trailer.readableBytes();
+
+    response.setStatus(HttpResponseStatus.PARTIAL_CONTENT);
+    HttpHeaders.setHeader(response, HttpHeaders.Names.CONTENT_TYPE, MULTIPART_BYTERANGES_CONTENT_TYPE + boundary);
+    setContentLength(response, contentLength);
+
+    if (HttpMethod.GET != request.getMethod()) {
+      return ch.write(response);
+    }
+
+    ChannelBuffer cachedContent = getCachedContent(file, fileLength, lastModified);
+    if (cachedContent != null) {
+      ChannelBuffer[] content = new ChannelBuffer[ranges.size() * 2 + 1];
+      for (int i = 0; i < ranges.size(); i++) {
+        NettyHttpByteRange range = ranges.get(i);
+        content[2 * i] = partHeaders.get(i);
+        content[2 * i + 1] = cachedContent.slice((int) range.getStart(), (int) range.getLength());
+      }
+      content[content.length - 1] = trailer;
+
+      response.setContent(ChannelBuffers.wrappedBuffer(content));
+      return ch.write(response);
+    }
+
+    // Each part gets its own handle on the file, since each handle is closed once its part is written.
+    List<RandomAccessFile> rafs = Lists.newArrayList();
+    for (int i = 0; i < ranges.size(); i++) {
+      RandomAccessFile raf = openFile(file);
+      if (raf == null) {
+        for (RandomAccessFile openedRaf : rafs) {
+          fileSupport.close(openedRaf, false);
+        }
+        return null;
+      }
+      rafs.add(raf);
     }
 
-    Matcher m = RANGE_HEADER_REGEX.matcher(rangeHeader);
-    if (!m.matches()) {
-      throw new SimpleInteractiveSpacesException(String.format("Unsupported HTTP range header, illegal syntax: %s",
-          rangeHeader));
+    // Write the initial line and the header.
+    ch.write(response);
+
+    for (int i = 0; i < ranges.size(); i++) {
+      NettyHttpByteRange range = ranges.get(i);
+      ch.write(partHeaders.get(i));
+      writeFileRegion(ch, rafs.get(i), range.getStart(), range.getLength());
     }
 
-    RangeRequest range = new RangeRequest();
-    range.begin = Long.parseLong(m.group(1));
-    String endMatch = m.group(2);
-    if (endMatch != null && !endMatch.trim().isEmpty()) {
-      range.end = Long.parseLong(endMatch);
+    return ch.write(trailer);
+  }
+
+  /**
+   * Write part of a file to a channel, without copying it through the heap if the channel is not encrypted.
+   *
+   * <p>
+   * The file is closed once the part has been written.
+   *
+   * @param ch
+   *          the channel to write to
+   * @param raf
+   *          the file
+   * @param start
+   *          the position of the first byte to write
+   * @param length
+   *          the number of bytes to write
+   *
+   * @return the future for the write
+   *
+   * @throws IOException
+   *           the file could not be read
+   */
+  private ChannelFuture writeFileRegion(Channel ch, RandomAccessFile raf, long start, long length)
+      throws IOException {
+    if (ch.getPipeline().get(SslHandler.class) != null) {
+      // Cannot use zero-copy with HTTPS.
+      return ch.write(new ChunkedFile(raf, start, length, COPY_CHUNK_SIZE));
     } else {
-      range.end = availableLength - 1;
+      // No encryption - use zero-copy.
+      final FileRegion region = new DefaultFileRegion(raf.getChannel(), start, length);
+      ChannelFuture writeFuture = ch.write(region);
+      writeFuture.addListener(new ChannelFutureProgressListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) {
+          region.releaseExternalResources();
+        }
+
+        @Override
+        public void operationProgressed(ChannelFuture arg0, long arg1, long arg2, long arg3) throws Exception {
+          // Do nothing
+        }
+      });
+
+      return writeFuture;
     }
+  }
 
-    if (range.end < range.begin) {
+  /**
+   * Open a file for reading.
+   *
+   * @param file
+   *          the file
+   *
+   * @return the opened file, or {@code null} if it no longer exists
+   */
+  private RandomAccessFile openFile(File file) {
+    try {
+      return new RandomAccessFile(file, "r");
+    } catch (FileNotFoundException fnfe) {
       return null;
     }
+  }
 
-    if (range.end >= availableLength) {
-      throw new SimpleInteractiveSpacesException(String.format(
-          "Unsupported HTTP range header, length requested is more than actual length: %s", rangeHeader));
+  /**
+   * Respond to a request where none of the requested ranges are in the file.
+   *
+   * @param ctx
+   *          the context for the request
+   * @param request
+   *          the request
+   * @param fileLength
+   *          the length of the file
+   * @param originalUrl
+   *          the URL originally requested
+   */
+  private void sendRangeNotSatisfiable(ChannelHandlerContext ctx, HttpRequest request, long fileLength,
+      String originalUrl) {
+    HttpResponseStatus status = HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+    parentHandler.getWebServer().getLog().warn(String.format("[%s] HTTP %s --> (Range %s not in %d bytes)",
+        status.getCode(), originalUrl, getHeader(request, HttpHeaders.Names.RANGE), fileLength));
+
+    HttpResponse response = new DefaultHttpResponse(HTTP_1_1, status);
+    HttpHeaders.setHeader(response, HttpHeaders.Names.CONTENT_RANGE,
+        NettyHttpByteRange.getUnsatisfiedContentRange(fileLength));
+    setContentLength(response, 0);
+    closeIfNotKeepAlive(request, ctx.getChannel().write(response));
+  }
+
+  /**
+   * Respond to a request for a file which does not exist.
+   *
+   * @param ctx
+   *          the context for the request
+   * @param request
+   *          the request
+   * @param cookiesToAdd
+   *          cookies to add to the response, can be {@code null}
+   * @param originalUrl
+   *          the URL originally requested
+   *
+   * @throws IOException
+   *           the fallback handler could not respond
+   */
+  private void handleFileNotFound(ChannelHandlerContext ctx, HttpRequest request, Set<HttpCookie> cookiesToAdd,
+      String originalUrl) throws IOException {
+    if (fallbackHandler != null) {
+      fallbackHandler.handleWebRequest(ctx, request, cookiesToAdd);
+    } else {
+      HttpResponseStatus status = HttpResponseStatus.NOT_FOUND;
+      parentHandler.getWebServer().getLog().warn(
+              String.format("HTTP [%s] %s --> (File Not Found)", status.getCode(), originalUrl));
+      parentHandler.sendError(ctx, status);
     }
+  }
 
-    return range;
+  /**
+   * Get the content of a file from the server's static content cache.
+   *
+   * @param file
+   *          the file
+   * @param fileLength
+   *          the current length of the file
+   * @param lastModified
+   *          the current modification time of the file
+   *
+   * @return the complete content of the file, or {@code null} if the file has to be read from disk
+   */
+  private ChannelBuffer getCachedContent(File file, long fileLength, long lastModified) {
+    try {
+      return parentHandler.getWebServer().getStaticContentCache().getContent(file, fileLength, lastModified);
+    } catch (IOException e) {
+      parentHandler.getWebServer().getLog().warn(
+          String.format("Unable to cache static content file %s", file.getAbsolutePath()), e);
+      return null;
+    }
   }
 
   /**
-   * Allow files linked outside the root filesystem to be accessed.
+   * Get the gzip compressed content of a file from the server's static content cache.
    *
-   * @param allowLinks
-   *          {@code true} if following links should be allowed
+   * @param file
+   *          the file
+   * @param fileLength
+   *          the current length of the file
+   * @param lastModified
+   *          the current modification time of the file
+   *
+   * @return the compressed content of the file, or {@code null} if the file has to be sent uncompressed
    */
-  public void setAllowLinks(boolean allowLinks) {
-    this.allowLinks = allowLinks;
+  private ChannelBuffer getCachedGzippedContent(File file, long fileLength, long lastModified) {
+    try {
+      return parentHandler.getWebServer().getStaticContentCache().getGzippedContent(file, fileLength, lastModified);
+    } catch (IOException e) {
+      parentHandler.getWebServer().getLog().warn(
+          String.format("Unable to cache compressed static content file %s", file.getAbsolutePath()), e);
+      return null;
+    }
   }
 
   /**
-   * An HTTP range request.
+   * Check if a file should be compressed on the fly.
+   *
+   * @param request
+   *          the request
+   * @param fileLength
+   *          the length of the file
    *
-   * @author Keith M. Hughes
+   * @return {@code true} if compression is on, the file is large enough and the client accepts gzip
    */
-  public static class RangeRequest {
+  private boolean shouldCompress(HttpRequest request, long fileLength) {
+    int threshold = parentHandler.getWebServer().getHttpCompressionThreshold();
 
-    /**
-     * The position of the first byte in the request.
-     */
-    private long begin;
+    return threshold != WebServer.HTTP_COMPRESSION_DISABLED && fileLength >= threshold
+        && NettyHttpContentEncoding.isAcceptedEncoding(request, NettyHttpContentEncoding.CONTENT_ENCODING_GZIP);
+  }
 
-    /**
-     * The position of the last byte in the request.
-     */
-    private long end;
+  /**
+   * Close the connection once a response has been written unless the request asked for the connection to be kept
+   * alive.
+   *
+   * @param request
+   *          the request
+   * @param writeFuture
+   *          the future for the last write of the response
+   */
+  private void closeIfNotKeepAlive(HttpRequest request, ChannelFuture writeFuture) {
+    if (!isKeepAlive(request)) {
+      // Close the connection when the whole content is written out.
+      writeFuture.addListener(ChannelFutureListener.CLOSE);
+    }
+  }
 
-    /**
-     * Get the number of bytes in the range.
-     *
-     * @return the number of bytes in the range
-     */
-    long getRangeLength() {
-      return end - begin + 1;
+  /**
+   * Get the entity tag for a version of a file.
+   *
+   * @param fileLength
+   *          the length of the file
+   * @param lastModified
+   *          the modification time of the file
+   * @param contentEncoding
+   *          the encoding the file is sent with, can be {@code null}
+   *
+   * @return the quoted entity tag
+   */
+  static String getEntityTag(long fileLength, long lastModified, String contentEncoding) {
+    StringBuilder entityTag = new StringBuilder("\"").append(Long.toHexString(lastModified))
+        .append(CONTENT_RANGE_RANGE_SEPARATOR).append(Long.toHexString(fileLength));
+    if (contentEncoding != null) {
+      entityTag.append(CONTENT_RANGE_RANGE_SEPARATOR).append(contentEncoding);
     }
+
+    return entityTag.append('"').toString();
+  }
+
+  /**
+   * Check if the client already has the current version of a file.
+   *
+   * <p>
+   * {@code If-None-Match} takes precedence over {@code If-Modified-Since} when a request has both.
+   *
+   * @param request
+   *          the request
+   * @param entityTag
+   *          the entity tag of the file
+   * @param lastModified
+   *          the modification time of the file
+   *
+   * @return {@code true} if the client's copy is current
+   */
+  static boolean isNotModified(HttpRequest request, String entityTag, long lastModified) {
+    String ifNoneMatch = getHeader(request, HttpHeaders.Names.IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      for (String candidate : ifNoneMatch.split(",")) {
+        candidate = candidate.trim();
+        if (candidate.startsWith(WEAK_ENTITY_TAG_PREFIX)) {
+          candidate = candidate.substring(WEAK_ENTITY_TAG_PREFIX.length());
+        }
+        if (ENTITY_TAG_WILDCARD.equals(candidate) || entityTag.equals(candidate)) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+
+    String ifModifiedSince = getHeader(request, HttpHeaders.Names.IF_MODIFIED_SINCE);
+    if (ifModifiedSince != null) {
+      try {
+        // HTTP dates only have a resolution of seconds.
+        long since = HTTP_DATE_FORMAT.get().parse(ifModifiedSince).getTime();
+        return lastModified / MILLISECONDS_PER_SECOND <= since / MILLISECONDS_PER_SECOND;
+      } catch (ParseException e) {
+        return false;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Check if the ranges in a request can be used with the current version of a file.
+   *
+   * <p>
+   * An {@code If-Range} header only matches a strong entity tag or the exact modification time of the file. When it
+   * does not match, the client gets the whole file.
+   *
+   * @param request
+   *          the request
+   * @param entityTag
+   *          the entity tag of the file
+   * @param lastModified
+   *          the modification time of the file
+   *
+   * @return {@code true} if there is no {@code If-Range} header or it matches the file
+   */
+  static boolean isIfRangeMatched(HttpRequest request, String entityTag, long lastModified) {
+    String ifRange = getHeader(request, HttpHeaders.Names.IF_RANGE);
+    if (ifRange == null) {
+      return true;
+    }
+
+    ifRange = ifRange.trim();
+    if (ifRange.startsWith(WEAK_ENTITY_TAG_PREFIX)) {
+      return false;
+    } else if (ifRange.startsWith("\"")) {
+      return ifRange.equals(entityTag);
+    }
+
+    try {
+      // HTTP dates only have a resolution of seconds.
+      long date = HTTP_DATE_FORMAT.get().parse(ifRange).getTime();
+      return lastModified / MILLISECONDS_PER_SECOND == date / MILLISECONDS_PER_SECOND;
+    } catch (ParseException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Set the MIME type of the content, if we can.
+   *
+   * @param filepath
+   *          the filepath for the content
+   * @param response
+   *          the HTTP response
+   */
+  private void setMimeType(String filepath, HttpResponse response) {
+    if (mimeResolver != null) {
+      String mimeType = mimeResolver.resolve(filepath);
+      if (mimeType != null) {
+        HttpHeaders.setHeader(response, HttpHeaders.Names.CONTENT_TYPE, mimeType);
+      }
+    }
+  }
+
+  /**
+   * Allow files linked outside the root filesystem to be accessed.
+   *
+   * @param allowLinks
+   *          {@code true} if following links should be allowed
+   */
+  public void setAllowLinks(boolean allowLinks) {
+    this.allowLinks = allowLinks;
   }
 }
@@ -20,6 +20,7 @@ import static org.jboss.netty.channel.Channels.pipeline;
 
 import interactivespaces.InteractiveSpacesException;
 import interactivespaces.SimpleInteractiveSpacesException;
+import interactivespaces.service.web.WebSocketConnection;
 import interactivespaces.service.web.server.HttpAuthProvider;
 import interactivespaces.service.web.server.HttpDynamicPostRequestHandler;
 import interactivespaces.service.web.server.HttpDynamicRequestHandler;
@@ -28,6 +29,8 @@ import interactivespaces.service.web.server.HttpStaticContentRequestHandler;
 import interactivespaces.service.web.server.WebResourceAccessManager;
 import interactivespaces.service.web.server.WebServer;
 import interactivespaces.service.web.server.WebServerWebSocketHandlerFactory;
+import interactivespaces.service.web.server.WebSocketOverflowPolicy;
+import interactivespaces.util.metrics.LatencyHistogram;
 import interactivespaces.util.net.NetworkBindSimpleInteractiveSpacesException;
 import interactivespaces.util.web.MimeResolver;
 
@@ -166,6 +169,48 @@ public class NettyWebServer implements WebServer {
    */
   private List<HttpDynamicPostRequestHandler> dynamicPostRequestHandlers = Lists.newArrayList();
 
+  /**
+   * The maximum number of messages each web socket connection will queue.
+   */
+  private volatile int webSocketOutboundQueueCapacity = WEBSOCKET_OUTBOUND_QUEUE_CAPACITY_DEFAULT;
+
+  /**
+   * What a web socket connection does when its outbound queue is full.
+   */
+  private volatile WebSocketOverflowPolicy webSocketOverflowPolicy = WEBSOCKET_OVERFLOW_POLICY_DEFAULT;
+
+  /**
+   * The smallest web socket message size, in bytes, which will be compressed.
+   */
+  private volatile int webSocketCompressionThreshold = WebSocketConnection.COMPRESSION_THRESHOLD_DEFAULT;
+
+  /**
+   * The in-memory cache for small static files, shared by all static content handlers.
+   */
+  private volatile NettyStaticContentCache staticContentCache = new NettyStaticContentCache(
+      STATIC_CONTENT_CACHE_CAPACITY_DEFAULT, STATIC_CONTENT_CACHE_MAXIMUM_FILE_SIZE_DEFAULT);
+
+  /**
+   * The smallest HTTP response size, in bytes, which will be compressed.
+   */
+  private volatile int httpCompressionThreshold = HTTP_COMPRESSION_THRESHOLD_DEFAULT;
+
+  /**
+   * The number of threads for dynamic requests, {@link #DYNAMIC_REQUEST_EXECUTION_DISABLED} if dynamic requests run on
+   * the Netty I/O threads.
+   */
+  private int dynamicRequestThreads = DYNAMIC_REQUEST_EXECUTION_DISABLED;
+
+  /**
+   * The maximum number of requests each dynamic handler can have waiting or running.
+   */
+  private int dynamicRequestMaximumPending;
+
+  /**
+   * How long a dynamic request can take, in milliseconds.
+   */
+  private long dynamicRequestTimeout;
+
   /**
    * Create a web server using a singular thread pool.
    *
@@ -198,6 +243,10 @@ public class NettyWebServer implements WebServer {
 
   @Override
   public void startup() {
+    if (dynamicRequestThreads != DYNAMIC_REQUEST_EXECUTION_DISABLED) {
+      serverHandler.setDynamicRequestExecutor(new NettyHttpDynamicRequestExecutor(serverHandler, dynamicRequestThreads,
+          dynamicRequestMaximumPending, dynamicRequestTimeout, workerThreadPool));
+    }
 
     allChannels = new DefaultChannelGroup(serverName);
 
@@ -266,6 +315,8 @@ public class NettyWebServer implements WebServer {
       bootstrap.shutdown();
       bootstrap = null;
     }
+
+    serverHandler.setDynamicRequestExecutor(null);
   }
 
   @Override
@@ -287,7 +338,7 @@ public class NettyWebServer implements WebServer {
 
     NettyHttpDynamicGetRequestHandlerHandler fallbackNettyHandler =
         fallbackHandler == null ? null : new NettyHttpDynamicGetRequestHandlerHandler(serverHandler, uriPrefix, false,
-            fallbackHandler, extraHttpContentHeaders);
+            fallbackHandler, extraHttpContentHeaders, DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT);
 
     NettyStaticContentHandler staticContentHandler =
         new NettyStaticContentHandler(serverHandler, uriPrefix, baseDir, extraHttpContentHeaders, fallbackNettyHandler);
@@ -310,8 +361,15 @@ public class NettyWebServer implements WebServer {
   @Override
   public void addDynamicContentHandler(String uriPrefix, boolean usePath, HttpDynamicRequestHandler handler,
       Map<String, String> extraHttpContentHeaders) {
+    addDynamicContentHandler(uriPrefix, usePath, handler, extraHttpContentHeaders,
+        DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT);
+  }
+
+  @Override
+  public void addDynamicContentHandler(String uriPrefix, boolean usePath, HttpDynamicRequestHandler handler,
+      Map<String, String> extraHttpContentHeaders, long timeout) {
     serverHandler.addHttpGetRequestHandler(new NettyHttpDynamicGetRequestHandlerHandler(serverHandler, uriPrefix,
-        usePath, handler, extraHttpContentHeaders));
+        usePath, handler, extraHttpContentHeaders, timeout));
     dynamicGetRequestHandlers.add(handler);
   }
 
@@ -323,8 +381,15 @@ public class NettyWebServer implements WebServer {
   @Override
   public void addDynamicPostRequestHandler(String uriPrefix, boolean usePath, HttpDynamicPostRequestHandler handler,
       Map<String, String> extraHttpContentHeaders) {
+    addDynamicPostRequestHandler(uriPrefix, usePath, handler, extraHttpContentHeaders,
+        DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT);
+  }
+
+  @Override
+  public void addDynamicPostRequestHandler(String uriPrefix, boolean usePath, HttpDynamicPostRequestHandler handler,
+      Map<String, String> extraHttpContentHeaders, long timeout) {
     serverHandler.addHttpPostRequestHandler(new NettyHttpDynamicPostRequestHandlerHandler(serverHandler, uriPrefix,
-        usePath, handler, extraHttpContentHeaders));
+        usePath, handler, extraHttpContentHeaders, timeout));
     dynamicPostRequestHandlers.add(handler);
   }
 
@@ -409,6 +474,119 @@ public class NettyWebServer implements WebServer {
     return debugMode;
   }
 
+  @Override
+  public void setWebSocketOutboundQueue(int capacity, WebSocketOverflowPolicy overflowPolicy) {
+    if (capacity < 1) {
+      throw new SimpleInteractiveSpacesException(String.format(
+          "Web socket outbound queue capacity must be at least 1, was %d", capacity));
+    }
+
+    webSocketOutboundQueueCapacity = capacity;
+    webSocketOverflowPolicy = overflowPolicy;
+  }
+
+  /**
+   * Get the maximum number of messages each web socket connection will queue.
+   *
+   * @return the queue capacity
+   */
+  public int getWebSocketOutboundQueueCapacity() {
+    return webSocketOutboundQueueCapacity;
+  }
+
+  /**
+   * Get what a web socket connection does when its outbound queue is full.
+   *
+   * @return the overflow policy
+   */
+  public WebSocketOverflowPolicy getWebSocketOverflowPolicy() {
+    return webSocketOverflowPolicy;
+  }
+
+  @Override
+  public void setWebSocketCompressionThreshold(int threshold) {
+    webSocketCompressionThreshold = threshold;
+  }
+
+  /**
+   * Get the smallest web socket message size which will be compressed.
+   *
+   * @return the threshold in bytes, or {@link WebSocketConnection#COMPRESSION_DISABLED} if compression is off
+   */
+  public int getWebSocketCompressionThreshold() {
+    return webSocketCompressionThreshold;
+  }
+
+  @Override
+  public void setStaticContentCache(long capacity, int maximumFileSize) {
+    if (capacity < 0) {
+      throw new SimpleInteractiveSpacesException(String.format(
+          "Static content cache capacity cannot be negative, was %d", capacity));
+    }
+
+    staticContentCache = new NettyStaticContentCache(capacity, maximumFileSize);
+  }
+
+  /**
+   * Get the in-memory cache for small static files.
+   *
+   * @return the cache
+   */
+  public NettyStaticContentCache getStaticContentCache() {
+    return staticContentCache;
+  }
+
+  @Override
+  public void setHttpCompressionThreshold(int threshold) {
+    httpCompressionThreshold = threshold;
+  }
+
+  /**
+   * Get the smallest HTTP response size which will be compressed.
+   *
+   * @return the threshold in bytes, or {@link #HTTP_COMPRESSION_DISABLED} if compression is off
+   */
+  public int getHttpCompressionThreshold() {
+    return httpCompressionThreshold;
+  }
+
+  @Override
+  public void setDynamicRequestExecution(int threads, int maximumPendingRequests, long timeout) {
+    if (threads < 0 || (threads != DYNAMIC_REQUEST_EXECUTION_DISABLED && maximumPendingRequests < 1)) {
+      throw new SimpleInteractiveSpacesException(String.format(
+          "Illegal dynamic request execution settings, %d threads and %d pending requests", threads,
+          maximumPendingRequests));
+    }
+
+    dynamicRequestThreads = threads;
+    dynamicRequestMaximumPending = maximumPendingRequests;
+    dynamicRequestTimeout = timeout;
+  }
+
+  @Override
+  public void setHttpUploadLimits(long memoryThreshold, long maximumSize) {
+    if (memoryThreshold < 0 || (maximumSize < 0 && maximumSize != HTTP_UPLOAD_SIZE_UNLIMITED)) {
+      throw new SimpleInteractiveSpacesException(String.format(
+          "Illegal HTTP upload limits, memory threshold %d and maximum size %d", memoryThreshold, maximumSize));
+    }
+
+    serverHandler.setHttpUploadLimits(memoryThreshold, maximumSize);
+  }
+
+  /**
+   * Get the executor for dynamic requests.
+   *
+   * @return the executor, or {@code null} if dynamic requests run on the Netty I/O threads
+   */
+  public NettyHttpDynamicRequestExecutor getDynamicRequestExecutor() {
+    return serverHandler.getDynamicRequestExecutor();
+  }
+
+  @Override
+  public LatencyHistogram getRequestRoutingTimes() {
+    return serverHandler.getRequestRoutingTimes();
+  }
+
   @Override
   public boolean isSecureServer() {
     return secureServer;
@@ -29,15 +29,18 @@ import static org.jboss.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import interactivespaces.InteractiveSpacesExceptionUtils;
 import interactivespaces.SimpleInteractiveSpacesException;
 import interactivespaces.service.web.HttpConstants;
+import interactivespaces.service.web.WebSocketConnection;
+import interactivespaces.service.web.internal.netty.NettyPerMessageDeflateHandler;
 import interactivespaces.service.web.server.HttpAuthProvider;
 import interactivespaces.service.web.server.HttpAuthResponse;
 import interactivespaces.service.web.server.HttpFileUploadListener;
 import interactivespaces.service.web.server.WebResourceAccessManager;
 import interactivespaces.service.web.server.WebServer;
 import interactivespaces.service.web.server.WebServerWebSocketHandlerFactory;
+import interactivespaces.util.metrics.LatencyHistogram;
+import interactivespaces.util.web.UriPrefixTrie;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 
@@ -70,7 +73,6 @@ import org.jboss.netty.util.CharsetUtil;
 import java.io.IOException;
 import java.net.HttpCookie;
 import java.net.URI;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -85,14 +87,6 @@ import java.util.Set;
  */
 public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
 
-  /**
-   * Factory for HTTP data objects. Used for post events.
-   *
-   * <p>
-   * The factory will keep all in memory until it gets too big, then writes to disk.
-   */
-  private static final HttpDataFactory HTTP_DATA_FACTORY = new DefaultHttpDataFactory(true);
-
   /**
    * Exception message when WebSocket connections are closed.
    */
@@ -109,20 +103,49 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
   private String fullWebSocketUriPrefix;
 
   /**
-   * All GET request handlers handled by this instance.
+   * All GET request handlers handled by this instance, indexed by their URI prefixes.
+   */
+  private final UriPrefixTrie<NettyHttpGetRequestHandler> httpGetRequestHandlers =
+      new UriPrefixTrie<NettyHttpGetRequestHandler>();
+
+  /**
+   * All POST request handlers handled by this instance, indexed by their URI prefixes.
    */
-  private List<NettyHttpGetRequestHandler> httpGetRequestHandlers = Lists.newArrayList();
+  private final UriPrefixTrie<NettyHttpPostRequestHandler> httpPostRequestHandlers =
+      new UriPrefixTrie<NettyHttpPostRequestHandler>();
 
   /**
-   * All POST request handlers handled by this instance.
+   * The times taken to find the handler for a request, in nanoseconds.
    */
-  private List<NettyHttpPostRequestHandler> httpPostRequestHandlers = Lists.newArrayList();
+  private final LatencyHistogram requestRoutingTimes = new LatencyHistogram();
+
+  /**
+   * The executor for dynamic requests.
+   *
+   * <p>
+   * Can be {@code null}, in which case dynamic requests are handled on the Netty I/O threads.
+   */
+  private volatile NettyHttpDynamicRequestExecutor dynamicRequestExecutor;
 
   /**
    * Map of Netty channel IDs to web socket handlers.
    */
   private Map<Integer, NettyWebServerWebSocketConnection> webSocketConnections = Maps.newConcurrentMap();
 
+  /**
+   * Factory for HTTP data objects. Used for post events.
+   *
+   * <p>
+   * The factory will keep each part of an upload in memory until it gets too big, then writes it to disk.
+   */
+  private volatile HttpDataFactory httpDataFactory = new DefaultHttpDataFactory(
+      WebServer.HTTP_UPLOAD_MEMORY_THRESHOLD_DEFAULT);
+
+  /**
+   * The largest upload, in bytes, which will be accepted.
+   */
+  private volatile long httpUploadMaximumSize = WebServer.HTTP_UPLOAD_SIZE_UNLIMITED;
+
   /**
    * Map of Netty channel IDs to file uploads.
    */
@@ -187,21 +210,106 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
   /**
    * Register a new GET request handler to the server.
    *
+   * <p>
+   * Requests go to the handler with the longest matching URI prefix. Handlers with the same prefix are tried in the
+   * order they were added.
+   *
    * @param handler
    *          the handler to add
    */
   public void addHttpGetRequestHandler(NettyHttpGetRequestHandler handler) {
-    httpGetRequestHandlers.add(handler);
+    httpGetRequestHandlers.add(handler.getUriPrefix(), handler);
   }
 
   /**
    * Register a new POST request handler to the server.
    *
+   * <p>
+   * Requests go to the handler with the longest matching URI prefix. Handlers with the same prefix are tried in the
+   * order they were added.
+   *
    * @param handler
    *          the handler to add
    */
   public void addHttpPostRequestHandler(NettyHttpPostRequestHandler handler) {
-    httpPostRequestHandlers.add(handler);
+    httpPostRequestHandlers.add(handler.getUriPrefix(), handler);
+  }
+
+  /**
+   * Set the executor for dynamic requests.
+   *
+   * <p>
+   * Any previous executor is shut down.
+   *
+   * @param dynamicRequestExecutor
+   *          the executor, can be {@code null} to handle dynamic requests on the Netty I/O threads
+   */
+  public void setDynamicRequestExecutor(NettyHttpDynamicRequestExecutor dynamicRequestExecutor) {
+    NettyHttpDynamicRequestExecutor oldExecutor = this.dynamicRequestExecutor;
+    this.dynamicRequestExecutor = dynamicRequestExecutor;
+    if (oldExecutor != null) {
+      oldExecutor.shutdown();
+    }
+  }
+
+  /**
+   * Get the executor for dynamic requests.
+   *
+   * @return the executor, or {@code null} if dynamic requests are handled on the Netty I/O threads
+   */
+  public NettyHttpDynamicRequestExecutor getDynamicRequestExecutor() {
+    return dynamicRequestExecutor;
+  }
+
+  /**
+   * Handle a dynamic request, in the dynamic request executor if there is one.
+   *
+   * @param context
+   *          the context for the request
+   * @param handler
+   *          the handler the request is for
+   * @param timeout
+   *          how long the request can take, in milliseconds, {@code 0} for no limit, or
+   *          {@link WebServer#DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT}
+   * @param request
+   *          the request
+   * @param cleanup
+   *          what to do if the request is never run, can be {@code null}
+   *
+   * @return {@code true} if the request was run or will be run, {@code false} if it was turned away
+   */
+  public boolean executeDynamicRequest(ChannelHandlerContext context, Object handler, long timeout,
+      Runnable request, Runnable cleanup) {
+    NettyHttpDynamicRequestExecutor executor = dynamicRequestExecutor;
+    if (executor != null) {
+      return executor.execute(context, handler, timeout, request, cleanup);
+    } else {
+      request.run();
+
+      return true;
+    }
+  }
+
+  /**
+   * Set the limits for HTTP uploads.
+   *
+   * @param memoryThreshold
+   *          the largest part of an upload, in bytes, which is kept in memory
+   * @param maximumSize
+   *          the largest upload, in bytes, which will be accepted, or {@link WebServer#HTTP_UPLOAD_SIZE_UNLIMITED}
+   */
+  public void setHttpUploadLimits(long memoryThreshold, long maximumSize) {
+    httpDataFactory = new DefaultHttpDataFactory(memoryThreshold);
+    httpUploadMaximumSize = maximumSize;
+  }
+
+  /**
+   * Get the times taken to find the handler for a request.
+   *
+   * @return the routing times, in nanoseconds
+   */
+  public LatencyHistogram getRequestRoutingTimes() {
+    return requestRoutingTimes;
   }
 
   /**
@@ -257,8 +365,28 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
     webServer.channelOpened(e.getChannel());
   }
 
+  @Override
+  public void channelInterestChanged(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    Channel channel = e.getChannel();
+    if (channel.isWritable()) {
+      NettyWebServerWebSocketConnection connection;
+      synchronized (channelLock) {
+        connection = webSocketConnections.get(channel.getId());
+      }
+      if (connection != null) {
+        connection.writeQueuedFrames();
+      }
+    }
+  }
+
   @Override
   public void channelDisconnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    // An upload which never finished leaves temporary files behind.
+    NettyHttpFileUpload fileUpload = fileUploadHandlers.remove(e.getChannel().getId());
+    if (fileUpload != null) {
+      fileUpload.clean();
+    }
+
     // No need to tell web server that channel closed, it handles cleanup
     // itself.
     webSocketChannelClosing(e.getChannel());
@@ -347,23 +475,44 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
         cookies = authResponse.getCookies();
       }
 
-      for (NettyHttpGetRequestHandler handler : httpGetRequestHandlers) {
-        if (handler.isHandledBy(request)) {
-          try {
-            handler.handleWebRequest(context, request, cookies);
-          } catch (Exception e) {
-            webServer.getLog().error(String.format("Exception when handling web request %s", request.getUri()), e);
-          }
-
-          return true;
+      NettyHttpGetRequestHandler handler = locateGetRequestHandler(request);
+      if (handler != null) {
+        try {
+          handler.handleWebRequest(context, request, cookies);
+        } catch (Exception e) {
+          webServer.getLog().error(String.format("Exception when handling web request %s", request.getUri()), e);
         }
 
+        return true;
       }
     }
 
     return false;
   }
 
+  /**
+   * Locate a registered GET request handler that can handle the given request.
+   *
+   * @param nettyRequest
+   *          the Netty request
+   *
+   * @return the handler with the longest matching prefix that handles the request, or {@code null} if none
+   */
+  private NettyHttpGetRequestHandler locateGetRequestHandler(HttpRequest nettyRequest) {
+    long start = System.nanoTime();
+    try {
+      for (NettyHttpGetRequestHandler handler : httpGetRequestHandlers.getMatches(nettyRequest.getUri())) {
+        if (handler.isHandledBy(nettyRequest)) {
+          return handler;
+        }
+      }
+
+      return null;
+    } finally {
+      requestRoutingTimes.record(System.nanoTime() - start);
+    }
+  }
+
   /**
    * Attempt to handle an HTTP PUT request.
    *
@@ -399,10 +548,19 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
       cookies = authResponse.getCookies();
     }
 
+    long maximumSize = httpUploadMaximumSize;
+    if (maximumSize != WebServer.HTTP_UPLOAD_SIZE_UNLIMITED && HttpHeaders.getContentLength(request, 0) > maximumSize) {
+      webServer.getLog().warn(
+          String.format("HTTP upload to %s rejected, larger than %d bytes", request.getUri(), maximumSize));
+      sendError(context, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE);
+
+      return true;
+    }
+
     try {
       NettyHttpFileUpload fileUpload =
-          new NettyHttpFileUpload(request, new HttpPostRequestDecoder(HTTP_DATA_FACTORY, request), postRequestHandler,
-              this, cookies);
+          new NettyHttpFileUpload(request, new HttpPostRequestDecoder(httpDataFactory, request), postRequestHandler,
+              this, cookies, maximumSize);
 
       if (request.isChunked()) {
         // Chunked data so more coming.
@@ -427,16 +585,21 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
    * @param nettyRequest
    *          the Netty request
    *
-   * @return the first handler that handles the request, or {@code null} if none
+   * @return the handler with the longest matching prefix that handles the request, or {@code null} if none
    */
   private NettyHttpPostRequestHandler locatePostRequestHandler(HttpRequest nettyRequest) {
-    for (NettyHttpPostRequestHandler handler : httpPostRequestHandlers) {
-      if (handler.isHandledBy(nettyRequest)) {
-        return handler;
+    long start = System.nanoTime();
+    try {
+      for (NettyHttpPostRequestHandler handler : httpPostRequestHandlers.getMatches(nettyRequest.getUri())) {
+        if (handler.isHandledBy(nettyRequest)) {
+          return handler;
+        }
       }
-    }
 
-    return null;
+      return null;
+    } finally {
+      requestRoutingTimes.record(System.nanoTime() - start);
+    }
   }
 
   /**
@@ -469,6 +632,19 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
     if (handshaker == null) {
       wsFactory.sendUnsupportedWebSocketVersionResponse(channel);
     } else {
+      int compressionThreshold = webServer.getWebSocketCompressionThreshold();
+      if (compressionThreshold != WebSocketConnection.COMPRESSION_DISABLED) {
+        NettyPerMessageDeflateHandler deflateHandler =
+            NettyPerMessageDeflateHandler.newServerHandler(
+                HttpHeaders.getHeader(request, NettyPerMessageDeflateHandler.HTTP_HEADER_WEBSOCKET_EXTENSIONS),
+                compressionThreshold);
+        if (deflateHandler != null) {
+          // Added before the handshake so it can add the extension to the handshake response.
+          channel.getPipeline().addBefore(context.getName(), NettyPerMessageDeflateHandler.CHANNEL_PIPELINE_NAME,
+              deflateHandler);
+        }
+      }
+
       ChannelFuture handshake = handshaker.handshake(channel, request);
       handshake.addListener(WebSocketServerHandshaker.HANDSHAKE_LISTENER);
       handshake.addListener(new ChannelFutureListener() {
@@ -497,7 +673,10 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
     synchronized (webSocketHandshakerFactories) {
       WebSocketServerHandshakerFactory wsFactory = webSocketHandshakerFactories.get(host);
       if (wsFactory == null) {
-        wsFactory = new WebSocketServerHandshakerFactory(getWebSocketLocation(host), null, false);
+        // Extensions are allowed if web socket messages can be compressed.
+        boolean allowExtensions =
+            webServer.getWebSocketCompressionThreshold() != WebSocketConnection.COMPRESSION_DISABLED;
+        wsFactory = new WebSocketServerHandshakerFactory(getWebSocketLocation(host), null, allowExtensions);
         webSocketHandshakerFactories.put(host, wsFactory);
       }
 
@@ -530,6 +709,7 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
   private void completeWebSocketHandshake(String user, Channel channel, WebSocketServerHandshaker handshaker) {
     NettyWebServerWebSocketConnection connection =
         new NettyWebServerWebSocketConnection(channel, user, handshaker, webSocketHandlerFactory, accessManager,
+            webServer.getWebSocketOutboundQueueCapacity(), webServer.getWebSocketOverflowPolicy(),
             webServer.getLog());
 
     synchronized (channelLock) {
@@ -556,9 +736,18 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
     NettyHttpFileUpload fileUpload = fileUploadHandlers.get(context.getChannel().getId());
     if (fileUpload != null) {
       try {
-        fileUpload.addChunk(context, chunk);
+        if (!fileUpload.addChunk(context, chunk)) {
+          fileUploadHandlers.remove(context.getChannel().getId());
+          fileUpload.clean();
+
+          webServer.getLog().warn(
+              String.format("HTTP upload to %s rejected, larger than %d bytes", fileUpload.getNettyHttpRequest()
+                  .getUri(), fileUpload.getMaximumSize()));
 
-        if (chunk.isLast()) {
+          // Nothing more of the upload is wanted.
+          context.getChannel().setReadable(false);
+          sendError(context, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE);
+        } else if (chunk.isLast()) {
           fileUploadHandlers.remove(context.getChannel().getId());
 
           fileUpload.fileUploadComplete(context);
@@ -566,6 +755,7 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
       } catch (Throwable e) {
         // An error, so don't leave handler around.
         fileUploadHandlers.remove(context.getChannel().getId());
+        fileUpload.clean();
 
         webServer.getLog().error("Error while processing a chunk of file upload", e);
         sendError(context, HttpResponseStatus.INTERNAL_SERVER_ERROR);
@@ -575,6 +765,36 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
     }
   }
 
+  /**
+   * Compress the content of a response if it is large enough and the client accepts gzip.
+   *
+   * <p>
+   * Only successful responses with textual content and no content encoding of their own are compressed.
+   *
+   * @param req
+   *          the request which has come in
+   * @param res
+   *          the response which will be written, its content length is not updated
+   *
+   * @throws IOException
+   *           the content could not be compressed
+   */
+  public void compressHttpResponseContent(HttpRequest req, HttpResponse res) throws IOException {
+    int threshold = webServer.getHttpCompressionThreshold();
+    if (threshold == WebServer.HTTP_COMPRESSION_DISABLED || res.getStatus().getCode() != HttpResponseStatus.OK.getCode()
+        || res.getContent().readableBytes() < threshold
+        || HttpHeaders.getHeader(res, HttpHeaders.Names.CONTENT_ENCODING) != null
+        || !NettyHttpContentEncoding.isCompressible(HttpHeaders.getHeader(res, CONTENT_TYPE))) {
+      return;
+    }
+
+    HttpHeaders.addHeader(res, HttpHeaders.Names.VARY, HttpHeaders.Names.ACCEPT_ENCODING);
+    if (NettyHttpContentEncoding.isAcceptedEncoding(req, NettyHttpContentEncoding.CONTENT_ENCODING_GZIP)) {
+      res.setContent(NettyHttpContentEncoding.gzip(res.getContent()));
+      HttpHeaders.setHeader(res, HttpHeaders.Names.CONTENT_ENCODING, NettyHttpContentEncoding.CONTENT_ENCODING_GZIP);
+    }
+  }
+
   /**
    * Send an HTTP response to the client.
    *
@@ -591,6 +811,11 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
    */
   public void sendHttpResponse(ChannelHandlerContext ctx, HttpRequest req, HttpResponse res, boolean setContentLength,
       boolean ignoreKeepAlive) {
+    if (!claimResponse(ctx)) {
+      webServer.getLog().warn(String.format("Dropping response for %s, the request took too long", req.getUri()));
+      return;
+    }
+
     try {
       // Generate an error page if response status code is not OK (200).
       if (res.getStatus().getCode() != HttpResponseStatus.OK.getCode()) {
@@ -792,6 +1017,20 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
    *          the status to send
    */
   public void sendError(ChannelHandlerContext ctx, HttpResponseStatus status) {
+    if (claimResponse(ctx)) {
+      writeError(ctx, status);
+    }
+  }
+
+  /**
+   * Write an error to the remote machine without checking if a dynamic request has already been answered.
+   *
+   * @param ctx
+   *          handler context
+   * @param status
+   *          the status to send
+   */
+  void writeError(ChannelHandlerContext ctx, HttpResponseStatus status) {
     HttpResponse response = new DefaultHttpResponse(HTTP_1_1, status);
     HttpHeaders.setHeader(response, CONTENT_TYPE, "text/plain; charset=UTF-8");
     response.setContent(ChannelBuffers.copiedBuffer("Failure: " + status.toString() + "\r\n", CharsetUtil.UTF_8));
@@ -800,6 +1039,21 @@ public class NettyWebServerHandler extends SimpleChannelUpstreamHandler {
     ctx.getChannel().write(response).addListener(ChannelFutureListener.CLOSE);
   }
 
+  /**
+   * Check if a response can be written for a channel.
+   *
+   * @param ctx
+   *          handler context
+   *
+   * @return {@code false} if the response is for a dynamic request which has already been answered because it took
+   *         too long
+   */
+  private boolean claimResponse(ChannelHandlerContext ctx) {
+    NettyHttpDynamicRequestExecutor executor = dynamicRequestExecutor;
+
+    return executor == null || executor.claimResponse(ctx.getChannel());
+  }
+
   /**
    * Create a HTTP redirect response.
    *
@@ -20,12 +20,18 @@ import interactivespaces.service.web.WebSocketConnection;
 import interactivespaces.service.web.WebSocketHandler;
 import interactivespaces.service.web.server.WebResourceAccessManager;
 import interactivespaces.service.web.server.WebServerWebSocketHandlerFactory;
+import interactivespaces.service.web.server.WebSocketOverflowPolicy;
 import interactivespaces.util.data.json.JsonMapper;
 import interactivespaces.util.data.json.StandardJsonMapper;
 
+import com.google.common.collect.Lists;
+
 import org.apache.commons.logging.Log;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.PingWebSocketFrame;
@@ -34,9 +40,19 @@ import org.jboss.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.WebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
 /**
  * A {@link WebSocketConnection} for a Netty web socket server.
  *
+ * <p>
+ * Messages are written straight to the channel while it is writable. Once the remote endpoint falls behind and the
+ * channel stops being writable, messages wait in a bounded queue until the channel becomes writable again, and the
+ * connection's {@link WebSocketOverflowPolicy} decides what happens when the queue is full.
+ *
  * @author Keith M. Hughes
  */
 public class NettyWebServerWebSocketConnection implements WebSocketConnection {
@@ -81,6 +97,36 @@ public class NettyWebServerWebSocketConnection implements WebSocketConnection {
    */
   private StringBuilder continuationFrameData = new StringBuilder();
 
+  /**
+   * All binary continuation data seen to date.
+   */
+  private final List<ChannelBuffer> continuationBinaryFrameData = Lists.newArrayList();
+
+  /**
+   * Frames waiting for the channel to become writable.
+   */
+  private final Deque<WebSocketFrame> outboundQueue = new ArrayDeque<WebSocketFrame>();
+
+  /**
+   * The maximum number of frames in the outbound queue.
+   */
+  private final int outboundQueueCapacity;
+
+  /**
+   * What to do when the outbound queue is full.
+   */
+  private final WebSocketOverflowPolicy overflowPolicy;
+
+  /**
+   * The number of messages dropped because the outbound queue was full.
+   */
+  private long droppedMessageCount;
+
+  /**
+   * {@code true} if the outbound queue has been full since it was last empty.
+   */
+  private boolean overflowing;
+
   /**
    * Construct a new connection.
    *
@@ -94,14 +140,21 @@ public class NettyWebServerWebSocketConnection implements WebSocketConnection {
    *          the factory for creating web socket handlers
    * @param accessManager
    *          the access manager for web resources
+   * @param outboundQueueCapacity
+   *          the maximum number of messages to queue while the channel is not writable
+   * @param overflowPolicy
+   *          what to do when the outbound queue is full
    * @param log
    *          the logger for the connection
    */
   public NettyWebServerWebSocketConnection(Channel channel, String user, WebSocketServerHandshaker handshaker,
-      WebServerWebSocketHandlerFactory handlerFactory, WebResourceAccessManager accessManager, Log log) {
+      WebServerWebSocketHandlerFactory handlerFactory, WebResourceAccessManager accessManager,
+      int outboundQueueCapacity, WebSocketOverflowPolicy overflowPolicy, Log log) {
     this.channel = channel;
     this.handshaker = handshaker;
     this.accessManager = accessManager;
+    this.outboundQueueCapacity = outboundQueueCapacity;
+    this.overflowPolicy = overflowPolicy;
     this.log = log;
     this.user = user;
     handler = handlerFactory.newWebSocketHandler(this);
@@ -127,6 +180,8 @@ public class NettyWebServerWebSocketConnection implements WebSocketConnection {
       handlePingFrame(ctx, (PingWebSocketFrame) frame);
     } else if (frame instanceof TextWebSocketFrame) {
       handleTextFrameData((TextWebSocketFrame) frame);
+    } else if (frame instanceof BinaryWebSocketFrame) {
+      handleBinaryFrameData((BinaryWebSocketFrame) frame);
     } else if (frame instanceof ContinuationWebSocketFrame) {
       handleContinuationFrameData((ContinuationWebSocketFrame) frame);
     } else {
@@ -169,22 +224,44 @@ public class NettyWebServerWebSocketConnection implements WebSocketConnection {
     String text = frame.getText();
 
     if (frame.isFinalFragment()) {
-      if (isProcessingFragments()) {
+      if (isProcessingFragments() || isProcessingBinaryFragments()) {
         log.warn("Improper web socket communication, received a final text frame when in process"
             + " with continuation frames. Dropping continuation data.");
-        continuationFrameData.setLength(0);
+        clearContinuationData();
       }
 
       handleTextData(text);
     } else {
       // Text frames not labeled as final are the first frame received when there is a continuation frame.
-      continuationFrameData.setLength(0);
+      clearContinuationData();
       continuationFrameData.append(text);
     }
   }
 
   /**
-   * Is the handler processing fragmented packets?
+   * Handle binary frame data.
+   *
+   * @param frame
+   *          the binary frame
+   */
+  private void handleBinaryFrameData(BinaryWebSocketFrame frame) {
+    if (frame.isFinalFragment()) {
+      if (isProcessingFragments() || isProcessingBinaryFragments()) {
+        log.warn("Improper web socket communication, received a final binary frame when in process"
+            + " with continuation frames. Dropping continuation data.");
+        clearContinuationData();
+      }
+
+      handleBinaryData(frame.getBinaryData());
+    } else {
+      // Binary frames not labeled as final are the first frame received when there is a continuation frame.
+      clearContinuationData();
+      continuationBinaryFrameData.add(frame.getBinaryData());
+    }
+  }
+
+  /**
+   * Is the handler processing fragmented text packets?
    *
    * @return {@code true} if processing fragments
    */
@@ -192,6 +269,23 @@ public class NettyWebServerWebSocketConnection implements WebSocketConnection {
     return continuationFrameData.length() != 0;
   }
 
+  /**
+   * Is the handler processing fragmented binary packets?
+   *
+   * @return {@code true} if processing fragments
+   */
+  private boolean isProcessingBinaryFragments() {
+    return !continuationBinaryFrameData.isEmpty();
+  }
+
+  /**
+   * Drop all continuation data seen to date.
+   */
+  private void clearContinuationData() {
+    continuationFrameData.setLength(0);
+    continuationBinaryFrameData.clear();
+  }
+
   /**
    * Handle continuation frame data.
    *
@@ -199,6 +293,20 @@ public class NettyWebServerWebSocketConnection implements WebSocketConnection {
    *          the continuation frame
    */
   private void handleContinuationFrameData(ContinuationWebSocketFrame frame) {
+    if (isProcessingBinaryFragments()) {
+      // All data coming in from the first binary frame that was marked non final.
+      continuationBinaryFrameData.add(frame.getBinaryData());
+      if (frame.isFinalFragment()) {
+        ChannelBuffer data =
+            ChannelBuffers.wrappedBuffer(continuationBinaryFrameData
+                .toArray(new ChannelBuffer[continuationBinaryFrameData.size()]));
+        continuationBinaryFrameData.clear();
+        handleBinaryData(data);
+      }
+
+      return;
+    }
+
     // All data coming in from the first text frame that was marked non final.
     continuationFrameData.append(frame.getText());
     if (frame.isFinalFragment()) {
@@ -229,10 +337,32 @@ public class NettyWebServerWebSocketConnection implements WebSocketConnection {
     }
   }
 
+  /**
+   * Handle the complete data from binary frames.
+   *
+   * <p>
+   * This includes concatenated continuation frame data.
+   *
+   * @param data
+   *          the complete data of the message
+   */
+  private void handleBinaryData(ChannelBuffer data) {
+    if (accessManager != null) {
+      if (!accessManager.allowWebsocketCall(getUser(), null)) {
+        return;
+      }
+    }
+    try {
+      handler.onReceiveBinary(data.toByteBuffer());
+    } catch (Exception e) {
+      log.error("Could not process binary web socket frame", e);
+    }
+  }
+
   @Override
   public void writeDataAsJson(Object data) {
     try {
-      channel.write(new TextWebSocketFrame(MAPPER.toString(data)));
+      writeFrame(new TextWebSocketFrame(MAPPER.toString(data)));
     } catch (Exception e) {
       log.error("Could not write JSON object on web socket", e);
     }
@@ -241,12 +371,114 @@ public class NettyWebServerWebSocketConnection implements WebSocketConnection {
   @Override
   public void writeDataAsString(String data) {
     try {
-      channel.write(new TextWebSocketFrame(data));
+      writeFrame(new TextWebSocketFrame(data));
     } catch (Exception e) {
       log.error("Could not write string data on web socket", e);
     }
   }
 
+  @Override
+  public void writeEncodedText(byte[] data) {
+    try {
+      // The wrapping buffer has its own indexes but shares the array, so no copy is made.
+      writeFrame(new TextWebSocketFrame(ChannelBuffers.wrappedBuffer(data)));
+    } catch (Exception e) {
+      log.error("Could not write encoded text data on web socket", e);
+    }
+  }
+
+  @Override
+  public void writeDataAsBinary(byte[] data) {
+    try {
+      writeFrame(new BinaryWebSocketFrame(ChannelBuffers.wrappedBuffer(data)));
+    } catch (Exception e) {
+      log.error("Could not write binary data on web socket", e);
+    }
+  }
+
+  @Override
+  public void writeDataAsBinary(ByteBuffer data) {
+    try {
+      writeFrame(new BinaryWebSocketFrame(ChannelBuffers.wrappedBuffer(data)));
+    } catch (Exception e) {
+      log.error("Could not write binary data on web socket", e);
+    }
+  }
+
+  @Override
+  public synchronized int getOutboundQueueDepth() {
+    return outboundQueue.size();
+  }
+
+  /**
+   * Get the number of messages dropped because the outbound queue was full.
+   *
+   * @return the number of dropped messages
+   */
+  public synchronized long getDroppedMessageCount() {
+    return droppedMessageCount;
+  }
+
+  /**
+   * Write a data frame to the channel, or queue it if the channel is not writable.
+   *
+   * @param frame
+   *          the frame to write
+   */
+  private synchronized void writeFrame(WebSocketFrame frame) {
+    if (!channel.isOpen()) {
+      return;
+    }
+
+    if (outboundQueue.isEmpty() && channel.isWritable()) {
+      channel.write(frame);
+      return;
+    }
+
+    if (outboundQueue.size() >= outboundQueueCapacity) {
+      if (!overflowing) {
+        overflowing = true;
+        log.warn(String.format("Web socket outbound queue full for user %s, %d messages waiting, policy %s", user,
+            outboundQueue.size(), overflowPolicy));
+      }
+
+      switch (overflowPolicy) {
+        case DROP:
+          droppedMessageCount++;
+          return;
+
+        case DROP_OLDEST:
+          outboundQueue.poll();
+          droppedMessageCount++;
+          break;
+
+        case DISCONNECT:
+        default:
+          outboundQueue.clear();
+          channel.close();
+          return;
+      }
+    }
+
+    outboundQueue.add(frame);
+  }
+
+  /**
+   * Write queued frames to the channel for as long as it stays writable.
+   *
+   * <p>
+   * This is called when the channel has become writable again.
+   */
+  public synchronized void writeQueuedFrames() {
+    while (!outboundQueue.isEmpty() && channel.isWritable()) {
+      channel.write(outboundQueue.poll());
+    }
+
+    if (outboundQueue.isEmpty()) {
+      overflowing = false;
+    }
+  }
+
   @Override
   public void shutdown() {
     // The netty server handler should signal that the channel has been
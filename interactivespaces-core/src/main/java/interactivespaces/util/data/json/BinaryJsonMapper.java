@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.data.json;
+
+import interactivespaces.InteractiveSpacesException;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * A mapper between JSON-style objects and a binary encoding of them.
+ *
+ * <p>
+ * Instances of this interface are threadsafe so can be made static.
+ *
+ * @author Keith M. Hughes
+ */
+public interface BinaryJsonMapper {
+
+  /**
+   * Parse an encoded object.
+   *
+   * @param data
+   *          the encoded object
+   *
+   * @return the map, if it parsed correctly
+   *
+   * @throws InteractiveSpacesException
+   *           the data did not parse properly
+   */
+  Map<String, Object> parseObject(byte[] data) throws InteractiveSpacesException;
+
+  /**
+   * Parse an encoded object from a stream.
+   *
+   * @param data
+   *          the stream containing the encoded object
+   *
+   * @return the map, if it parsed correctly
+   *
+   * @throws InteractiveSpacesException
+   *           the data did not parse properly
+   */
+  Map<String, Object> parseObject(InputStream data) throws InteractiveSpacesException;
+
+  /**
+   * Take an object and encode it.
+   *
+   * @param data
+   *          the object to encode
+   *
+   * @return the encoded bytes
+   *
+   * @throws InteractiveSpacesException
+   *           the encoding failed
+   */
+  byte[] toBytes(Object data) throws InteractiveSpacesException;
+}
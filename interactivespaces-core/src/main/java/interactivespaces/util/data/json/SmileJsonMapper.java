@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.data.json;
+
+import interactivespaces.InteractiveSpacesException;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * A binary JSON mapper using the Smile encoding.
+ *
+ * <p>
+ * Smile keeps numbers in binary and back-references repeated keys, so it is both smaller and cheaper to parse than
+ * JSON text, especially for large numeric arrays.
+ *
+ * @author Keith M. Hughes
+ */
+public class SmileJsonMapper implements BinaryJsonMapper {
+
+  /**
+   * A global mapper everyone can use.
+   */
+  public static final BinaryJsonMapper INSTANCE = new SmileJsonMapper();
+
+  /**
+   * The Smile mapper.
+   */
+  private static final ObjectMapper MAPPER = new ObjectMapper(new SmileFactory());
+
+  @Override
+  public Map<String, Object> parseObject(byte[] data) throws InteractiveSpacesException {
+    try {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> map = MAPPER.readValue(data, Map.class);
+      return map;
+    } catch (Throwable e) {
+      throw new JsonInteractiveSpacesException("Could not parse Smile data", e);
+    }
+  }
+
+  @Override
+  public Map<String, Object> parseObject(InputStream data) throws InteractiveSpacesException {
+    try {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> map = MAPPER.readValue(data, Map.class);
+      return map;
+    } catch (Throwable e) {
+      throw new JsonInteractiveSpacesException("Could not parse Smile data", e);
+    }
+  }
+
+  @Override
+  public byte[] toBytes(Object data) throws InteractiveSpacesException {
+    try {
+      return MAPPER.writeValueAsBytes(data);
+    } catch (Throwable e) {
+      throw new JsonInteractiveSpacesException("Could not serialize object as Smile", e);
+    }
+  }
+}
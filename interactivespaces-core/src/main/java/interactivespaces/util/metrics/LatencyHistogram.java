@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values, such as latencies in nanoseconds.
+ *
+ * <p>
+ * Values are kept in log-linear buckets in the style of HDR histograms. Every power of two is split into
+ * {@link #SUB_BUCKET_COUNT} equal buckets, so any value can be recovered to within 1/{@link #SUB_BUCKET_COUNT} of its
+ * size with a fixed, small amount of memory. Recording a value is a few bit operations and an atomic increment.
+ *
+ * @author Keith M. Hughes
+ */
+public class LatencyHistogram {
+
+  /**
+   * The number of bits used to pick a bucket within a power of two.
+   */
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /**
+   * The number of buckets each power of two is split into.
+   */
+  public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * The total number of buckets, enough to cover all non-negative longs.
+   */
+  private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+  /**
+   * The counts for each bucket.
+   */
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+  /**
+   * The number of values recorded.
+   */
+  private final AtomicLong count = new AtomicLong();
+
+  /**
+   * The sum of all values recorded.
+   */
+  private final AtomicLong sum = new AtomicLong();
+
+  /**
+   * The largest value recorded.
+   */
+  private final AtomicLong maximum = new AtomicLong();
+
+  /**
+   * Record a value.
+   *
+   * @param value
+   *          the value, negative values are recorded as 0
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+
+    buckets.incrementAndGet(getBucketIndex(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+
+    long currentMaximum;
+    while (value > (currentMaximum = maximum.get())) {
+      if (maximum.compareAndSet(currentMaximum, value)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Get the number of values recorded.
+   *
+   * @return the number of values
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Get the mean of the values recorded.
+   *
+   * @return the mean, or 0 if nothing has been recorded
+   */
+  public long getMean() {
+    long currentCount = count.get();
+    return (currentCount != 0) ? sum.get() / currentCount : 0;
+  }
+
+  /**
+   * Get the largest value recorded.
+   *
+   * @return the largest value, or 0 if nothing has been recorded
+   */
+  public long getMaximum() {
+    return maximum.get();
+  }
+
+  /**
+   * Get the value at a given percentile.
+   *
+   * <p>
+   * The value is the top of the bucket holding the percentile, so it is never smaller than the real value and is
+   * within the bucket precision of it.
+   *
+   * @param percentile
+   *          the percentile, from 0 to 100
+   *
+   * @return the value at the percentile, or 0 if nothing has been recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long currentCount = count.get();
+    if (currentCount == 0) {
+      return 0;
+    }
+
+    long target = Math.max(1, (long) Math.ceil(currentCount * Math.min(percentile, 100.0) / 100.0));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += buckets.get(i);
+      if (seen >= target) {
+        return Math.min(getBucketUpperBound(i), maximum.get());
+      }
+    }
+
+    return maximum.get();
+  }
+
+  /**
+   * Clear all recorded values.
+   *
+   * <p>
+   * Values recorded while the reset is happening may be partly lost.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets.set(i, 0);
+    }
+    count.set(0);
+    sum.set(0);
+    maximum.set(0);
+  }
+
+  /**
+   * Get the bucket for a value.
+   *
+   * @param value
+   *          the non-negative value
+   *
+   * @return index of the bucket
+   */
+  private static int getBucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+
+    int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /**
+   * Get the largest value that falls in a bucket.
+   *
+   * @param index
+   *          index of the bucket
+   *
+   * @return the largest value in the bucket
+   */
+  private static long getBucketUpperBound(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    long lowerBound = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+
+    return lowerBound + (1L << shift) - 1;
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics for a single input or output channel of a message route.
+ *
+ * <p>
+ * All methods are thread safe and recording never blocks.
+ *
+ * @author Keith M. Hughes
+ */
+public class RouteChannelMetrics {
+
+  /**
+   * The direction messages flow through a channel.
+   *
+   * @author Keith M. Hughes
+   */
+  public enum Direction {
+
+    /**
+     * Messages come into the activity through the channel.
+     */
+    INPUT,
+
+    /**
+     * Messages go out of the activity through the channel.
+     */
+    OUTPUT
+  }
+
+  /**
+   * The name of the owner of the channel, usually the name of an activity.
+   */
+  private final String owner;
+
+  /**
+   * The ID of the channel.
+   */
+  private final String channelId;
+
+  /**
+   * The direction of the channel.
+   */
+  private final Direction direction;
+
+  /**
+   * The number of messages through the channel.
+   */
+  private final AtomicLong messageCount = new AtomicLong();
+
+  /**
+   * The number of bytes through the channel.
+   */
+  private final AtomicLong byteCount = new AtomicLong();
+
+  /**
+   * The number of messages dropped from the channel's queues.
+   */
+  private final AtomicLong dropCount = new AtomicLong();
+
+  /**
+   * How long messages waited between arriving at the route and being handled, in nanoseconds.
+   *
+   * <p>
+   * Only used by input channels.
+   */
+  private final LatencyHistogram queueWaitTimes = new LatencyHistogram();
+
+  /**
+   * How long each message took to process, in nanoseconds.
+   *
+   * <p>
+   * This is handler time for input channels and publishing time for output channels.
+   */
+  private final LatencyHistogram processingTimes = new LatencyHistogram();
+
+  /**
+   * Construct new channel metrics.
+   *
+   * @param owner
+   *          the name of the owner of the channel
+   * @param channelId
+   *          the ID of the channel
+   * @param direction
+   *          the direction of the channel
+   */
+  public RouteChannelMetrics(String owner, String channelId, Direction direction) {
+    this.owner = owner;
+    this.channelId = channelId;
+    this.direction = direction;
+  }
+
+  /**
+   * Record a message going through the channel.
+   *
+   * @param bytes
+   *          the size of the message in bytes, negative if not known
+   * @param queueWaitNanos
+   *          how long the message waited before processing, in nanoseconds, negative if not known
+   * @param processingNanos
+   *          how long the message took to process, in nanoseconds
+   */
+  public void recordMessage(long bytes, long queueWaitNanos, long processingNanos) {
+    messageCount.incrementAndGet();
+    if (bytes > 0) {
+      byteCount.addAndGet(bytes);
+    }
+    if (queueWaitNanos >= 0) {
+      queueWaitTimes.record(queueWaitNanos);
+    }
+    processingTimes.record(processingNanos);
+  }
+
+  /**
+   * Record a message dropped from one of the channel's queues.
+   */
+  public void recordDrop() {
+    dropCount.incrementAndGet();
+  }
+
+  /**
+   * Get the name of the owner of the channel.
+   *
+   * @return the owner name
+   */
+  public String getOwner() {
+    return owner;
+  }
+
+  /**
+   * Get the ID of the channel.
+   *
+   * @return the channel ID
+   */
+  public String getChannelId() {
+    return channelId;
+  }
+
+  /**
+   * Get the direction of the channel.
+   *
+   * @return the direction
+   */
+  public Direction getDirection() {
+    return direction;
+  }
+
+  /**
+   * Get the number of messages which have gone through the channel.
+   *
+   * @return the message count
+   */
+  public long getMessageCount() {
+    return messageCount.get();
+  }
+
+  /**
+   * Get the number of bytes which have gone through the channel.
+   *
+   * <p>
+   * Only messages whose size is known are counted.
+   *
+   * @return the byte count
+   */
+  public long getByteCount() {
+    return byteCount.get();
+  }
+
+  /**
+   * Get the number of messages dropped from the channel's queues.
+   *
+   * @return the drop count
+   */
+  public long getDropCount() {
+    return dropCount.get();
+  }
+
+  /**
+   * Get the histogram of queue wait times, in nanoseconds.
+   *
+   * @return the queue wait histogram
+   */
+  public LatencyHistogram getQueueWaitTimes() {
+    return queueWaitTimes;
+  }
+
+  /**
+   * Get the histogram of processing times, in nanoseconds.
+   *
+   * @return the processing time histogram
+   */
+  public LatencyHistogram getProcessingTimes() {
+    return processingTimes;
+  }
+
+  /**
+   * Clear all metrics for the channel.
+   */
+  public void reset() {
+    messageCount.set(0);
+    byteCount.set(0);
+    dropCount.set(0);
+    queueWaitTimes.reset();
+    processingTimes.reset();
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.metrics;
+
+import java.util.List;
+
+/**
+ * A registry of the metrics for all message route channels in a container.
+ *
+ * <p>
+ * The registry lets tools such as the live activity runtime monitor show metrics for every route without knowing
+ * about the activities which own them.
+ *
+ * @author Keith M. Hughes
+ */
+public interface RouteMetricsRegistry {
+
+  /**
+   * The name of the space environment value which holds the registry for the container.
+   */
+  String ENVIRONMENT_VALUE_NAME = "environment.route.metrics";
+
+  /**
+   * Create and register metrics for an input channel.
+   *
+   * @param owner
+   *          the name of the owner of the channel
+   * @param channelId
+   *          the ID of the channel
+   *
+   * @return the metrics for the channel
+   */
+  RouteChannelMetrics newInputChannelMetrics(String owner, String channelId);
+
+  /**
+   * Create and register metrics for an output channel.
+   *
+   * @param owner
+   *          the name of the owner of the channel
+   * @param channelId
+   *          the ID of the channel
+   *
+   * @return the metrics for the channel
+   */
+  RouteChannelMetrics newOutputChannelMetrics(String owner, String channelId);
+
+  /**
+   * Remove channel metrics from the registry.
+   *
+   * <p>
+   * Does nothing if the metrics are not registered.
+   *
+   * @param metrics
+   *          the metrics to remove
+   */
+  void removeChannelMetrics(RouteChannelMetrics metrics);
+
+  /**
+   * Get all registered channel metrics.
+   *
+   * @return a snapshot of the registered metrics
+   */
+  List<RouteChannelMetrics> getAllChannelMetrics();
+}
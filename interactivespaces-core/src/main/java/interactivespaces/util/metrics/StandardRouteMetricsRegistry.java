@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.metrics;
+
+import interactivespaces.util.metrics.RouteChannelMetrics.Direction;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A standard implementation of the {@link RouteMetricsRegistry}.
+ *
+ * <p>
+ * Channels are only added and removed when routes start and stop, so a copy on write list is used.
+ *
+ * @author Keith M. Hughes
+ */
+public class StandardRouteMetricsRegistry implements RouteMetricsRegistry {
+
+  /**
+   * All registered channel metrics.
+   */
+  private final List<RouteChannelMetrics> channelMetrics = new CopyOnWriteArrayList<RouteChannelMetrics>();
+
+  @Override
+  public RouteChannelMetrics newInputChannelMetrics(String owner, String channelId) {
+    return addChannelMetrics(new RouteChannelMetrics(owner, channelId, Direction.INPUT));
+  }
+
+  @Override
+  public RouteChannelMetrics newOutputChannelMetrics(String owner, String channelId) {
+    return addChannelMetrics(new RouteChannelMetrics(owner, channelId, Direction.OUTPUT));
+  }
+
+  @Override
+  public void removeChannelMetrics(RouteChannelMetrics metrics) {
+    channelMetrics.remove(metrics);
+  }
+
+  @Override
+  public List<RouteChannelMetrics> getAllChannelMetrics() {
+    return Lists.newArrayList(channelMetrics);
+  }
+
+  /**
+   * Add new channel metrics to the registry.
+   *
+   * @param metrics
+   *          the metrics to add
+   *
+   * @return the metrics
+   */
+  private RouteChannelMetrics addChannelMetrics(RouteChannelMetrics metrics) {
+    channelMetrics.add(metrics);
+
+    return metrics;
+  }
+}
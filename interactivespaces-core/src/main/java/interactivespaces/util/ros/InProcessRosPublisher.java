@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.ros;
+
+import org.ros.node.topic.Publisher;
+
+/**
+ * A publisher which can deliver messages to subscribers in the same JVM without going through TCPROS.
+ *
+ * @param <T>
+ *          the type of the messages
+ *
+ * @author Keith M. Hughes
+ */
+public interface InProcessRosPublisher<T> {
+
+  /**
+   * Publish a message.
+   *
+   * <p>
+   * The message goes directly to the in-process subscribers if they are the only subscribers on the topic, otherwise
+   * it is published through the ROS publisher.
+   *
+   * @param message
+   *          the message to publish
+   */
+  void publish(T message);
+
+  /**
+   * Get the ROS publisher used when there are remote subscribers.
+   *
+   * @return the ROS publisher
+   */
+  Publisher<T> getRosPublisher();
+
+  /**
+   * Remove the publisher from its registry.
+   *
+   * <p>
+   * The ROS publisher is left alone and must be shut down separately.
+   */
+  void shutdown();
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.ros;
+
+import org.ros.message.MessageListener;
+import org.ros.node.topic.Publisher;
+
+/**
+ * A registry of ROS topic publishers and subscribers which live in the same JVM.
+ *
+ * <p>
+ * Publishers obtained from the registry hand messages directly to subscribers in the same JVM when every subscriber
+ * connected to the publisher is in-process. If any subscriber is in another process, or the publisher is latched,
+ * messages go out over TCPROS as usual.
+ *
+ * <p>
+ * Messages delivered in-process are not copied, so a message must not be modified once it has been published.
+ *
+ * @author Keith M. Hughes
+ */
+public interface InProcessRosTopicRegistry {
+
+  /**
+   * The name of the space environment value which holds the registry for the container.
+   */
+  String ENVIRONMENT_VALUE_NAME = "environment.ros.inprocess";
+
+  /**
+   * Add an in-process subscriber for a topic.
+   *
+   * @param topicName
+   *          the fully resolved name of the topic
+   * @param messageType
+   *          the message type for the subscriber
+   * @param nodeName
+   *          the name of the ROS node the subscriber's TCPROS connections come from
+   * @param listener
+   *          the listener which will receive messages
+   * @param <T>
+   *          the type of the messages
+   */
+  <T> void addSubscriber(String topicName, String messageType, String nodeName, MessageListener<T> listener);
+
+  /**
+   * Remove an in-process subscriber from a topic.
+   *
+   * <p>
+   * Does nothing if the listener was never added for the topic.
+   *
+   * @param topicName
+   *          the fully resolved name of the topic
+   * @param listener
+   *          the listener which was added
+   */
+  void removeSubscriber(String topicName, MessageListener<?> listener);
+
+  /**
+   * Get an in-process publisher wrapping a ROS publisher.
+   *
+   * @param publisher
+   *          the ROS publisher to use for subscribers which are not in-process
+   * @param <T>
+   *          the type of the messages
+   *
+   * @return the in-process publisher
+   */
+  <T> InProcessRosPublisher<T> newPublisher(Publisher<T> publisher);
+}
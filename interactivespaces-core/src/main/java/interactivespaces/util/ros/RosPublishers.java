@@ -16,6 +16,7 @@
 
 package interactivespaces.util.ros;
 
+import org.ros.concurrent.QueuePolicy;
 import org.ros.node.ConnectedNode;
 import org.ros.node.topic.PublisherListener;
 
@@ -39,6 +40,28 @@ public interface RosPublishers<T> extends PublisherListener<T> {
    */
   void addPublisherListener(PublisherListener<T> listener);
 
+  /**
+   * Set the registry for delivering messages to subscribers in the same process.
+   *
+   * <p>
+   * This must be called before any publishers are added to have any effect.
+   *
+   * @param inProcessRegistry
+   *          the in-process registry, can be {@code null} to always publish through TCPROS
+   */
+  void setInProcessRosTopicRegistry(InProcessRosTopicRegistry inProcessRegistry);
+
+  /**
+   * Set the policy for queueing messages waiting to be sent.
+   *
+   * <p>
+   * This must be called before any publishers are added to have any effect.
+   *
+   * @param queuePolicy
+   *          the queue policy, can be {@code null} for the ROS default
+   */
+  void setQueuePolicy(QueuePolicy<T> queuePolicy);
+
   /**
    * Add a series of publishers to a node.
    *
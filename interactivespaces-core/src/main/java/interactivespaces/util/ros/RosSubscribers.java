@@ -16,6 +16,7 @@
 
 package interactivespaces.util.ros;
 
+import org.ros.concurrent.QueuePolicy;
 import org.ros.message.MessageListener;
 import org.ros.node.ConnectedNode;
 import org.ros.node.topic.SubscriberListener;
@@ -40,6 +41,28 @@ public interface RosSubscribers<T> extends SubscriberListener<T> {
    */
   void addSubscriberListener(SubscriberListener<T> listener);
 
+  /**
+   * Set the registry for receiving messages from publishers in the same process.
+   *
+   * <p>
+   * This must be called before any subscribers are added to have any effect.
+   *
+   * @param inProcessRegistry
+   *          the in-process registry, can be {@code null} to only receive messages through TCPROS
+   */
+  void setInProcessRosTopicRegistry(InProcessRosTopicRegistry inProcessRegistry);
+
+  /**
+   * Set the policy for queueing messages waiting for the listener.
+   *
+   * <p>
+   * This must be called before any subscribers are added to have any effect.
+   *
+   * @param queuePolicy
+   *          the queue policy, can be {@code null} for the ROS default
+   */
+  void setQueuePolicy(QueuePolicy<T> queuePolicy);
+
   /**
    * Add a series of subscribers to a node.
    *
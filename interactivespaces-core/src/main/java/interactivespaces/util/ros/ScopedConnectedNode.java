@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.ros;
+
+import com.google.common.collect.Lists;
+
+import org.apache.commons.logging.Log;
+import org.ros.concurrent.CancellableLoop;
+import org.ros.exception.ServiceNotFoundException;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageSerializationFactory;
+import org.ros.message.Time;
+import org.ros.namespace.GraphName;
+import org.ros.namespace.NodeNameResolver;
+import org.ros.node.ConnectedNode;
+import org.ros.node.NodeConfiguration;
+import org.ros.node.NodeListener;
+import org.ros.node.parameter.ParameterTree;
+import org.ros.node.service.ServiceClient;
+import org.ros.node.service.ServiceResponseBuilder;
+import org.ros.node.service.ServiceServer;
+import org.ros.node.topic.Publisher;
+import org.ros.node.topic.Subscriber;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * A view of a node shared through a {@link StandardSharedRosNodeManager}.
+ *
+ * <p>
+ * Names are resolved relative to the node name from the view's own node configuration, while {@link #getName()} gives
+ * the name of the shared node, since that is the name the rest of the ROS graph sees.
+ *
+ * <p>
+ * Shutting down the view shuts down everything created through it, removes the node listeners added through it and
+ * releases the shared node. It does not signal node listeners, which belong to the shared node.
+ *
+ * @author Keith M. Hughes
+ */
+public class ScopedConnectedNode implements ConnectedNode {
+
+  /**
+   * The manager for the shared node.
+   */
+  private final StandardSharedRosNodeManager manager;
+
+  /**
+   * The shared node.
+   */
+  private final ConnectedNode sharedNode;
+
+  /**
+   * The resolver for names used through this view.
+   */
+  private final NodeNameResolver resolver;
+
+  /**
+   * The logger for this view.
+   */
+  private final Log log;
+
+  /**
+   * All publishers created through this view.
+   */
+  private final List<ScopedRosPublisher<?>> publishers = Lists.newArrayList();
+
+  /**
+   * All subscribers created through this view.
+   */
+  private final List<ScopedRosSubscriber<?>> subscribers = Lists.newArrayList();
+
+  /**
+   * All service servers created through this view.
+   */
+  private final List<ServiceServer<?, ?>> serviceServers = Lists.newArrayList();
+
+  /**
+   * All service clients created through this view.
+   */
+  private final List<ServiceClient<?, ?>> serviceClients = Lists.newArrayList();
+
+  /**
+   * All node listeners added through this view.
+   */
+  private final List<NodeListener> nodeListeners = Lists.newArrayList();
+
+  /**
+   * All loops started through this view.
+   */
+  private final List<CancellableLoop> loops = Lists.newArrayList();
+
+  /**
+   * {@code true} if the view has been shut down.
+   */
+  private boolean shutdown;
+
+  /**
+   * Construct a new scoped node.
+   *
+   * @param manager
+   *          the manager for the shared node
+   * @param sharedNode
+   *          the shared node
+   * @param nodeConfiguration
+   *          the node configuration for the view
+   */
+  ScopedConnectedNode(StandardSharedRosNodeManager manager, ConnectedNode sharedNode,
+      NodeConfiguration nodeConfiguration) {
+    this.manager = manager;
+    this.sharedNode = sharedNode;
+
+    GraphName nodeName = nodeConfiguration.getNodeName();
+    if (!nodeName.isGlobal()) {
+      nodeName = nodeConfiguration.getParentResolver().getNamespace().join(nodeName);
+    }
+    resolver = new NodeNameResolver(nodeName, nodeConfiguration.getParentResolver());
+
+    log = (nodeConfiguration.getLog() != null) ? nodeConfiguration.getLog() : sharedNode.getLog();
+  }
+
+  @Override
+  public GraphName getName() {
+    return sharedNode.getName();
+  }
+
+  @Override
+  public GraphName resolveName(GraphName name) {
+    return resolver.resolve(name);
+  }
+
+  @Override
+  public GraphName resolveName(String name) {
+    return resolver.resolve(name);
+  }
+
+  @Override
+  public NodeNameResolver getResolver() {
+    return resolver;
+  }
+
+  @Override
+  public URI getUri() {
+    return sharedNode.getUri();
+  }
+
+  @Override
+  public URI getMasterUri() {
+    return sharedNode.getMasterUri();
+  }
+
+  @Override
+  public Log getLog() {
+    return log;
+  }
+
+  @Override
+  public MessageSerializationFactory getMessageSerializationFactory() {
+    return sharedNode.getMessageSerializationFactory();
+  }
+
+  @Override
+  public MessageFactory getTopicMessageFactory() {
+    return sharedNode.getTopicMessageFactory();
+  }
+
+  @Override
+  public MessageFactory getServiceResponseMessageFactory() {
+    return sharedNode.getServiceResponseMessageFactory();
+  }
+
+  @Override
+  public MessageFactory getServiceRequestMessageFactory() {
+    return sharedNode.getServiceRequestMessageFactory();
+  }
+
+  @Override
+  public synchronized void addListener(NodeListener listener) {
+    nodeListeners.add(listener);
+    sharedNode.addListener(listener);
+  }
+
+  @Override
+  public synchronized boolean removeListener(NodeListener listener) {
+    return nodeListeners.remove(listener) && sharedNode.removeListener(listener);
+  }
+
+  @Override
+  public ScheduledExecutorService getScheduledExecutorService() {
+    return sharedNode.getScheduledExecutorService();
+  }
+
+  @Override
+  public synchronized void executeCancellableLoop(CancellableLoop cancellableLoop) {
+    loops.add(cancellableLoop);
+    sharedNode.executeCancellableLoop(cancellableLoop);
+  }
+
+  @Override
+  public Time getCurrentTime() {
+    return sharedNode.getCurrentTime();
+  }
+
+  @Override
+  public <T> Publisher<T> newPublisher(GraphName topicName, String messageType) {
+    return newPublisher(topicName.toString(), messageType);
+  }
+
+  @Override
+  public synchronized <T> Publisher<T> newPublisher(String topicName, String messageType) {
+    Publisher<T> publisher = manager.acquirePublisher(resolveName(topicName), messageType);
+    ScopedRosPublisher<T> scopedPublisher = new ScopedRosPublisher<T>(manager, publisher);
+    publishers.add(scopedPublisher);
+
+    return scopedPublisher;
+  }
+
+  @Override
+  public <T> Subscriber<T> newSubscriber(GraphName topicName, String messageType) {
+    return newSubscriber(topicName.toString(), messageType);
+  }
+
+  @Override
+  public synchronized <T> Subscriber<T> newSubscriber(String topicName, String messageType) {
+    Subscriber<T> subscriber = manager.acquireSubscriber(resolveName(topicName), messageType);
+    ScopedRosSubscriber<T> scopedSubscriber = new ScopedRosSubscriber<T>(manager, subscriber);
+    subscribers.add(scopedSubscriber);
+
+    return scopedSubscriber;
+  }
+
+  @Override
+  public <T, S> ServiceServer<T, S> newServiceServer(GraphName serviceName, String serviceType,
+      ServiceResponseBuilder<T, S> serviceResponseBuilder) {
+    return newServiceServer(serviceName.toString(), serviceType, serviceResponseBuilder);
+  }
+
+  @Override
+  public synchronized <T, S> ServiceServer<T, S> newServiceServer(String serviceName, String serviceType,
+      ServiceResponseBuilder<T, S> serviceResponseBuilder) {
+    ServiceServer<T, S> serviceServer =
+        sharedNode.newServiceServer(resolveName(serviceName), serviceType, serviceResponseBuilder);
+    serviceServers.add(serviceServer);
+
+    return serviceServer;
+  }
+
+  @Override
+  public <T, S> ServiceServer<T, S> getServiceServer(GraphName serviceName) {
+    return sharedNode.getServiceServer(resolveName(serviceName));
+  }
+
+  @Override
+  public <T, S> ServiceServer<T, S> getServiceServer(String serviceName) {
+    return sharedNode.getServiceServer(resolveName(serviceName));
+  }
+
+  @Override
+  public URI lookupServiceUri(GraphName serviceName) {
+    return sharedNode.lookupServiceUri(resolveName(serviceName));
+  }
+
+  @Override
+  public URI lookupServiceUri(String serviceName) {
+    return sharedNode.lookupServiceUri(resolveName(serviceName));
+  }
+
+  @Override
+  public <T, S> ServiceClient<T, S> newServiceClient(GraphName serviceName, String serviceType)
+      throws ServiceNotFoundException {
+    return newServiceClient(serviceName.toString(), serviceType);
+  }
+
+  @Override
+  public synchronized <T, S> ServiceClient<T, S> newServiceClient(String serviceName, String serviceType)
+      throws ServiceNotFoundException {
+    ServiceClient<T, S> serviceClient = sharedNode.newServiceClient(resolveName(serviceName), serviceType);
+    serviceClients.add(serviceClient);
+
+    return serviceClient;
+  }
+
+  @Override
+  public ParameterTree getParameterTree() {
+    return sharedNode.getParameterTree();
+  }
+
+  @Override
+  public void shutdown() {
+    synchronized (this) {
+      if (shutdown) {
+        return;
+      }
+      shutdown = true;
+
+      for (NodeListener listener : nodeListeners) {
+        sharedNode.removeListener(listener);
+      }
+      nodeListeners.clear();
+
+      for (CancellableLoop loop : loops) {
+        loop.cancel();
+      }
+      loops.clear();
+
+      for (ScopedRosSubscriber<?> subscriber : subscribers) {
+        subscriber.shutdown();
+      }
+      subscribers.clear();
+
+      for (ScopedRosPublisher<?> publisher : publishers) {
+        publisher.shutdown();
+      }
+      publishers.clear();
+
+      for (ServiceServer<?, ?> serviceServer : serviceServers) {
+        serviceServer.shutdown();
+      }
+      serviceServers.clear();
+
+      for (ServiceClient<?, ?> serviceClient : serviceClients) {
+        serviceClient.shutdown();
+      }
+      serviceClients.clear();
+    }
+
+    manager.releaseNode();
+  }
+}
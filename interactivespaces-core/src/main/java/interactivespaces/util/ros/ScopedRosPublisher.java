@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.ros;
+
+import org.ros.concurrent.QueuePolicy;
+import org.ros.internal.node.topic.SubscriberIdentifier;
+import org.ros.namespace.GraphName;
+import org.ros.node.topic.Publisher;
+import org.ros.node.topic.PublisherListener;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A publisher handed out by a {@link ScopedConnectedNode}.
+ *
+ * <p>
+ * Shutting down the publisher removes the listeners added through this scope from the shared publisher and releases
+ * this scope's reference to it. The latch mode and queue policy are those of the shared publisher, so they can only be
+ * changed while no other scope uses it.
+ *
+ * @param <T>
+ *          the type of the messages
+ *
+ * @author Keith M. Hughes
+ */
+public class ScopedRosPublisher<T> implements Publisher<T> {
+
+  /**
+   * The manager for the shared node.
+   */
+  private final StandardSharedRosNodeManager manager;
+
+  /**
+   * The shared publisher.
+   */
+  private final Publisher<T> publisher;
+
+  /**
+   * The listeners this scope has added to the shared publisher.
+   */
+  private final List<PublisherListener<T>> listeners = new CopyOnWriteArrayList<PublisherListener<T>>();
+
+  /**
+   * {@code true} if this scope's reference has been released.
+   */
+  private boolean shutdown;
+
+  /**
+   * Construct a new scoped publisher.
+   *
+   * @param manager
+   *          the manager for the shared node
+   * @param publisher
+   *          the shared publisher
+   */
+  ScopedRosPublisher(StandardSharedRosNodeManager manager, Publisher<T> publisher) {
+    this.manager = manager;
+    this.publisher = publisher;
+  }
+
+  @Override
+  public GraphName getTopicName() {
+    return publisher.getTopicName();
+  }
+
+  @Override
+  public String getTopicMessageType() {
+    return publisher.getTopicMessageType();
+  }
+
+  @Override
+  public void setLatchMode(boolean enabled) {
+    manager.setPublisherLatchMode(publisher, enabled);
+  }
+
+  @Override
+  public boolean getLatchMode() {
+    return publisher.getLatchMode();
+  }
+
+  @Override
+  public void setQueuePolicy(QueuePolicy<T> queuePolicy) {
+    manager.setPublisherQueuePolicy(publisher, queuePolicy);
+  }
+
+  @Override
+  public T newMessage() {
+    return publisher.newMessage();
+  }
+
+  @Override
+  public void publish(T message) {
+    publisher.publish(message);
+  }
+
+  @Override
+  public boolean hasSubscribers() {
+    return publisher.hasSubscribers();
+  }
+
+  @Override
+  public int getNumberOfSubscribers() {
+    return publisher.getNumberOfSubscribers();
+  }
+
+  @Override
+  public Collection<SubscriberIdentifier> getSubscriberIdentifiers() {
+    return publisher.getSubscriberIdentifiers();
+  }
+
+  @Override
+  public void shutdown(long timeout, TimeUnit unit) {
+    shutdown();
+  }
+
+  @Override
+  public synchronized void shutdown() {
+    if (!shutdown) {
+      shutdown = true;
+      for (PublisherListener<T> listener : listeners) {
+        publisher.removeListener(listener);
+      }
+      listeners.clear();
+      manager.releasePublisher(publisher);
+    }
+  }
+
+  @Override
+  public void addListener(PublisherListener<T> listener) {
+    listeners.add(listener);
+    publisher.addListener(listener);
+  }
+
+  @Override
+  public boolean removeListener(PublisherListener<T> listener) {
+    return listeners.remove(listener) && publisher.removeListener(listener);
+  }
+}
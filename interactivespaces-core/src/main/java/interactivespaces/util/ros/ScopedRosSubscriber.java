@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.ros;
+
+import org.ros.concurrent.QueuePolicy;
+import org.ros.message.MessageListener;
+import org.ros.namespace.GraphName;
+import org.ros.node.topic.Subscriber;
+import org.ros.node.topic.SubscriberListener;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A subscriber handed out by a {@link ScopedConnectedNode}.
+ *
+ * <p>
+ * Message and subscriber listeners added through this scope are removed from the shared subscriber when the scope
+ * shuts down, which also releases this scope's reference to the shared subscriber.
+ *
+ * @param <T>
+ *          the type of the messages
+ *
+ * @author Keith M. Hughes
+ */
+public class ScopedRosSubscriber<T> implements Subscriber<T> {
+
+  /**
+   * The manager for the shared node.
+   */
+  private final StandardSharedRosNodeManager manager;
+
+  /**
+   * The shared subscriber.
+   */
+  private final Subscriber<T> subscriber;
+
+  /**
+   * The listeners this scope has added to the shared subscriber.
+   */
+  private final List<ScopedMessageListener> messageListeners = new CopyOnWriteArrayList<ScopedMessageListener>();
+
+  /**
+   * The subscriber listeners this scope has added to the shared subscriber.
+   */
+  private final List<SubscriberListener<T>> subscriberListeners = new CopyOnWriteArrayList<SubscriberListener<T>>();
+
+  /**
+   * {@code true} if this scope's reference has been released.
+   */
+  private volatile boolean shutdown;
+
+  /**
+   * Construct a new scoped subscriber.
+   *
+   * @param manager
+   *          the manager for the shared node
+   * @param subscriber
+   *          the shared subscriber
+   */
+  ScopedRosSubscriber(StandardSharedRosNodeManager manager, Subscriber<T> subscriber) {
+    this.manager = manager;
+    this.subscriber = subscriber;
+  }
+
+  @Override
+  public GraphName getTopicName() {
+    return subscriber.getTopicName();
+  }
+
+  @Override
+  public String getTopicMessageType() {
+    return subscriber.getTopicMessageType();
+  }
+
+  @Override
+  public void addMessageListener(MessageListener<T> messageListener, int limit) {
+    subscriber.addMessageListener(newScopedListener(messageListener), limit);
+  }
+
+  @Override
+  public void addMessageListener(MessageListener<T> messageListener, QueuePolicy<T> queuePolicy) {
+    subscriber.addMessageListener(newScopedListener(messageListener), queuePolicy);
+  }
+
+  @Override
+  public void addMessageListener(MessageListener<T> messageListener) {
+    addMessageListener(messageListener, 1);
+  }
+
+  @Override
+  public boolean removeMessageListener(MessageListener<T> messageListener) {
+    for (ScopedMessageListener scopedListener : messageListeners) {
+      if (scopedListener.messageListener == messageListener && messageListeners.remove(scopedListener)) {
+        return subscriber.removeMessageListener(scopedListener);
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Wrap a listener so this scope can remove it from the shared subscriber.
+   *
+   * @param messageListener
+   *          the listener to wrap
+   *
+   * @return the wrapped listener
+   */
+  private MessageListener<T> newScopedListener(MessageListener<T> messageListener) {
+    ScopedMessageListener scopedListener = new ScopedMessageListener(messageListener);
+    messageListeners.add(scopedListener);
+
+    return scopedListener;
+  }
+
+  @Override
+  public void shutdown(long timeout, TimeUnit unit) {
+    shutdown();
+  }
+
+  @Override
+  public synchronized void shutdown() {
+    if (!shutdown) {
+      shutdown = true;
+      for (ScopedMessageListener scopedListener : messageListeners) {
+        subscriber.removeMessageListener(scopedListener);
+      }
+      messageListeners.clear();
+      for (SubscriberListener<T> listener : subscriberListeners) {
+        subscriber.removeSubscriberListener(listener);
+      }
+      subscriberListeners.clear();
+      manager.releaseSubscriber(subscriber);
+    }
+  }
+
+  @Override
+  public void addSubscriberListener(SubscriberListener<T> listener) {
+    subscriberListeners.add(listener);
+    subscriber.addSubscriberListener(listener);
+  }
+
+  @Override
+  public boolean removeSubscriberListener(SubscriberListener<T> listener) {
+    return subscriberListeners.remove(listener) && subscriber.removeSubscriberListener(listener);
+  }
+
+  @Override
+  public boolean getLatchMode() {
+    return subscriber.getLatchMode();
+  }
+
+  /**
+   * A listener added to the shared subscriber on behalf of this scope.
+   *
+   * <p>
+   * Messages already queued for the listener when the scope shuts down are not passed on.
+   *
+   * @author Keith M. Hughes
+   */
+  private final class ScopedMessageListener implements MessageListener<T> {
+
+    /**
+     * The listener given to this scope.
+     */
+    private final MessageListener<T> messageListener;
+
+    /**
+     * Construct a new scoped listener.
+     *
+     * @param messageListener
+     *          the listener given to this scope
+     */
+    public ScopedMessageListener(MessageListener<T> messageListener) {
+      this.messageListener = messageListener;
+    }
+
+    @Override
+    public void onNewMessage(T message) {
+      if (!shutdown) {
+        messageListener.onNewMessage(message);
+      }
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.ros;
+
+import org.ros.node.ConnectedNode;
+import org.ros.node.NodeConfiguration;
+
+/**
+ * A manager for a single ROS node shared by many users in the same container.
+ *
+ * <p>
+ * Each user gets a scoped view of the shared node. Names are resolved relative to the user's own node name, and
+ * shutting down the view only shuts down the publishers, subscribers and services created through it. The shared node
+ * itself is started when the first view is requested and shut down when the last view is shut down.
+ *
+ * @author Keith M. Hughes
+ */
+public interface SharedRosNodeManager {
+
+  /**
+   * The name of the space environment value which holds the manager for the container.
+   */
+  String ENVIRONMENT_VALUE_NAME = "environment.ros.node.shared";
+
+  /**
+   * Get a new scoped view of the shared node.
+   *
+   * @param nodeConfiguration
+   *          the configuration the user would have used for its own node, its node name is used for resolving names
+   *
+   * @return the scoped node, it must be shut down when no longer needed
+   */
+  ConnectedNode newScopedNode(NodeConfiguration nodeConfiguration);
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.ros;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.apache.commons.logging.Log;
+import org.ros.concurrent.EventDispatcher;
+import org.ros.internal.node.topic.SubscriberIdentifier;
+import org.ros.message.MessageListener;
+import org.ros.node.topic.Publisher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The standard implementation of the {@link InProcessRosTopicRegistry}.
+ *
+ * <p>
+ * A publisher has remote subscribers if any of its open TCPROS subscriber connections comes from a node which has no
+ * in-process subscriber for the publisher's message type.
+ *
+ * @author Keith M. Hughes
+ */
+public class StandardInProcessRosTopicRegistry implements InProcessRosTopicRegistry {
+
+  /**
+   * All topics known to the registry, keyed by their fully resolved names.
+   */
+  private final Map<String, InProcessTopic> topics = Maps.newConcurrentMap();
+
+  /**
+   * Logger for the registry.
+   */
+  private final Log log;
+
+  /**
+   * Construct a new registry.
+   *
+   * @param log
+   *          the logger to use
+   */
+  public StandardInProcessRosTopicRegistry(Log log) {
+    this.log = log;
+  }
+
+  @Override
+  public <T> void addSubscriber(String topicName, String messageType, String nodeName, MessageListener<T> listener) {
+    getTopic(topicName).addSubscriber(new InProcessSubscriber(messageType, nodeName, listener));
+
+    log.debug(String.format("Added in-process subscriber on topic %s for node %s", topicName, nodeName));
+  }
+
+  @Override
+  public void removeSubscriber(String topicName, MessageListener<?> listener) {
+    InProcessTopic topic = topics.get(topicName);
+    if (topic != null) {
+      topic.removeSubscriber(listener);
+    }
+  }
+
+  @Override
+  public <T> InProcessRosPublisher<T> newPublisher(Publisher<T> publisher) {
+    InProcessTopic topic = getTopic(publisher.getTopicName().toString());
+    StandardInProcessRosPublisher<T> inProcessPublisher = new StandardInProcessRosPublisher<T>(topic, publisher);
+    topic.addPublisher(inProcessPublisher);
+
+    return inProcessPublisher;
+  }
+
+  /**
+   * Get the topic for a given name, creating it if it doesn't exist.
+   *
+   * @param topicName
+   *          the fully resolved name of the topic
+   *
+   * @return the topic
+   */
+  private synchronized InProcessTopic getTopic(String topicName) {
+    InProcessTopic topic = topics.get(topicName);
+    if (topic == null) {
+      topic = new InProcessTopic();
+      topics.put(topicName, topic);
+    }
+
+    return topic;
+  }
+
+  /**
+   * A subscriber in the same process as the publishers.
+   *
+   * @author Keith M. Hughes
+   */
+  private static class InProcessSubscriber {
+
+    /**
+     * The message type for the subscriber.
+     */
+    private final String messageType;
+
+    /**
+     * Name of the node the subscriber's TCPROS connections come from.
+     */
+    private final String nodeName;
+
+    /**
+     * The listener for new messages.
+     */
+    private final MessageListener<?> listener;
+
+    /**
+     * Construct a new subscriber.
+     *
+     * @param messageType
+     *          the message type for the subscriber
+     * @param nodeName
+     *          name of the node the subscriber's TCPROS connections come from
+     * @param listener
+     *          the listener for new messages
+     */
+    public InProcessSubscriber(String messageType, String nodeName, MessageListener<?> listener) {
+      this.messageType = messageType;
+      this.nodeName = nodeName;
+      this.listener = listener;
+    }
+  }
+
+  /**
+   * The in-process publishers and subscribers for a topic.
+   *
+   * @author Keith M. Hughes
+   */
+  private class InProcessTopic {
+
+    /**
+     * The subscribers for the topic.
+     */
+    private final List<InProcessSubscriber> subscribers = Lists.newCopyOnWriteArrayList();
+
+    /**
+     * The publishers for the topic.
+     */
+    private final List<StandardInProcessRosPublisher<?>> publishers = Lists.newCopyOnWriteArrayList();
+
+    /**
+     * Add a new subscriber to the topic.
+     *
+     * @param subscriber
+     *          the subscriber to add
+     */
+    public synchronized void addSubscriber(InProcessSubscriber subscriber) {
+      subscribers.add(subscriber);
+    }
+
+    /**
+     * Remove a subscriber from the topic.
+     *
+     * @param listener
+     *          the listener of the subscriber to remove
+     */
+    public synchronized void removeSubscriber(MessageListener<?> listener) {
+      for (InProcessSubscriber subscriber : subscribers) {
+        if (subscriber.listener == listener) {
+          subscribers.remove(subscriber);
+        }
+      }
+    }
+
+    /**
+     * Add a publisher to the topic.
+     *
+     * @param publisher
+     *          the publisher to add
+     */
+    public void addPublisher(StandardInProcessRosPublisher<?> publisher) {
+      publishers.add(publisher);
+    }
+
+    /**
+     * Remove a publisher from the topic.
+     *
+     * @param publisher
+     *          the publisher to remove
+     */
+    public void removePublisher(StandardInProcessRosPublisher<?> publisher) {
+      publishers.remove(publisher);
+    }
+
+    /**
+     * Get all subscribers which take a given message type.
+     *
+     * @param messageType
+     *          the message type
+     *
+     * @return the matching subscribers, the list can be empty
+     */
+    public List<InProcessSubscriber> getSubscribers(String messageType) {
+      List<InProcessSubscriber> matching = Lists.newArrayList();
+      for (InProcessSubscriber subscriber : subscribers) {
+        if (subscriber.messageType.equals(messageType)) {
+          matching.add(subscriber);
+        }
+      }
+
+      return matching;
+    }
+  }
+
+  /**
+   * The standard in-process publisher.
+   *
+   * @param <T>
+   *          the type of the messages
+   *
+   * @author Keith M. Hughes
+   */
+  private class StandardInProcessRosPublisher<T> implements InProcessRosPublisher<T> {
+
+    /**
+     * The topic the publisher is on.
+     */
+    private final InProcessTopic topic;
+
+    /**
+     * The ROS publisher for remote subscribers.
+     */
+    private final Publisher<T> publisher;
+
+    /**
+     * Construct a new publisher.
+     *
+     * @param topic
+     *          the topic the publisher is on
+     * @param publisher
+     *          the ROS publisher for remote subscribers
+     */
+    public StandardInProcessRosPublisher(InProcessTopic topic, Publisher<T> publisher) {
+      this.topic = topic;
+      this.publisher = publisher;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void publish(T message) {
+      List<InProcessSubscriber> subscribers = topic.getSubscribers(publisher.getTopicMessageType());
+      if (subscribers.isEmpty() || publisher.getLatchMode() || hasRemoteSubscribers(subscribers)) {
+        publisher.publish(message);
+        return;
+      }
+
+      // Subscribers run on this thread, so must not see the signal time of any ROS event this thread is handling.
+      EventDispatcher.takeCurrentSignalTime();
+
+      for (InProcessSubscriber subscriber : subscribers) {
+        try {
+          ((MessageListener<T>) subscriber.listener).onNewMessage(message);
+        } catch (Throwable e) {
+          log.error(String.format("Error delivering in-process message on topic %s", publisher.getTopicName()), e);
+        }
+      }
+    }
+
+    @Override
+    public Publisher<T> getRosPublisher() {
+      return publisher;
+    }
+
+    @Override
+    public void shutdown() {
+      topic.removePublisher(this);
+    }
+
+    /**
+     * Does the publisher have any subscribers which are not in-process?
+     *
+     * @param subscribers
+     *          the in-process subscribers for the publisher
+     *
+     * @return {@code true} if there are remote subscribers
+     */
+    private boolean hasRemoteSubscribers(List<InProcessSubscriber> subscribers) {
+      Set<String> inProcessNodes = Sets.newHashSet();
+      for (InProcessSubscriber subscriber : subscribers) {
+        inProcessNodes.add(subscriber.nodeName);
+      }
+
+      for (SubscriberIdentifier subscriberIdentifier : publisher.getSubscriberIdentifiers()) {
+        if (!inProcessNodes.contains(subscriberIdentifier.getNodeIdentifier().getName().toString())) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+  }
+}
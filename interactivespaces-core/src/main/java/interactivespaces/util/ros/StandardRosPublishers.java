@@ -21,6 +21,7 @@ import interactivespaces.SimpleInteractiveSpacesException;
 import com.google.common.collect.Lists;
 
 import org.apache.commons.logging.Log;
+import org.ros.concurrent.QueuePolicy;
 import org.ros.internal.node.topic.SubscriberIdentifier;
 import org.ros.node.ConnectedNode;
 import org.ros.node.topic.Publisher;
@@ -44,6 +45,24 @@ public class StandardRosPublishers<T> implements RosPublishers<T> {
    */
   private final List<Publisher<T>> publishers = Lists.newArrayList();
 
+  /**
+   * The in-process wrappers for the publishers, if the publishers are using an in-process registry.
+   *
+   * <p>
+   * In-process publishing calls subscriber handlers directly, so it is done without holding the collection lock.
+   */
+  private final List<InProcessRosPublisher<T>> inProcessPublishers = Lists.newCopyOnWriteArrayList();
+
+  /**
+   * The registry for in-process delivery of messages, {@code null} if messages always go through TCPROS.
+   */
+  private volatile InProcessRosTopicRegistry inProcessRegistry;
+
+  /**
+   * The policy for queueing messages waiting to be sent, {@code null} for the ROS default.
+   */
+  private QueuePolicy<T> queuePolicy;
+
   /**
    * All publisher listeners registered.
    */
@@ -73,6 +92,16 @@ public class StandardRosPublishers<T> implements RosPublishers<T> {
     }
   }
 
+  @Override
+  public synchronized void setInProcessRosTopicRegistry(InProcessRosTopicRegistry inProcessRegistry) {
+    this.inProcessRegistry = inProcessRegistry;
+  }
+
+  @Override
+  public synchronized void setQueuePolicy(QueuePolicy<T> queuePolicy) {
+    this.queuePolicy = queuePolicy;
+  }
+
   @Override
   public void addPublishers(ConnectedNode node, String messageType, Set<String> topicNames) {
     addPublishers(node, messageType, topicNames, false);
@@ -94,14 +123,29 @@ public class StandardRosPublishers<T> implements RosPublishers<T> {
       }
 
       publisher.setLatchMode(latch);
+      if (queuePolicy != null) {
+        publisher.setQueuePolicy(queuePolicy);
+      }
       publishers.add(publisher);
+
+      if (inProcessRegistry != null) {
+        inProcessPublishers.add(inProcessRegistry.newPublisher(publisher));
+      }
     }
   }
 
   @Override
-  public synchronized void publishMessage(T message) {
-    for (Publisher<T> publisher : publishers) {
-      publisher.publish(message);
+  public void publishMessage(T message) {
+    if (inProcessRegistry != null) {
+      for (InProcessRosPublisher<T> publisher : inProcessPublishers) {
+        publisher.publish(message);
+      }
+    } else {
+      synchronized (this) {
+        for (Publisher<T> publisher : publishers) {
+          publisher.publish(message);
+        }
+      }
     }
   }
 
@@ -116,6 +160,11 @@ public class StandardRosPublishers<T> implements RosPublishers<T> {
 
   @Override
   public synchronized void shutdown() {
+    for (InProcessRosPublisher<T> publisher : inProcessPublishers) {
+      publisher.shutdown();
+    }
+    inProcessPublishers.clear();
+
     for (Publisher<T> publisher : publishers) {
       publisher.shutdown();
     }
@@ -16,9 +16,12 @@
 
 package interactivespaces.util.ros;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
 
 import org.apache.commons.logging.Log;
+import org.ros.concurrent.QueuePolicy;
 import org.ros.internal.node.topic.PublisherIdentifier;
 import org.ros.message.MessageListener;
 import org.ros.node.ConnectedNode;
@@ -26,6 +29,7 @@ import org.ros.node.topic.Subscriber;
 import org.ros.node.topic.SubscriberListener;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -43,6 +47,21 @@ public class StandardRosSubscribers<T> implements RosSubscribers<T> {
    */
   private final List<Subscriber<T>> subscribers = Lists.newArrayList();
 
+  /**
+   * All message listeners registered with the in-process registry, keyed by their fully resolved topic names.
+   */
+  private final Multimap<String, MessageListener<T>> inProcessListeners = ArrayListMultimap.create();
+
+  /**
+   * The registry for in-process delivery of messages, {@code null} if messages only come through TCPROS.
+   */
+  private InProcessRosTopicRegistry inProcessRegistry;
+
+  /**
+   * The policy for queueing messages for the listener, {@code null} for the ROS default.
+   */
+  private QueuePolicy<T> queuePolicy;
+
   /**
    * All publisher listeners registered.
    */
@@ -72,6 +91,16 @@ public class StandardRosSubscribers<T> implements RosSubscribers<T> {
     }
   }
 
+  @Override
+  public synchronized void setInProcessRosTopicRegistry(InProcessRosTopicRegistry inProcessRegistry) {
+    this.inProcessRegistry = inProcessRegistry;
+  }
+
+  @Override
+  public synchronized void setQueuePolicy(QueuePolicy<T> queuePolicy) {
+    this.queuePolicy = queuePolicy;
+  }
+
   @Override
   public synchronized void addSubscribers(ConnectedNode node, String messageType, Set<String> topicNames,
       MessageListener<T> listener) {
@@ -86,13 +115,30 @@ public class StandardRosSubscribers<T> implements RosSubscribers<T> {
         newSubscriber.addSubscriberListener(subscriberListener);
       }
 
-      newSubscriber.addMessageListener(listener);
+      if (queuePolicy != null) {
+        newSubscriber.addMessageListener(listener, queuePolicy);
+      } else {
+        newSubscriber.addMessageListener(listener);
+      }
       subscribers.add(newSubscriber);
+
+      if (inProcessRegistry != null) {
+        String resolvedTopicName = newSubscriber.getTopicName().toString();
+        inProcessRegistry.addSubscriber(resolvedTopicName, messageType, node.getName().toString(), listener);
+        inProcessListeners.put(resolvedTopicName, listener);
+      }
     }
   }
 
   @Override
   public synchronized void shutdown() {
+    if (inProcessRegistry != null) {
+      for (Map.Entry<String, MessageListener<T>> entry : inProcessListeners.entries()) {
+        inProcessRegistry.removeSubscriber(entry.getKey(), entry.getValue());
+      }
+      inProcessListeners.clear();
+    }
+
     for (Subscriber<T> subscriber : subscribers) {
       subscriber.shutdown();
     }
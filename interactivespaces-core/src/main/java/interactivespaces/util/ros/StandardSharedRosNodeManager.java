@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.ros;
+
+import interactivespaces.SimpleInteractiveSpacesException;
+
+import com.google.common.collect.Maps;
+
+import org.apache.commons.logging.Log;
+import org.ros.concurrent.QueuePolicy;
+import org.ros.namespace.GraphName;
+import org.ros.node.ConnectedNode;
+import org.ros.node.NodeConfiguration;
+import org.ros.node.topic.Publisher;
+import org.ros.node.topic.Subscriber;
+import org.ros.osgi.common.RosEnvironment;
+
+import java.util.Map;
+
+/**
+ * The standard implementation of the {@link SharedRosNodeManager}.
+ *
+ * <p>
+ * ROS reuses publishers and subscribers for a topic within a node, so the manager reference counts them. A publisher
+ * or subscriber is only shut down when the last scoped node using it lets go of it. The latch mode and queue policy of
+ * a shared publisher can only be changed while a single scoped node uses it.
+ *
+ * @author Keith M. Hughes
+ */
+public class StandardSharedRosNodeManager implements SharedRosNodeManager {
+
+  /**
+   * The subname for the shared node, relative to the container's node name.
+   */
+  public static final String SHARED_NODE_SUBNAME = "activities";
+
+  /**
+   * The ROS environment for creating the shared node.
+   */
+  private final RosEnvironment rosEnvironment;
+
+  /**
+   * The shared node, {@code null} if no scoped nodes are in use.
+   */
+  private ConnectedNode sharedNode;
+
+  /**
+   * The number of scoped nodes currently using the shared node.
+   */
+  private int nodeReferences;
+
+  /**
+   * Reference counts for publishers, keyed by the fully resolved topic name.
+   */
+  private final Map<GraphName, Integer> publisherReferences = Maps.newHashMap();
+
+  /**
+   * Reference counts for subscribers, keyed by the fully resolved topic name.
+   */
+  private final Map<GraphName, Integer> subscriberReferences = Maps.newHashMap();
+
+  /**
+   * Logger for the manager.
+   */
+  private final Log log;
+
+  /**
+   * Construct a new manager.
+   *
+   * @param rosEnvironment
+   *          the ROS environment for creating the shared node
+   * @param log
+   *          the logger to use
+   */
+  public StandardSharedRosNodeManager(RosEnvironment rosEnvironment, Log log) {
+    this.rosEnvironment = rosEnvironment;
+    this.log = log;
+  }
+
+  @Override
+  public synchronized ConnectedNode newScopedNode(NodeConfiguration nodeConfiguration) {
+    if (sharedNode == null) {
+      NodeConfiguration sharedNodeConfiguration = rosEnvironment.getPublicNodeConfigurationWithNodeName(
+          SHARED_NODE_SUBNAME);
+      sharedNodeConfiguration.setLog(log);
+      sharedNode = rosEnvironment.newNode(sharedNodeConfiguration);
+
+      log.info(String.format("Started shared ROS node %s", sharedNode.getName()));
+    }
+
+    nodeReferences++;
+
+    return new ScopedConnectedNode(this, sharedNode, nodeConfiguration);
+  }
+
+  /**
+   * Get a publisher from the shared node and add a reference to it.
+   *
+   * @param topicName
+   *          the fully resolved topic name
+   * @param messageType
+   *          the message type for the topic
+   * @param <T>
+   *          the type of the messages
+   *
+   * @return the shared publisher
+   */
+  synchronized <T> Publisher<T> acquirePublisher(GraphName topicName, String messageType) {
+    Publisher<T> publisher = sharedNode.newPublisher(topicName, messageType);
+    addReference(publisherReferences, topicName);
+
+    return publisher;
+  }
+
+  /**
+   * Release a reference to a shared publisher, shutting it down if it was the last reference.
+   *
+   * @param publisher
+   *          the shared publisher
+   */
+  synchronized void releasePublisher(Publisher<?> publisher) {
+    if (removeReference(publisherReferences, publisher.getTopicName())) {
+      publisher.shutdown();
+    }
+  }
+
+  /**
+   * Set the latch mode of a shared publisher.
+   *
+   * @param publisher
+   *          the shared publisher
+   * @param enabled
+   *          {@code true} if the publisher should latch
+   *
+   * @throws SimpleInteractiveSpacesException
+   *           the mode is different and other scoped nodes use the publisher
+   */
+  synchronized void setPublisherLatchMode(Publisher<?> publisher, boolean enabled)
+      throws SimpleInteractiveSpacesException {
+    if (publisher.getLatchMode() != enabled) {
+      checkOnlyPublisherReference(publisher, "latch mode");
+      publisher.setLatchMode(enabled);
+    }
+  }
+
+  /**
+   * Set the queue policy of a shared publisher.
+   *
+   * @param publisher
+   *          the shared publisher
+   * @param queuePolicy
+   *          the queue policy
+   * @param <T>
+   *          the type of the messages
+   *
+   * @throws SimpleInteractiveSpacesException
+   *           other scoped nodes use the publisher
+   */
+  synchronized <T> void setPublisherQueuePolicy(Publisher<T> publisher, QueuePolicy<T> queuePolicy)
+      throws SimpleInteractiveSpacesException {
+    checkOnlyPublisherReference(publisher, "queue policy");
+    publisher.setQueuePolicy(queuePolicy);
+  }
+
+  /**
+   * Make sure a shared publisher is only used by one scoped node before one of its settings is changed.
+   *
+   * @param publisher
+   *          the shared publisher
+   * @param setting
+   *          a description of the setting being changed
+   *
+   * @throws SimpleInteractiveSpacesException
+   *           other scoped nodes use the publisher
+   */
+  private void checkOnlyPublisherReference(Publisher<?> publisher, String setting)
+      throws SimpleInteractiveSpacesException {
+    Integer count = publisherReferences.get(publisher.getTopicName());
+    if (count != null && count > 1) {
+      throw new SimpleInteractiveSpacesException(String.format(
+          "Cannot change the %s of the publisher for topic %s, it is shared by %d scoped nodes", setting,
+          publisher.getTopicName(), count));
+    }
+  }
+
+  /**
+   * Get a subscriber from the shared node and add a reference to it.
+   *
+   * @param topicName
+   *          the fully resolved topic name
+   * @param messageType
+   *          the message type for the topic
+   * @param <T>
+   *          the type of the messages
+   *
+   * @return the shared subscriber
+   */
+  synchronized <T> Subscriber<T> acquireSubscriber(GraphName topicName, String messageType) {
+    Subscriber<T> subscriber = sharedNode.newSubscriber(topicName, messageType);
+    addReference(subscriberReferences, topicName);
+
+    return subscriber;
+  }
+
+  /**
+   * Release a reference to a shared subscriber, shutting it down if it was the last reference.
+   *
+   * @param subscriber
+   *          the shared subscriber
+   */
+  synchronized void releaseSubscriber(Subscriber<?> subscriber) {
+    if (removeReference(subscriberReferences, subscriber.getTopicName())) {
+      subscriber.shutdown();
+    }
+  }
+
+  /**
+   * Release a scoped node's reference to the shared node, shutting the shared node down if it was the last reference.
+   */
+  synchronized void releaseNode() {
+    nodeReferences--;
+    if (nodeReferences == 0 && sharedNode != null) {
+      log.info(String.format("Shutting down shared ROS node %s", sharedNode.getName()));
+
+      sharedNode.shutdown();
+      sharedNode = null;
+      publisherReferences.clear();
+      subscriberReferences.clear();
+    }
+  }
+
+  /**
+   * Add a reference to a topic.
+   *
+   * @param references
+   *          the reference counts
+   * @param topicName
+   *          the topic name
+   */
+  private void addReference(Map<GraphName, Integer> references, GraphName topicName) {
+    Integer count = references.get(topicName);
+    references.put(topicName, (count != null) ? count + 1 : 1);
+  }
+
+  /**
+   * Remove a reference from a topic.
+   *
+   * @param references
+   *          the reference counts
+   * @param topicName
+   *          the topic name
+   *
+   * @return {@code true} if there are no more references to the topic
+   */
+  private boolean removeReference(Map<GraphName, Integer> references, GraphName topicName) {
+    Integer count = references.get(topicName);
+    if (count == null || count <= 1) {
+      references.remove(topicName);
+      return true;
+    } else {
+      references.put(topicName, count - 1);
+      return false;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.web;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A trie which maps URI prefixes to values.
+ *
+ * <p>
+ * Looking up a URI takes time proportional to the length of the longest matching prefix, however many prefixes have
+ * been added. Prefixes match a URI exactly when {@link String#startsWith(String)} would.
+ *
+ * <p>
+ * Lookups can run at the same time as additions and do not lock.
+ *
+ * @param <T>
+ *          the type of the values
+ *
+ * @author Keith M. Hughes
+ */
+public class UriPrefixTrie<T> {
+
+  /**
+   * The node for the empty prefix.
+   */
+  private final Node<T> root = new Node<T>();
+
+  /**
+   * The number of values in the trie.
+   */
+  private volatile int size;
+
+  /**
+   * Add a value for a prefix.
+   *
+   * <p>
+   * A prefix can have more than one value. They are matched in the order they were added.
+   *
+   * @param prefix
+   *          the prefix
+   * @param value
+   *          the value
+   */
+  public synchronized void add(String prefix, T value) {
+    Node<T> node = root;
+    for (int i = 0; i < prefix.length(); i++) {
+      Character c = prefix.charAt(i);
+      Node<T> child = node.children.get(c);
+      if (child == null) {
+        child = new Node<T>();
+        node.children.put(c, child);
+      }
+      node = child;
+    }
+
+    node.values = ImmutableList.<T>builder().addAll(node.values).add(value).build();
+    size++;
+  }
+
+  /**
+   * Get all values whose prefixes match a URI.
+   *
+   * @param uri
+   *          the URI
+   *
+   * @return the matching values, values for longer prefixes come first
+   */
+  public List<T> getMatches(String uri) {
+    List<List<T>> matches = null;
+
+    Node<T> node = root;
+    int i = 0;
+    while (node != null) {
+      List<T> values = node.values;
+      if (!values.isEmpty()) {
+        if (matches == null) {
+          matches = Lists.newArrayList();
+        }
+        matches.add(values);
+      }
+
+      node = (i < uri.length()) ? node.children.get(uri.charAt(i++)) : null;
+    }
+
+    if (matches == null) {
+      return Collections.emptyList();
+    } else if (matches.size() == 1) {
+      return matches.get(0);
+    }
+
+    List<T> result = Lists.newArrayList();
+    for (List<T> values : Lists.reverse(matches)) {
+      result.addAll(values);
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the number of values in the trie.
+   *
+   * @return the number of values
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * A node in the trie.
+   *
+   * @param <T>
+   *          the type of the values
+   *
+   * @author Keith M. Hughes
+   */
+  private static class Node<T> {
+
+    /**
+     * The child nodes, indexed by the next character of the prefix.
+     */
+    private final ConcurrentMap<Character, Node<T>> children = Maps.newConcurrentMap();
+
+    /**
+     * The values for the prefix ending at this node.
+     */
+    private volatile List<T> values = ImmutableList.of();
+  }
+}
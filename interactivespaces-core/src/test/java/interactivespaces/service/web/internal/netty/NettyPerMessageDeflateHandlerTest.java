@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.internal.netty;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelState;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DownstreamMessageEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.UpstreamChannelStateEvent;
+import org.jboss.netty.channel.UpstreamMessageEvent;
+import org.jboss.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+/**
+ * Tests for the {@link NettyPerMessageDeflateHandler}.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyPerMessageDeflateHandlerTest {
+
+  private Channel channel;
+
+  private ChannelHandlerContext context;
+
+  @Before
+  public void setup() {
+    channel = Mockito.mock(Channel.class);
+    context = Mockito.mock(ChannelHandlerContext.class);
+    Mockito.when(context.getChannel()).thenReturn(channel);
+  }
+
+  /**
+   * Only acceptable extension offers are accepted.
+   */
+  @Test
+  public void testServerNegotiation() {
+    Assert.assertNull(NettyPerMessageDeflateHandler.newServerHandler(null, 0));
+    Assert.assertNull(NettyPerMessageDeflateHandler.newServerHandler("x-webkit-deflate-frame", 0));
+    Assert.assertNull(NettyPerMessageDeflateHandler.newServerHandler("permessage-deflate; server_max_window_bits=10",
+        0));
+    Assert.assertNotNull(NettyPerMessageDeflateHandler.newServerHandler(
+        "x-webkit-deflate-frame, permessage-deflate; client_max_window_bits", 0));
+  }
+
+  /**
+   * Compressed data matches the example in RFC 7692.
+   */
+  @Test
+  public void testCompression() throws Exception {
+    NettyPerMessageDeflateHandler handler = NettyPerMessageDeflateHandler.newServerHandler("permessage-deflate", 0);
+
+    WebSocketFrame frame = write(handler, "Hello");
+
+    Assert.assertEquals(4, frame.getRsv());
+    Assert.assertEquals(
+        ChannelBuffers.wrappedBuffer(new byte[] { (byte) 0xf2, 0x48, (byte) 0xcd, (byte) 0xc9, (byte) 0xc9, 0x07, 0 }),
+        frame.getBinaryData());
+  }
+
+  /**
+   * Messages below the threshold are not compressed.
+   */
+  @Test
+  public void testThreshold() throws Exception {
+    NettyPerMessageDeflateHandler handler = NettyPerMessageDeflateHandler.newServerHandler("permessage-deflate", 10);
+
+    WebSocketFrame frame = write(handler, "Hello");
+
+    Assert.assertEquals(0, frame.getRsv());
+    Assert.assertEquals("Hello", ((TextWebSocketFrame) frame).getText());
+  }
+
+  /**
+   * Messages compressed by one side are decompressed by the other, with the context kept between messages.
+   */
+  @Test
+  public void testRoundTrip() throws Exception {
+    NettyPerMessageDeflateHandler server = NettyPerMessageDeflateHandler.newServerHandler("permessage-deflate", 0);
+    NettyPerMessageDeflateHandler client = NettyPerMessageDeflateHandler.newClientHandler("permessage-deflate", 0);
+
+    String message = "{\"status\":\"running\",\"activities\":[\"one\",\"two\",\"three\"]}";
+    int firstSize = 0;
+    for (int i = 0; i < 3; i++) {
+      WebSocketFrame compressed = write(server, message);
+      if (i == 0) {
+        firstSize = compressed.getBinaryData().readableBytes();
+      } else {
+        Assert.assertTrue(compressed.getBinaryData().readableBytes() < firstSize);
+      }
+
+      Mockito.reset(context);
+      Mockito.when(context.getChannel()).thenReturn(channel);
+      client.messageReceived(context, new UpstreamMessageEvent(channel, compressed, null));
+
+      ArgumentCaptor<ChannelEvent> captor = ArgumentCaptor.forClass(ChannelEvent.class);
+      Mockito.verify(context).sendUpstream(captor.capture());
+      TextWebSocketFrame received = (TextWebSocketFrame) ((MessageEvent) captor.getValue()).getMessage();
+      Assert.assertEquals(0, received.getRsv());
+      Assert.assertEquals(message, received.getText());
+    }
+  }
+
+  /**
+   * Closing the channel releases the compressor and passes the close on, and later messages go out uncompressed.
+   */
+  @Test
+  public void testClose() throws Exception {
+    NettyPerMessageDeflateHandler handler = NettyPerMessageDeflateHandler.newServerHandler("permessage-deflate", 0);
+
+    UpstreamChannelStateEvent closeEvent = new UpstreamChannelStateEvent(channel, ChannelState.OPEN, Boolean.FALSE);
+    handler.channelClosed(context, closeEvent);
+    Mockito.verify(context).sendUpstream(closeEvent);
+
+    WebSocketFrame frame = write(handler, "Hello");
+    Assert.assertEquals(0, frame.getRsv());
+    Assert.assertEquals("Hello", ((TextWebSocketFrame) frame).getText());
+  }
+
+  /**
+   * Write a text message through a handler.
+   *
+   * @param handler
+   *          the handler
+   * @param text
+   *          the text of the message
+   *
+   * @return the frame the handler sent down the pipeline
+   *
+   * @throws Exception
+   *           the handler failed
+   */
+  private WebSocketFrame write(NettyPerMessageDeflateHandler handler, String text) throws Exception {
+    Mockito.reset(context);
+    Mockito.when(context.getChannel()).thenReturn(channel);
+
+    handler.writeRequested(context, new DownstreamMessageEvent(channel, Channels.future(channel),
+        new TextWebSocketFrame(text), null));
+
+    ArgumentCaptor<ChannelEvent> captor = ArgumentCaptor.forClass(ChannelEvent.class);
+    Mockito.verify(context).sendDownstream(captor.capture());
+
+    return (WebSocketFrame) ((MessageEvent) captor.getValue()).getMessage();
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.server;
+
+import interactivespaces.service.web.WebSocketConnection;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+
+import org.apache.commons.logging.Log;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.Map;
+
+/**
+ * Tests for the {@link BasicMultipleConnectionWebServerWebSocketHandlerFactory}.
+ *
+ * @author Keith M. Hughes
+ */
+public class BasicMultipleConnectionWebServerWebSocketHandlerFactoryTest {
+
+  private BasicMultipleConnectionWebServerWebSocketHandlerFactory factory;
+
+  private WebSocketConnection connection1;
+
+  private WebSocketConnection connection2;
+
+  @Before
+  public void setup() {
+    factory =
+        new BasicMultipleConnectionWebServerWebSocketHandlerFactory(
+            Mockito.mock(MultipleConnectionWebSocketHandler.class), Mockito.mock(Log.class));
+
+    connection1 = Mockito.mock(WebSocketConnection.class);
+    connection2 = Mockito.mock(WebSocketConnection.class);
+
+    factory.newWebSocketHandler(connection1);
+    factory.newWebSocketHandler(connection2);
+  }
+
+  /**
+   * A JSON broadcast is serialized once and the same encoding is written to every connection.
+   */
+  @Test
+  public void testJsonBroadcastSharesEncoding() {
+    Map<String, Object> data = Maps.newHashMap();
+    data.put("foo", "bar");
+
+    factory.sendJson(data);
+
+    ArgumentCaptor<byte[]> captor1 = ArgumentCaptor.forClass(byte[].class);
+    Mockito.verify(connection1).writeEncodedText(captor1.capture());
+    ArgumentCaptor<byte[]> captor2 = ArgumentCaptor.forClass(byte[].class);
+    Mockito.verify(connection2).writeEncodedText(captor2.capture());
+
+    Assert.assertSame(captor1.getValue(), captor2.getValue());
+    Assert.assertEquals("{\"foo\":\"bar\"}", new String(captor1.getValue(), Charsets.UTF_8));
+    Mockito.verify(connection1, Mockito.never()).writeDataAsJson(Mockito.any());
+
+    Assert.assertEquals(1, factory.getBroadcastTimes().getCount());
+  }
+
+  /**
+   * A string broadcast is encoded once and the same encoding is written to every connection.
+   */
+  @Test
+  public void testStringBroadcastSharesEncoding() {
+    factory.sendString("hello");
+
+    ArgumentCaptor<byte[]> captor1 = ArgumentCaptor.forClass(byte[].class);
+    Mockito.verify(connection1).writeEncodedText(captor1.capture());
+    ArgumentCaptor<byte[]> captor2 = ArgumentCaptor.forClass(byte[].class);
+    Mockito.verify(connection2).writeEncodedText(captor2.capture());
+
+    Assert.assertSame(captor1.getValue(), captor2.getValue());
+    Assert.assertEquals("hello", new String(captor1.getValue(), Charsets.UTF_8));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.server.internal.netty;
+
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link NettyHttpByteRange} and the {@code If-Range} support in the {@link NettyStaticContentHandler}.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyHttpByteRangeTest {
+
+  /**
+   * Ranges are clipped to the content and suffix ranges count from the end.
+   */
+  @Test
+  public void testSingleRanges() {
+    assertRanges(NettyHttpByteRange.parseRangeHeader("bytes=0-99", 1000), 0, 99);
+    assertRanges(NettyHttpByteRange.parseRangeHeader("bytes=900-", 1000), 900, 999);
+    assertRanges(NettyHttpByteRange.parseRangeHeader("bytes=900-2000", 1000), 900, 999);
+    assertRanges(NettyHttpByteRange.parseRangeHeader("bytes=-100", 1000), 900, 999);
+    assertRanges(NettyHttpByteRange.parseRangeHeader("bytes=-2000", 1000), 0, 999);
+
+    Assert.assertEquals("bytes 900-999/1000", new NettyHttpByteRange(900, 999).getContentRange(1000));
+  }
+
+  /**
+   * Several ranges are put in order and merged where they overlap or touch.
+   */
+  @Test
+  public void testMultipleRanges() {
+    assertRanges(NettyHttpByteRange.parseRangeHeader("bytes=500-599, 0-99", 1000), 0, 99, 500, 599);
+    assertRanges(NettyHttpByteRange.parseRangeHeader("bytes=0-99,50-149,150-199,-100", 1000), 0, 199, 900, 999);
+    assertRanges(NettyHttpByteRange.parseRangeHeader("bytes=0-99,2000-", 1000), 0, 99);
+  }
+
+  /**
+   * Unsatisfiable ranges give an empty list, bad headers are ignored.
+   */
+  @Test
+  public void testBadRanges() {
+    Assert.assertTrue(NettyHttpByteRange.parseRangeHeader("bytes=1000-", 1000).isEmpty());
+    Assert.assertTrue(NettyHttpByteRange.parseRangeHeader("bytes=-0", 1000).isEmpty());
+
+    Assert.assertNull(NettyHttpByteRange.parseRangeHeader(null, 1000));
+    Assert.assertNull(NettyHttpByteRange.parseRangeHeader("items=0-1", 1000));
+    Assert.assertNull(NettyHttpByteRange.parseRangeHeader("bytes=5-1", 1000));
+    Assert.assertNull(NettyHttpByteRange.parseRangeHeader("bytes=a-1", 1000));
+    Assert.assertNull(NettyHttpByteRange.parseRangeHeader("bytes=", 1000));
+
+    StringBuilder tooMany = new StringBuilder("bytes=0-0");
+    for (int i = 1; i <= NettyHttpByteRange.MAXIMUM_RANGES; i++) {
+      tooMany.append(',').append(i * 2).append('-').append(i * 2);
+    }
+    Assert.assertNull(NettyHttpByteRange.parseRangeHeader(tooMany.toString(), 1000));
+  }
+
+  /**
+   * If-Range only matches strong entity tags and exact dates.
+   */
+  @Test
+  public void testIfRange() {
+    long lastModified = 1420070400000L;
+    String entityTag = NettyStaticContentHandler.getEntityTag(5, lastModified, null);
+
+    HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/foo");
+    Assert.assertTrue(NettyStaticContentHandler.isIfRangeMatched(request, entityTag, lastModified));
+
+    HttpHeaders.setHeader(request, HttpHeaders.Names.IF_RANGE, entityTag);
+    Assert.assertTrue(NettyStaticContentHandler.isIfRangeMatched(request, entityTag, lastModified));
+
+    HttpHeaders.setHeader(request, HttpHeaders.Names.IF_RANGE, "W/" + entityTag);
+    Assert.assertFalse(NettyStaticContentHandler.isIfRangeMatched(request, entityTag, lastModified));
+
+    HttpHeaders.setHeader(request, HttpHeaders.Names.IF_RANGE, "Thu, 01 Jan 2015 00:00:00 GMT");
+    Assert.assertTrue(NettyStaticContentHandler.isIfRangeMatched(request, entityTag, lastModified));
+    Assert.assertFalse(NettyStaticContentHandler.isIfRangeMatched(request, entityTag, lastModified + 1000));
+  }
+
+  /**
+   * Check a list of ranges.
+   *
+   * @param ranges
+   *          the ranges
+   * @param positions
+   *          the expected start and end of each range
+   */
+  private void assertRanges(List<NettyHttpByteRange> ranges, long... positions) {
+    Assert.assertEquals(positions.length / 2, ranges.size());
+    for (int i = 0; i < ranges.size(); i++) {
+      Assert.assertEquals(positions[2 * i], ranges.get(i).getStart());
+      Assert.assertEquals(positions[2 * i + 1], ranges.get(i).getEnd());
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.server.internal.netty;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Tests for the {@link NettyHttpContentEncoding}.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyHttpContentEncodingTest {
+
+  /**
+   * Encodings are matched by name, wildcard and quality.
+   */
+  @Test
+  public void testAcceptedEncoding() {
+    HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/foo");
+    Assert.assertFalse(NettyHttpContentEncoding.isAcceptedEncoding(request, "gzip"));
+
+    HttpHeaders.setHeader(request, HttpHeaders.Names.ACCEPT_ENCODING, "gzip, deflate, br;q=0");
+    Assert.assertTrue(NettyHttpContentEncoding.isAcceptedEncoding(request, "gzip"));
+    Assert.assertFalse(NettyHttpContentEncoding.isAcceptedEncoding(request, "br"));
+
+    HttpHeaders.setHeader(request, HttpHeaders.Names.ACCEPT_ENCODING, "*;q=0.5, identity");
+    Assert.assertTrue(NettyHttpContentEncoding.isAcceptedEncoding(request, "gzip"));
+  }
+
+  /**
+   * Compressed content decompresses to the original.
+   */
+  @Test
+  public void testGzip() throws Exception {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      builder.append("hello, world ");
+    }
+    String original = builder.toString();
+
+    ChannelBuffer content = ChannelBuffers.copiedBuffer(original, StandardCharsets.UTF_8);
+    ChannelBuffer compressed = NettyHttpContentEncoding.gzip(content);
+    Assert.assertTrue(compressed.readableBytes() < content.readableBytes());
+    Assert.assertEquals(original.length(), content.readableBytes());
+
+    InputStream in = new GZIPInputStream(new ChannelBufferInputStream(compressed));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int length;
+    while ((length = in.read(buffer)) != -1) {
+      out.write(buffer, 0, length);
+    }
+
+    Assert.assertEquals(original, new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+}
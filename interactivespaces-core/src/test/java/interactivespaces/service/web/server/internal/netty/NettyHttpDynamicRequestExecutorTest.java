@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.server.internal.netty;
+
+import interactivespaces.service.web.server.WebServer;
+
+import com.google.common.collect.Lists;
+
+import org.apache.commons.logging.Log;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the {@link NettyHttpDynamicRequestExecutor}.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyHttpDynamicRequestExecutorTest {
+
+  private NettyWebServerHandler parentHandler;
+
+  private ScheduledExecutorService timeoutExecutor;
+
+  private NettyHttpDynamicRequestExecutor executor;
+
+  private Channel channel;
+
+  private ChannelHandlerContext context;
+
+  @Before
+  public void setup() {
+    parentHandler = Mockito.mock(NettyWebServerHandler.class);
+    NettyWebServer webServer = Mockito.mock(NettyWebServer.class);
+    Mockito.when(parentHandler.getWebServer()).thenReturn(webServer);
+    Mockito.when(webServer.getLog()).thenReturn(Mockito.mock(Log.class));
+
+    timeoutExecutor = Executors.newSingleThreadScheduledExecutor();
+    executor = new NettyHttpDynamicRequestExecutor(parentHandler, 2, 10, 0, timeoutExecutor);
+
+    channel = Mockito.mock(Channel.class);
+    Mockito.when(channel.getId()).thenReturn(1);
+    Mockito.when(channel.isOpen()).thenReturn(true);
+    context = Mockito.mock(ChannelHandlerContext.class);
+    Mockito.when(context.getChannel()).thenReturn(channel);
+  }
+
+  @After
+  public void cleanup() {
+    executor.shutdown();
+    timeoutExecutor.shutdownNow();
+  }
+
+  /**
+   * Pipelined requests on a connection run one at a time in the order they came in, even with free threads.
+   */
+  @Test
+  public void testPipelinedRequests() throws Exception {
+    final List<Integer> order = Collections.synchronizedList(Lists.<Integer> newArrayList());
+    final CountDownLatch firstStarted = new CountDownLatch(1);
+    final CountDownLatch releaseFirst = new CountDownLatch(1);
+    final CountDownLatch secondDone = new CountDownLatch(1);
+
+    executor.execute(context, "handler", WebServer.DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT, new Runnable() {
+      @Override
+      public void run() {
+        firstStarted.countDown();
+        try {
+          releaseFirst.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        order.add(1);
+      }
+    }, null);
+    Assert.assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+    executor.execute(context, "handler", WebServer.DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT, new Runnable() {
+      @Override
+      public void run() {
+        order.add(2);
+        secondDone.countDown();
+      }
+    }, null);
+
+    Assert.assertFalse(secondDone.await(100, TimeUnit.MILLISECONDS));
+
+    releaseFirst.countDown();
+    Assert.assertTrue(secondDone.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(Lists.newArrayList(1, 2), order);
+    Mockito.verify(channel, Mockito.timeout(5000)).setReadable(true);
+  }
+
+  /**
+   * A pipelined request turned away by the limit of its handler is answered after the request before it, and requests
+   * behind it are cleaned up without being run.
+   */
+  @Test
+  public void testPipelinedRejection() throws Exception {
+    final List<String> order = Collections.synchronizedList(Lists.<String> newArrayList());
+    final CountDownLatch firstStarted = new CountDownLatch(1);
+    final CountDownLatch releaseFirst = new CountDownLatch(1);
+    final CountDownLatch cleanedUp = new CountDownLatch(2);
+    Runnable cleanup = new Runnable() {
+      @Override
+      public void run() {
+        cleanedUp.countDown();
+      }
+    };
+    Mockito.doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        order.add("rejected");
+        return null;
+      }
+    }).when(parentHandler).writeError(context, HttpResponseStatus.SERVICE_UNAVAILABLE);
+
+    NettyHttpDynamicRequestExecutor limitedExecutor =
+        new NettyHttpDynamicRequestExecutor(parentHandler, 2, 1, 0, timeoutExecutor);
+    try {
+      Assert.assertTrue(limitedExecutor.execute(context, "handler", WebServer.DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT,
+          new Runnable() {
+            @Override
+            public void run() {
+              firstStarted.countDown();
+              try {
+                releaseFirst.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              order.add("first");
+            }
+          }, null));
+      Assert.assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+      Assert.assertFalse(limitedExecutor.execute(context, "handler",
+          WebServer.DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT, new Runnable() {
+            @Override
+            public void run() {
+              order.add("second");
+            }
+          }, cleanup));
+      Assert.assertTrue(limitedExecutor.execute(context, "other", WebServer.DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT,
+          new Runnable() {
+            @Override
+            public void run() {
+              order.add("third");
+            }
+          }, cleanup));
+
+      Thread.sleep(100);
+      Assert.assertTrue(order.isEmpty());
+
+      releaseFirst.countDown();
+      Assert.assertTrue(cleanedUp.await(5, TimeUnit.SECONDS));
+      Mockito.verify(parentHandler, Mockito.timeout(5000)).writeError(context, HttpResponseStatus.SERVICE_UNAVAILABLE);
+      Assert.assertEquals(Lists.newArrayList("first", "rejected"), order);
+      Assert.assertEquals(1, limitedExecutor.getRejectedRequestCount());
+    } finally {
+      limitedExecutor.shutdown();
+    }
+  }
+
+  /**
+   * A request which takes longer than the timeout of its handler is answered with an error, and requests waiting behind
+   * it are cleaned up without being run.
+   */
+  @Test
+  public void testHandlerTimeout() throws Exception {
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    final CountDownLatch cleanedUp = new CountDownLatch(1);
+    final CountDownLatch secondRun = new CountDownLatch(1);
+
+    executor.execute(context, "slow", 50, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(10000);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+        }
+      }
+    }, null);
+    executor.execute(context, "other", WebServer.DYNAMIC_REQUEST_TIMEOUT_SERVER_DEFAULT, new Runnable() {
+      @Override
+      public void run() {
+        secondRun.countDown();
+      }
+    }, new Runnable() {
+      @Override
+      public void run() {
+        cleanedUp.countDown();
+      }
+    });
+
+    Mockito.verify(parentHandler, Mockito.timeout(5000)).writeError(context, HttpResponseStatus.SERVICE_UNAVAILABLE);
+    Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    Assert.assertTrue(cleanedUp.await(5, TimeUnit.SECONDS));
+    Assert.assertFalse(secondRun.await(100, TimeUnit.MILLISECONDS));
+    Assert.assertEquals(1, executor.getTimedOutRequestCount());
+    Mockito.verify(channel, Mockito.never()).setReadable(true);
+  }
+}
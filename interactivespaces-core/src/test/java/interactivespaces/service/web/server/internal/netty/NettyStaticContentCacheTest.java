@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.server.internal.netty;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Tests for the {@link NettyStaticContentCache} and the conditional request support in the
+ * {@link NettyStaticContentHandler}.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyStaticContentCacheTest {
+
+  private File file;
+
+  @Before
+  public void setup() throws Exception {
+    file = File.createTempFile("static", ".txt");
+    Files.write(file.toPath(), "hello".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @After
+  public void cleanup() {
+    file.delete();
+  }
+
+  /**
+   * A changed file is read again rather than served from the cache.
+   */
+  @Test
+  public void testInvalidation() throws Exception {
+    NettyStaticContentCache cache = new NettyStaticContentCache(1024, 64);
+
+    ChannelBuffer content = cache.getContent(file, file.length(), file.lastModified());
+    Assert.assertEquals("hello", content.toString(StandardCharsets.UTF_8));
+    Assert.assertEquals(1, cache.getNumberCachedFiles());
+
+    Files.write(file.toPath(), "goodbye".getBytes(StandardCharsets.UTF_8));
+    Assert.assertTrue(file.setLastModified(file.lastModified() + 10000));
+
+    content = cache.getContent(file, file.length(), file.lastModified());
+    Assert.assertEquals("goodbye", content.toString(StandardCharsets.UTF_8));
+    Assert.assertEquals(1, cache.getNumberCachedFiles());
+  }
+
+  /**
+   * Files which are too large, or a disabled cache, give no content.
+   */
+  @Test
+  public void testUncacheable() throws Exception {
+    Assert.assertNull(new NettyStaticContentCache(1024, 4).getContent(file, file.length(), file.lastModified()));
+    Assert.assertNull(new NettyStaticContentCache(0, 64).getContent(file, file.length(), file.lastModified()));
+  }
+
+  /**
+   * Entity tags take precedence over modification dates.
+   */
+  @Test
+  public void testConditionalRequest() {
+    long lastModified = 1420070400000L;
+    String entityTag = NettyStaticContentHandler.getEntityTag(5, lastModified, null);
+
+    HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/foo");
+    Assert.assertFalse(NettyStaticContentHandler.isNotModified(request, entityTag, lastModified));
+
+    HttpHeaders.setHeader(request, HttpHeaders.Names.IF_MODIFIED_SINCE, "Thu, 01 Jan 2015 00:00:00 GMT");
+    Assert.assertTrue(NettyStaticContentHandler.isNotModified(request, entityTag, lastModified));
+    Assert.assertFalse(NettyStaticContentHandler.isNotModified(request, entityTag, lastModified + 1000));
+
+    HttpHeaders.setHeader(request, HttpHeaders.Names.IF_NONE_MATCH, "\"other\", W/" + entityTag);
+    Assert.assertTrue(NettyStaticContentHandler.isNotModified(request, entityTag, lastModified + 1000));
+
+    HttpHeaders.setHeader(request, HttpHeaders.Names.IF_NONE_MATCH, "\"other\"");
+    Assert.assertFalse(NettyStaticContentHandler.isNotModified(request, entityTag, lastModified));
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.service.web.server.internal.netty;
+
+import interactivespaces.service.web.WebSocketConnection;
+import interactivespaces.service.web.server.WebServerWebSocketHandler;
+import interactivespaces.service.web.server.WebServerWebSocketHandlerFactory;
+import interactivespaces.service.web.server.WebSocketOverflowPolicy;
+
+import com.google.common.collect.Lists;
+
+import org.apache.commons.logging.Log;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.jboss.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Tests for the {@link NettyWebServerWebSocketConnection}.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyWebServerWebSocketConnectionTest {
+
+  private NettyWebServerWebSocketConnection connection;
+
+  private WebServerWebSocketHandler handler;
+
+  private Channel channel;
+
+  private ChannelHandlerContext context;
+
+  private WebServerWebSocketHandlerFactory handlerFactory;
+
+  @Before
+  public void setup() {
+    handler = Mockito.mock(WebServerWebSocketHandler.class);
+
+    handlerFactory = Mockito.mock(WebServerWebSocketHandlerFactory.class);
+    Mockito.when(handlerFactory.newWebSocketHandler(Mockito.any(WebSocketConnection.class))).thenReturn(handler);
+
+    channel = Mockito.mock(Channel.class);
+    Mockito.when(channel.isOpen()).thenReturn(true);
+    Mockito.when(channel.isWritable()).thenReturn(true);
+    context = Mockito.mock(ChannelHandlerContext.class);
+    Mockito.when(context.getChannel()).thenReturn(channel);
+
+    connection = newConnection(WebSocketOverflowPolicy.DROP);
+  }
+
+  /**
+   * A single binary frame is handed to the handler.
+   */
+  @Test
+  public void testBinaryFrame() {
+    connection.handleWebSocketFrame(context, new BinaryWebSocketFrame(ChannelBuffers.wrappedBuffer(new byte[] { 1,
+        2, 3 })));
+
+    Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, getReceivedBinary());
+  }
+
+  /**
+   * A binary message split over continuation frames is handed to the handler once it is complete.
+   */
+  @Test
+  public void testBinaryContinuationFrames() {
+    connection.handleWebSocketFrame(context,
+        new BinaryWebSocketFrame(false, 0, ChannelBuffers.wrappedBuffer(new byte[] { 1, 2 })));
+    connection.handleWebSocketFrame(context,
+        new ContinuationWebSocketFrame(false, 0, ChannelBuffers.wrappedBuffer(new byte[] { 3 })));
+
+    Mockito.verify(handler, Mockito.never()).onReceiveBinary(Mockito.any(ByteBuffer.class));
+
+    connection.handleWebSocketFrame(context,
+        new ContinuationWebSocketFrame(true, 0, ChannelBuffers.wrappedBuffer(new byte[] { 4, 5 })));
+
+    Assert.assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, getReceivedBinary());
+    Mockito.verify(handler, Mockito.never()).onReceive(Mockito.any());
+  }
+
+  /**
+   * Binary data written to the connection goes out as a binary frame.
+   */
+  @Test
+  public void testBinaryWrite() {
+    connection.writeDataAsBinary(ByteBuffer.wrap(new byte[] { 1, 2, 3 }, 1, 2));
+
+    ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+    Mockito.verify(channel).write(captor.capture());
+
+    WebSocketFrame frame = (WebSocketFrame) captor.getValue();
+    Assert.assertTrue(frame instanceof BinaryWebSocketFrame);
+    Assert.assertEquals(ChannelBuffers.wrappedBuffer(new byte[] { 2, 3 }), frame.getBinaryData());
+  }
+
+  /**
+   * Messages are queued while the channel is not writable, new messages are dropped once the queue is full, and the
+   * queue is written out when the channel is writable again.
+   */
+  @Test
+  public void testOutboundQueueDrop() {
+    Mockito.when(channel.isWritable()).thenReturn(false);
+
+    connection.writeDataAsString("1");
+    connection.writeDataAsString("2");
+    connection.writeDataAsString("3");
+
+    Assert.assertEquals(2, connection.getOutboundQueueDepth());
+    Assert.assertEquals(1, connection.getDroppedMessageCount());
+    Mockito.verify(channel, Mockito.never()).write(Mockito.any());
+
+    Mockito.when(channel.isWritable()).thenReturn(true);
+    connection.writeQueuedFrames();
+
+    Assert.assertEquals(0, connection.getOutboundQueueDepth());
+    Assert.assertEquals(Lists.newArrayList("1", "2"), getWrittenText());
+  }
+
+  /**
+   * The oldest queued message is dropped for a new one when the queue is full.
+   */
+  @Test
+  public void testOutboundQueueDropOldest() {
+    connection = newConnection(WebSocketOverflowPolicy.DROP_OLDEST);
+    Mockito.when(channel.isWritable()).thenReturn(false);
+
+    connection.writeDataAsString("1");
+    connection.writeDataAsString("2");
+    connection.writeDataAsString("3");
+
+    Mockito.when(channel.isWritable()).thenReturn(true);
+    connection.writeQueuedFrames();
+
+    Assert.assertEquals(1, connection.getDroppedMessageCount());
+    Assert.assertEquals(Lists.newArrayList("2", "3"), getWrittenText());
+  }
+
+  /**
+   * The connection is closed when the queue is full.
+   */
+  @Test
+  public void testOutboundQueueDisconnect() {
+    connection = newConnection(WebSocketOverflowPolicy.DISCONNECT);
+    Mockito.when(channel.isWritable()).thenReturn(false);
+
+    connection.writeDataAsString("1");
+    connection.writeDataAsString("2");
+    Mockito.verify(channel, Mockito.never()).close();
+
+    connection.writeDataAsString("3");
+    Mockito.verify(channel).close();
+    Assert.assertEquals(0, connection.getOutboundQueueDepth());
+  }
+
+  /**
+   * Create a connection with an outbound queue capacity of 2.
+   *
+   * @param overflowPolicy
+   *          the overflow policy for the connection
+   *
+   * @return the new connection
+   */
+  private NettyWebServerWebSocketConnection newConnection(WebSocketOverflowPolicy overflowPolicy) {
+    return new NettyWebServerWebSocketConnection(channel, "user", Mockito.mock(WebSocketServerHandshaker.class),
+        handlerFactory, null, 2, overflowPolicy, Mockito.mock(Log.class));
+  }
+
+  /**
+   * Get the text of all frames written to the channel.
+   *
+   * @return the text of the frames in the order written
+   */
+  private List<String> getWrittenText() {
+    ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+    Mockito.verify(channel, Mockito.atLeastOnce()).write(captor.capture());
+
+    List<String> text = Lists.newArrayList();
+    for (Object frame : captor.getAllValues()) {
+      text.add(((TextWebSocketFrame) frame).getText());
+    }
+
+    return text;
+  }
+
+  /**
+   * Get the binary data the handler received.
+   *
+   * @return the received data
+   */
+  private byte[] getReceivedBinary() {
+    ArgumentCaptor<ByteBuffer> captor = ArgumentCaptor.forClass(ByteBuffer.class);
+    Mockito.verify(handler).onReceiveBinary(captor.capture());
+
+    ByteBuffer data = captor.getValue();
+    byte[] bytes = new byte[data.remaining()];
+    data.get(bytes);
+
+    return bytes;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.metrics;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link LatencyHistogram}.
+ *
+ * @author Keith M. Hughes
+ */
+public class LatencyHistogramTest {
+
+  private LatencyHistogram histogram;
+
+  @Before
+  public void setup() {
+    histogram = new LatencyHistogram();
+  }
+
+  /**
+   * An empty histogram gives 0 for everything.
+   */
+  @Test
+  public void testEmpty() {
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getMean());
+    Assert.assertEquals(0, histogram.getMaximum());
+    Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+  }
+
+  /**
+   * Small values are recorded exactly.
+   */
+  @Test
+  public void testSmallValuesExact() {
+    for (long i = 1; i <= LatencyHistogram.SUB_BUCKET_COUNT * 2; i++) {
+      histogram.record(i);
+    }
+
+    Assert.assertEquals(LatencyHistogram.SUB_BUCKET_COUNT, histogram.getValueAtPercentile(50));
+    Assert.assertEquals(LatencyHistogram.SUB_BUCKET_COUNT * 2, histogram.getValueAtPercentile(100));
+  }
+
+  /**
+   * Percentiles of large values are within the bucket precision and never below the real value.
+   */
+  @Test
+  public void testPercentilePrecision() {
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+
+    Assert.assertEquals(1000, histogram.getCount());
+    Assert.assertEquals(500500, histogram.getMean());
+    Assert.assertEquals(1000000, histogram.getMaximum());
+
+    long p50 = histogram.getValueAtPercentile(50);
+    Assert.assertTrue(p50 >= 500000);
+    Assert.assertTrue(p50 <= 500000 + 500000 / LatencyHistogram.SUB_BUCKET_COUNT);
+
+    Assert.assertEquals(1000000, histogram.getValueAtPercentile(100));
+  }
+
+  /**
+   * Very large values are kept and reset clears everything.
+   */
+  @Test
+  public void testLargeValuesAndReset() {
+    histogram.record(Long.MAX_VALUE);
+    histogram.record(-5);
+
+    Assert.assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+
+    histogram.reset();
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getMaximum());
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.ros;
+
+import com.google.common.collect.Lists;
+
+import org.apache.commons.logging.Log;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.ros.internal.node.server.NodeIdentifier;
+import org.ros.internal.node.topic.SubscriberIdentifier;
+import org.ros.internal.node.topic.TopicIdentifier;
+import org.ros.message.MessageListener;
+import org.ros.namespace.GraphName;
+import org.ros.node.topic.Publisher;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link StandardInProcessRosTopicRegistry}.
+ *
+ * @author Keith M. Hughes
+ */
+public class StandardInProcessRosTopicRegistryTest {
+
+  private static final String TOPIC_NAME = "/foo/bar";
+
+  private static final String MESSAGE_TYPE = "std_msgs/String";
+
+  private StandardInProcessRosTopicRegistry registry;
+
+  private Publisher<String> rosPublisher;
+
+  private MessageListener<String> listener;
+
+  private Log log;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    log = Mockito.mock(Log.class);
+
+    registry = new StandardInProcessRosTopicRegistry(log);
+
+    rosPublisher = Mockito.mock(Publisher.class);
+    Mockito.when(rosPublisher.getTopicName()).thenReturn(GraphName.of(TOPIC_NAME));
+    Mockito.when(rosPublisher.getTopicMessageType()).thenReturn(MESSAGE_TYPE);
+
+    listener = Mockito.mock(MessageListener.class);
+  }
+
+  /**
+   * With no in-process subscribers everything goes through the ROS publisher.
+   */
+  @Test
+  public void testNoInProcessSubscribers() {
+    InProcessRosPublisher<String> publisher = registry.newPublisher(rosPublisher);
+
+    publisher.publish("hello");
+
+    Mockito.verify(rosPublisher).publish("hello");
+  }
+
+  /**
+   * Only in-process subscribers, so messages never touch the ROS publisher.
+   */
+  @Test
+  public void testOnlyInProcessSubscribers() {
+    registry.addSubscriber(TOPIC_NAME, MESSAGE_TYPE, "/node/sub", listener);
+    InProcessRosPublisher<String> publisher = registry.newPublisher(rosPublisher);
+
+    connectSubscriberNodes("/node/sub");
+
+    publisher.publish("hello");
+
+    Mockito.verify(listener).onNewMessage("hello");
+    Mockito.verify(rosPublisher, Mockito.never()).publish(Mockito.anyString());
+  }
+
+  /**
+   * A remote subscriber is connected, so everything goes through the ROS publisher.
+   */
+  @Test
+  public void testRemoteSubscriber() {
+    registry.addSubscriber(TOPIC_NAME, MESSAGE_TYPE, "/node/sub", listener);
+    InProcessRosPublisher<String> publisher = registry.newPublisher(rosPublisher);
+
+    connectSubscriberNodes("/node/sub", "/node/remote");
+
+    publisher.publish("hello");
+
+    Mockito.verify(rosPublisher).publish("hello");
+    Mockito.verify(listener, Mockito.never()).onNewMessage(Mockito.anyString());
+  }
+
+  /**
+   * A remote subscriber is connected while the in-process subscriber's connection is gone, so everything goes through
+   * the ROS publisher.
+   */
+  @Test
+  public void testRemoteSubscriberWithoutInProcessConnection() {
+    registry.addSubscriber(TOPIC_NAME, MESSAGE_TYPE, "/node/sub", listener);
+    InProcessRosPublisher<String> publisher = registry.newPublisher(rosPublisher);
+
+    connectSubscriberNodes("/node/remote");
+
+    publisher.publish("hello");
+
+    Mockito.verify(rosPublisher).publish("hello");
+    Mockito.verify(listener, Mockito.never()).onNewMessage(Mockito.anyString());
+  }
+
+  /**
+   * Latched publishers always go through ROS so late joiners get the latched message.
+   */
+  @Test
+  public void testLatchedPublisher() {
+    registry.addSubscriber(TOPIC_NAME, MESSAGE_TYPE, "/node/sub", listener);
+    InProcessRosPublisher<String> publisher = registry.newPublisher(rosPublisher);
+    Mockito.when(rosPublisher.getLatchMode()).thenReturn(true);
+
+    publisher.publish("hello");
+
+    Mockito.verify(rosPublisher).publish("hello");
+    Mockito.verify(listener, Mockito.never()).onNewMessage(Mockito.anyString());
+  }
+
+  /**
+   * A removed subscriber no longer gets messages.
+   */
+  @Test
+  public void testRemovedSubscriber() {
+    registry.addSubscriber(TOPIC_NAME, MESSAGE_TYPE, "/node/sub", listener);
+    InProcessRosPublisher<String> publisher = registry.newPublisher(rosPublisher);
+    connectSubscriberNodes("/node/sub");
+
+    registry.removeSubscriber(TOPIC_NAME, listener);
+    publisher.publish("hello");
+
+    Mockito.verify(rosPublisher).publish("hello");
+    Mockito.verify(listener, Mockito.never()).onNewMessage(Mockito.anyString());
+  }
+
+  /**
+   * Removing one subscriber keeps the node connected while another subscriber from the same node remains.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRemovedSubscriberSharedNode() {
+    MessageListener<String> otherListener = Mockito.mock(MessageListener.class);
+    registry.addSubscriber(TOPIC_NAME, MESSAGE_TYPE, "/node/sub", listener);
+    registry.addSubscriber(TOPIC_NAME, MESSAGE_TYPE, "/node/sub", otherListener);
+    InProcessRosPublisher<String> publisher = registry.newPublisher(rosPublisher);
+    connectSubscriberNodes("/node/sub");
+
+    registry.removeSubscriber(TOPIC_NAME, listener);
+    publisher.publish("hello");
+
+    Mockito.verify(otherListener).onNewMessage("hello");
+    Mockito.verify(listener, Mockito.never()).onNewMessage(Mockito.anyString());
+    Mockito.verify(rosPublisher, Mockito.never()).publish(Mockito.anyString());
+  }
+
+  /**
+   * Set the nodes with open subscriber connections to the ROS publisher.
+   *
+   * @param nodeNames
+   *          names of the subscriber nodes
+   */
+  private void connectSubscriberNodes(String... nodeNames) {
+    List<SubscriberIdentifier> subscribers = Lists.newArrayList();
+    for (String nodeName : nodeNames) {
+      subscribers.add(new SubscriberIdentifier(NodeIdentifier.forName(nodeName), TopicIdentifier.forName(TOPIC_NAME)));
+    }
+    Mockito.when(rosPublisher.getSubscriberIdentifiers()).thenReturn(subscribers);
+  }
+}
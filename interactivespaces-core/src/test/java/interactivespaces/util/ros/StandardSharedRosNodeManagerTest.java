@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.ros;
+
+import static org.junit.Assert.fail;
+
+import interactivespaces.SimpleInteractiveSpacesException;
+
+import org.apache.commons.logging.Log;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.ros.concurrent.QueuePolicy;
+import org.ros.message.MessageListener;
+import org.ros.namespace.GraphName;
+import org.ros.namespace.NameResolver;
+import org.ros.node.ConnectedNode;
+import org.ros.node.NodeConfiguration;
+import org.ros.node.NodeListener;
+import org.ros.node.topic.Publisher;
+import org.ros.node.topic.PublisherListener;
+import org.ros.node.topic.Subscriber;
+import org.ros.node.topic.SubscriberListener;
+import org.ros.osgi.common.RosEnvironment;
+
+/**
+ * Tests for the {@link StandardSharedRosNodeManager}.
+ *
+ * @author Keith M. Hughes
+ */
+public class StandardSharedRosNodeManagerTest {
+
+  private StandardSharedRosNodeManager manager;
+
+  private RosEnvironment rosEnvironment;
+
+  private ConnectedNode sharedNode;
+
+  private Log log;
+
+  @Before
+  public void setup() {
+    log = Mockito.mock(Log.class);
+
+    sharedNode = Mockito.mock(ConnectedNode.class);
+    Mockito.when(sharedNode.getName()).thenReturn(GraphName.of("/controller/activities"));
+
+    rosEnvironment = Mockito.mock(RosEnvironment.class);
+    Mockito.when(rosEnvironment.getPublicNodeConfigurationWithNodeName(StandardSharedRosNodeManager.SHARED_NODE_SUBNAME))
+        .thenReturn(NodeConfiguration.newPrivate());
+    Mockito.when(rosEnvironment.newNode(Mockito.any(NodeConfiguration.class))).thenReturn(sharedNode);
+
+    manager = new StandardSharedRosNodeManager(rosEnvironment, log);
+  }
+
+  /**
+   * The shared node is only created once and is shut down when the last scoped node goes away.
+   */
+  @Test
+  public void testNodeReferences() {
+    ConnectedNode node1 = manager.newScopedNode(newNodeConfiguration("/activity/one"));
+    ConnectedNode node2 = manager.newScopedNode(newNodeConfiguration("/activity/two"));
+
+    Mockito.verify(rosEnvironment, Mockito.times(1)).newNode(Mockito.any(NodeConfiguration.class));
+
+    node1.shutdown();
+    Mockito.verify(sharedNode, Mockito.never()).shutdown();
+
+    node2.shutdown();
+    Mockito.verify(sharedNode, Mockito.times(1)).shutdown();
+  }
+
+  /**
+   * Relative topic names are resolved against the scoped node's name and shared publishers are only shut down by the
+   * last user.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPublisherReferences() {
+    Publisher<Object> publisher = Mockito.mock(Publisher.class);
+    Mockito.when(publisher.getTopicName()).thenReturn(GraphName.of("/activity/one/foo"));
+    Mockito.when(sharedNode.<Object>newPublisher(GraphName.of("/activity/one/foo"), "std_msgs/String")).thenReturn(
+        publisher);
+
+    ConnectedNode node1 = manager.newScopedNode(newNodeConfiguration("/activity/one"));
+    ConnectedNode node2 = manager.newScopedNode(newNodeConfiguration("/activity/two"));
+
+    Publisher<Object> scoped1 = node1.newPublisher("~foo", "std_msgs/String");
+    Publisher<Object> scoped2 = node2.newPublisher("/activity/one/foo", "std_msgs/String");
+
+    scoped1.shutdown();
+    Mockito.verify(publisher, Mockito.never()).shutdown();
+
+    scoped2.shutdown();
+    Mockito.verify(publisher, Mockito.times(1)).shutdown();
+  }
+
+  /**
+   * A shared publisher's settings can be changed by its only user, but not once another scoped node shares it.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSharedPublisherSettings() {
+    Publisher<Object> publisher = Mockito.mock(Publisher.class);
+    Mockito.when(publisher.getTopicName()).thenReturn(GraphName.of("/foo"));
+    Mockito.when(sharedNode.<Object>newPublisher(GraphName.of("/foo"), "std_msgs/String")).thenReturn(publisher);
+
+    ConnectedNode node1 = manager.newScopedNode(newNodeConfiguration("/activity/one"));
+    ConnectedNode node2 = manager.newScopedNode(newNodeConfiguration("/activity/two"));
+
+    Publisher<Object> scoped1 = node1.newPublisher("/foo", "std_msgs/String");
+    QueuePolicy<Object> queuePolicy = QueuePolicy.newBlocking(10);
+    scoped1.setLatchMode(true);
+    scoped1.setQueuePolicy(queuePolicy);
+    Mockito.verify(publisher).setLatchMode(true);
+    Mockito.verify(publisher).setQueuePolicy(queuePolicy);
+    Mockito.when(publisher.getLatchMode()).thenReturn(true);
+
+    Publisher<Object> scoped2 = node2.newPublisher("/foo", "std_msgs/String");
+
+    // Asking for the mode the publisher already has is fine.
+    scoped2.setLatchMode(true);
+
+    try {
+      scoped2.setLatchMode(false);
+      fail();
+    } catch (SimpleInteractiveSpacesException e) {
+      // Expected
+    }
+
+    try {
+      scoped2.setQueuePolicy(QueuePolicy.newBlocking(1));
+      fail();
+    } catch (SimpleInteractiveSpacesException e) {
+      // Expected
+    }
+
+    Mockito.verify(publisher, Mockito.never()).setLatchMode(false);
+    Mockito.verify(publisher, Mockito.times(1)).setQueuePolicy(Mockito.any(QueuePolicy.class));
+  }
+
+  /**
+   * The message listeners of a scoped subscriber are removed from the shared subscriber when the scope shuts down.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSubscriberListenersRemoved() {
+    Subscriber<Object> subscriber = Mockito.mock(Subscriber.class);
+    Mockito.when(subscriber.getTopicName()).thenReturn(GraphName.of("/foo"));
+    Mockito.when(sharedNode.<Object>newSubscriber(GraphName.of("/foo"), "std_msgs/String")).thenReturn(subscriber);
+
+    ConnectedNode node1 = manager.newScopedNode(newNodeConfiguration("/activity/one"));
+    ConnectedNode node2 = manager.newScopedNode(newNodeConfiguration("/activity/two"));
+
+    Subscriber<Object> scoped1 = node1.newSubscriber("/foo", "std_msgs/String");
+    Subscriber<Object> scoped2 = node2.newSubscriber("/foo", "std_msgs/String");
+    scoped1.addMessageListener(Mockito.mock(MessageListener.class));
+    scoped1.addMessageListener(Mockito.mock(MessageListener.class), 10);
+    scoped2.addMessageListener(Mockito.mock(MessageListener.class));
+
+    scoped1.shutdown();
+    Mockito.verify(subscriber, Mockito.times(2)).removeMessageListener(Mockito.any(MessageListener.class));
+    Mockito.verify(subscriber, Mockito.never()).shutdown();
+
+    node2.shutdown();
+    Mockito.verify(subscriber, Mockito.times(3)).removeMessageListener(Mockito.any(MessageListener.class));
+    Mockito.verify(subscriber, Mockito.times(1)).shutdown();
+  }
+
+  /**
+   * Node, publisher and subscriber listeners added through a scope are removed from the shared objects when the scope
+   * shuts down, while those of other scopes stay.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testLifecycleListenersRemoved() {
+    Publisher<Object> publisher = Mockito.mock(Publisher.class);
+    Mockito.when(publisher.getTopicName()).thenReturn(GraphName.of("/foo"));
+    Mockito.when(sharedNode.<Object>newPublisher(GraphName.of("/foo"), "std_msgs/String")).thenReturn(publisher);
+    Subscriber<Object> subscriber = Mockito.mock(Subscriber.class);
+    Mockito.when(subscriber.getTopicName()).thenReturn(GraphName.of("/bar"));
+    Mockito.when(sharedNode.<Object>newSubscriber(GraphName.of("/bar"), "std_msgs/String")).thenReturn(subscriber);
+
+    ConnectedNode node1 = manager.newScopedNode(newNodeConfiguration("/activity/one"));
+    ConnectedNode node2 = manager.newScopedNode(newNodeConfiguration("/activity/two"));
+
+    NodeListener nodeListener1 = Mockito.mock(NodeListener.class);
+    NodeListener nodeListener2 = Mockito.mock(NodeListener.class);
+    node1.addListener(nodeListener1);
+    node2.addListener(nodeListener2);
+
+    PublisherListener<Object> publisherListener1 = Mockito.mock(PublisherListener.class);
+    PublisherListener<Object> publisherListener2 = Mockito.mock(PublisherListener.class);
+    node1.<Object>newPublisher("/foo", "std_msgs/String").addListener(publisherListener1);
+    node2.<Object>newPublisher("/foo", "std_msgs/String").addListener(publisherListener2);
+
+    SubscriberListener<Object> subscriberListener1 = Mockito.mock(SubscriberListener.class);
+    node1.<Object>newSubscriber("/bar", "std_msgs/String").addSubscriberListener(subscriberListener1);
+    node2.<Object>newSubscriber("/bar", "std_msgs/String");
+
+    node1.shutdown();
+    Mockito.verify(sharedNode).removeListener(nodeListener1);
+    Mockito.verify(publisher).removeListener(publisherListener1);
+    Mockito.verify(subscriber).removeSubscriberListener(subscriberListener1);
+    Mockito.verify(sharedNode, Mockito.never()).removeListener(nodeListener2);
+    Mockito.verify(publisher, Mockito.never()).removeListener(publisherListener2);
+
+    node2.shutdown();
+    Mockito.verify(sharedNode).removeListener(nodeListener2);
+    Mockito.verify(publisher).removeListener(publisherListener2);
+  }
+
+  /**
+   * Create a node configuration for a scoped node.
+   *
+   * @param nodeName
+   *          the name of the node
+   *
+   * @return the node configuration
+   */
+  private NodeConfiguration newNodeConfiguration(String nodeName) {
+    NodeConfiguration nodeConfiguration = NodeConfiguration.newPrivate();
+    nodeConfiguration.setParentResolver(NameResolver.newRoot());
+    nodeConfiguration.setNodeName(nodeName);
+
+    return nodeConfiguration;
+  }
+}
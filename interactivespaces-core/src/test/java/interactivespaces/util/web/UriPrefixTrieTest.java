@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.util.web;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link UriPrefixTrie}.
+ *
+ * @author Keith M. Hughes
+ */
+public class UriPrefixTrieTest {
+
+  /**
+   * Matches come back longest prefix first and in the order added for the same prefix.
+   */
+  @Test
+  public void testMatches() {
+    UriPrefixTrie<String> trie = new UriPrefixTrie<String>();
+    trie.add("/", "root");
+    trie.add("/foo/", "foo");
+    trie.add("/foo/bar", "bar1");
+    trie.add("/foo/bar", "bar2");
+    trie.add("/other/", "other");
+
+    Assert.assertEquals(5, trie.size());
+    Assert.assertEquals(ImmutableList.of("bar1", "bar2", "foo", "root"), trie.getMatches("/foo/barn?x=1"));
+    Assert.assertEquals(ImmutableList.of("foo", "root"), trie.getMatches("/foo/ba"));
+    Assert.assertEquals(ImmutableList.of("root"), trie.getMatches("/foo"));
+    Assert.assertTrue(trie.getMatches("foo").isEmpty());
+  }
+}
@@ -35,6 +35,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -157,6 +158,11 @@ public class WebSocketTest {
 
         clientReceivedList.add((Integer) d.get(dataKey));
       }
+
+      @Override
+      public void onReceiveBinary(ByteBuffer data) {
+        // Only JSON is used in this test.
+      }
     };
 
     NettyWebSocketClient client = new NettyWebSocketClient(uri, clientHandler, threadPool, log);
@@ -37,8 +37,14 @@ import interactivespaces.system.resources.ContainerResourceManager;
 import interactivespaces.time.LocalTimeProvider;
 import interactivespaces.time.NtpTimeProvider;
 import interactivespaces.time.TimeProvider;
+import interactivespaces.util.metrics.RouteMetricsRegistry;
+import interactivespaces.util.metrics.StandardRouteMetricsRegistry;
 import interactivespaces.util.resource.ManagedResource;
 import interactivespaces.util.resource.ManagedResources;
+import interactivespaces.util.ros.InProcessRosTopicRegistry;
+import interactivespaces.util.ros.SharedRosNodeManager;
+import interactivespaces.util.ros.StandardInProcessRosTopicRegistry;
+import interactivespaces.util.ros.StandardSharedRosNodeManager;
 
 import com.google.common.collect.Lists;
 
@@ -305,6 +311,11 @@ public class GeneralInteractiveSpacesSupportActivator implements BundleActivator
 
     // TODO(keith): Get the value property in a central place.
     spaceEnvironment.setValue("environment.ros", rosEnvironment);
+    spaceEnvironment.setValue(InProcessRosTopicRegistry.ENVIRONMENT_VALUE_NAME, new StandardInProcessRosTopicRegistry(
+        spaceEnvironment.getLog()));
+    spaceEnvironment.setValue(SharedRosNodeManager.ENVIRONMENT_VALUE_NAME, new StandardSharedRosNodeManager(
+        rosEnvironment, spaceEnvironment.getLog()));
+    spaceEnvironment.setValue(RouteMetricsRegistry.ENVIRONMENT_VALUE_NAME, new StandardRouteMetricsRegistry());
 
     // Potentially request the container to permit file control.
     spaceEnvironment.getSystemConfiguration().setValue(
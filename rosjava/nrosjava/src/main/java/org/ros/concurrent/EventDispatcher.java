@@ -14,12 +14,31 @@
  * the License.
  */
 
+
 package org.ros.concurrent;
 
+import org.apache.commons.logging.Log;
+import org.ros.log.RosLogFactory;
+
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Delivers signals to a single listener, one at a time and in the order they
+ * were given.
+ * <p>
+ * By default the dispatcher is a {@link CancellableLoop} with a thread of its
+ * own. When given a {@link ListenerDispatchPool} it instead borrows a pool
+ * thread whenever it has events waiting, and is never run as a loop. Once a
+ * pooled dispatcher is cancelled it stops dispatching and discards any events
+ * still waiting.
+ * <p>
+ * Both modes keep counters for the queue depth, dropped events and for the
+ * time events spend waiting to be dispatched. Events are only dropped when the
+ * dispatcher is given a {@link QueuePolicy} which drops or conflates.
+ *
  * @author damonkohler@google.com (Damon Kohler)
  *
  * @param <T>
@@ -27,18 +46,135 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class EventDispatcher<T> extends CancellableLoop {
 
+  private static final Log log = RosLogFactory.getLog(EventDispatcher.class);
+
+  /**
+   * When the event being dispatched on the current thread was signalled, or -1
+   * if there is none.
+   */
+  private static final ThreadLocal<long[]> currentSignalTime =
+      new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+          return new long[] { -1 };
+        }
+      };
+
   private final T listener;
-  private final MessageBlockingQueue<SignalRunnable<T>> events;
+  private final MessageBlockingQueue<PendingSignal<T>> events;
 
   private final CountDownLatch fullyShutdownLatch = new CountDownLatch(1);
 
   private AtomicBoolean isShuttingDown = new AtomicBoolean(false);
 
+  /**
+   * The pool to dispatch in, {@code null} if the dispatcher has its own thread.
+   */
+  private final ListenerDispatchPool dispatchPool;
+
+  /**
+   * {@code true} if a drain of the queue is scheduled in the pool or running.
+   */
+  private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+  /**
+   * Empties the queue when running in a pool.
+   */
+  private final Runnable drainer = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+
+  /**
+   * {@code true} if a pooled dispatcher has been cancelled.
+   */
+  private volatile boolean cancelled;
+
+  /**
+   * The number of events signalled and not yet dispatched.
+   */
+  private final AtomicInteger queueDepth = new AtomicInteger();
+
+  /**
+   * The number of events dropped from the queue.
+   */
+  private final AtomicLong dropCount = new AtomicLong();
+
+  /**
+   * The number of events dispatched.
+   */
+  private final AtomicLong dispatchCount = new AtomicLong();
+
+  /**
+   * The total time events have waited before being dispatched, in nanoseconds.
+   */
+  private final AtomicLong totalDispatchLatency = new AtomicLong();
+
+  /**
+   * The longest time an event has waited before being dispatched, in
+   * nanoseconds.
+   */
+  private final AtomicLong maximumDispatchLatency = new AtomicLong();
+
   public EventDispatcher(T listener, int queueCapacity) {
+    this(listener, queueCapacity, null);
+  }
+
+  /**
+   * @param listener
+   *          the listener to signal
+   * @param queueCapacity
+   *          the maximum number of events to buffer
+   * @param dispatchPool
+   *          the pool to dispatch in, or {@code null} if the dispatcher will be
+   *          run as a loop in a thread of its own
+   */
+  public EventDispatcher(T listener, int queueCapacity, ListenerDispatchPool dispatchPool) {
     this.listener = listener;
+    this.dispatchPool = dispatchPool;
     events = MessageBlockingQueueFactory.newMessageBlockingQueue(queueCapacity, false);
   }
 
+  /**
+   * @param listener
+   *          the listener to signal
+   * @param queuePolicy
+   *          the policy for the queue of events waiting for the listener
+   * @param dispatchPool
+   *          the pool to dispatch in, or {@code null} if the dispatcher will be
+   *          run as a loop in a thread of its own
+   */
+  public EventDispatcher(T listener, final QueuePolicy<SignalRunnable<T>> queuePolicy,
+      ListenerDispatchPool dispatchPool) {
+    this.listener = listener;
+    this.dispatchPool = dispatchPool;
+
+    QueueKeyFunction<PendingSignal<T>> keyFunction = null;
+    if (queuePolicy.getOverflowAction() == QueueOverflowAction.CONFLATE) {
+      keyFunction = new QueueKeyFunction<PendingSignal<T>>() {
+        @Override
+        public Object getKey(PendingSignal<T> pendingSignal) {
+          return queuePolicy.getKey(pendingSignal.signalRunnable);
+        }
+      };
+    }
+    QueueDropListener dropListener = new QueueDropListener() {
+      @Override
+      public void onEntryDropped() {
+        queueDepth.decrementAndGet();
+        dropCount.incrementAndGet();
+        if (queuePolicy.getDropListener() != null) {
+          queuePolicy.getDropListener().onEntryDropped();
+        }
+      }
+    };
+    events =
+        new PolicyMessageBlockingQueue<PendingSignal<T>>(new QueuePolicy<PendingSignal<T>>(
+            queuePolicy.getOverflowAction(), queuePolicy.getCapacity(), keyFunction, dropListener));
+  }
+
   /**
    * A signal must take place.
    *
@@ -46,7 +182,15 @@ public class EventDispatcher<T> extends CancellableLoop {
    *          the runnable that contains the signal
    */
   public void signal(final SignalRunnable<T> signalRunnable) {
-    if (isShuttingDown.get()) {
+    PendingSignal<T> pendingSignal = new PendingSignal<T>(signalRunnable);
+
+    if (dispatchPool != null) {
+      if (cancelled) {
+        return;
+      }
+      enqueue(pendingSignal);
+      scheduleDrain();
+    } else if (isShuttingDown.get()) {
       try {
         fullyShutdownLatch.await();
       } catch (InterruptedException e) {
@@ -55,25 +199,18 @@ public class EventDispatcher<T> extends CancellableLoop {
 
       // Just in case something came in while we were waiting.
       // Done this way so always in order it was supposed to happen.
-      try {
-        events.put(signalRunnable);
-      } catch (InterruptedException e) {
-        // Don't care.
-      }
+      enqueue(pendingSignal);
       flush();
     } else {
-      try {
-        events.put(signalRunnable);
-      } catch (InterruptedException e) {
-        // Don't care.
-      }
+      enqueue(pendingSignal);
     }
   }
 
   @Override
   public void loop() throws InterruptedException {
-    SignalRunnable<T> signalRunnable = events.take();
-    signalRunnable.run(listener);
+    PendingSignal<T> pendingSignal = events.take();
+    queueDepth.decrementAndGet();
+    dispatch(pendingSignal);
   }
 
   @Override
@@ -83,21 +220,255 @@ public class EventDispatcher<T> extends CancellableLoop {
     fullyShutdownLatch.countDown();
   }
 
+  @Override
+  public void cancel() {
+    if (dispatchPool != null) {
+      cancelled = true;
+    } else {
+      super.cancel();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    if (dispatchPool != null) {
+      return !cancelled;
+    } else {
+      return super.isRunning();
+    }
+  }
+
+  /**
+   * @return the listener the dispatcher signals
+   */
+  public T getListener() {
+    return listener;
+  }
+
+  /**
+   * Get when the event a listener is being called for was signalled, and forget
+   * it.
+   * <p>
+   * The time is forgotten so that a listener which is called directly by the
+   * first listener, on the same thread, does not see it as its own.
+   *
+   * @return the {@link System#nanoTime()} when the event being dispatched on
+   *         the calling thread was signalled, or -1 if the thread is not
+   *         dispatching an event or the time was already taken
+   */
+  public static long takeCurrentSignalTime() {
+    long[] holder = currentSignalTime.get();
+    long signalTime = holder[0];
+    holder[0] = -1;
+
+    return signalTime;
+  }
+
+  /**
+   * @return the number of events waiting to be dispatched
+   */
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /**
+   * @return the number of events dropped from the queue so far
+   */
+  public long getDropCount() {
+    return dropCount.get();
+  }
+
+  /**
+   * @return the number of events dispatched so far
+   */
+  public long getDispatchCount() {
+    return dispatchCount.get();
+  }
+
+  /**
+   * @return the average time events have waited before being dispatched, in
+   *         nanoseconds
+   */
+  public long getAverageDispatchLatencyNanos() {
+    long count = dispatchCount.get();
+    return (count != 0) ? totalDispatchLatency.get() / count : 0;
+  }
+
+  /**
+   * @return the longest time an event has waited before being dispatched, in
+   *         nanoseconds
+   */
+  public long getMaximumDispatchLatencyNanos() {
+    return maximumDispatchLatency.get();
+  }
+
+  /**
+   * Add an event to the queue.
+   *
+   * @param pendingSignal
+   *          the event to add
+   */
+  private void enqueue(PendingSignal<T> pendingSignal) {
+    queueDepth.incrementAndGet();
+    try {
+      events.put(pendingSignal);
+    } catch (InterruptedException e) {
+      queueDepth.decrementAndGet();
+      // Don't care.
+    }
+  }
+
+  /**
+   * Make sure a drain of the queue is scheduled in the pool.
+   * <p>
+   * If the pool will not take the drain, the queue is drained in the calling
+   * thread instead. The drain stays marked as scheduled meanwhile, so no other
+   * thread dispatches events at the same time.
+   */
+  private void scheduleDrain() {
+    while (drainScheduled.compareAndSet(false, true)) {
+      if (!cancelled && dispatchPool.execute(drainer)) {
+        return;
+      }
+
+      flush();
+      if (!releaseDrain()) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Dispatch a batch of events in a pool thread, then give the thread back.
+   */
+  private void drain() {
+    for (int i = 0; i < ListenerDispatchPool.DISPATCH_BATCH_SIZE; i++) {
+      if (cancelled) {
+        releaseDrain();
+        return;
+      }
+
+      PendingSignal<T> pendingSignal = events.poll();
+      if (pendingSignal == null) {
+        // An event may have come in after the poll but before the flag was
+        // cleared, in which case its signaller will not have scheduled a drain.
+        if (releaseDrain()) {
+          scheduleDrain();
+        }
+        return;
+      }
+
+      queueDepth.decrementAndGet();
+      try {
+        dispatch(pendingSignal);
+      } catch (RuntimeException e) {
+        log.error("Listener failed while handling an event", e);
+      }
+    }
+
+    // The batch is used up with events still possibly waiting. The drain stays
+    // scheduled so ordering is kept, but other dispatchers get a turn first.
+    if (!cancelled && dispatchPool.execute(drainer)) {
+      return;
+    }
+
+    flush();
+    if (releaseDrain()) {
+      scheduleDrain();
+    }
+  }
+
+  /**
+   * Mark the drain as no longer scheduled.
+   * <p>
+   * If the dispatcher has been cancelled, any events still waiting are
+   * discarded.
+   *
+   * @return {@code true} if the dispatcher is still running and events came in
+   *         which need a new drain
+   */
+  private boolean releaseDrain() {
+    drainScheduled.set(false);
+
+    if (cancelled) {
+      while (events.poll() != null) {
+        queueDepth.decrementAndGet();
+      }
+      return false;
+    }
+
+    return !events.isEmpty();
+  }
+
+  /**
+   * Record the latency of an event and run it.
+   *
+   * @param pendingSignal
+   *          the event to run
+   */
+  private void dispatch(PendingSignal<T> pendingSignal) {
+    long latency = System.nanoTime() - pendingSignal.signalTime;
+    dispatchCount.incrementAndGet();
+    totalDispatchLatency.addAndGet(latency);
+    long maximum;
+    while (latency > (maximum = maximumDispatchLatency.get())) {
+      if (maximumDispatchLatency.compareAndSet(maximum, latency)) {
+        break;
+      }
+    }
+
+    long[] holder = currentSignalTime.get();
+    long previousSignalTime = holder[0];
+    holder[0] = pendingSignal.signalTime;
+    try {
+      pendingSignal.signalRunnable.run(listener);
+    } finally {
+      holder[0] = previousSignalTime;
+    }
+  }
+
   /**
    * Flush all events out of the event dispatcher.
    *
    * <p>
    * This is run after the dispatcher is shut down and empties out any events
-   * which have not been written.
+   * which have not been written. It is also how a pooled dispatcher drains its
+   * queue when the pool will not take the drain, and then stops if the
+   * dispatcher is cancelled.
    */
   private void flush() {
-    SignalRunnable<T> signalRunnable;
-    while ((signalRunnable = events.poll()) != null) {
+    PendingSignal<T> pendingSignal;
+    while (!cancelled && (pendingSignal = events.poll()) != null) {
+      queueDepth.decrementAndGet();
       try {
-        signalRunnable.run(listener);
+        dispatch(pendingSignal);
       } catch (Exception e) {
         e.printStackTrace();
       }
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * An event waiting to be dispatched.
+   *
+   * @param <T>
+   *          the listener type
+   */
+  private static class PendingSignal<T> {
+
+    /**
+     * The signal to run.
+     */
+    private final SignalRunnable<T> signalRunnable;
+
+    /**
+     * When the signal was given, from {@link System#nanoTime()}.
+     */
+    private final long signalTime;
+
+    public PendingSignal(SignalRunnable<T> signalRunnable) {
+      this.signalRunnable = signalRunnable;
+      signalTime = System.nanoTime();
+    }
+  }
+}
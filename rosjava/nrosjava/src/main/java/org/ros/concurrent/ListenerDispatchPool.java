@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A bounded pool of threads shared by many {@link EventDispatcher}s.
+ * <p>
+ * Without a pool every listener in a {@link ListenerGroup} gets a thread of its
+ * own. With a pool, listeners only occupy a thread while they have events
+ * waiting, and each listener still sees its events one at a time and in order.
+ * <p>
+ * The pool is a work-stealing {@link ForkJoinPool} in FIFO mode.
+ *
+ * @author khughes@google.com (Keith M. Hughes)
+ */
+public class ListenerDispatchPool {
+
+  /**
+   * The maximum number of events a dispatcher handles before giving up its
+   * thread to other dispatchers.
+   */
+  public static final int DISPATCH_BATCH_SIZE = 64;
+
+  /**
+   * The threads doing the dispatching.
+   */
+  private final ExecutorService executorService;
+
+  /**
+   * Create a pool with one thread per available processor.
+   */
+  public ListenerDispatchPool() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param parallelism
+   *          the maximum number of threads dispatching at once
+   */
+  public ListenerDispatchPool(int parallelism) {
+    executorService =
+        new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+  }
+
+  /**
+   * Run a dispatching task in the pool.
+   *
+   * @param task
+   *          the task to run
+   *
+   * @return {@code true} if the task was accepted, {@code false} if the pool has
+   *         been shut down
+   */
+  boolean execute(Runnable task) {
+    try {
+      executorService.execute(task);
+      return true;
+    } catch (RejectedExecutionException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Shut the pool down.
+   * <p>
+   * Dispatchers using the pool deliver any later events on the signalling
+   * thread.
+   */
+  public void shutdown() {
+    executorService.shutdown();
+  }
+}
@@ -19,12 +19,16 @@ package org.ros.concurrent;
 import com.google.common.collect.Lists;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A group of listeners.
+ * <p>
+ * Each listener normally has its own {@link EventDispatcher} thread. Groups
+ * given a {@link ListenerDispatchPool} share the pool's threads instead.
  *
  * @author damonkohler@google.com (Damon Kohler)
  */
@@ -33,10 +37,23 @@ public class ListenerGroup<T> {
   private final static int DEFAULT_QUEUE_CAPACITY = 512;
 
   private final ExecutorService executorService;
+  private final ListenerDispatchPool dispatchPool;
   private final Collection<EventDispatcher<T>> eventDispatchers;
 
   public ListenerGroup(ExecutorService executorService) {
+    this(executorService, null);
+  }
+
+  /**
+   * @param executorService
+   *          the {@link ExecutorService} for per-listener dispatcher threads
+   * @param dispatchPool
+   *          the pool to dispatch all listeners in, or {@code null} to give
+   *          every listener a thread from the {@link ExecutorService}
+   */
+  public ListenerGroup(ExecutorService executorService, ListenerDispatchPool dispatchPool) {
     this.executorService = executorService;
+    this.dispatchPool = dispatchPool;
     eventDispatchers = Lists.newCopyOnWriteArrayList();
   }
 
@@ -51,9 +68,32 @@ public class ListenerGroup<T> {
    *         listener
    */
   public EventDispatcher<T> add(T listener, int queueCapacity) {
-    EventDispatcher<T> eventDispatcher = new EventDispatcher<T>(listener, queueCapacity);
+    EventDispatcher<T> eventDispatcher =
+        new EventDispatcher<T>(listener, queueCapacity, dispatchPool);
     eventDispatchers.add(eventDispatcher);
-    executorService.execute(eventDispatcher);
+    if (dispatchPool == null) {
+      executorService.execute(eventDispatcher);
+    }
+    return eventDispatcher;
+  }
+
+  /**
+   * Adds a listener to the {@link ListenerGroup} with a policy for its queue.
+   *
+   * @param listener
+   *          the listener to add
+   * @param queuePolicy
+   *          the policy for the queue of events waiting for the listener
+   * @return the {@link EventDispatcher} responsible for calling the specified
+   *         listener
+   */
+  public EventDispatcher<T> add(T listener, QueuePolicy<SignalRunnable<T>> queuePolicy) {
+    EventDispatcher<T> eventDispatcher =
+        new EventDispatcher<T>(listener, queuePolicy, dispatchPool);
+    eventDispatchers.add(eventDispatcher);
+    if (dispatchPool == null) {
+      executorService.execute(eventDispatcher);
+    }
     return eventDispatcher;
   }
 
@@ -101,6 +141,24 @@ public class ListenerGroup<T> {
     return addAll(listeners, DEFAULT_QUEUE_CAPACITY);
   }
 
+  /**
+   * Removes a listener from the {@link ListenerGroup} and cancels its
+   * {@link EventDispatcher}.
+   *
+   * @param listener
+   *          the listener to remove
+   * @return {@code true} if the listener was in the group
+   */
+  public boolean remove(T listener) {
+    for (EventDispatcher<T> eventDispatcher : eventDispatchers) {
+      if (eventDispatcher.getListener() == listener && eventDispatchers.remove(eventDispatcher)) {
+        eventDispatcher.cancel();
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * @return the number of listeners in the group
    */
@@ -108,6 +166,14 @@ public class ListenerGroup<T> {
     return eventDispatchers.size();
   }
 
+  /**
+   * @return the {@link EventDispatcher}s for the listeners in the group, for
+   *         reading their queue and latency counters
+   */
+  public Collection<EventDispatcher<T>> getEventDispatchers() {
+    return Collections.unmodifiableCollection(eventDispatchers);
+  }
+
   /**
    * Signals all listeners.
    * <p>
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+import com.google.common.collect.Maps;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link MessageBlockingQueue} which follows a {@link QueuePolicy} when full.
+ * <p>
+ * The policy can be changed while the queue is in use. A smaller capacity only
+ * takes effect as entries are added and removed, nothing already queued is
+ * dropped.
+ *
+ * @author khughes@google.com (Keith M. Hughes)
+ *
+ * @param <T>
+ *          the type of the queue entries
+ */
+public class PolicyMessageBlockingQueue<T> implements MessageBlockingQueue<T> {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+
+  /**
+   * The entries when not conflating.
+   */
+  private final ArrayDeque<T> entries = new ArrayDeque<T>();
+
+  /**
+   * The entries when conflating, in the order their keys were first queued.
+   */
+  private final Map<Object, T> conflatedEntries = Maps.newLinkedHashMap();
+
+  /**
+   * The number of entries dropped so far.
+   */
+  private final AtomicLong dropCount = new AtomicLong();
+
+  private QueuePolicy<T> policy;
+
+  /**
+   * @param policy
+   *          the policy for the queue
+   */
+  public PolicyMessageBlockingQueue(QueuePolicy<T> policy) {
+    this.policy = policy;
+  }
+
+  /**
+   * Change the policy for the queue.
+   *
+   * @param policy
+   *          the new policy
+   */
+  public void setPolicy(QueuePolicy<T> policy) {
+    lock.lock();
+    try {
+      boolean wasConflating = this.policy.getOverflowAction() == QueueOverflowAction.CONFLATE;
+      this.policy = policy;
+      if (wasConflating && policy.getOverflowAction() != QueueOverflowAction.CONFLATE) {
+        entries.addAll(conflatedEntries.values());
+        conflatedEntries.clear();
+      } else if (!wasConflating && policy.getOverflowAction() == QueueOverflowAction.CONFLATE) {
+        for (T entry : entries) {
+          conflatedEntries.put(policy.getKey(entry), entry);
+        }
+        entries.clear();
+      }
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the policy for the queue
+   */
+  public QueuePolicy<T> getPolicy() {
+    lock.lock();
+    try {
+      return policy;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of entries dropped since the queue was created
+   */
+  public long getDropCount() {
+    return dropCount.get();
+  }
+
+  @Override
+  public void put(T entry) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      switch (policy.getOverflowAction()) {
+        case BLOCK:
+          while (size() >= policy.getCapacity()) {
+            notFull.await();
+          }
+          entries.addLast(entry);
+          break;
+
+        case DROP_NEWEST:
+          if (size() >= policy.getCapacity()) {
+            dropped();
+            return;
+          }
+          entries.addLast(entry);
+          break;
+
+        case DROP_OLDEST:
+          while (size() >= policy.getCapacity()) {
+            entries.pollFirst();
+            dropped();
+          }
+          entries.addLast(entry);
+          break;
+
+        case CONFLATE:
+          Object key = policy.getKey(entry);
+          if (conflatedEntries.containsKey(key)) {
+            conflatedEntries.put(key, entry);
+            dropped();
+          } else {
+            while (size() >= policy.getCapacity()) {
+              removeFirst();
+              dropped();
+            }
+            conflatedEntries.put(key, entry);
+          }
+          break;
+      }
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public T take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (size() == 0) {
+        notEmpty.await();
+      }
+      return removeFirst();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public T poll() {
+    lock.lock();
+    try {
+      return (size() != 0) ? removeFirst() : null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isEmpty() {
+    lock.lock();
+    try {
+      return size() == 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of entries in the queue, only call with the lock held
+   */
+  private int size() {
+    return entries.size() + conflatedEntries.size();
+  }
+
+  /**
+   * Remove the entry at the head of the queue. Only call with the lock held
+   * and the queue not empty.
+   *
+   * @return the removed entry
+   */
+  private T removeFirst() {
+    T entry;
+    if (!entries.isEmpty()) {
+      entry = entries.pollFirst();
+    } else {
+      Iterator<T> iterator = conflatedEntries.values().iterator();
+      entry = iterator.next();
+      iterator.remove();
+    }
+    notFull.signal();
+
+    return entry;
+  }
+
+  /**
+   * Count a dropped entry and tell the policy's listener.
+   */
+  private void dropped() {
+    dropCount.incrementAndGet();
+    QueueDropListener dropListener = policy.getDropListener();
+    if (dropListener != null) {
+      dropListener.onEntryDropped();
+    }
+  }
+}
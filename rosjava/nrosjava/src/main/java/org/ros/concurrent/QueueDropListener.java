@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+/**
+ * Told about entries dropped from a {@link QueuePolicy} queue.
+ *
+ * @author khughes@google.com (Keith M. Hughes)
+ */
+public interface QueueDropListener {
+
+  /**
+   * An entry has been dropped from the queue.
+   * <p>
+   * Called while the queue is locked, so must be quick and must not use the
+   * queue.
+   */
+  void onEntryDropped();
+}
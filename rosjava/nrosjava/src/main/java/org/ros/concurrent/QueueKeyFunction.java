@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+/**
+ * Gives the key used to conflate queue entries.
+ *
+ * @author khughes@google.com (Keith M. Hughes)
+ *
+ * @param <T>
+ *          the type of the entries
+ */
+public interface QueueKeyFunction<T> {
+
+  /**
+   * @param entry
+   *          the queue entry
+   * @return the key for the entry, entries with equal keys replace each other
+   */
+  Object getKey(T entry);
+}
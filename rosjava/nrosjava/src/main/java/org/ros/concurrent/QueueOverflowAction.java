@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+/**
+ * What a {@link QueuePolicy} queue does when an entry is added while it is
+ * full.
+ *
+ * @author khughes@google.com (Keith M. Hughes)
+ */
+public enum QueueOverflowAction {
+
+  /**
+   * Block the caller until there is room. Nothing is lost, but a slow consumer
+   * slows down the producer.
+   */
+  BLOCK,
+
+  /**
+   * Drop the entry being added.
+   */
+  DROP_NEWEST,
+
+  /**
+   * Drop the oldest entry in the queue to make room.
+   */
+  DROP_OLDEST,
+
+  /**
+   * Replace a queued entry that has the same key as the new entry, keeping the
+   * queued entry's place. If no entry has the key and the queue is full, the
+   * oldest entry is dropped.
+   */
+  CONFLATE
+}
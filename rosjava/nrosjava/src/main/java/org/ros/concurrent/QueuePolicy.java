@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * How a message queue is bounded and what it does when it is full.
+ *
+ * @author khughes@google.com (Keith M. Hughes)
+ *
+ * @param <T>
+ *          the type of the queue entries
+ */
+public class QueuePolicy<T> {
+
+  private final QueueOverflowAction overflowAction;
+  private final int capacity;
+  private final QueueKeyFunction<? super T> keyFunction;
+  private final QueueDropListener dropListener;
+
+  /**
+   * @param overflowAction
+   *          what to do when the queue is full
+   * @param capacity
+   *          the maximum number of entries in the queue
+   * @param keyFunction
+   *          the key for conflating entries, only used by
+   *          {@link QueueOverflowAction#CONFLATE}, {@code null} gives every
+   *          entry the same key so only the newest is kept
+   * @param dropListener
+   *          told about every dropped entry, can be {@code null}
+   */
+  public QueuePolicy(QueueOverflowAction overflowAction, int capacity,
+      QueueKeyFunction<? super T> keyFunction, QueueDropListener dropListener) {
+    Preconditions.checkNotNull(overflowAction);
+    Preconditions.checkArgument(capacity > 0, "Queue capacity must be positive");
+    this.overflowAction = overflowAction;
+    this.capacity = capacity;
+    this.keyFunction = keyFunction;
+    this.dropListener = dropListener;
+  }
+
+  /**
+   * @param capacity
+   *          the maximum number of entries in the queue
+   * @return a policy which blocks when the queue is full
+   */
+  public static <T> QueuePolicy<T> newBlocking(int capacity) {
+    return new QueuePolicy<T>(QueueOverflowAction.BLOCK, capacity, null, null);
+  }
+
+  /**
+   * @return what to do when the queue is full
+   */
+  public QueueOverflowAction getOverflowAction() {
+    return overflowAction;
+  }
+
+  /**
+   * @return the maximum number of entries in the queue
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return the key for conflating entries, or {@code null} if all entries
+   *         share a key
+   */
+  public QueueKeyFunction<? super T> getKeyFunction() {
+    return keyFunction;
+  }
+
+  /**
+   * @return the listener for dropped entries, or {@code null} if there is none
+   */
+  public QueueDropListener getDropListener() {
+    return dropListener;
+  }
+
+  /**
+   * Get the key of an entry.
+   *
+   * @param entry
+   *          the entry
+   * @return the key for conflating the entry
+   */
+  Object getKey(T entry) {
+    return (keyFunction != null) ? keyFunction.getKey(entry) : QueuePolicy.class;
+  }
+
+  @Override
+  public String toString() {
+    return "QueuePolicy<" + overflowAction + ", " + capacity + ">";
+  }
+}
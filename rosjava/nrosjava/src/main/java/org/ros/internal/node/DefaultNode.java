@@ -157,7 +157,9 @@ public class DefaultNode implements ConnectedNode {
     publisherFactory =
         new PublisherFactory(nodeIdentifier, topicParticipantManager, nodeConfiguration.getTopicMessageFactory(),
             scheduledExecutorService);
-    subscriberFactory = new SubscriberFactory(nodeIdentifier, topicParticipantManager, scheduledExecutorService);
+    subscriberFactory =
+        new SubscriberFactory(nodeIdentifier, topicParticipantManager, scheduledExecutorService,
+            nodeConfiguration.getListenerDispatchPool());
     serviceFactory = new ServiceFactory(nodeName, slaveServer, serviceManager, scheduledExecutorService);
 
     registrar = new Registrar(masterClient, scheduledExecutorService);
@@ -465,6 +467,11 @@ public class DefaultNode implements ConnectedNode {
     nodeListeners.add(listener);
   }
 
+  @Override
+  public boolean removeListener(NodeListener listener) {
+    return nodeListeners.remove(listener);
+  }
+
   /**
    * SignalRunnable all {@link NodeListener}s that the {@link Node} has
    * experienced an error.
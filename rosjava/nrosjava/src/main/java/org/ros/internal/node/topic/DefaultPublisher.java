@@ -17,11 +17,16 @@
 package org.ros.internal.node.topic;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 
 import org.apache.commons.logging.Log;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.ros.concurrent.ListenerGroup;
+import org.ros.concurrent.QueuePolicy;
 import org.ros.concurrent.SignalRunnable;
 import org.ros.internal.node.server.NodeIdentifier;
 import org.ros.internal.transport.ConnectionHeader;
@@ -35,6 +40,8 @@ import org.ros.node.topic.Publisher;
 import org.ros.node.topic.PublisherListener;
 import org.ros.node.topic.Subscriber;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -59,6 +66,14 @@ public class DefaultPublisher<T> extends DefaultTopicParticipant implements Publ
    * Queue of all messages being published by this {@link Publisher}.
    */
   private final OutgoingMessageQueue<T> outgoingMessageQueue;
+
+  /**
+   * The {@link SubscriberIdentifier}s of the open {@link Subscriber}
+   * connections, keyed by their {@link Channel}s.
+   */
+  private final Map<Channel, SubscriberIdentifier> subscriberIdentifiers =
+      Maps.newConcurrentMap();
+
   private final ListenerGroup<PublisherListener<T>> listeners;
   private final NodeIdentifier nodeIdentifier;
   private final MessageFactory messageFactory;
@@ -98,6 +113,11 @@ public class DefaultPublisher<T> extends DefaultTopicParticipant implements Publ
     outgoingMessageQueue.setLatchMode(enabled);
   }
 
+  @Override
+  public void setQueuePolicy(QueuePolicy<T> queuePolicy) {
+    outgoingMessageQueue.setQueuePolicy(queuePolicy);
+  }
+
   @Override
   public boolean getLatchMode() {
     return outgoingMessageQueue.getLatchMode();
@@ -133,6 +153,11 @@ public class DefaultPublisher<T> extends DefaultTopicParticipant implements Publ
     return outgoingMessageQueue.getNumberOfChannels();
   }
 
+  @Override
+  public Collection<SubscriberIdentifier> getSubscriberIdentifiers() {
+    return ImmutableList.copyOf(subscriberIdentifiers.values());
+  }
+
   @Override
   public T newMessage() {
     return messageFactory.newFromType(getTopicDeclaration().getMessageType());
@@ -190,6 +215,13 @@ public class DefaultPublisher<T> extends DefaultTopicParticipant implements Publ
     if (log.isDebugEnabled()) {
       log.debug(String.format("Adding subscriber %s channel %s to publisher %s.", subscriberIdentifer, channel, this));
     }
+    subscriberIdentifiers.put(channel, subscriberIdentifer);
+    channel.getCloseFuture().addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) {
+        subscriberIdentifiers.remove(future.getChannel());
+      }
+    });
     outgoingMessageQueue.addChannel(channel);
     signalOnNewSubscriber(subscriberIdentifer);
   }
@@ -199,6 +231,11 @@ public class DefaultPublisher<T> extends DefaultTopicParticipant implements Publ
     listeners.add(listener);
   }
 
+  @Override
+  public boolean removeListener(PublisherListener<T> listener) {
+    return listeners.remove(listener);
+  }
+
   /**
    * Signal all {@link PublisherListener}s that the {@link Publisher} has
    * successfully registered with the master.
@@ -20,7 +20,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Sets;
 
 import org.apache.commons.logging.Log;
+import org.ros.concurrent.ListenerDispatchPool;
 import org.ros.concurrent.ListenerGroup;
+import org.ros.concurrent.QueuePolicy;
 import org.ros.concurrent.SignalRunnable;
 import org.ros.internal.node.server.NodeIdentifier;
 import org.ros.internal.transport.ProtocolNames;
@@ -79,15 +81,23 @@ public class DefaultSubscriber<T> extends DefaultTopicParticipant implements Sub
   public static <S> DefaultSubscriber<S> newDefault(NodeIdentifier nodeIdentifier,
       TopicDeclaration description, ScheduledExecutorService executorService,
       MessageDeserializer<S> deserializer) {
-    return new DefaultSubscriber<S>(nodeIdentifier, description, deserializer, executorService);
+    return newDefault(nodeIdentifier, description, executorService, null, deserializer);
+  }
+
+  public static <S> DefaultSubscriber<S> newDefault(NodeIdentifier nodeIdentifier,
+      TopicDeclaration description, ScheduledExecutorService executorService,
+      ListenerDispatchPool dispatchPool, MessageDeserializer<S> deserializer) {
+    return new DefaultSubscriber<S>(nodeIdentifier, description, deserializer, executorService,
+        dispatchPool);
   }
 
   private DefaultSubscriber(NodeIdentifier nodeIdentifier, TopicDeclaration topicDeclaration,
-      MessageDeserializer<T> deserializer, ScheduledExecutorService executorService) {
+      MessageDeserializer<T> deserializer, ScheduledExecutorService executorService,
+      ListenerDispatchPool dispatchPool) {
     super(topicDeclaration);
     this.nodeIdentifier = nodeIdentifier;
     this.executorService = executorService;
-    incomingMessageQueue = new IncomingMessageQueue<T>(deserializer, executorService);
+    incomingMessageQueue = new IncomingMessageQueue<T>(deserializer, executorService, dispatchPool);
     knownPublishers = Sets.newHashSet();
     tcpClientManager = new TcpRosClientManager(executorService);
     mutex = new Object();
@@ -143,11 +153,21 @@ public class DefaultSubscriber<T> extends DefaultTopicParticipant implements Sub
     incomingMessageQueue.addListener(messageListener, limit);
   }
 
+  @Override
+  public void addMessageListener(MessageListener<T> messageListener, QueuePolicy<T> queuePolicy) {
+    incomingMessageQueue.addListener(messageListener, queuePolicy);
+  }
+
   @Override
   public void addMessageListener(MessageListener<T> messageListener) {
     addMessageListener(messageListener, 1);
   }
 
+  @Override
+  public boolean removeMessageListener(MessageListener<T> messageListener) {
+    return incomingMessageQueue.removeListener(messageListener);
+  }
+
   @VisibleForTesting
   public void addPublisher(PublisherIdentifier publisherIdentifier, InetSocketAddress address) {
     synchronized (mutex) {
@@ -199,6 +219,11 @@ public class DefaultSubscriber<T> extends DefaultTopicParticipant implements Sub
     subscriberListeners.add(listener);
   }
 
+  @Override
+  public boolean removeSubscriberListener(SubscriberListener<T> listener) {
+    return subscriberListeners.remove(listener);
+  }
+
   /**
    * Signal all {@link SubscriberListener}s that the {@link Subscriber} has
    * successfully registered with the master.
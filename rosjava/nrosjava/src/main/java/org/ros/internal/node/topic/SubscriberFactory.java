@@ -16,6 +16,7 @@
 
 package org.ros.internal.node.topic;
 
+import org.ros.concurrent.ListenerDispatchPool;
 import org.ros.internal.node.server.NodeIdentifier;
 import org.ros.message.MessageDeserializer;
 import org.ros.namespace.GraphName;
@@ -34,13 +35,26 @@ public class SubscriberFactory {
   private final NodeIdentifier nodeIdentifier;
   private final TopicParticipantManager topicParticipantManager;
   private final ScheduledExecutorService executorService;
+  private final ListenerDispatchPool dispatchPool;
   private final Object mutex;
 
   public SubscriberFactory(NodeIdentifier nodeIdentifier,
       TopicParticipantManager topicParticipantManager, ScheduledExecutorService executorService) {
+    this(nodeIdentifier, topicParticipantManager, executorService, null);
+  }
+
+  /**
+   * @param dispatchPool
+   *          the pool to dispatch to message listeners in, or {@code null} to
+   *          give each listener its own thread
+   */
+  public SubscriberFactory(NodeIdentifier nodeIdentifier,
+      TopicParticipantManager topicParticipantManager, ScheduledExecutorService executorService,
+      ListenerDispatchPool dispatchPool) {
     this.nodeIdentifier = nodeIdentifier;
     this.topicParticipantManager = topicParticipantManager;
     this.executorService = executorService;
+    this.dispatchPool = dispatchPool;
     mutex = new Object();
   }
 
@@ -67,7 +81,7 @@ public class SubscriberFactory {
       } else {
         DefaultSubscriber<T> subscriber =
             DefaultSubscriber.newDefault(nodeIdentifier, topicDeclaration, executorService,
-                messageDeserializer);
+                dispatchPool, messageDeserializer);
         subscriber.addSubscriberListener(new DefaultSubscriberListener<T>() {
           @Override
           public void onNewPublisher(Subscriber<T> subscriber,
@@ -16,8 +16,11 @@
 
 package org.ros.internal.transport.queue;
 
+import org.ros.concurrent.ListenerDispatchPool;
+import org.ros.concurrent.ListenerGroup;
 import org.ros.concurrent.MessageBlockingQueue;
 import org.ros.concurrent.MessageBlockingQueueFactory;
+import org.ros.concurrent.QueuePolicy;
 import org.ros.internal.transport.tcp.NamedChannelHandler;
 import org.ros.message.MessageDeserializer;
 import org.ros.message.MessageListener;
@@ -44,10 +47,24 @@ public class IncomingMessageQueue<T> {
   private final MessageDispatcher<T> messageDispatcher;
 
   public IncomingMessageQueue(MessageDeserializer<T> deserializer, ExecutorService executorService) {
+    this(deserializer, executorService, null);
+  }
+
+  /**
+   * @param deserializer
+   *          the deserializer for incoming messages
+   * @param executorService
+   *          the {@link ExecutorService} to use
+   * @param dispatchPool
+   *          the pool to dispatch to {@link MessageListener}s in, or
+   *          {@code null} to give each listener its own thread
+   */
+  public IncomingMessageQueue(MessageDeserializer<T> deserializer, ExecutorService executorService,
+      ListenerDispatchPool dispatchPool) {
     MessageBlockingQueue<LazyMessage<T>> lazyMessages =
         MessageBlockingQueueFactory.newMessageBlockingQueue(DEQUE_CAPACITY, false);
     messageReceiver = new MessageReceiver<T>(lazyMessages, deserializer);
-    messageDispatcher = new MessageDispatcher<T>(lazyMessages, executorService);
+    messageDispatcher = new MessageDispatcher<T>(lazyMessages, executorService, dispatchPool);
     executorService.execute(messageDispatcher);
   }
 
@@ -72,6 +89,27 @@ public class IncomingMessageQueue<T> {
     messageDispatcher.addListener(messageListener, queueCapacity);
   }
 
+  /**
+   * @see MessageDispatcher#addListener(MessageListener, QueuePolicy)
+   */
+  public void addListener(MessageListener<T> messageListener, QueuePolicy<T> queuePolicy) {
+    messageDispatcher.addListener(messageListener, queuePolicy);
+  }
+
+  /**
+   * @see MessageDispatcher#removeListener(MessageListener)
+   */
+  public boolean removeListener(MessageListener<T> messageListener) {
+    return messageDispatcher.removeListener(messageListener);
+  }
+
+  /**
+   * @see MessageDispatcher#getMessageListeners()
+   */
+  public ListenerGroup<MessageListener<T>> getMessageListeners() {
+    return messageDispatcher.getMessageListeners();
+  }
+
   /**
    * Shut the queue down.
    */
@@ -25,6 +25,8 @@ import org.ros.message.MessageDeserializer;
  * Lazily deserializes a message on the first call to {@link #get()} and caches
  * the result.
  * <p>
+ * Once the message has been deserialized, {@link #get()} does not take a lock.
+ * <p>
  * This class is thread-safe.
  *
  * @author damonkohler@google.com (Damon Kohler)
@@ -34,11 +36,18 @@ import org.ros.message.MessageDeserializer;
  */
 public class LazyMessage<T> {
 
-  private final ChannelBuffer buffer;
   private final MessageDeserializer<T> deserializer;
-  private final Object mutex;
 
-  private T message;
+  /**
+   * The serialized message, dropped once it has been deserialized.
+   */
+  private ChannelBuffer buffer;
+
+  /**
+   * The deserialized message, {@code null} until the first call to
+   * {@link #get()}.
+   */
+  private volatile T message;
 
   /**
    * @param buffer
@@ -49,7 +58,6 @@ public class LazyMessage<T> {
   public LazyMessage(ChannelBuffer buffer, MessageDeserializer<T> deserializer) {
     this.buffer = buffer;
     this.deserializer = deserializer;
-    mutex = new Object();
   }
 
   @VisibleForTesting
@@ -62,12 +70,18 @@ public class LazyMessage<T> {
    * @return the deserialized message
    */
   public T get() {
-    synchronized (mutex) {
-      if (message != null) {
-        return message;
+    T result = message;
+    if (result != null) {
+      return result;
+    }
+    synchronized (this) {
+      result = message;
+      if (result == null) {
+        result = deserializer.deserialize(buffer);
+        message = result;
+        buffer = null;
       }
-      message = deserializer.deserialize(buffer);
     }
-    return message;
+    return result;
   }
 }
\ No newline at end of file
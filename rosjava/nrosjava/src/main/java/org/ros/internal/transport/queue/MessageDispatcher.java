@@ -19,8 +19,12 @@ package org.ros.internal.transport.queue;
 import org.apache.commons.logging.Log;
 import org.ros.concurrent.CancellableLoop;
 import org.ros.concurrent.EventDispatcher;
+import org.ros.concurrent.ListenerDispatchPool;
 import org.ros.concurrent.ListenerGroup;
 import org.ros.concurrent.MessageBlockingQueue;
+import org.ros.concurrent.QueueKeyFunction;
+import org.ros.concurrent.QueueOverflowAction;
+import org.ros.concurrent.QueuePolicy;
 import org.ros.concurrent.SignalRunnable;
 import org.ros.log.RosLogFactory;
 import org.ros.message.MessageListener;
@@ -51,8 +55,22 @@ public class MessageDispatcher<T> extends CancellableLoop {
 
   public MessageDispatcher(MessageBlockingQueue<LazyMessage<T>> lazyMessages,
       ExecutorService executorService) {
+    this(lazyMessages, executorService, null);
+  }
+
+  /**
+   * @param lazyMessages
+   *          the queue of incoming messages
+   * @param executorService
+   *          the {@link ExecutorService} to use
+   * @param dispatchPool
+   *          the pool to dispatch to {@link MessageListener}s in, or
+   *          {@code null} to give each listener its own thread
+   */
+  public MessageDispatcher(MessageBlockingQueue<LazyMessage<T>> lazyMessages,
+      ExecutorService executorService, ListenerDispatchPool dispatchPool) {
     this.lazyMessages = lazyMessages;
-    messageListeners = new ListenerGroup<MessageListener<T>>(executorService);
+    messageListeners = new ListenerGroup<MessageListener<T>>(executorService, dispatchPool);
     mutex = new Object();
     latchMode = false;
   }
@@ -78,6 +96,62 @@ public class MessageDispatcher<T> extends CancellableLoop {
     }
   }
 
+  /**
+   * Adds the specified {@link MessageListener} with a policy for the queue of
+   * messages waiting for it.
+   * <p>
+   * A conflating policy's key function is given the deserialized messages.
+   *
+   * @param messageListener
+   *          the listener to add
+   * @param queuePolicy
+   *          the policy for the listener's queue
+   */
+  public void addListener(MessageListener<T> messageListener, final QueuePolicy<T> queuePolicy) {
+    if (log.isDebugEnabled()) {
+      log.debug("Adding listener to Message Dispatcher with queue policy " + queuePolicy);
+    }
+
+    QueueKeyFunction<SignalRunnable<MessageListener<T>>> keyFunction = null;
+    if (queuePolicy.getOverflowAction() == QueueOverflowAction.CONFLATE
+        && queuePolicy.getKeyFunction() != null) {
+      keyFunction = new QueueKeyFunction<SignalRunnable<MessageListener<T>>>() {
+        @Override
+        public Object getKey(SignalRunnable<MessageListener<T>> signalRunnable) {
+          // Only message signals are ever queued for message listeners.
+          T message = ((MessageSignalRunnable<T>) signalRunnable).lazyMessage.get();
+          return queuePolicy.getKeyFunction().getKey(message);
+        }
+      };
+    }
+    QueuePolicy<SignalRunnable<MessageListener<T>>> signalQueuePolicy =
+        new QueuePolicy<SignalRunnable<MessageListener<T>>>(queuePolicy.getOverflowAction(),
+            queuePolicy.getCapacity(), keyFunction, queuePolicy.getDropListener());
+
+    synchronized (mutex) {
+      EventDispatcher<MessageListener<T>> eventDispatcher =
+          messageListeners.add(messageListener, signalQueuePolicy);
+      if (latchMode && latchedMessage != null) {
+        eventDispatcher.signal(newSignalRunnable(latchedMessage));
+      }
+    }
+  }
+
+  /**
+   * Removes a {@link MessageListener} so it gets no more messages.
+   *
+   * @param messageListener
+   *          the listener to remove
+   * @return {@code true} if the listener had been added
+   * @see ListenerGroup#remove(Object)
+   */
+  public boolean removeListener(MessageListener<T> messageListener) {
+    if (log.isDebugEnabled()) {
+      log.debug("Removing listener from Message Dispatcher.");
+    }
+    return messageListeners.remove(messageListener);
+  }
+
   /**
    * Returns a newly allocated {@link SignalRunnable} for the specified
    * {@link LazyMessage}.
@@ -86,13 +160,8 @@ public class MessageDispatcher<T> extends CancellableLoop {
    *          the {@link LazyMessage} to signal {@link MessageListener}s with
    * @return the newly allocated {@link SignalRunnable}
    */
-  private SignalRunnable<MessageListener<T>> newSignalRunnable(final LazyMessage<T> lazyMessage) {
-    return new SignalRunnable<MessageListener<T>>() {
-      @Override
-      public void run(MessageListener<T> messageListener) {
-        messageListener.onNewMessage(lazyMessage.get());
-      }
-    };
+  private SignalRunnable<MessageListener<T>> newSignalRunnable(LazyMessage<T> lazyMessage) {
+    return new MessageSignalRunnable<T>(lazyMessage);
   }
 
   /**
@@ -123,8 +192,35 @@ public class MessageDispatcher<T> extends CancellableLoop {
     }
   }
 
+  /**
+   * @return the {@link ListenerGroup} holding the {@link MessageListener}s
+   */
+  public ListenerGroup<MessageListener<T>> getMessageListeners() {
+    return messageListeners;
+  }
+
   @Override
   protected void handleInterruptedException(InterruptedException e) {
     messageListeners.shutdown();
   }
+
+  /**
+   * Signals a {@link MessageListener} with a message.
+   *
+   * @param <T>
+   *          the message type
+   */
+  private static class MessageSignalRunnable<T> implements SignalRunnable<MessageListener<T>> {
+
+    private final LazyMessage<T> lazyMessage;
+
+    public MessageSignalRunnable(LazyMessage<T> lazyMessage) {
+      this.lazyMessage = lazyMessage;
+    }
+
+    @Override
+    public void run(MessageListener<T> messageListener) {
+      messageListener.onNewMessage(lazyMessage.get());
+    }
+  }
 }
\ No newline at end of file
@@ -55,9 +55,11 @@ public class MessageReceiver<T> extends AbstractNamedChannelHandler {
     if (log.isDebugEnabled()) {
       log.debug(String.format("Received %d byte message.", buffer.readableBytes()));
     }
-    // We have to make a defensive copy of the buffer here because Netty does
-    // not guarantee that the returned ChannelBuffer will not be reused.
-    lazyMessages.put(new LazyMessage<T>(buffer.copy(), deserializer));
+    // The LengthFieldBasedFrameDecoder ahead of us in the pipeline extracts
+    // every frame into a buffer of its own, so the frame can be handed to the
+    // LazyMessage as is. Deserialized messages may keep slices of it, so it is
+    // never reused.
+    lazyMessages.put(new LazyMessage<T>(buffer, deserializer));
     super.messageReceived(ctx, e);
   }
 }
\ No newline at end of file
@@ -20,14 +20,15 @@ import com.google.common.annotations.VisibleForTesting;
 
 import org.apache.commons.logging.Log;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.group.ChannelGroup;
 import org.jboss.netty.channel.group.ChannelGroupFuture;
 import org.jboss.netty.channel.group.ChannelGroupFutureListener;
 import org.jboss.netty.channel.group.DefaultChannelGroup;
 import org.ros.concurrent.CancellableLoop;
-import org.ros.concurrent.MessageBlockingQueue;
-import org.ros.concurrent.MessageBlockingQueueFactory;
+import org.ros.concurrent.PolicyMessageBlockingQueue;
+import org.ros.concurrent.QueuePolicy;
 import org.ros.internal.message.MessageBufferPool;
 import org.ros.internal.message.MessageBuffers;
 import org.ros.log.RosLogFactory;
@@ -45,16 +46,23 @@ public class OutgoingMessageQueue<T> {
   private static final int DEQUE_CAPACITY = 512;
 
   private final MessageSerializer<T> serializer;
-  private final MessageBlockingQueue<T> deque;
+  private final PolicyMessageBlockingQueue<T> deque;
   private final ChannelGroup channelGroup;
   private final Writer writer;
   private final MessageBufferPool messageBufferPool;
-  private final ChannelBuffer latchedBuffer;
   private final Object mutex;
 
   private boolean latchMode;
   private T latchedMessage;
 
+  /**
+   * The serialized form of {@link #latchedMessage}, or {@code null} if it has
+   * not been serialized since the latched message last changed. Once created
+   * the buffer is never written to, so every new connection can be given its
+   * own read-only view of it.
+   */
+  private ChannelBuffer latchedBuffer;
+
   private final class Writer extends CancellableLoop {
 
     @Override
@@ -86,11 +94,10 @@ public class OutgoingMessageQueue<T> {
 
   public OutgoingMessageQueue(MessageSerializer<T> serializer, ExecutorService executorService) {
     this.serializer = serializer;
-    deque = MessageBlockingQueueFactory.newMessageBlockingQueue(DEQUE_CAPACITY, false);
+    deque = new PolicyMessageBlockingQueue<T>(QueuePolicy.<T> newBlocking(DEQUE_CAPACITY));
     channelGroup = new DefaultChannelGroup();
     writer = new Writer();
     messageBufferPool = new MessageBufferPool();
-    latchedBuffer = MessageBuffers.dynamicBuffer();
     mutex = new Object();
     latchMode = false;
     executorService.execute(writer);
@@ -104,6 +111,24 @@ public class OutgoingMessageQueue<T> {
     return latchMode;
   }
 
+  /**
+   * Set the policy for messages waiting to be written. The default blocks
+   * publishers once {@link #DEQUE_CAPACITY} messages are waiting.
+   *
+   * @param queuePolicy
+   *          the policy for the queue
+   */
+  public void setQueuePolicy(QueuePolicy<T> queuePolicy) {
+    deque.setPolicy(queuePolicy);
+  }
+
+  /**
+   * @return the number of messages dropped without being written
+   */
+  public long getDropCount() {
+    return deque.getDropCount();
+  }
+
   /**
    * @param message
    *          the message to add to the queue
@@ -120,6 +145,7 @@ public class OutgoingMessageQueue<T> {
   private void setLatchedMessage(T message) {
     synchronized (mutex) {
       latchedMessage = message;
+      latchedBuffer = null;
     }
   }
 
@@ -146,14 +172,23 @@ public class OutgoingMessageQueue<T> {
     channelGroup.add(channel);
   }
 
-  // TODO(damonkohler): Avoid re-serializing the latched message if it hasn't
-  // changed.
+  /**
+   * Write the latched message to a new channel. The message is only
+   * serialized for the first channel added after it changes.
+   *
+   * @param channel
+   *          the channel to write to
+   */
   private void writeLatchedMessage(Channel channel) {
+    ChannelBuffer buffer;
     synchronized (mutex) {
-      latchedBuffer.clear();
-      serializer.serialize(latchedMessage, latchedBuffer);
-      channel.write(latchedBuffer);
+      if (latchedBuffer == null) {
+        latchedBuffer = MessageBuffers.dynamicBuffer();
+        serializer.serialize(latchedMessage, latchedBuffer);
+      }
+      buffer = latchedBuffer;
     }
+    channel.write(ChannelBuffers.unmodifiableBuffer(buffer.duplicate()));
   }
 
   /**
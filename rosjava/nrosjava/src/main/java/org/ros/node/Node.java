@@ -103,6 +103,15 @@ public interface Node {
    */
   void addListener(NodeListener listener);
 
+  /**
+   * Removes a {@link NodeListener} from the {@link Node}.
+   *
+   * @param listener
+   *          the {@link NodeListener} to remove
+   * @return {@code true} if the {@link NodeListener} had been added
+   */
+  boolean removeListener(NodeListener listener);
+
   /**
    * @return the {@link ScheduledExecutorService} that this {@link Node} uses
    */
@@ -22,6 +22,7 @@ import org.ros.address.AdvertiseAddressFactory;
 import org.ros.address.BindAddress;
 import org.ros.address.PrivateAdvertiseAddressFactory;
 import org.ros.address.PublicAdvertiseAddressFactory;
+import org.ros.concurrent.ListenerDispatchPool;
 import org.ros.exception.RosRuntimeException;
 import org.ros.internal.message.DefaultMessageFactory;
 import org.ros.internal.message.DefaultMessageSerializationFactory;
@@ -86,6 +87,7 @@ public class NodeConfiguration {
   private AdvertiseAddressFactory xmlRpcAdvertiseAddressFactory;
   private ScheduledExecutorService scheduledExecutorService;
   private TimeProvider timeProvider;
+  private ListenerDispatchPool listenerDispatchPool;
   private Log log;
 
   /**
@@ -112,6 +114,7 @@ public class NodeConfiguration {
     copy.xmlRpcAdvertiseAddressFactory = nodeConfiguration.xmlRpcAdvertiseAddressFactory;
     copy.scheduledExecutorService = nodeConfiguration.scheduledExecutorService;
     copy.timeProvider = nodeConfiguration.timeProvider;
+    copy.listenerDispatchPool = nodeConfiguration.listenerDispatchPool;
     copy.log = nodeConfiguration.log;
 
     return copy;
@@ -563,6 +566,27 @@ public class NodeConfiguration {
     return this;
   }
 
+  /**
+   * @return the {@link ListenerDispatchPool} for message listeners, or
+   *         {@code null} if each listener gets its own thread
+   */
+  public ListenerDispatchPool getListenerDispatchPool() {
+    return listenerDispatchPool;
+  }
+
+  /**
+   * Sets a pool that all message listeners of the {@link Node} share instead of
+   * each having a thread of its own. The pool is not shut down with the
+   * {@link Node}.
+   *
+   * @param listenerDispatchPool
+   *          the pool to use, or {@code null} for a thread per listener
+   */
+  public NodeConfiguration setListenerDispatchPool(ListenerDispatchPool listenerDispatchPool) {
+    this.listenerDispatchPool = listenerDispatchPool;
+    return this;
+  }
+
   /**
    * @return the log
    */
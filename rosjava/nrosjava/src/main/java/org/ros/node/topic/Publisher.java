@@ -16,8 +16,11 @@
 
 package org.ros.node.topic;
 
+import org.ros.concurrent.QueuePolicy;
+import org.ros.internal.node.topic.SubscriberIdentifier;
 import org.ros.internal.node.topic.TopicParticipant;
 
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -50,6 +53,15 @@ public interface Publisher<T> extends TopicParticipant {
    */
   boolean getLatchMode();
 
+  /**
+   * Set how messages waiting to be sent are queued. By default publishing
+   * blocks when too many messages are waiting.
+   *
+   * @param queuePolicy
+   *          the policy for the queue of outgoing messages
+   */
+  void setQueuePolicy(QueuePolicy<T> queuePolicy);
+
   /**
    * Create a new message.
    *
@@ -86,6 +98,14 @@ public interface Publisher<T> extends TopicParticipant {
    */
   int getNumberOfSubscribers();
 
+  /**
+   * Get the {@link Subscriber}s currently connected to the {@link Publisher}.
+   *
+   * @return the identifiers of the connected {@link Subscriber}s, one for each
+   *         connection
+   */
+  Collection<SubscriberIdentifier> getSubscriberIdentifiers();
+
   /**
    * Shuts down and unregisters the {@link Publisher}. Shutdown is delayed by at
    * most the specified timeout to allow
@@ -116,4 +136,13 @@ public interface Publisher<T> extends TopicParticipant {
    *          the {@link PublisherListener} to add
    */
   void addListener(PublisherListener<T> listener);
+
+  /**
+   * Remove a lifecycle listener from the {@link Publisher}.
+   *
+   * @param listener
+   *          the {@link PublisherListener} to remove
+   * @return {@code true} if the {@link PublisherListener} had been added
+   */
+  boolean removeListener(PublisherListener<T> listener);
 }
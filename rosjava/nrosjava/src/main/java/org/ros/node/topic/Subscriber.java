@@ -16,6 +16,7 @@
 
 package org.ros.node.topic;
 
+import org.ros.concurrent.QueuePolicy;
 import org.ros.internal.node.topic.TopicParticipant;
 import org.ros.message.MessageListener;
 
@@ -54,6 +55,18 @@ public interface Subscriber<T> extends TopicParticipant {
    */
   void addMessageListener(MessageListener<T> messageListener, int limit);
 
+  /**
+   * Adds a {@link MessageListener} to be called when new messages are received,
+   * queueing messages for it according to a {@link QueuePolicy}.
+   *
+   * @param messageListener
+   *          this {@link MessageListener} will be called when new messages are
+   *          received
+   * @param queuePolicy
+   *          the policy for the queue of messages waiting for the listener
+   */
+  void addMessageListener(MessageListener<T> messageListener, QueuePolicy<T> queuePolicy);
+
   /**
    * Adds a {@link MessageListener} with a limit of 1.
    *
@@ -61,6 +74,16 @@ public interface Subscriber<T> extends TopicParticipant {
    */
   void addMessageListener(MessageListener<T> messageListener);
 
+  /**
+   * Removes a {@link MessageListener} so it is no longer called for new
+   * messages. Its thread or dispatch pool slot is released.
+   *
+   * @param messageListener
+   *          the {@link MessageListener} to remove
+   * @return {@code true} if the {@link MessageListener} had been added
+   */
+  boolean removeMessageListener(MessageListener<T> messageListener);
+
   /**
    * Shuts down and unregisters the {@link Subscriber}. using the default
    * timeout Shutdown is delayed by at most the specified timeout to allow
@@ -92,6 +115,15 @@ public interface Subscriber<T> extends TopicParticipant {
    */
   void addSubscriberListener(SubscriberListener<T> listener);
 
+  /**
+   * Remove a lifecycle listener from the subscriber.
+   *
+   * @param listener
+   *          the listener to remove
+   * @return {@code true} if the listener had been added
+   */
+  boolean removeSubscriberListener(SubscriberListener<T> listener);
+
   /**
    * @return {@code true} if the {@link Publisher} of this {@link Subscriber}'s
    *         topic is latched, {@code false} otherwise
@@ -16,6 +16,7 @@
 
 package org.ros.concurrent;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
@@ -130,4 +131,91 @@ public class ListenerGroupTest {
 
     assertTrue(latch.await(1, TimeUnit.SECONDS));
   }
+
+  @Test
+  public void testPooledSignalOrder() throws InterruptedException {
+    int numberOfListeners = 10;
+    int numberOfSignals = 100;
+    final CountDownLatch latch = new CountDownLatch(numberOfListeners * numberOfSignals);
+
+    ListenerDispatchPool dispatchPool = new ListenerDispatchPool(2);
+    ListenerGroup<CountingListener> listenerGroup =
+        new ListenerGroup<CountingListener>(executorService, dispatchPool);
+    for (int i = 0; i < numberOfListeners; i++) {
+      listenerGroup.add(new CountingListener() {
+        private AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void run(int count) {
+          if (this.count.compareAndSet(count, count + 1)) {
+            latch.countDown();
+          }
+        }
+      });
+    }
+
+    for (int i = 0; i < numberOfSignals; i++) {
+      final int count = i;
+      listenerGroup.signal(new SignalRunnable<CountingListener>() {
+        @Override
+        public void run(CountingListener listener) {
+          listener.run(count);
+        }
+      });
+    }
+
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+    for (EventDispatcher<CountingListener> eventDispatcher : listenerGroup.getEventDispatchers()) {
+      assertEquals(numberOfSignals, eventDispatcher.getDispatchCount());
+      assertEquals(0, eventDispatcher.getQueueDepth());
+    }
+    dispatchPool.shutdown();
+  }
+
+  @Test
+  public void testPooledRemoveStopsDispatch() throws InterruptedException {
+    final CountDownLatch dispatching = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger dispatched = new AtomicInteger();
+
+    ListenerDispatchPool dispatchPool = new ListenerDispatchPool(2);
+    ListenerGroup<CountingListener> listenerGroup =
+        new ListenerGroup<CountingListener>(executorService, dispatchPool);
+    CountingListener listener = new CountingListener() {
+      @Override
+      public void run(int count) {
+        dispatched.incrementAndGet();
+        dispatching.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+        }
+      }
+    };
+    EventDispatcher<CountingListener> eventDispatcher = listenerGroup.add(listener);
+
+    SignalRunnable<CountingListener> signalRunnable = new SignalRunnable<CountingListener>() {
+      @Override
+      public void run(CountingListener listener) {
+        listener.run(0);
+      }
+    };
+    for (int i = 0; i < 5; i++) {
+      listenerGroup.signal(signalRunnable);
+    }
+
+    // Cancel while the first event is being dispatched.
+    assertTrue(dispatching.await(1, TimeUnit.SECONDS));
+    assertTrue(listenerGroup.remove(listener));
+    release.countDown();
+
+    // Signalling the cancelled dispatcher directly queues nothing.
+    eventDispatcher.signal(signalRunnable);
+    dispatchPool.shutdown();
+    Thread.sleep(100);
+
+    assertEquals(1, dispatched.get());
+    assertEquals(1, eventDispatcher.getDispatchCount());
+    assertEquals(0, eventDispatcher.getQueueDepth());
+  }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author khughes@google.com (Keith M. Hughes)
+ */
+public class PolicyMessageBlockingQueueTest {
+
+  private final AtomicInteger drops = new AtomicInteger();
+
+  private final QueueDropListener dropListener = new QueueDropListener() {
+    @Override
+    public void onEntryDropped() {
+      drops.incrementAndGet();
+    }
+  };
+
+  @Test
+  public void testDropNewest() throws InterruptedException {
+    PolicyMessageBlockingQueue<String> queue =
+        new PolicyMessageBlockingQueue<String>(new QueuePolicy<String>(
+            QueueOverflowAction.DROP_NEWEST, 2, null, dropListener));
+    queue.put("a");
+    queue.put("b");
+    queue.put("c");
+    assertEquals("a", queue.take());
+    assertEquals("b", queue.take());
+    assertTrue(queue.isEmpty());
+    assertEquals(1, drops.get());
+    assertEquals(1, queue.getDropCount());
+  }
+
+  @Test
+  public void testDropOldest() throws InterruptedException {
+    PolicyMessageBlockingQueue<String> queue =
+        new PolicyMessageBlockingQueue<String>(new QueuePolicy<String>(
+            QueueOverflowAction.DROP_OLDEST, 2, null, dropListener));
+    queue.put("a");
+    queue.put("b");
+    queue.put("c");
+    assertEquals("b", queue.take());
+    assertEquals("c", queue.take());
+    assertEquals(1, drops.get());
+  }
+
+  @Test
+  public void testConflate() throws InterruptedException {
+    QueueKeyFunction<String> firstLetter = new QueueKeyFunction<String>() {
+      @Override
+      public Object getKey(String entry) {
+        return entry.charAt(0);
+      }
+    };
+    PolicyMessageBlockingQueue<String> queue =
+        new PolicyMessageBlockingQueue<String>(new QueuePolicy<String>(
+            QueueOverflowAction.CONFLATE, 10, firstLetter, dropListener));
+    queue.put("a1");
+    queue.put("b1");
+    queue.put("a2");
+    queue.put("b2");
+    queue.put("c1");
+
+    // Replaced entries keep their place in the queue.
+    assertEquals("a2", queue.take());
+    assertEquals("b2", queue.take());
+    assertEquals("c1", queue.take());
+    assertNull(queue.poll());
+    assertEquals(2, drops.get());
+  }
+
+  @Test
+  public void testConflateWithoutKeyKeepsNewest() throws InterruptedException {
+    PolicyMessageBlockingQueue<String> queue =
+        new PolicyMessageBlockingQueue<String>(new QueuePolicy<String>(
+            QueueOverflowAction.CONFLATE, 10, null, null));
+    queue.put("a");
+    queue.put("b");
+    queue.put("c");
+    assertEquals("c", queue.take());
+    assertTrue(queue.isEmpty());
+    assertEquals(2, queue.getDropCount());
+  }
+}
@@ -40,11 +40,25 @@ public class DefaultMessageDeserializer<T> implements MessageDeserializer<T> {
   @Override
   public T deserialize(ChannelBuffer buffer) {
     Message message = messageFactory.newFromType(messageIdentifier.getType());
+    deserialize(message, buffer);
+    return (T) message;
+  }
+
+  /**
+   * @param message
+   *          the message to read the fields of
+   * @param buffer
+   *          the buffer to read from
+   */
+  static void deserialize(Message message, ChannelBuffer buffer) {
+    if (message instanceof GeneratedMessage) {
+      ((GeneratedMessage) message).deserialize(buffer);
+      return;
+    }
     for (Field field : message.toRawMessage().getFields()) {
       if (!field.isConstant()) {
         field.deserialize(buffer);
       }
     }
-    return (T) message;
   }
 }
@@ -34,6 +34,10 @@ public class DefaultMessageSerializer implements MessageSerializer<Message> {
 
   @Override
   public void serialize(Message message, ChannelBuffer buffer) {
+    if (message instanceof GeneratedMessage) {
+      ((GeneratedMessage) message).serialize(buffer);
+      return;
+    }
     for (Field field : message.toRawMessage().getFields()) {
       if (!field.isConstant()) {
         field.serialize(buffer);
@@ -133,6 +133,30 @@ public class GenerateInterfaces {
     } catch (Exception e) {
       System.out.printf("Failed to generate interface for %s.\n", messageDeclaration.getType());
       e.printStackTrace();
+      return;
+    }
+    if (addConstantsAndMethods) {
+      writeClass(messageDeclaration, outputDirectory);
+    }
+  }
+
+  private void writeClass(MessageDeclaration messageDeclaration, File outputDirectory) {
+    String interfaceName = messageDeclaration.getType().replace("/", ".");
+    String className = MessageClassBuilder.toClassName(interfaceName);
+    int lastDot = className.lastIndexOf('.');
+    MessageClassBuilder builder = new MessageClassBuilder();
+    builder.setPackageName(className.substring(0, lastDot));
+    builder.setClassName(className.substring(lastDot + 1));
+    builder.setInterfaceName(interfaceName);
+    builder.setMessageDeclaration(messageDeclaration);
+    try {
+      String content = builder.build(messageFactory);
+      File file = new File(outputDirectory, className.replace(".", "/") + ".java");
+      FileUtils.writeStringToFile(file, content);
+    } catch (Exception e) {
+      // Messages without a class are still created as proxies.
+      System.out.printf("Skipped generating a class for %s: %s\n", messageDeclaration.getType(),
+          e.getMessage());
     }
   }
 
@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import com.google.common.collect.Lists;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.internal.message.context.MessageContext;
+import org.ros.internal.message.field.PrimitiveFieldType;
+import org.ros.message.Duration;
+import org.ros.message.Time;
+
+import java.util.List;
+
+/**
+ * The base class of the message classes written by
+ * {@link MessageClassBuilder}.
+ * <p>
+ * Generated messages keep their fields in plain Java fields and serialize them
+ * directly, so using them goes through no proxy, no lookups by field name and
+ * no boxing. Fields are still available by name from {@link #toRawMessage()}.
+ * <p>
+ * Methods here must not look like message field getters or setters, since
+ * subclasses also implement the message interface.
+ *
+ * @author khughes@google.com (Keith M. Hughes)
+ */
+public abstract class GeneratedMessage implements Message {
+
+  private static final DefaultMessageSerializer MESSAGE_SERIALIZER =
+      new DefaultMessageSerializer();
+
+  private final MessageContext messageContext;
+
+  /**
+   * The raw view of this message, created when first asked for.
+   */
+  private RawMessage rawMessage;
+
+  /**
+   * @param messageContext
+   *          the context for the message type
+   */
+  protected GeneratedMessage(MessageContext messageContext) {
+    this.messageContext = messageContext;
+  }
+
+  @Override
+  public RawMessage toRawMessage() {
+    if (rawMessage == null) {
+      rawMessage = new GeneratedRawMessage(this, messageContext);
+    }
+    return rawMessage;
+  }
+
+  /**
+   * @param messageContext
+   *          the context for the message type
+   * @return a new message of the same class as this one
+   */
+  public abstract GeneratedMessage newInstance(MessageContext messageContext);
+
+  /**
+   * Write the fields of this message to a buffer.
+   *
+   * @param buffer
+   *          the buffer to write to
+   */
+  public abstract void serialize(ChannelBuffer buffer);
+
+  /**
+   * Read the fields of this message from a buffer.
+   *
+   * @param buffer
+   *          the buffer to read from
+   */
+  public abstract void deserialize(ChannelBuffer buffer);
+
+  /**
+   * @param index
+   *          the position of the field in the message definition
+   * @return the value of the field, boxed if it is primitive
+   */
+  protected abstract Object getFieldValue(int index);
+
+  /**
+   * @param index
+   *          the position of the field in the message definition
+   * @param value
+   *          the new value of the field, boxed if it is primitive
+   */
+  protected abstract void setFieldValue(int index, Object value);
+
+  /**
+   * @param messageType
+   *          the type of the message, e.g. {@code std_msgs/Header}
+   * @return a new message from the factory of this message
+   */
+  protected final <T> T newMessage(String messageType) {
+    return messageContext.getMessageFactory().newFromType(messageType);
+  }
+
+  /**
+   * @param message
+   *          the nested message to write
+   * @param buffer
+   *          the buffer to write to
+   */
+  protected final void serializeMessage(Message message, ChannelBuffer buffer) {
+    MESSAGE_SERIALIZER.serialize(message, buffer);
+  }
+
+  /**
+   * @param messageType
+   *          the type of the nested message
+   * @param buffer
+   *          the buffer to read from
+   * @return the message read from the buffer
+   */
+  protected final <T extends Message> T deserializeMessage(String messageType,
+      ChannelBuffer buffer) {
+    T message = newMessage(messageType);
+    DefaultMessageDeserializer.deserialize(message, buffer);
+    return message;
+  }
+
+  /**
+   * @param value
+   *          the nested messages to write, {@code null} is written as an empty
+   *          list
+   * @param buffer
+   *          the buffer to write to
+   */
+  protected final void serializeMessageList(List<? extends Message> value,
+      ChannelBuffer buffer) {
+    if (value == null) {
+      buffer.writeInt(0);
+      return;
+    }
+    buffer.writeInt(value.size());
+    for (Message message : value) {
+      MESSAGE_SERIALIZER.serialize(message, buffer);
+    }
+  }
+
+  /**
+   * @param messageType
+   *          the type of the nested messages
+   * @param buffer
+   *          the buffer to read from
+   * @return the messages read from the buffer
+   */
+  protected final <T extends Message> List<T> deserializeMessageList(String messageType,
+      ChannelBuffer buffer) {
+    int size = buffer.readInt();
+    List<T> value = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      value.add(this.<T>deserializeMessage(messageType, buffer));
+    }
+    return value;
+  }
+
+  /**
+   * @param value
+   *          the string to write
+   * @param buffer
+   *          the buffer to write to
+   */
+  protected static void serializeString(String value, ChannelBuffer buffer) {
+    PrimitiveFieldType.STRING.serialize(value, buffer);
+  }
+
+  /**
+   * @param buffer
+   *          the buffer to read from
+   * @return the string read from the buffer
+   */
+  protected static String deserializeString(ChannelBuffer buffer) {
+    return PrimitiveFieldType.STRING.<String>deserialize(buffer);
+  }
+
+  /**
+   * @param value
+   *          the strings to write, {@code null} is written as an empty list
+   * @param buffer
+   *          the buffer to write to
+   */
+  protected static void serializeStringList(List<String> value, ChannelBuffer buffer) {
+    if (value == null) {
+      buffer.writeInt(0);
+      return;
+    }
+    buffer.writeInt(value.size());
+    for (String element : value) {
+      PrimitiveFieldType.STRING.serialize(element, buffer);
+    }
+  }
+
+  /**
+   * @param buffer
+   *          the buffer to read from
+   * @return the strings read from the buffer
+   */
+  protected static List<String> deserializeStringList(ChannelBuffer buffer) {
+    int size = buffer.readInt();
+    List<String> value = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      value.add(PrimitiveFieldType.STRING.<String>deserialize(buffer));
+    }
+    return value;
+  }
+
+  /**
+   * @param value
+   *          the time to write
+   * @param buffer
+   *          the buffer to write to
+   */
+  protected static void serializeTime(Time value, ChannelBuffer buffer) {
+    PrimitiveFieldType.TIME.serialize(value, buffer);
+  }
+
+  /**
+   * @param buffer
+   *          the buffer to read from
+   * @return the time read from the buffer
+   */
+  protected static Time deserializeTime(ChannelBuffer buffer) {
+    return PrimitiveFieldType.TIME.<Time>deserialize(buffer);
+  }
+
+  /**
+   * @param value
+   *          the times to write, {@code null} is written as an empty list
+   * @param buffer
+   *          the buffer to write to
+   */
+  protected static void serializeTimeList(List<Time> value, ChannelBuffer buffer) {
+    if (value == null) {
+      buffer.writeInt(0);
+      return;
+    }
+    buffer.writeInt(value.size());
+    for (Time element : value) {
+      PrimitiveFieldType.TIME.serialize(element, buffer);
+    }
+  }
+
+  /**
+   * @param buffer
+   *          the buffer to read from
+   * @return the times read from the buffer
+   */
+  protected static List<Time> deserializeTimeList(ChannelBuffer buffer) {
+    int size = buffer.readInt();
+    List<Time> value = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      value.add(PrimitiveFieldType.TIME.<Time>deserialize(buffer));
+    }
+    return value;
+  }
+
+  /**
+   * @param value
+   *          the duration to write
+   * @param buffer
+   *          the buffer to write to
+   */
+  protected static void serializeDuration(Duration value, ChannelBuffer buffer) {
+    PrimitiveFieldType.DURATION.serialize(value, buffer);
+  }
+
+  /**
+   * @param buffer
+   *          the buffer to read from
+   * @return the duration read from the buffer
+   */
+  protected static Duration deserializeDuration(ChannelBuffer buffer) {
+    return PrimitiveFieldType.DURATION.<Duration>deserialize(buffer);
+  }
+
+  /**
+   * @param value
+   *          the durations to write, {@code null} is written as an empty list
+   * @param buffer
+   *          the buffer to write to
+   */
+  protected static void serializeDurationList(List<Duration> value, ChannelBuffer buffer) {
+    if (value == null) {
+      buffer.writeInt(0);
+      return;
+    }
+    buffer.writeInt(value.size());
+    for (Duration element : value) {
+      PrimitiveFieldType.DURATION.serialize(element, buffer);
+    }
+  }
+
+  /**
+   * @param buffer
+   *          the buffer to read from
+   * @return the durations read from the buffer
+   */
+  protected static List<Duration> deserializeDurationList(ChannelBuffer buffer) {
+    int size = buffer.readInt();
+    List<Duration> value = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      value.add(PrimitiveFieldType.DURATION.<Duration>deserialize(buffer));
+    }
+    return value;
+  }
+
+  /**
+   * @param value
+   *          the bytes to write, {@code null} is written as no bytes
+   * @param size
+   *          the fixed number of bytes in the field, or -1 if the number of
+   *          bytes is written before them
+   * @param buffer
+   *          the buffer to write to
+   */
+  protected static void serializeChannelBuffer(ChannelBuffer value, int size,
+      ChannelBuffer buffer) {
+    int length = (value != null) ? value.readableBytes() : 0;
+    if (size < 0) {
+      buffer.writeInt(length);
+    }
+    if (length > 0) {
+      // By specifying the start index and length we avoid modifying value's
+      // indices and marks.
+      buffer.writeBytes(value, 0, length);
+    }
+  }
+
+  /**
+   * @param size
+   *          the fixed number of bytes in the field, or -1 if the number of
+   *          bytes is read before them
+   * @param buffer
+   *          the buffer to read from
+   * @return the bytes read from the buffer, sharing the buffer's content
+   */
+  protected static ChannelBuffer deserializeChannelBuffer(int size, ChannelBuffer buffer) {
+    int length = (size < 0) ? buffer.readInt() : size;
+    return buffer.readSlice(length);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s<%s>", getClass().getSimpleName(), messageContext.getType());
+  }
+}
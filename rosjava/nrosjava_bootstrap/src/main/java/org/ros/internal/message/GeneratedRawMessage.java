@@ -0,0 +1,590 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import com.google.common.collect.Lists;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.ros.exception.RosRuntimeException;
+import org.ros.internal.message.context.MessageContext;
+import org.ros.internal.message.field.Field;
+import org.ros.internal.message.field.FieldFactory;
+import org.ros.internal.message.field.MessageFieldType;
+import org.ros.message.Duration;
+import org.ros.message.MessageIdentifier;
+import org.ros.message.Time;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@link RawMessage} view of a {@link GeneratedMessage}.
+ * <p>
+ * This is kept apart from the generated message since message fields such as
+ * {@code type} or {@code name} have getters which would clash with those of
+ * {@link RawMessage}. Values go through the generated message by field
+ * position, so primitive values are boxed here.
+ *
+ * @author khughes@google.com (Keith M. Hughes)
+ */
+class GeneratedRawMessage implements RawMessage {
+
+  private final GeneratedMessage message;
+  private final MessageContext messageContext;
+
+  /**
+   * The fields of the message, created when first asked for.
+   */
+  private List<Field> fields;
+
+  GeneratedRawMessage(GeneratedMessage message, MessageContext messageContext) {
+    this.message = message;
+    this.messageContext = messageContext;
+  }
+
+  @Override
+  public RawMessage toRawMessage() {
+    return this;
+  }
+
+  @Override
+  public MessageIdentifier getIdentifier() {
+    return messageContext.getMessageIdentifer();
+  }
+
+  @Override
+  public String getType() {
+    return messageContext.getType();
+  }
+
+  @Override
+  public String getPackage() {
+    return messageContext.getPackage();
+  }
+
+  @Override
+  public String getName() {
+    return messageContext.getName();
+  }
+
+  @Override
+  public String getDefinition() {
+    return messageContext.getDefinition();
+  }
+
+  @Override
+  public List<Field> getFields() {
+    if (fields == null) {
+      List<String> fieldNames = messageContext.getFieldNames();
+      List<Field> newFields = Lists.newArrayListWithCapacity(fieldNames.size());
+      for (int i = 0; i < fieldNames.size(); i++) {
+        FieldFactory fieldFactory = messageContext.getFieldFactory(fieldNames.get(i));
+        Field field = fieldFactory.create();
+        newFields.add(field.isConstant() ? field : new GeneratedField(field, fieldFactory, i));
+      }
+      fields = Collections.unmodifiableList(newFields);
+    }
+    return fields;
+  }
+
+  @Override
+  public boolean getBool(String name) {
+    return (Boolean) getFieldValue(name);
+  }
+
+  @Override
+  public boolean[] getBoolArray(String name) {
+    return (boolean[]) getFieldValue(name);
+  }
+
+  @Override
+  public Duration getDuration(String name) {
+    return (Duration) getFieldValue(name);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<Duration> getDurationList(String name) {
+    return (List<Duration>) getFieldValue(name);
+  }
+
+  @Override
+  public float getFloat32(String name) {
+    return (Float) getFieldValue(name);
+  }
+
+  @Override
+  public float[] getFloat32Array(String name) {
+    return (float[]) getFieldValue(name);
+  }
+
+  @Override
+  public double getFloat64(String name) {
+    return (Double) getFieldValue(name);
+  }
+
+  @Override
+  public double[] getFloat64Array(String name) {
+    return (double[]) getFieldValue(name);
+  }
+
+  @Override
+  public short getInt16(String name) {
+    return (Short) getFieldValue(name);
+  }
+
+  @Override
+  public short[] getInt16Array(String name) {
+    return (short[]) getFieldValue(name);
+  }
+
+  @Override
+  public int getInt32(String name) {
+    return (Integer) getFieldValue(name);
+  }
+
+  @Override
+  public int[] getInt32Array(String name) {
+    return (int[]) getFieldValue(name);
+  }
+
+  @Override
+  public long getInt64(String name) {
+    return (Long) getFieldValue(name);
+  }
+
+  @Override
+  public long[] getInt64Array(String name) {
+    return (long[]) getFieldValue(name);
+  }
+
+  @Override
+  public byte getInt8(String name) {
+    return (Byte) getFieldValue(name);
+  }
+
+  @Override
+  public byte[] getInt8Array(String name) {
+    return (byte[]) getFieldValue(name);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T extends Message> T getMessage(String name) {
+    if (isMessageField(name)) {
+      return (T) getFieldValue(name);
+    }
+    throw new RosRuntimeException("Failed to access message field: " + name);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T extends Message> List<T> getMessageList(String name) {
+    if (isMessageField(name)) {
+      return (List<T>) getFieldValue(name);
+    }
+    throw new RosRuntimeException("Failed to access list field: " + name);
+  }
+
+  @Override
+  public String getString(String name) {
+    return (String) getFieldValue(name);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<String> getStringList(String name) {
+    return (List<String>) getFieldValue(name);
+  }
+
+  @Override
+  public Time getTime(String name) {
+    return (Time) getFieldValue(name);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<Time> getTimeList(String name) {
+    return (List<Time>) getFieldValue(name);
+  }
+
+  @Override
+  public short getUInt16(String name) {
+    return (Short) getFieldValue(name);
+  }
+
+  @Override
+  public short[] getUInt16Array(String name) {
+    return (short[]) getFieldValue(name);
+  }
+
+  @Override
+  public int getUInt32(String name) {
+    return (Integer) getFieldValue(name);
+  }
+
+  @Override
+  public int[] getUInt32Array(String name) {
+    return (int[]) getFieldValue(name);
+  }
+
+  @Override
+  public long getUInt64(String name) {
+    return (Long) getFieldValue(name);
+  }
+
+  @Override
+  public long[] getUInt64Array(String name) {
+    return (long[]) getFieldValue(name);
+  }
+
+  @Override
+  public short getUInt8(String name) {
+    return (Short) getFieldValue(name);
+  }
+
+  @Override
+  public short[] getUInt8Array(String name) {
+    return (short[]) getFieldValue(name);
+  }
+
+  @Override
+  public void setBool(String name, boolean value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setBoolArray(String name, boolean[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setDurationList(String name, List<Duration> value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setDuration(String name, Duration value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setFloat32(String name, float value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setFloat32Array(String name, float[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setFloat64(String name, double value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setFloat64Array(String name, double[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setInt16(String name, short value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setInt16Array(String name, short[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setInt32(String name, int value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setInt32Array(String name, int[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setInt64(String name, long value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setInt64Array(String name, long[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setInt8(String name, byte value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setInt8Array(String name, byte[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setMessage(String name, Message value) {
+    // TODO(damonkohler): Verify the type of the provided Message?
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setMessageList(String name, List<Message> value) {
+    // TODO(damonkohler): Verify the type of all Messages in the provided list?
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setString(String name, String value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setStringList(String name, List<String> value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setTime(String name, Time value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setTimeList(String name, List<Time> value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setUInt16(String name, short value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setUInt16Array(String name, short[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setUInt32(String name, int value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setUInt32Array(String name, int[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setUInt64(String name, long value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setUInt64Array(String name, long[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setUInt8(String name, byte value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setUInt8Array(String name, byte[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public byte getByte(String name) {
+    return (Byte) getFieldValue(name);
+  }
+
+  @Override
+  public short getChar(String name) {
+    return (Short) getFieldValue(name);
+  }
+
+  @Override
+  public void setByte(String name, byte value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setChar(String name, short value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setByteArray(String name, byte[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public void setCharArray(String name, short[] value) {
+    setFieldValue(name, value);
+  }
+
+  @Override
+  public byte[] getByteArray(String name) {
+    return (byte[]) getFieldValue(name);
+  }
+
+  @Override
+  public short[] getCharArray(String name) {
+    return (short[]) getFieldValue(name);
+  }
+
+  @Override
+  public ChannelBuffer getChannelBuffer(String name) {
+    return (ChannelBuffer) getFieldValue(name);
+  }
+
+  @Override
+  public void setChannelBuffer(String name, ChannelBuffer value) {
+    setFieldValue(name, value);
+  }
+
+  /**
+   * @param name
+   *          the name of the field
+   * @return the value of the field
+   */
+  private Object getFieldValue(String name) {
+    return message.getFieldValue(getFieldIndex(name));
+  }
+
+  /**
+   * @param name
+   *          the name of the field
+   * @param value
+   *          the new value of the field
+   */
+  private void setFieldValue(String name, Object value) {
+    message.setFieldValue(getFieldIndex(name), value);
+  }
+
+  /**
+   * @param name
+   *          the name of the field
+   * @return the position of the field
+   */
+  private int getFieldIndex(String name) {
+    Integer index = messageContext.getFieldIndex(name);
+    if (index == null) {
+      throw new RosRuntimeException("Unknown field: " + name);
+    }
+    return index;
+  }
+
+  /**
+   * @param name
+   *          the name of the field
+   * @return {@code true} if the field holds messages
+   */
+  private boolean isMessageField(String name) {
+    FieldFactory fieldFactory = messageContext.getFieldFactory(name);
+    return fieldFactory != null && fieldFactory.create().getType() instanceof MessageFieldType;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("GeneratedRawMessage<%s>", getType());
+  }
+
+  @Override
+  public int hashCode() {
+    return message.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    GeneratedRawMessage other = (GeneratedRawMessage) obj;
+    return message.equals(other.message);
+  }
+
+  /**
+   * A field of the generated message.
+   * <p>
+   * Serializing goes through a field of the type normally used for the message
+   * so the wire format stays the same.
+   */
+  private class GeneratedField extends Field {
+
+    private final Field field;
+    private final FieldFactory fieldFactory;
+    private final int index;
+
+    GeneratedField(Field field, FieldFactory fieldFactory, int index) {
+      super(field.getType(), field.getName(), false);
+      this.field = field;
+      this.fieldFactory = fieldFactory;
+      this.index = index;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T getValue() {
+      return (T) message.getFieldValue(index);
+    }
+
+    @Override
+    public void setValue(Object value) {
+      message.setFieldValue(index, value);
+    }
+
+    @Override
+    public void serialize(ChannelBuffer buffer) {
+      Field copy = fieldFactory.create();
+      copy.setValue(getValue());
+      copy.serialize(buffer);
+    }
+
+    @Override
+    public void deserialize(ChannelBuffer buffer) {
+      Field copy = fieldFactory.create();
+      copy.deserialize(buffer);
+      setValue(copy.getValue());
+    }
+
+    @Override
+    public String getMd5String() {
+      return field.getMd5String();
+    }
+
+    @Override
+    public String getJavaTypeName() {
+      return field.getJavaTypeName();
+    }
+
+    @Override
+    public String toString() {
+      return "GeneratedField<" + type + ", " + name + ">";
+    }
+  }
+}
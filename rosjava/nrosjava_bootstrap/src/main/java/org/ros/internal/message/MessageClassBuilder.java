@@ -0,0 +1,710 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import org.ros.exception.RosRuntimeException;
+import org.ros.internal.message.context.MessageContext;
+import org.ros.internal.message.context.MessageContextProvider;
+import org.ros.internal.message.definition.MessageDefinitionParser;
+import org.ros.internal.message.definition.MessageDefinitionParser.MessageDefinitionVisitor;
+import org.ros.internal.message.field.PrimitiveFieldType;
+import org.ros.message.MessageDeclaration;
+import org.ros.message.MessageFactory;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the source of a message class which implements the interface written
+ * by {@link MessageInterfaceBuilder}.
+ * <p>
+ * The class extends {@link GeneratedMessage}. Fields are plain Java fields,
+ * with primitives unboxed, and are serialized and deserialized one after
+ * another without going through {@link org.ros.internal.message.field.Field}s.
+ *
+ * @author khughes@google.com (Keith M. Hughes)
+ */
+public class MessageClassBuilder {
+
+  /**
+   * The package, under the package of the message interface, for the class.
+   */
+  private static final String CLASS_SUBPACKAGE = "impl";
+
+  /**
+   * The suffix added to the name of the message interface for the class.
+   */
+  private static final String CLASS_SUFFIX = "Impl";
+
+  private static final String FIELD_PREFIX = "field_";
+
+  private MessageDeclaration messageDeclaration;
+  private String packageName;
+  private String className;
+  private String interfaceName;
+
+  /**
+   * @param interfaceName
+   *          the fully qualified name of a message interface
+   * @return the fully qualified name of the message class for the interface
+   */
+  public static String toClassName(String interfaceName) {
+    int lastDot = interfaceName.lastIndexOf('.');
+    return interfaceName.substring(0, lastDot + 1) + CLASS_SUBPACKAGE + "."
+        + interfaceName.substring(lastDot + 1) + CLASS_SUFFIX;
+  }
+
+  public MessageDeclaration getMessageDeclaration() {
+    return messageDeclaration;
+  }
+
+  public MessageClassBuilder setMessageDeclaration(MessageDeclaration messageDeclaration) {
+    Preconditions.checkNotNull(messageDeclaration);
+    this.messageDeclaration = messageDeclaration;
+    return this;
+  }
+
+  public String getPackageName() {
+    return packageName;
+  }
+
+  /**
+   * @param packageName
+   *          the package name of the class or {@code null} if no package name
+   *          should be specified
+   * @return this {@link MessageClassBuilder}
+   */
+  public MessageClassBuilder setPackageName(String packageName) {
+    this.packageName = packageName;
+    return this;
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  public MessageClassBuilder setClassName(String className) {
+    Preconditions.checkNotNull(className);
+    this.className = className;
+    return this;
+  }
+
+  public String getInterfaceName() {
+    return interfaceName;
+  }
+
+  /**
+   * @param interfaceName
+   *          the fully qualified name of the message interface
+   * @return this {@link MessageClassBuilder}
+   */
+  public MessageClassBuilder setInterfaceName(String interfaceName) {
+    Preconditions.checkNotNull(interfaceName);
+    this.interfaceName = interfaceName;
+    return this;
+  }
+
+  /**
+   * @param messageFactory
+   *          the factory used to look at the message definition
+   * @return the source of the class
+   * @throws RosRuntimeException
+   *           two fields have the same getter, so the interface doesn't have
+   *           accessors for all fields
+   */
+  public String build(MessageFactory messageFactory) {
+    Preconditions.checkNotNull(messageDeclaration);
+    Preconditions.checkNotNull(className);
+    Preconditions.checkNotNull(interfaceName);
+    MessageContextProvider messageContextProvider = new MessageContextProvider(messageFactory);
+    MessageContext messageContext = messageContextProvider.get(messageDeclaration);
+    List<ClassField> fields = getFields(messageContext);
+    StringBuilder builder = new StringBuilder();
+    if (packageName != null) {
+      builder.append(String.format("package %s;\n\n", packageName));
+    }
+    builder.append(String.format(
+        "public class %s extends org.ros.internal.message.GeneratedMessage implements %s {\n",
+        className, interfaceName));
+    appendFields(fields, builder);
+    appendConstructors(builder);
+    appendSettersAndGetters(fields, builder);
+    appendSerialize(fields, builder);
+    appendDeserialize(fields, builder);
+    appendGetFieldValue(fields, builder);
+    appendSetFieldValue(fields, builder);
+    appendHashCode(fields, builder);
+    appendEquals(fields, builder);
+    builder.append("}\n");
+    return builder.toString();
+  }
+
+  /**
+   * @param messageContext
+   *          the context for the message
+   * @return the fields of the message, in definition order
+   */
+  private List<ClassField> getFields(final MessageContext messageContext) {
+    final List<ClassField> fields = Lists.newArrayList();
+    MessageDefinitionParser parser = new MessageDefinitionParser(new MessageDefinitionVisitor() {
+      @Override
+      public void constantValue(String type, String name, String value) {
+        fields.add(new ClassField(messageContext, fields.size(), type, name, false, -1, true));
+      }
+
+      @Override
+      public void variableValue(String type, String name) {
+        fields.add(new ClassField(messageContext, fields.size(), type, name, false, -1, false));
+      }
+
+      @Override
+      public void variableList(String type, int size, String name) {
+        fields.add(new ClassField(messageContext, fields.size(), type, name, true, size, false));
+      }
+    });
+    parser.parse(messageDeclaration.getType(), messageDeclaration.getDefinition());
+    Set<String> getters = Sets.newHashSet();
+    for (ClassField field : fields) {
+      if (!field.constant && !getters.add(field.getter)) {
+        throw new RosRuntimeException(String.format(
+            "Field %s of %s has the same getter as another field", field.name,
+            messageDeclaration.getType()));
+      }
+    }
+    return fields;
+  }
+
+  private void appendFields(List<ClassField> fields, StringBuilder builder) {
+    for (ClassField field : fields) {
+      if (field.constant) {
+        continue;
+      }
+      String initializer = field.getInitializer();
+      if (initializer != null) {
+        builder.append(String.format("  private %s %s = %s;\n", field.javaType, field.javaName,
+            initializer));
+      } else {
+        builder.append(String.format("  private %s %s;\n", field.javaType, field.javaName));
+      }
+    }
+  }
+
+  private void appendConstructors(StringBuilder builder) {
+    builder.append(String.format("\n  public %s(%s messageContext) {\n", className,
+        MessageContext.class.getName()));
+    builder.append("    super(messageContext);\n");
+    builder.append("  }\n");
+    builder.append("\n  @java.lang.Override\n");
+    builder.append(String.format(
+        "  public org.ros.internal.message.GeneratedMessage newInstance(%s messageContext) {\n",
+        MessageContext.class.getName()));
+    builder.append(String.format("    return new %s(messageContext);\n", className));
+    builder.append("  }\n");
+  }
+
+  private void appendSettersAndGetters(List<ClassField> fields, StringBuilder builder) {
+    for (ClassField field : fields) {
+      if (field.constant) {
+        continue;
+      }
+      builder.append("\n  @java.lang.Override\n");
+      builder.append(String.format("  public %s %s() {\n", field.javaType, field.getter));
+      field.appendGetterBody(builder);
+      builder.append("  }\n");
+      builder.append("\n  @java.lang.Override\n");
+      builder.append(String.format("  public void %s(%s value) {\n", field.setter,
+          field.javaType));
+      field.appendSetterBody(builder);
+      builder.append("  }\n");
+    }
+  }
+
+  private void appendSerialize(List<ClassField> fields, StringBuilder builder) {
+    builder.append("\n  @java.lang.Override\n");
+    builder.append("  public void serialize(org.jboss.netty.buffer.ChannelBuffer buffer) {\n");
+    for (ClassField field : fields) {
+      if (!field.constant) {
+        field.appendSerialize(builder);
+      }
+    }
+    builder.append("  }\n");
+  }
+
+  private void appendDeserialize(List<ClassField> fields, StringBuilder builder) {
+    builder.append("\n  @java.lang.Override\n");
+    builder.append("  public void deserialize(org.jboss.netty.buffer.ChannelBuffer buffer) {\n");
+    for (ClassField field : fields) {
+      if (!field.constant) {
+        field.appendDeserialize(builder);
+      }
+    }
+    builder.append("  }\n");
+  }
+
+  private void appendGetFieldValue(List<ClassField> fields, StringBuilder builder) {
+    builder.append("\n  @java.lang.Override\n");
+    builder.append("  protected java.lang.Object getFieldValue(int index) {\n");
+    builder.append("    switch (index) {\n");
+    for (ClassField field : fields) {
+      builder.append(String.format("      case %d:\n", field.index));
+      if (field.constant) {
+        builder.append(String.format("        return %s;\n", field.name));
+      } else {
+        builder.append(String.format("        return %s();\n", field.getter));
+      }
+    }
+    builder.append("      default:\n");
+    builder.append("        throw new org.ros.exception.RosRuntimeException(");
+    builder.append("\"Unknown field: \" + index);\n");
+    builder.append("    }\n");
+    builder.append("  }\n");
+  }
+
+  private void appendSetFieldValue(List<ClassField> fields, StringBuilder builder) {
+    builder.append("\n  @java.lang.SuppressWarnings(\"unchecked\")\n");
+    builder.append("  @java.lang.Override\n");
+    builder.append("  protected void setFieldValue(int index, java.lang.Object value) {\n");
+    builder.append("    switch (index) {\n");
+    for (ClassField field : fields) {
+      if (field.constant) {
+        continue;
+      }
+      builder.append(String.format("      case %d:\n", field.index));
+      builder.append(String.format("        %s((%s) value);\n", field.setter,
+          field.getBoxedType()));
+      builder.append("        break;\n");
+    }
+    // Only constant fields are left over.
+    builder.append("      default:\n");
+    builder.append("        throw new java.lang.IllegalStateException(");
+    builder.append("\"Field \" + index + \" is a constant\");\n");
+    builder.append("    }\n");
+    builder.append("  }\n");
+  }
+
+  private void appendHashCode(List<ClassField> fields, StringBuilder builder) {
+    builder.append("\n  @java.lang.Override\n");
+    builder.append("  public int hashCode() {\n");
+    builder.append("    final int prime = 31;\n");
+    builder.append("    int result = 1;\n");
+    for (ClassField field : fields) {
+      if (!field.constant) {
+        builder.append(String.format("    result = prime * result + %s;\n",
+            field.getHashCode()));
+      }
+    }
+    builder.append("    return result;\n");
+    builder.append("  }\n");
+  }
+
+  private void appendEquals(List<ClassField> fields, StringBuilder builder) {
+    builder.append("\n  @java.lang.Override\n");
+    builder.append("  public boolean equals(java.lang.Object obj) {\n");
+    builder.append("    if (this == obj) {\n");
+    builder.append("      return true;\n");
+    builder.append("    }\n");
+    builder.append("    if (obj == null || getClass() != obj.getClass()) {\n");
+    builder.append("      return false;\n");
+    builder.append("    }\n");
+    boolean hasVariableFields = false;
+    for (ClassField field : fields) {
+      if (field.constant) {
+        continue;
+      }
+      if (!hasVariableFields) {
+        builder.append(String.format("    %s other = (%s) obj;\n", className, className));
+        hasVariableFields = true;
+      }
+      builder.append(String.format("    if (!(%s)) {\n", field.getEquals()));
+      builder.append("      return false;\n");
+      builder.append("    }\n");
+    }
+    builder.append("    return true;\n");
+    builder.append("  }\n");
+  }
+
+  /**
+   * A field of the message class.
+   */
+  private static class ClassField {
+
+    private final int index;
+    private final String type;
+    private final String name;
+    private final boolean list;
+    private final int size;
+    private final boolean constant;
+
+    /**
+     * The primitive type of the field, or of its elements if it is a list.
+     * {@code null} for message fields.
+     */
+    private final PrimitiveFieldType primitiveType;
+
+    private final String javaType;
+    private final String javaName;
+    private final String getter;
+    private final String setter;
+
+    ClassField(MessageContext messageContext, int index, String type, String name,
+        boolean list, int size, boolean constant) {
+      this.index = index;
+      this.type = type;
+      this.name = name;
+      this.list = list;
+      this.size = size;
+      this.constant = constant;
+      primitiveType =
+          PrimitiveFieldType.existsFor(type) ? PrimitiveFieldType.valueOf(type.toUpperCase())
+              : null;
+      javaType = messageContext.getFieldFactory(name).create().getJavaTypeName();
+      javaName = FIELD_PREFIX + name;
+      getter = messageContext.getFieldGetterName(name);
+      setter = messageContext.getFieldSetterName(name);
+    }
+
+    /**
+     * @return the Java type of the field with primitives boxed
+     */
+    @SuppressWarnings("deprecation")
+    String getBoxedType() {
+      if (list || primitiveType == null) {
+        return javaType;
+      }
+      switch (primitiveType) {
+        case BOOL:
+          return "java.lang.Boolean";
+        case INT8:
+        case BYTE:
+        case UINT8:
+        case CHAR:
+          return "java.lang.Byte";
+        case INT16:
+        case UINT16:
+          return "java.lang.Short";
+        case INT32:
+        case UINT32:
+          return "java.lang.Integer";
+        case INT64:
+        case UINT64:
+          return "java.lang.Long";
+        case FLOAT32:
+          return "java.lang.Float";
+        case FLOAT64:
+          return "java.lang.Double";
+        default:
+          return javaType;
+      }
+    }
+
+    /**
+     * @return the field is held in a channel buffer
+     */
+    @SuppressWarnings("deprecation")
+    boolean isChannelBuffer() {
+      return list
+          && (primitiveType == PrimitiveFieldType.INT8
+              || primitiveType == PrimitiveFieldType.BYTE
+              || primitiveType == PrimitiveFieldType.UINT8
+              || primitiveType == PrimitiveFieldType.CHAR);
+    }
+
+    /**
+     * @return the field is held in a Java array
+     */
+    boolean isArray() {
+      return list && javaType.endsWith("[]");
+    }
+
+    /**
+     * @return the field is a scalar held in a Java primitive
+     */
+    boolean isPrimitive() {
+      return !list && primitiveType != null && !primitiveType.getJavaTypeName().contains(".");
+    }
+
+    /**
+     * @return the initial value of the field, or {@code null} if it is created
+     *         when first asked for
+     */
+    String getInitializer() {
+      if (isArray()) {
+        return String.format("new %s[%d]", getElementType(), Math.max(0, size));
+      }
+      if (!list && primitiveType == PrimitiveFieldType.STRING) {
+        return "\"\"";
+      }
+      return null;
+    }
+
+    /**
+     * @return the Java type of the array elements
+     */
+    String getElementType() {
+      return javaType.substring(0, javaType.length() - 2);
+    }
+
+    /**
+     * @return an expression creating the default value of a field which is
+     *         created when first asked for
+     */
+    String getDefaultValue() {
+      if (isChannelBuffer()) {
+        return "org.ros.internal.message.MessageBuffers.dynamicBuffer()";
+      }
+      if (list) {
+        return String.format("new java.util.ArrayList<%s>()",
+            javaType.substring("java.util.List<".length(), javaType.length() - 1));
+      }
+      if (primitiveType == null) {
+        return String.format("newMessage(\"%s\")", type);
+      }
+      return String.format("new %s()", javaType);
+    }
+
+    void appendGetterBody(StringBuilder builder) {
+      if (!isPrimitive() && getInitializer() == null) {
+        builder.append(String.format("    if (%s == null) {\n", javaName));
+        builder.append(String.format("      %s = %s;\n", javaName, getDefaultValue()));
+        builder.append("    }\n");
+      }
+      if (isChannelBuffer()) {
+        // Return a defensive duplicate. Unlike with copy(), duplicated
+        // ChannelBuffers share the same backing array, so this is relatively
+        // cheap.
+        builder.append(String.format("    return %s.duplicate();\n", javaName));
+      } else {
+        builder.append(String.format("    return %s;\n", javaName));
+      }
+    }
+
+    void appendSetterBody(StringBuilder builder) {
+      String preconditions = "com.google.common.base.Preconditions";
+      if (isChannelBuffer()) {
+        builder.append(String.format("    %s.checkArgument(value.order() == "
+            + "java.nio.ByteOrder.LITTLE_ENDIAN);\n", preconditions));
+        if (size >= 0) {
+          builder.append(String.format("    %s.checkArgument(value.readableBytes() == %d);\n",
+              preconditions, size));
+        }
+      } else if (isArray()) {
+        if (size >= 0) {
+          builder.append(String.format("    %s.checkArgument(value.length == %d);\n",
+              preconditions, size));
+        }
+      } else if (!isPrimitive()) {
+        builder.append(String.format("    %s.checkNotNull(value);\n", preconditions));
+      }
+      builder.append(String.format("    %s = value;\n", javaName));
+    }
+
+    void appendSerialize(StringBuilder builder) {
+      if (isChannelBuffer()) {
+        builder.append(String.format("    serializeChannelBuffer(%s, %d, buffer);\n", javaName,
+            size));
+      } else if (isArray()) {
+        if (size < 0) {
+          builder.append(String.format("    buffer.writeInt(%s.length);\n", javaName));
+        }
+        builder.append(String.format("    for (%s element : %s) {\n", getElementType(),
+            javaName));
+        builder.append(String.format("      %s;\n", getWrite("element")));
+        builder.append("    }\n");
+      } else if (list) {
+        builder.append(String.format("    serialize%sList(%s, buffer);\n", getHelperName(),
+            javaName));
+      } else if (isPrimitive()) {
+        builder.append(String.format("    %s;\n", getWrite(javaName)));
+      } else if (primitiveType == PrimitiveFieldType.STRING) {
+        builder.append(String.format("    serializeString(%s, buffer);\n", javaName));
+      } else {
+        builder.append(String.format("    serialize%s(%s(), buffer);\n", getHelperName(),
+            getter));
+      }
+    }
+
+    void appendDeserialize(StringBuilder builder) {
+      if (isChannelBuffer()) {
+        builder.append(String.format("    %s = deserializeChannelBuffer(%d, buffer);\n",
+            javaName, size));
+      } else if (isArray()) {
+        if (size < 0) {
+          builder.append(String.format("    %s = new %s[buffer.readInt()];\n", javaName,
+              getElementType()));
+        } else {
+          builder.append(String.format("    %s = new %s[%d];\n", javaName, getElementType(),
+              size));
+        }
+        builder.append(String.format("    for (int i = 0; i < %s.length; i++) {\n", javaName));
+        builder.append(String.format("      %s[i] = %s;\n", javaName, getRead()));
+        builder.append("    }\n");
+      } else if (list) {
+        builder.append(String.format("    %s = deserialize%sList(%sbuffer);\n", javaName,
+            getHelperName(), getTypeArgument()));
+      } else if (isPrimitive()) {
+        builder.append(String.format("    %s = %s;\n", javaName, getRead()));
+      } else {
+        builder.append(String.format("    %s = deserialize%s(%sbuffer);\n", javaName,
+            getHelperName(), getTypeArgument()));
+      }
+    }
+
+    /**
+     * @return the name of the {@link GeneratedMessage} helpers for reading and
+     *         writing the field
+     */
+    String getHelperName() {
+      if (primitiveType == null) {
+        return "Message";
+      }
+      switch (primitiveType) {
+        case STRING:
+          return "String";
+        case TIME:
+          return "Time";
+        case DURATION:
+          return "Duration";
+        default:
+          throw new RosRuntimeException("Unsupported PrimitiveFieldType: " + primitiveType);
+      }
+    }
+
+    /**
+     * @return the message type argument for the deserialize helper, empty if
+     *         the field doesn't hold messages
+     */
+    String getTypeArgument() {
+      return (primitiveType == null) ? String.format("\"%s\", ", type) : "";
+    }
+
+    /**
+     * @param value
+     *          the expression for the value to write
+     * @return the statement writing the primitive value to the buffer
+     */
+    @SuppressWarnings("deprecation")
+    String getWrite(String value) {
+      switch (primitiveType) {
+        case BOOL:
+          return String.format("buffer.writeByte(%s ? 1 : 0)", value);
+        case INT8:
+        case BYTE:
+        case UINT8:
+        case CHAR:
+          return String.format("buffer.writeByte(%s)", value);
+        case INT16:
+        case UINT16:
+          return String.format("buffer.writeShort(%s)", value);
+        case INT32:
+        case UINT32:
+          return String.format("buffer.writeInt(%s)", value);
+        case INT64:
+        case UINT64:
+          return String.format("buffer.writeLong(%s)", value);
+        case FLOAT32:
+          return String.format("buffer.writeFloat(%s)", value);
+        case FLOAT64:
+          return String.format("buffer.writeDouble(%s)", value);
+        default:
+          throw new RosRuntimeException("Unsupported PrimitiveFieldType: " + primitiveType);
+      }
+    }
+
+    /**
+     * @return the expression reading a primitive value from the buffer
+     */
+    @SuppressWarnings("deprecation")
+    String getRead() {
+      switch (primitiveType) {
+        case BOOL:
+          return "buffer.readByte() == 1";
+        case INT8:
+        case BYTE:
+        case UINT8:
+        case CHAR:
+          return "buffer.readByte()";
+        case INT16:
+        case UINT16:
+          return "buffer.readShort()";
+        case INT32:
+        case UINT32:
+          return "buffer.readInt()";
+        case INT64:
+        case UINT64:
+          return "buffer.readLong()";
+        case FLOAT32:
+          return "buffer.readFloat()";
+        case FLOAT64:
+          return "buffer.readDouble()";
+        default:
+          throw new RosRuntimeException("Unsupported PrimitiveFieldType: " + primitiveType);
+      }
+    }
+
+    /**
+     * @return the expression for the hash code of the field
+     */
+    String getHashCode() {
+      if (isArray()) {
+        return String.format("java.util.Arrays.hashCode(%s)", javaName);
+      }
+      if (!isPrimitive()) {
+        return String.format("%s().hashCode()", getter);
+      }
+      switch (javaType) {
+        case "boolean":
+          return String.format("(%s ? 1231 : 1237)", javaName);
+        case "long":
+          return String.format("(int) (%s ^ (%s >>> 32))", javaName, javaName);
+        case "float":
+          return String.format("java.lang.Float.floatToIntBits(%s)", javaName);
+        case "double":
+          return String.format("(int) (java.lang.Double.doubleToLongBits(%s) "
+              + "^ (java.lang.Double.doubleToLongBits(%s) >>> 32))", javaName, javaName);
+        default:
+          return javaName;
+      }
+    }
+
+    /**
+     * @return the expression which is {@code true} if the field is the same
+     *         in {@code this} and {@code other}
+     */
+    String getEquals() {
+      if (isArray()) {
+        return String.format("java.util.Arrays.equals(%s, other.%s)", javaName, javaName);
+      }
+      if (!isPrimitive()) {
+        return String.format("%s().equals(other.%s())", getter, getter);
+      }
+      switch (javaType) {
+        case "float":
+          return String.format("java.lang.Float.floatToIntBits(%s) "
+              + "== java.lang.Float.floatToIntBits(other.%s)", javaName, javaName);
+        case "double":
+          return String.format("java.lang.Double.doubleToLongBits(%s) "
+              + "== java.lang.Double.doubleToLongBits(other.%s)", javaName, javaName);
+        default:
+          return String.format("%s == other.%s", javaName, javaName);
+      }
+    }
+  }
+}
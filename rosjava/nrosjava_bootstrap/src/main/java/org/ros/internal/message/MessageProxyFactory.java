@@ -16,14 +16,20 @@
 
 package org.ros.internal.message;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 
+import org.ros.exception.RosRuntimeException;
 import org.ros.internal.message.context.MessageContext;
 import org.ros.internal.message.context.MessageContextProvider;
 import org.ros.message.MessageDeclaration;
 import org.ros.message.MessageFactory;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -36,29 +42,59 @@ public class MessageProxyFactory {
   private static final String HEADER_MESSAGE_TYPE = "std_msgs/Header";
   private static final String SEQUENCE_FIELD_NAME = "seq";
   private static final AtomicInteger SEQUENCE_NUMBER = new AtomicInteger(0);
+  private static final String DEFINITION_FIELD_NAME = "_DEFINITION";
 
   private final MessageInterfaceClassProvider messageInterfaceClassProvider;
   private final MessageContextProvider messageContextProvider;
 
+  /**
+   * Proxy class constructors keyed by message interface. Looking these up
+   * once avoids going through {@link Proxy#newProxyInstance} for every
+   * message.
+   */
+  private final Map<Class<?>, Constructor<?>> proxyConstructors;
+
+  /**
+   * Instances of the classes written by {@link MessageClassBuilder}, keyed by
+   * message declaration, from which new messages are made. Declarations without
+   * a generated class map to an absent instance and get proxies.
+   */
+  private final Map<MessageDeclaration, Optional<GeneratedMessage>> generatedMessages;
+
   public MessageProxyFactory(MessageInterfaceClassProvider messageInterfaceClassProvider,
       MessageFactory messageFactory) {
     this.messageInterfaceClassProvider = messageInterfaceClassProvider;
     messageContextProvider = new MessageContextProvider(messageFactory);
+    proxyConstructors = Maps.newConcurrentMap();
+    generatedMessages = Maps.newConcurrentMap();
   }
 
+  /**
+   * @param messageDeclaration
+   *          the declaration of the message
+   * @return a new message, an instance of the generated class for the message
+   *         if there is one, otherwise a proxy
+   */
   @SuppressWarnings("unchecked")
   public <T> T newMessageProxy(MessageDeclaration messageDeclaration) {
     Preconditions.checkNotNull(messageDeclaration);
     MessageContext messageContext = messageContextProvider.get(messageDeclaration);
-    MessageImpl messageImpl = new MessageImpl(messageContext);
+    Class<T> messageInterfaceClass =
+        (Class<T>) messageInterfaceClassProvider.get(messageDeclaration.getType());
+    GeneratedMessage generatedMessage =
+        getGeneratedMessage(messageDeclaration, messageInterfaceClass);
+    Message message;
+    if (generatedMessage != null) {
+      message = generatedMessage.newInstance(messageContext);
+    } else {
+      message = (Message) newProxy(messageInterfaceClass, new MessageImpl(messageContext));
+    }
     // Header messages are automatically populated with a monotonically
     // increasing sequence number.
-    if (messageImpl.getType().equals(HEADER_MESSAGE_TYPE)) {
-      messageImpl.setUInt32(SEQUENCE_FIELD_NAME, SEQUENCE_NUMBER.getAndIncrement());
+    if (messageContext.getType().equals(HEADER_MESSAGE_TYPE)) {
+      message.toRawMessage().setUInt32(SEQUENCE_FIELD_NAME, SEQUENCE_NUMBER.getAndIncrement());
     }
-    Class<T> messageInterfaceClass =
-        (Class<T>) messageInterfaceClassProvider.get(messageDeclaration.getType());
-    return newProxy(messageInterfaceClass, messageImpl);
+    return (T) message;
   }
 
   /**
@@ -71,10 +107,89 @@ public class MessageProxyFactory {
    */
   @SuppressWarnings("unchecked")
   private <T> T newProxy(Class<T> interfaceClass, final MessageImpl messageImpl) {
-    ClassLoader classLoader = messageImpl.getClass().getClassLoader();
-    Class<?>[] interfaces = new Class<?>[] { interfaceClass, GetInstance.class };
     MessageProxyInvocationHandler invocationHandler =
         new MessageProxyInvocationHandler(messageImpl);
-    return (T) Proxy.newProxyInstance(classLoader, interfaces, invocationHandler);
+    try {
+      return (T) getProxyConstructor(interfaceClass).newInstance(invocationHandler);
+    } catch (Exception e) {
+      throw new RosRuntimeException("Could not create message proxy for " + interfaceClass, e);
+    }
+  }
+
+  /**
+   * @param interfaceClass
+   *          the interface class to provide
+   * @return the constructor for the proxy class implementing
+   *         {@code interfaceClass}
+   * @throws NoSuchMethodException
+   *           the proxy class has no invocation handler constructor
+   */
+  private Constructor<?> getProxyConstructor(Class<?> interfaceClass) throws NoSuchMethodException {
+    Constructor<?> constructor = proxyConstructors.get(interfaceClass);
+    if (constructor == null) {
+      ClassLoader classLoader = MessageImpl.class.getClassLoader();
+      Class<?>[] interfaces = new Class<?>[] { interfaceClass, GetInstance.class };
+      constructor =
+          Proxy.getProxyClass(classLoader, interfaces).getConstructor(InvocationHandler.class);
+      proxyConstructors.put(interfaceClass, constructor);
+    }
+    return constructor;
+  }
+
+  /**
+   * @param messageDeclaration
+   *          the declaration of the message
+   * @param interfaceClass
+   *          the interface class for the message
+   * @return an instance of the generated class for the message, or
+   *         {@code null} if there is none
+   */
+  private GeneratedMessage getGeneratedMessage(MessageDeclaration messageDeclaration,
+      Class<?> interfaceClass) {
+    Optional<GeneratedMessage> generatedMessage = generatedMessages.get(messageDeclaration);
+    if (generatedMessage == null) {
+      generatedMessage =
+          Optional.fromNullable(newGeneratedMessage(messageDeclaration, interfaceClass));
+      generatedMessages.put(messageDeclaration, generatedMessage);
+    }
+    return generatedMessage.orNull();
+  }
+
+  /**
+   * The generated class is only used if it was written from the same
+   * definition as the one being asked for.
+   *
+   * @param messageDeclaration
+   *          the declaration of the message
+   * @param interfaceClass
+   *          the interface class for the message
+   * @return a new instance of the generated class for the message, or
+   *         {@code null} if there is none
+   */
+  private GeneratedMessage newGeneratedMessage(MessageDeclaration messageDeclaration,
+      Class<?> interfaceClass) {
+    ClassLoader classLoader = interfaceClass.getClassLoader();
+    if (classLoader == null) {
+      return null;
+    }
+    try {
+      Class<?> generatedClass =
+          classLoader.loadClass(MessageClassBuilder.toClassName(interfaceClass.getName()));
+      if (!GeneratedMessage.class.isAssignableFrom(generatedClass)
+          || !interfaceClass.isAssignableFrom(generatedClass)
+          || !messageDeclaration.getDefinition().equals(
+              interfaceClass.getField(DEFINITION_FIELD_NAME).get(null))) {
+        return null;
+      }
+      return (GeneratedMessage) generatedClass.getConstructor(MessageContext.class).newInstance(
+          messageContextProvider.get(messageDeclaration));
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (NoSuchFieldException e) {
+      return null;
+    } catch (Exception e) {
+      throw new RosRuntimeException("Could not create generated message for "
+          + messageDeclaration.getType(), e);
+    }
   }
 }
@@ -35,6 +35,11 @@ public class MessageProxyInvocationHandler implements InvocationHandler {
 
   @Override
   public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    // Serialization asks for the raw message on every message, so skip the
+    // field lookups and reflective call for it.
+    if (method.getDeclaringClass() == Message.class) {
+      return messageImpl.toRawMessage();
+    }
     String methodName = method.getName();
     MessageFields mesageFields = messageImpl.getMessageFields();
     Field getterField = mesageFields.getGetterField(methodName);
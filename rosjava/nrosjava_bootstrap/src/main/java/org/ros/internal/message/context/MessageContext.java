@@ -44,6 +44,15 @@ public class MessageContext {
   private final Map<String, String> fieldSetterNames;
   private final List<String> fieldNames;
 
+  /**
+   * Field positions keyed by field name, getter name and setter name. These
+   * are shared by every message of the type so that individual messages only
+   * need an array of fields rather than their own lookup tables.
+   */
+  private final Map<String, Integer> fieldIndexes;
+  private final Map<String, Integer> fieldGetterIndexes;
+  private final Map<String, Integer> fieldSetterIndexes;
+
   public MessageContext(MessageDeclaration messageDeclaration, MessageFactory messageFactory) {
     this.messageDeclaration = messageDeclaration;
     this.messageFactory = messageFactory;
@@ -51,6 +60,9 @@ public class MessageContext {
     this.fieldGetterNames = Maps.newHashMap();
     this.fieldSetterNames = Maps.newHashMap();
     this.fieldNames = Lists.newArrayList();
+    this.fieldIndexes = Maps.newHashMap();
+    this.fieldGetterIndexes = Maps.newHashMap();
+    this.fieldSetterIndexes = Maps.newHashMap();
   }
 
   public MessageFactory getMessageFactory() {
@@ -78,9 +90,15 @@ public class MessageContext {
   }
 
   public void addFieldFactory(String name, FieldFactory fieldFactory) {
+    String getterName = "get" + getJavaName(name);
+    String setterName = "set" + getJavaName(name);
+    Integer index = fieldNames.size();
     fieldFactories.put(name, fieldFactory);
-    fieldGetterNames.put(name, "get" + getJavaName(name));
-    fieldSetterNames.put(name, "set" + getJavaName(name));
+    fieldGetterNames.put(name, getterName);
+    fieldSetterNames.put(name, setterName);
+    fieldIndexes.put(name, index);
+    fieldGetterIndexes.put(getterName, index);
+    fieldSetterIndexes.put(setterName, index);
     fieldNames.add(name);
   }
 
@@ -106,6 +124,36 @@ public class MessageContext {
     return fieldSetterNames.get(name);
   }
 
+  /**
+   * @param name
+   *          the field name
+   * @return the position of the field in {@link #getFieldNames()}, or
+   *         {@code null} if there is no such field
+   */
+  public Integer getFieldIndex(String name) {
+    return fieldIndexes.get(name);
+  }
+
+  /**
+   * @param getterName
+   *          the name of a getter method
+   * @return the position of the field the getter is for, or {@code null} if
+   *         the method is not a getter
+   */
+  public Integer getFieldGetterIndex(String getterName) {
+    return fieldGetterIndexes.get(getterName);
+  }
+
+  /**
+   * @param setterName
+   *          the name of a setter method
+   * @return the position of the field the setter is for, or {@code null} if
+   *         the method is not a setter
+   */
+  public Integer getFieldSetterIndex(String setterName) {
+    return fieldSetterIndexes.get(setterName);
+  }
+
   public FieldFactory getFieldFactory(String name) {
     return fieldFactories.get(name);
   }
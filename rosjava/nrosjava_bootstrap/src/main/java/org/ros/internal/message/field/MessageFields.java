@@ -16,58 +16,55 @@
 
 package org.ros.internal.message.field;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-
 import org.ros.exception.RosRuntimeException;
 import org.ros.internal.message.context.MessageContext;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
+ * The fields of a single message.
+ * <p>
+ * Lookups by field, getter and setter name go through the tables in the
+ * shared {@link MessageContext}, so each message only holds its own fields.
+ *
  * @author damonkohler@google.com (Damon Kohler)
  */
 public class MessageFields {
 
-  private final Map<String, Field> fields;
-  private final Map<String, Field> setters;
-  private final Map<String, Field> getters;
+  private final MessageContext messageContext;
+  private final Field[] fields;
   private final List<Field> orderedFields;
 
   public MessageFields(MessageContext messageContext) {
-    fields = Maps.newHashMap();
-    setters = Maps.newHashMap();
-    getters = Maps.newHashMap();
-    orderedFields = Lists.newArrayList();
-    for (String name : messageContext.getFieldNames()) {
-      Field field = messageContext.getFieldFactory(name).create();
-      fields.put(name, field);
-      getters.put(messageContext.getFieldGetterName(name), field);
-      setters.put(messageContext.getFieldSetterName(name), field);
-      orderedFields.add(field);
+    this.messageContext = messageContext;
+    List<String> fieldNames = messageContext.getFieldNames();
+    fields = new Field[fieldNames.size()];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = messageContext.getFieldFactory(fieldNames.get(i)).create();
     }
+    orderedFields = Collections.unmodifiableList(Arrays.asList(fields));
   }
 
   public Field getField(String name) {
-    return fields.get(name);
+    return getField(messageContext.getFieldIndex(name));
   }
 
   public Field getSetterField(String name) {
-    return setters.get(name);
+    return getField(messageContext.getFieldSetterIndex(name));
   }
 
   public Field getGetterField(String name) {
-    return getters.get(name);
+    return getField(messageContext.getFieldGetterIndex(name));
   }
 
   public List<Field> getFields() {
-    return Collections.unmodifiableList(orderedFields);
+    return orderedFields;
   }
 
   public Object getFieldValue(String name) {
-    Field field = fields.get(name);
+    Field field = getField(name);
     if (field != null) {
       return field.getValue();
     }
@@ -75,7 +72,7 @@ public class MessageFields {
   }
 
   public void setFieldValue(String name, Object value) {
-    Field field = fields.get(name);
+    Field field = getField(name);
     if (field != null) {
       field.setValue(value);
     } else {
@@ -83,13 +80,19 @@ public class MessageFields {
     }
   }
 
+  /**
+   * @param index
+   *          the position of the field, can be {@code null}
+   * @return the field at the position, or {@code null} if the position was
+   *         {@code null}
+   */
+  private Field getField(Integer index) {
+    return (index != null) ? fields[index] : null;
+  }
+
   @Override
   public int hashCode() {
-    final int prime = 31;
-    int result = 1;
-    result = prime * result + ((fields == null) ? 0 : fields.hashCode());
-    result = prime * result + ((orderedFields == null) ? 0 : orderedFields.hashCode());
-    return result;
+    return Arrays.hashCode(fields);
   }
 
   @Override
@@ -101,16 +104,6 @@ public class MessageFields {
     if (getClass() != obj.getClass())
       return false;
     MessageFields other = (MessageFields) obj;
-    if (fields == null) {
-      if (other.fields != null)
-        return false;
-    } else if (!fields.equals(other.fields))
-      return false;
-    if (orderedFields == null) {
-      if (other.orderedFields != null)
-        return false;
-    } else if (!orderedFields.equals(other.orderedFields))
-      return false;
-    return true;
+    return Arrays.equals(fields, other.fields);
   }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.ros.internal.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ros.exception.RosRuntimeException;
+import org.ros.internal.message.topic.TopicDefinitionResourceProvider;
+import org.ros.message.MessageDeclaration;
+import org.ros.message.MessageFactory;
+
+/**
+ * @author khughes@google.com (Keith M. Hughes)
+ */
+public class MessageClassBuilderTest {
+
+  private TopicDefinitionResourceProvider topicDefinitionResourceProvider;
+  private MessageFactory messageFactory;
+
+  @Before
+  public void before() {
+    topicDefinitionResourceProvider = new TopicDefinitionResourceProvider();
+    messageFactory = new DefaultMessageFactory(topicDefinitionResourceProvider);
+  }
+
+  @Test
+  public void testToClassName() {
+    assertEquals("std_msgs.impl.HeaderImpl", MessageClassBuilder.toClassName("std_msgs.Header"));
+  }
+
+  @Test
+  public void testFields() {
+    MessageClassBuilder builder = new MessageClassBuilder();
+    builder.setPackageName("foo.impl");
+    builder.setClassName("barImpl");
+    builder.setInterfaceName("foo.bar");
+    builder.setMessageDeclaration(MessageDeclaration.of("foo/bar",
+        "int32 FOO=1\nint32 foo\nuint8[4] bytes\nfloat64[] values\nstd_msgs/Header header"));
+    String result = builder.build(messageFactory);
+    assertTrue(result.startsWith("package foo.impl;\n\n"
+        + "public class barImpl extends org.ros.internal.message.GeneratedMessage"
+        + " implements foo.bar {\n"
+        + "  private int field_foo;\n"
+        + "  private org.jboss.netty.buffer.ChannelBuffer field_bytes;\n"
+        + "  private double[] field_values = new double[0];\n"
+        + "  private std_msgs.Header field_header;\n"));
+    assertTrue(result.contains(
+        "  public void serialize(org.jboss.netty.buffer.ChannelBuffer buffer) {\n"
+        + "    buffer.writeInt(field_foo);\n"
+        + "    serializeChannelBuffer(field_bytes, 4, buffer);\n"
+        + "    buffer.writeInt(field_values.length);\n"
+        + "    for (double element : field_values) {\n"
+        + "      buffer.writeDouble(element);\n"
+        + "    }\n"
+        + "    serializeMessage(getHeader(), buffer);\n"
+        + "  }\n"));
+    assertTrue(result.contains("      case 0:\n        return FOO;\n"));
+  }
+
+  @Test(expected = RosRuntimeException.class)
+  public void testDuplicateFieldNames() {
+    MessageClassBuilder builder = new MessageClassBuilder();
+    builder.setClassName("barImpl");
+    builder.setInterfaceName("foo.bar");
+    builder.setMessageDeclaration(MessageDeclaration.of("foo/bar", "int32 foo\nint32 Foo"));
+    builder.build(messageFactory);
+  }
+}
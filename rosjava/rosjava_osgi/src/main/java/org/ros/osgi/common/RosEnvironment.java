@@ -80,6 +80,13 @@ public interface RosEnvironment {
    */
   String CONFIGURATION_ROS_NETWORK_TYPE = "org.ros.network.type";
 
+  /**
+   * Configuration property giving the number of threads in a pool shared by all
+   * message listeners of nodes from this environment. If not set, each message
+   * listener gets a thread of its own.
+   */
+  String CONFIGURATION_ROS_LISTENER_DISPATCH_POOL_SIZE = "org.ros.listener.dispatch.pool.size";
+
   /**
    * Get the node configuration to be used as a public node for this
    * environment.
@@ -21,6 +21,7 @@ import com.google.common.collect.Maps;
 
 import org.apache.commons.logging.Log;
 import org.ros.concurrent.DefaultScheduledExecutorService;
+import org.ros.concurrent.ListenerDispatchPool;
 import org.ros.exception.RosRuntimeException;
 import org.ros.master.uri.MasterUriProvider;
 import org.ros.namespace.GraphName;
@@ -68,6 +69,12 @@ public class SimpleRosEnvironment implements RosEnvironment {
    */
   private boolean ownExecutorService;
 
+  /**
+   * Pool shared by the message listeners of all nodes, {@code null} if each
+   * listener has its own thread.
+   */
+  private ListenerDispatchPool listenerDispatchPool;
+
   /**
    * Host that this environment is running on.
    */
@@ -149,6 +156,17 @@ public class SimpleRosEnvironment implements RosEnvironment {
     if (networkType != null)
       setNetworkType(networkType);
 
+    String listenerDispatchPoolSize = getProperty(CONFIGURATION_ROS_LISTENER_DISPATCH_POOL_SIZE);
+    if (listenerDispatchPoolSize != null) {
+      try {
+        listenerDispatchPool = new ListenerDispatchPool(Integer.parseInt(listenerDispatchPoolSize));
+      } catch (NumberFormatException e) {
+        throw new RosRuntimeException(
+            "Cannot start ros environment. Illegal listener dispatch pool size: "
+                + listenerDispatchPoolSize, e);
+      }
+    }
+
     if (executorService == null) {
       executorService = new DefaultScheduledExecutorService();
       ownExecutorService = true;
@@ -165,6 +183,11 @@ public class SimpleRosEnvironment implements RosEnvironment {
   public void shutdown() {
     nodeRunner.shutdown();
 
+    if (listenerDispatchPool != null) {
+      listenerDispatchPool.shutdown();
+      listenerDispatchPool = null;
+    }
+
     if (ownExecutorService) {
       executorService.shutdown();
     }
@@ -243,10 +266,12 @@ public class SimpleRosEnvironment implements RosEnvironment {
     if (masterUriProvider != null) {
       NodeConfiguration conf = NodeConfiguration.newPublic(host, masterUriProvider.getMasterUri());
       conf.setLog(log);
+      conf.setListenerDispatchPool(listenerDispatchPool);
       return conf;
     } else if (masterUri != null) {
       NodeConfiguration conf = NodeConfiguration.newPublic(host, masterUri);
       conf.setLog(log);
+      conf.setListenerDispatchPool(listenerDispatchPool);
       return conf;
     } else {
       throw new RosRuntimeException("No ROS Master URI available");
@@ -275,6 +300,7 @@ public class SimpleRosEnvironment implements RosEnvironment {
   public NodeConfiguration getPrivateNodeConfiguration() {
     NodeConfiguration configuration = NodeConfiguration.newPrivate(masterUri);
     configuration.setLog(log);
+    configuration.setListenerDispatchPool(listenerDispatchPool);
 
     return configuration;
   }
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.liveactivity.runtime.monitor.internal;
+
+import interactivespaces.liveactivity.runtime.monitor.PluginFunctionalityDescriptor;
+import interactivespaces.service.web.server.HttpRequest;
+import interactivespaces.service.web.server.HttpResponse;
+import interactivespaces.util.metrics.LatencyHistogram;
+import interactivespaces.util.metrics.RouteChannelMetrics;
+import interactivespaces.util.metrics.RouteChannelMetrics.Direction;
+import interactivespaces.util.metrics.RouteMetricsRegistry;
+
+import com.google.common.collect.Lists;
+
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A runtime monitor plugin for looking at the metrics of all message routes in the runtime.
+ *
+ * @author Keith M. Hughes
+ */
+public class RouteMetricsLiveActivityRuntimeMonitorPlugin extends BaseLiveActivityRuntimeMonitorPlugin {
+
+  /**
+   * The URL prefix for route metrics.
+   */
+  private static final String URL_PREFIX_ROUTES = "/routes/";
+
+  /**
+   * The number of nanoseconds in a microsecond, all times are shown in microseconds.
+   */
+  private static final long NANOSECONDS_PER_MICROSECOND = 1000;
+
+  /**
+   * Orders channel metrics by owner, then direction, then channel ID.
+   */
+  private static final Comparator<RouteChannelMetrics> CHANNEL_METRICS_COMPARATOR =
+      new Comparator<RouteChannelMetrics>() {
+        @Override
+        public int compare(RouteChannelMetrics o1, RouteChannelMetrics o2) {
+          int result = String.valueOf(o1.getOwner()).compareTo(String.valueOf(o2.getOwner()));
+          if (result == 0) {
+            result = o1.getDirection().compareTo(o2.getDirection());
+          }
+          if (result == 0) {
+            result = o1.getChannelId().compareTo(o2.getChannelId());
+          }
+
+          return result;
+        }
+      };
+
+  /**
+   * The functionality descriptors for this plugin.
+   */
+  private List<PluginFunctionalityDescriptor> functionalityDescriptors = Collections.unmodifiableList(Lists
+      .newArrayList(new PluginFunctionalityDescriptor(URL_PREFIX_ROUTES, "Route Metrics")));
+
+  @Override
+  public String getUrlPrefix() {
+    return URL_PREFIX_ROUTES;
+  }
+
+  @Override
+  public List<PluginFunctionalityDescriptor> getFunctionalityDescriptors() {
+    return functionalityDescriptors;
+  }
+
+  @Override
+  protected void onHandleRequest(HttpRequest request, HttpResponse response, String fullPath) throws Throwable {
+    if (fullPath.equals(getUrlPrefix())) {
+      writeRouteMetricsPage(response);
+    } else {
+      reportError(response, fullPath, null);
+    }
+  }
+
+  /**
+   * Write out the metrics for all routes in the runtime.
+   *
+   * @param response
+   *          the HTTP response to write on
+   *
+   * @throws Throwable
+   *           an exception happened while processing
+   */
+  private void writeRouteMetricsPage(HttpResponse response) throws Throwable {
+    OutputStream outputStream = startWebResponse(response, false);
+    addCommonPageHeader(outputStream, "Route metrics");
+
+    StringBuilder builder = new StringBuilder();
+    RouteMetricsRegistry registry =
+        getMonitorService().getLiveActivityRuntime().getSpaceEnvironment()
+            .getValue(RouteMetricsRegistry.ENVIRONMENT_VALUE_NAME);
+    if (registry != null) {
+      outputChannelMetricsEntries(builder, registry.getAllChannelMetrics());
+    } else {
+      builder.append("<p>The runtime does not collect route metrics.</p>");
+    }
+
+    outputStream.write(builder.toString().getBytes());
+
+    endWebResponse(outputStream, false);
+  }
+
+  /**
+   * Output a table of channel metrics.
+   *
+   * @param builder
+   *          the output builder for the response
+   * @param allMetrics
+   *          the metrics for all channels
+   */
+  private void outputChannelMetricsEntries(StringBuilder builder, List<RouteChannelMetrics> allMetrics) {
+    Collections.sort(allMetrics, CHANNEL_METRICS_COMPARATOR);
+
+    builder.append("<p>All times are in microseconds. Processing is handler time for inputs and publishing time for "
+        + "outputs. Queue wait is the time from a message arriving at the route to its handler starting.</p>");
+    builder.append("<table><tr><th>Activity</th><th>Channel</th><th>Direction</th><th>Messages</th><th>Bytes</th>"
+        + "<th>Dropped</th>");
+    builder.append("<th>Processing p50</th><th>Processing p99</th><th>Processing max</th>");
+    builder.append("<th>Queue wait p50</th><th>Queue wait p99</th><th>Queue wait max</th></tr>");
+    for (RouteChannelMetrics metrics : allMetrics) {
+      writeChannelMetricsEntry(builder, metrics);
+    }
+    builder.append("</table>");
+  }
+
+  /**
+   * Write out the metrics for an individual channel.
+   *
+   * @param builder
+   *          the output builder for the response
+   * @param metrics
+   *          the metrics for the channel
+   */
+  private void writeChannelMetricsEntry(StringBuilder builder, RouteChannelMetrics metrics) {
+    builder.append("<tr><td class='name'>").append(metrics.getOwner()).append("</td><td>")
+        .append(metrics.getChannelId()).append("</td><td>")
+        .append(metrics.getDirection() == Direction.INPUT ? "input" : "output").append("</td><td>")
+        .append(metrics.getMessageCount()).append("</td><td>").append(metrics.getByteCount()).append("</td><td>")
+        .append(metrics.getDropCount()).append("</td>");
+    writeHistogramColumns(builder, metrics.getProcessingTimes());
+    if (metrics.getDirection() == Direction.INPUT) {
+      writeHistogramColumns(builder, metrics.getQueueWaitTimes());
+    } else {
+      builder.append("<td></td><td></td><td></td>");
+    }
+    builder.append("</tr>");
+  }
+
+  /**
+   * Write out the table columns for a latency histogram.
+   *
+   * @param builder
+   *          the output builder for the response
+   * @param histogram
+   *          the histogram, in nanoseconds
+   */
+  private void writeHistogramColumns(StringBuilder builder, LatencyHistogram histogram) {
+    builder.append("<td>").append(histogram.getValueAtPercentile(50) / NANOSECONDS_PER_MICROSECOND)
+        .append("</td><td>").append(histogram.getValueAtPercentile(99) / NANOSECONDS_PER_MICROSECOND)
+        .append("</td><td>").append(histogram.getMaximum() / NANOSECONDS_PER_MICROSECOND).append("</td>");
+  }
+}
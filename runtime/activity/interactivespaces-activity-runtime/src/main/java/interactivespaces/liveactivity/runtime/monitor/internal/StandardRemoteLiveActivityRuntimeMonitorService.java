@@ -212,5 +212,6 @@ public class StandardRemoteLiveActivityRuntimeMonitorService implements RemoteLi
     addPlugin(new RuntimeLiveActivityRuntimeMonitorPlugin());
     addPlugin(new LiveActivityLiveActivityRuntimeMonitorPlugin());
     addPlugin(new ScreenshotLiveActivityRuntimeMonitorPlugin());
+    addPlugin(new RouteMetricsLiveActivityRuntimeMonitorPlugin());
   }
 }
@@ -154,6 +154,14 @@ public interface SpaceControllerControl extends SpaceController {
    */
   void statusLiveActivity(String uuid);
 
+  /**
+   * Run a task once every live activity status published so far has been handed to the communicator.
+   *
+   * @param task
+   *          the task to run
+   */
+  void runAfterPublishedActivityStatuses(Runnable task);
+
   /**
    * Capture data for the given controller from a URI.
    *
@@ -494,6 +494,11 @@ public class StandardSpaceController extends BaseSpaceController implements Spac
     });
   }
 
+  @Override
+  public void runAfterPublishedActivityStatuses(Runnable task) {
+    eventQueue.addEvent(task);
+  }
+
   @Override
   public void shutdownControllerContainer() {
     spaceSystemControl.shutdown();
@@ -45,7 +45,9 @@ import interactivespaces.system.InteractiveSpacesEnvironment;
 import interactivespaces.util.InteractiveSpacesUtilities;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
 
 import interactivespaces_msgs.ConfigurationParameterRequest;
 import interactivespaces_msgs.ConfigurationRequest;
@@ -61,6 +63,8 @@ import interactivespaces_msgs.LiveActivityDeleteRequestMessage;
 import interactivespaces_msgs.LiveActivityDeleteResponseMessage;
 import interactivespaces_msgs.LiveActivityDeployRequestMessage;
 import interactivespaces_msgs.LiveActivityDeployResponseMessage;
+import interactivespaces_msgs.LiveActivityRuntimeBatchRequest;
+import interactivespaces_msgs.LiveActivityRuntimeBatchStatus;
 import interactivespaces_msgs.LiveActivityRuntimeRequest;
 import interactivespaces_msgs.LiveActivityRuntimeStatus;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -78,6 +82,7 @@ import org.ros.node.topic.PublisherListener;
 import org.ros.node.topic.Subscriber;
 import org.ros.osgi.common.RosEnvironment;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -142,6 +147,16 @@ public class RosSpaceControllerCommunicator implements SpaceControllerCommunicat
    */
   private MessageSerializer<LiveActivityRuntimeStatus> liveActivityRuntimeStatusSerializer;
 
+  /**
+   * Message deserializer for live activity runtime batch requests.
+   */
+  private MessageDeserializer<LiveActivityRuntimeBatchRequest> liveActivityRuntimeBatchRequestDeserializer;
+
+  /**
+   * Message serializer for live activity runtime batch statuses.
+   */
+  private MessageSerializer<LiveActivityRuntimeBatchStatus> liveActivityRuntimeBatchStatusSerializer;
+
   /**
    * ROS message deserializer for live activity deployment requests.
    */
@@ -192,6 +207,14 @@ public class RosSpaceControllerCommunicator implements SpaceControllerCommunicat
    */
   private MessageSerializer<ContainerResourceCommitResponseMessage> containerResourceCommitResponseSerializer;
 
+  /**
+   * UUIDs of the live activities in the batches being run, counted once per batch request.
+   *
+   * <p>
+   * Runtime statuses of these live activities are not published on their own, they go out in the batch status.
+   */
+  private final Multiset<String> batchedLiveActivityUuids = ConcurrentHashMultiset.create();
+
   /**
    * The space environment for this communicator.
    */
@@ -256,6 +279,12 @@ public class RosSpaceControllerCommunicator implements SpaceControllerCommunicat
     liveActivityRuntimeStatusSerializer =
         messageSerializationFactory.newMessageSerializer(LiveActivityRuntimeStatus._TYPE);
 
+    liveActivityRuntimeBatchRequestDeserializer =
+        messageSerializationFactory.newMessageDeserializer(LiveActivityRuntimeBatchRequest._TYPE);
+
+    liveActivityRuntimeBatchStatusSerializer =
+        messageSerializationFactory.newMessageSerializer(LiveActivityRuntimeBatchStatus._TYPE);
+
     liveActivityDeployResponseSerializer =
         messageSerializationFactory.newMessageSerializer(LiveActivityDeployResponseMessage._TYPE);
 
@@ -352,6 +381,12 @@ public class RosSpaceControllerCommunicator implements SpaceControllerCommunicat
 
         break;
 
+      case ControllerRequest.OPERATION_CONTROLLER_LIVE_ACTIVITY_RUNTIME_BATCH_REQUEST:
+        handleLiveActivityRuntimeBatchRequest(liveActivityRuntimeBatchRequestDeserializer.deserialize(request
+            .getPayload()));
+
+        break;
+
       case ControllerRequest.OPERATION_CONTROLLER_CLEAN_DATA_TMP:
         controllerControl.cleanControllerTempData();
 
@@ -607,55 +642,169 @@ public class RosSpaceControllerCommunicator implements SpaceControllerCommunicat
     spaceEnvironment.getExecutorService().submit(new Runnable() {
       @Override
       public void run() {
-        String uuid = request.getLiveActivityUuid();
-        switch (request.getOperation()) {
-          case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_STARTUP:
-            controllerControl.startupLiveActivity(uuid);
+        performLiveActivityRuntimeRequest(request);
+      }
+    });
+  }
 
-            break;
+  /**
+   * Handle a ROS batch of activity control requests coming in.
+   *
+   * <p>
+   * The requests are done in order. Runtime statuses of the batched live activities are held back while the batch
+   * runs, and a single status is published with the status of each live activity once all of the requests are done.
+   *
+   * @param batchRequest
+   *          the ROS batch request
+   */
+  @VisibleForTesting
+  void handleLiveActivityRuntimeBatchRequest(final LiveActivityRuntimeBatchRequest batchRequest) {
+    spaceEnvironment.getExecutorService().submit(new Runnable() {
+      @Override
+      public void run() {
+        final List<LiveActivityRuntimeRequest> requests = batchRequest.getRequests();
+        for (LiveActivityRuntimeRequest request : requests) {
+          batchedLiveActivityUuids.add(request.getLiveActivityUuid());
+        }
 
-          case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_ACTIVATE:
-            controllerControl.activateLiveActivity(uuid);
+        final String[] failureDetails = new String[requests.size()];
+        try {
+          for (int i = 0; i < failureDetails.length; i++) {
+            LiveActivityRuntimeRequest request = requests.get(i);
+            try {
+              performLiveActivityRuntimeRequest(request);
+            } catch (Throwable e) {
+              spaceEnvironment.getLog().error(
+                  String.format("Live activity request %d for live activity %s in batch failed",
+                      request.getOperation(), request.getLiveActivityUuid()), e);
+              failureDetails[i] = InteractiveSpacesException.getStackTrace(e);
+            }
+          }
+        } finally {
+          // Statuses from the requests are still on their way to publishActivityStatus(), so wait for them.
+          controllerControl.runAfterPublishedActivityStatuses(new Runnable() {
+            @Override
+            public void run() {
+              publishLiveActivityRuntimeBatchStatus(requests, failureDetails);
+            }
+          });
+        }
+      }
+    });
+  }
 
-            break;
+  /**
+   * Publish the status of a batch of live activity requests and stop holding back the statuses of its live activities.
+   *
+   * @param requests
+   *          the requests in the batch
+   * @param failureDetails
+   *          the failure detail for each request, {@code null} for a request that did not fail
+   */
+  private void publishLiveActivityRuntimeBatchStatus(List<LiveActivityRuntimeRequest> requests,
+      String[] failureDetails) {
+    try {
+      LiveActivityRuntimeBatchStatus batchStatus = rosMessageFactory.newFromType(LiveActivityRuntimeBatchStatus._TYPE);
+      for (int i = 0; i < failureDetails.length; i++) {
+        batchStatus.getLiveActivityStatuses().add(
+            newLiveActivityRuntimeStatus(requests.get(i).getLiveActivityUuid(), failureDetails[i]));
+      }
 
-          case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_DEACTIVATE:
-            controllerControl.deactivateLiveActivity(uuid);
+      publishControllerStatus(ControllerStatus.STATUS_CONTROLLER_LIVE_ACTIVITY_RUNTIME_BATCH_STATUS,
+          liveActivityRuntimeBatchStatusSerializer.serialize(batchStatus));
+    } catch (Exception e) {
+      spaceEnvironment.getLog().error("Could not publish the status of a live activity batch", e);
+    } finally {
+      for (LiveActivityRuntimeRequest request : requests) {
+        batchedLiveActivityUuids.remove(request.getLiveActivityUuid());
+      }
+    }
+  }
 
-            break;
+  /**
+   * Perform a ROS activity control request.
+   *
+   * @param request
+   *          the ROS request
+   */
+  private void performLiveActivityRuntimeRequest(LiveActivityRuntimeRequest request) {
+    String uuid = request.getLiveActivityUuid();
+    switch (request.getOperation()) {
+      case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_STARTUP:
+        controllerControl.startupLiveActivity(uuid);
 
-          case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_SHUTDOWN:
-            controllerControl.shutdownLiveActivity(uuid);
+        break;
 
-            break;
+      case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_ACTIVATE:
+        controllerControl.activateLiveActivity(uuid);
 
-          case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_STATUS:
-            controllerControl.statusLiveActivity(uuid);
+        break;
 
-            break;
+      case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_DEACTIVATE:
+        controllerControl.deactivateLiveActivity(uuid);
 
-          case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_CONFIGURE:
-            handleLiveActivityConfigurationRequest(uuid,
-                configurationRequestDeserializer.deserialize(request.getPayload()));
+        break;
 
-            break;
+      case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_SHUTDOWN:
+        controllerControl.shutdownLiveActivity(uuid);
 
-          case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_CLEAN_DATA_PERMANENT:
-            controllerControl.cleanLiveActivityPermanentData(uuid);
+        break;
 
-            break;
+      case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_STATUS:
+        controllerControl.statusLiveActivity(uuid);
 
-          case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_CLEAN_DATA_TMP:
-            controllerControl.cleanLiveActivityTmpData(uuid);
+        break;
 
-            break;
+      case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_CONFIGURE:
+        handleLiveActivityConfigurationRequest(uuid,
+            configurationRequestDeserializer.deserialize(request.getPayload()));
 
-          default:
-            spaceEnvironment.getLog().error(
-                String.format("Unknown ROS activity runtime request %d", request.getOperation()));
-        }
-      }
-    });
+        break;
+
+      case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_CLEAN_DATA_PERMANENT:
+        controllerControl.cleanLiveActivityPermanentData(uuid);
+
+        break;
+
+      case LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_CLEAN_DATA_TMP:
+        controllerControl.cleanLiveActivityTmpData(uuid);
+
+        break;
+
+      default:
+        spaceEnvironment.getLog().error(
+            String.format("Unknown ROS activity runtime request %d", request.getOperation()));
+    }
+  }
+
+  /**
+   * Create the runtime status of a live activity from its current status.
+   *
+   * @param uuid
+   *          uuid of the live activity
+   * @param failureDetail
+   *          detail of a failed request for the live activity, {@code null} if there was no failure
+   *
+   * @return the runtime status
+   */
+  private LiveActivityRuntimeStatus newLiveActivityRuntimeStatus(String uuid, String failureDetail) {
+    LiveActivityRuntimeStatus status = rosMessageFactory.newFromType(LiveActivityRuntimeStatus._TYPE);
+    status.setUuid(uuid);
+
+    LiveActivityRunner liveActivityRunner = controllerControl.getLiveActivityRunnerByUuid(uuid);
+    if (liveActivityRunner != null) {
+      ActivityStatus activityStatus = liveActivityRunner.getCachedActivityStatus();
+      status.setStatus(translateActivityState(activityStatus.getState()));
+      status.setStatusDetail(activityStatus.getCombinedDetail());
+    } else {
+      status.setStatus(LiveActivityRuntimeStatus.STATUS_LIVE_ACTIVITY_DOESNT_EXIST);
+    }
+
+    if (failureDetail != null) {
+      status.setStatusDetail(failureDetail);
+    }
+
+    return status;
   }
 
   /**
@@ -701,6 +850,11 @@ public class RosSpaceControllerCommunicator implements SpaceControllerCommunicat
 
   @Override
   public void publishActivityStatus(String uuid, ActivityStatus astatus) {
+    if (batchedLiveActivityUuids.contains(uuid)) {
+      // The batch status will carry the latest status of the live activity.
+      return;
+    }
+
     try {
       LiveActivityRuntimeStatus status = rosMessageFactory.newFromType(LiveActivityRuntimeStatus._TYPE);
       status.setUuid(uuid);
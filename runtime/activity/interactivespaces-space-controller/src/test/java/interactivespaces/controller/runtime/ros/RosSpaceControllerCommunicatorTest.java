@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.controller.runtime.ros;
+
+import interactivespaces.SimpleInteractiveSpacesException;
+import interactivespaces.activity.ActivityState;
+import interactivespaces.activity.ActivityStatus;
+import interactivespaces.controller.runtime.SpaceControllerControl;
+import interactivespaces.domain.basic.pojo.SimpleSpaceController;
+import interactivespaces.liveactivity.runtime.LiveActivityRunner;
+import interactivespaces.system.InteractiveSpacesEnvironment;
+
+import com.google.common.collect.Lists;
+
+import interactivespaces_msgs.ControllerStatus;
+import interactivespaces_msgs.LiveActivityRuntimeBatchRequest;
+import interactivespaces_msgs.LiveActivityRuntimeBatchStatus;
+import interactivespaces_msgs.LiveActivityRuntimeRequest;
+import interactivespaces_msgs.LiveActivityRuntimeStatus;
+import org.apache.commons.logging.Log;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageSerializationFactory;
+import org.ros.message.MessageSerializer;
+import org.ros.node.ConnectedNode;
+import org.ros.node.NodeConfiguration;
+import org.ros.node.topic.Publisher;
+import org.ros.node.topic.Subscriber;
+import org.ros.osgi.common.RosEnvironment;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Tests for the {@link RosSpaceControllerCommunicator}.
+ *
+ * @author Keith M. Hughes
+ */
+public class RosSpaceControllerCommunicatorTest {
+
+  private RosSpaceControllerCommunicator communicator;
+
+  private SpaceControllerControl controllerControl;
+
+  private Publisher<ControllerStatus> controllerStatusPublisher;
+
+  private MessageSerializer<LiveActivityRuntimeBatchStatus> batchStatusSerializer;
+
+  private List<ControllerStatus> controllerStatuses;
+
+  private List<Runnable> afterPublishedStatusTasks;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    controllerStatuses = Lists.newArrayList();
+    afterPublishedStatusTasks = Lists.newArrayList();
+
+    ScheduledExecutorService executorService = Mockito.mock(ScheduledExecutorService.class);
+    Mockito.when(executorService.submit(Mockito.any(Runnable.class))).thenAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        ((Runnable) invocation.getArguments()[0]).run();
+        return null;
+      }
+    });
+
+    InteractiveSpacesEnvironment spaceEnvironment = Mockito.mock(InteractiveSpacesEnvironment.class);
+    Mockito.when(spaceEnvironment.getLog()).thenReturn(Mockito.mock(Log.class));
+    Mockito.when(spaceEnvironment.getExecutorService()).thenReturn(executorService);
+
+    MessageFactory messageFactory = Mockito.mock(MessageFactory.class);
+    Mockito.doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        return newMessage((String) invocation.getArguments()[0]);
+      }
+    }).when(messageFactory).newFromType(Mockito.anyString());
+
+    batchStatusSerializer = Mockito.mock(MessageSerializer.class);
+    MessageSerializationFactory messageSerializationFactory = Mockito.mock(MessageSerializationFactory.class);
+    Mockito.doReturn(Mockito.mock(MessageSerializer.class)).when(messageSerializationFactory)
+        .newMessageSerializer(LiveActivityRuntimeStatus._TYPE);
+    Mockito.doReturn(batchStatusSerializer).when(messageSerializationFactory)
+        .newMessageSerializer(LiveActivityRuntimeBatchStatus._TYPE);
+
+    controllerStatusPublisher = Mockito.mock(Publisher.class);
+    ConnectedNode node = Mockito.mock(ConnectedNode.class);
+    Mockito.when(node.getTopicMessageFactory()).thenReturn(messageFactory);
+    Mockito.when(node.getMessageSerializationFactory()).thenReturn(messageSerializationFactory);
+    Mockito.doReturn(controllerStatusPublisher).when(node).newPublisher(Mockito.anyString(), Mockito.anyString());
+    Mockito.doReturn(Mockito.mock(Subscriber.class)).when(node).newSubscriber(Mockito.anyString(),
+        Mockito.anyString());
+
+    RosEnvironment rosEnvironment = Mockito.mock(RosEnvironment.class);
+    Mockito.when(rosEnvironment.getPublicNodeConfigurationWithNodeName()).thenReturn(
+        Mockito.mock(NodeConfiguration.class));
+    Mockito.when(rosEnvironment.newNode(Mockito.any(NodeConfiguration.class))).thenReturn(node);
+
+    controllerControl = Mockito.mock(SpaceControllerControl.class);
+    Mockito.when(controllerControl.getControllerInfo()).thenReturn(new SimpleSpaceController());
+    Mockito.doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        afterPublishedStatusTasks.add((Runnable) invocation.getArguments()[0]);
+        return null;
+      }
+    }).when(controllerControl).runAfterPublishedActivityStatuses(Mockito.any(Runnable.class));
+
+    communicator = new RosSpaceControllerCommunicator(rosEnvironment, spaceEnvironment);
+    communicator.setSpaceControllerControl(controllerControl);
+    communicator.onStartup();
+  }
+
+  /**
+   * A batch publishes one status for all of its live activities, and none for the individual live activities while it
+   * runs.
+   */
+  @Test
+  public void testBatchPublishesOneStatus() {
+    final ActivityStatus running = new ActivityStatus(ActivityState.RUNNING, null);
+    addLiveActivity("a", running);
+    addLiveActivity("b", new ActivityStatus(ActivityState.ACTIVE, null));
+
+    Mockito.doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        communicator.publishActivityStatus("a", new ActivityStatus(ActivityState.STARTUP_ATTEMPT, null));
+        communicator.publishActivityStatus("a", running);
+        return null;
+      }
+    }).when(controllerControl).startupLiveActivity("a");
+
+    communicator.handleLiveActivityRuntimeBatchRequest(newBatchRequest(
+        newRuntimeRequest("a", LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_STARTUP),
+        newRuntimeRequest("b", LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_ACTIVATE)));
+
+    Mockito.verify(controllerControl).activateLiveActivity("b");
+    Assert.assertTrue(controllerStatuses.isEmpty());
+
+    Assert.assertEquals(1, afterPublishedStatusTasks.size());
+    afterPublishedStatusTasks.get(0).run();
+
+    Assert.assertEquals(1, controllerStatuses.size());
+    Mockito.verify(controllerStatuses.get(0)).setStatus(
+        ControllerStatus.STATUS_CONTROLLER_LIVE_ACTIVITY_RUNTIME_BATCH_STATUS);
+    Mockito.verify(controllerStatusPublisher).publish(controllerStatuses.get(0));
+
+    List<LiveActivityRuntimeStatus> statuses = getPublishedBatchStatus().getLiveActivityStatuses();
+    Assert.assertEquals(2, statuses.size());
+    Mockito.verify(statuses.get(0)).setUuid("a");
+    Mockito.verify(statuses.get(0)).setStatus(LiveActivityRuntimeStatus.STATUS_LIVE_ACTIVITY_RUNNING);
+    Mockito.verify(statuses.get(1)).setUuid("b");
+    Mockito.verify(statuses.get(1)).setStatus(LiveActivityRuntimeStatus.STATUS_LIVE_ACTIVITY_ACTIVE);
+
+    // Once the batch is done, statuses go out on their own again.
+    communicator.publishActivityStatus("a", running);
+    Assert.assertEquals(2, controllerStatuses.size());
+    Mockito.verify(controllerStatuses.get(1)).setStatus(
+        ControllerStatus.STATUS_CONTROLLER_LIVE_ACTIVITY_RUNTIME_STATUS);
+  }
+
+  /**
+   * A failed request in a batch does not stop the rest of the batch and its failure is in the batch status.
+   */
+  @Test
+  public void testBatchFailure() {
+    addLiveActivity("a", new ActivityStatus(ActivityState.STARTUP_FAILURE, null));
+    addLiveActivity("b", new ActivityStatus(ActivityState.RUNNING, null));
+
+    Mockito.doThrow(new SimpleInteractiveSpacesException("Bad startup")).when(controllerControl)
+        .startupLiveActivity("a");
+
+    communicator.handleLiveActivityRuntimeBatchRequest(newBatchRequest(
+        newRuntimeRequest("a", LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_STARTUP),
+        newRuntimeRequest("b", LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_STARTUP)));
+
+    Mockito.verify(controllerControl).startupLiveActivity("b");
+    afterPublishedStatusTasks.get(0).run();
+
+    List<LiveActivityRuntimeStatus> statuses = getPublishedBatchStatus().getLiveActivityStatuses();
+    Assert.assertEquals(2, statuses.size());
+    ArgumentCaptor<String> detail = ArgumentCaptor.forClass(String.class);
+    Mockito.verify(statuses.get(0), Mockito.atLeastOnce()).setStatusDetail(detail.capture());
+    Assert.assertTrue(detail.getValue().contains("Bad startup"));
+    Mockito.verify(statuses.get(1)).setStatus(LiveActivityRuntimeStatus.STATUS_LIVE_ACTIVITY_RUNNING);
+  }
+
+  /**
+   * Add a live activity to the controller.
+   *
+   * @param uuid
+   *          uuid of the live activity
+   * @param status
+   *          the cached status of the live activity
+   */
+  private void addLiveActivity(String uuid, ActivityStatus status) {
+    LiveActivityRunner runner = Mockito.mock(LiveActivityRunner.class);
+    Mockito.when(runner.getCachedActivityStatus()).thenReturn(status);
+    Mockito.when(controllerControl.getLiveActivityRunnerByUuid(uuid)).thenReturn(runner);
+  }
+
+  /**
+   * Get the batch status which was published.
+   *
+   * @return the batch status
+   */
+  private LiveActivityRuntimeBatchStatus getPublishedBatchStatus() {
+    ArgumentCaptor<LiveActivityRuntimeBatchStatus> batchStatus =
+        ArgumentCaptor.forClass(LiveActivityRuntimeBatchStatus.class);
+    Mockito.verify(batchStatusSerializer).serialize(batchStatus.capture());
+
+    return batchStatus.getValue();
+  }
+
+  /**
+   * Create a new batch request.
+   *
+   * @param requests
+   *          the requests in the batch
+   *
+   * @return the batch request
+   */
+  private LiveActivityRuntimeBatchRequest newBatchRequest(LiveActivityRuntimeRequest... requests) {
+    LiveActivityRuntimeBatchRequest batchRequest = Mockito.mock(LiveActivityRuntimeBatchRequest.class);
+    Mockito.when(batchRequest.getRequests()).thenReturn(Lists.newArrayList(requests));
+
+    return batchRequest;
+  }
+
+  /**
+   * Create a new live activity runtime request.
+   *
+   * @param uuid
+   *          uuid of the live activity
+   * @param operation
+   *          the operation
+   *
+   * @return the request
+   */
+  private LiveActivityRuntimeRequest newRuntimeRequest(String uuid, int operation) {
+    LiveActivityRuntimeRequest request = Mockito.mock(LiveActivityRuntimeRequest.class);
+    Mockito.when(request.getLiveActivityUuid()).thenReturn(uuid);
+    Mockito.when(request.getOperation()).thenReturn(operation);
+
+    return request;
+  }
+
+  /**
+   * Create a new ROS message.
+   *
+   * @param type
+   *          the ROS message type
+   *
+   * @return the message
+   */
+  private Object newMessage(String type) {
+    if (ControllerStatus._TYPE.equals(type)) {
+      ControllerStatus status = Mockito.mock(ControllerStatus.class);
+      controllerStatuses.add(status);
+
+      return status;
+    } else if (LiveActivityRuntimeStatus._TYPE.equals(type)) {
+      return Mockito.mock(LiveActivityRuntimeStatus.class);
+    } else if (LiveActivityRuntimeBatchStatus._TYPE.equals(type)) {
+      LiveActivityRuntimeBatchStatus batchStatus = Mockito.mock(LiveActivityRuntimeBatchStatus.class);
+      Mockito.when(batchStatus.getLiveActivityStatuses()).thenReturn(
+          Lists.<LiveActivityRuntimeStatus> newArrayList());
+
+      return batchStatus;
+    }
+
+    throw new IllegalArgumentException(type);
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.master.event;
+
+import interactivespaces.util.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics for the delivery of master events to a single {@link MasterEventListener}.
+ *
+ * <p>
+ * All methods are thread safe and recording never blocks.
+ *
+ * @author Keith M. Hughes
+ */
+public class MasterEventListenerMetrics {
+
+  /**
+   * The name of the listener.
+   */
+  private final String listenerName;
+
+  /**
+   * The number of events delivered to the listener.
+   */
+  private final AtomicLong deliveredCount = new AtomicLong();
+
+  /**
+   * The number of events merged into an event already waiting for the listener.
+   */
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  /**
+   * The number of events dropped because the signaling thread was interrupted while waiting for room in the queue.
+   */
+  private final AtomicLong dropCount = new AtomicLong();
+
+  /**
+   * The number of events waiting for the listener.
+   */
+  private final AtomicInteger queueSize = new AtomicInteger();
+
+  /**
+   * How long events waited between being signaled and reaching the listener, in nanoseconds.
+   */
+  private final LatencyHistogram lagTimes = new LatencyHistogram();
+
+  /**
+   * How long the listener took to handle each event, in nanoseconds.
+   */
+  private final LatencyHistogram processingTimes = new LatencyHistogram();
+
+  /**
+   * Construct new listener metrics.
+   *
+   * @param listenerName
+   *          the name of the listener
+   */
+  public MasterEventListenerMetrics(String listenerName) {
+    this.listenerName = listenerName;
+  }
+
+  /**
+   * Record an event delivered to the listener.
+   *
+   * @param lagNanos
+   *          how long the event waited before delivery, in nanoseconds
+   * @param processingNanos
+   *          how long the listener took to handle the event, in nanoseconds
+   */
+  public void recordDelivery(long lagNanos, long processingNanos) {
+    deliveredCount.incrementAndGet();
+    lagTimes.record(lagNanos);
+    processingTimes.record(processingNanos);
+  }
+
+  /**
+   * Record an event merged into an event already waiting for the listener.
+   */
+  public void recordCoalesce() {
+    coalescedCount.incrementAndGet();
+  }
+
+  /**
+   * Record an event dropped because the signaling thread was interrupted while waiting for room in the queue.
+   */
+  public void recordDrop() {
+    dropCount.incrementAndGet();
+  }
+
+  /**
+   * Add an event to the queue size of the listener if the queue has room for it.
+   *
+   * @param capacity
+   *          the maximum number of events waiting for the listener
+   *
+   * @return {@code true} if there was room for the event
+   */
+  boolean tryQueue(int capacity) {
+    if (queueSize.incrementAndGet() > capacity) {
+      queueSize.decrementAndGet();
+
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Record an event put in the queue of the listener whatever the capacity of the queue.
+   */
+  void recordQueued() {
+    queueSize.incrementAndGet();
+  }
+
+  /**
+   * Record an event taken from the queue of the listener.
+   */
+  void recordDequeued() {
+    queueSize.decrementAndGet();
+  }
+
+  /**
+   * Get the name of the listener.
+   *
+   * @return the listener name
+   */
+  public String getListenerName() {
+    return listenerName;
+  }
+
+  /**
+   * Get the number of events delivered to the listener.
+   *
+   * @return the delivered count
+   */
+  public long getDeliveredCount() {
+    return deliveredCount.get();
+  }
+
+  /**
+   * Get the number of events merged into an event already waiting for the listener.
+   *
+   * @return the coalesced count
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  /**
+   * Get the number of events dropped because the signaling thread was interrupted while waiting for room in the queue.
+   *
+   * @return the drop count
+   */
+  public long getDropCount() {
+    return dropCount.get();
+  }
+
+  /**
+   * Get the number of events waiting for the listener.
+   *
+   * @return the queue size
+   */
+  public int getQueueSize() {
+    return queueSize.get();
+  }
+
+  /**
+   * Get the histogram of how long events waited before reaching the listener, in nanoseconds.
+   *
+   * @return the lag histogram
+   */
+  public LatencyHistogram getLagTimes() {
+    return lagTimes;
+  }
+
+  /**
+   * Get the histogram of how long the listener took to handle events, in nanoseconds.
+   *
+   * @return the processing time histogram
+   */
+  public LatencyHistogram getProcessingTimes() {
+    return processingTimes;
+  }
+}
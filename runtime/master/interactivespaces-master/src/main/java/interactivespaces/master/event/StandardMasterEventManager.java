@@ -17,176 +17,341 @@
 package interactivespaces.master.event;
 
 import interactivespaces.activity.ActivityState;
+import interactivespaces.configuration.Configuration;
 import interactivespaces.container.control.message.activity.LiveActivityDeleteResponse;
 import interactivespaces.container.control.message.activity.LiveActivityDeploymentResponse;
 import interactivespaces.controller.SpaceControllerState;
 import interactivespaces.master.server.services.ActiveLiveActivity;
 import interactivespaces.master.server.services.ActiveSpaceController;
+import interactivespaces.master.server.services.MasterConfigurations;
+import interactivespaces.system.InteractiveSpacesEnvironment;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import org.apache.commons.logging.Log;
 
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A helper for messages to {@link MasterEventListener} instances.
  *
+ * <p>
+ * Events are delivered on the thread which signals them until {@link #startup()} is called. After that, if the system
+ * configuration asks for it, every listener gets its own bounded queue of events which is drained on the executor of
+ * the space environment. A slow listener then only holds up its own events, not the thread signaling them.
+ *
+ * <p>
+ * A runtime state change for a live activity which already has a state change waiting for a listener is merged into
+ * the waiting one. The merged change keeps the queue position of the waiting change, so the listener can see it before
+ * events which were signaled between the two changes.
+ *
+ * <p>
+ * Events are never dropped because a queue is full. A thread signaling an event waits for room in the queue of the
+ * listener instead, which also holds up the listeners after it. Threads delivering events are never made to wait, so
+ * listeners can signal events themselves without deadlocking, and their events can take a queue over capacity.
+ *
  * @author Keith M. Hughes
  */
 public class StandardMasterEventManager implements MasterEventManager {
 
   /**
-   * Listeners registered with helper.
+   * The most events delivered to a listener before its executor thread is given back.
+   */
+  private static final int MAXIMUM_EVENTS_PER_DRAIN = 100;
+
+  /**
+   * {@code true} on a thread which is delivering events from the queue of a listener.
+   */
+  private static final ThreadLocal<Boolean> DELIVERING = new ThreadLocal<Boolean>() {
+    @Override
+    protected Boolean initialValue() {
+      return false;
+    }
+  };
+
+  /**
+   * Dispatchers for the listeners registered with helper.
+   */
+  private final List<ListenerDispatcher> dispatchers = new CopyOnWriteArrayList<ListenerDispatcher>();
+
+  /**
+   * {@code true} if events are delivered from the queues of the listeners.
+   */
+  private volatile boolean asynchronous;
+
+  /**
+   * The maximum number of events waiting for each listener.
+   */
+  private volatile int queueCapacity = MasterConfigurations.CONFIGURATION_VALUE_DEFAULT_EVENT_DISPATCH_QUEUE_CAPACITY;
+
+  /**
+   * The space environment to use.
    */
-  private final List<MasterEventListener> listeners = new CopyOnWriteArrayList<MasterEventListener>();
+  private InteractiveSpacesEnvironment spaceEnvironment;
 
   /**
    * The logger for this manager.
    */
   private Log log;
 
+  /**
+   * Start the manager up.
+   */
+  public void startup() {
+    if (spaceEnvironment != null) {
+      Configuration configuration = spaceEnvironment.getSystemConfiguration();
+      queueCapacity =
+          configuration.getPropertyInteger(MasterConfigurations.CONFIGURATION_NAME_EVENT_DISPATCH_QUEUE_CAPACITY,
+              MasterConfigurations.CONFIGURATION_VALUE_DEFAULT_EVENT_DISPATCH_QUEUE_CAPACITY);
+      asynchronous =
+          configuration.getPropertyBoolean(MasterConfigurations.CONFIGURATION_NAME_EVENT_DISPATCH_ASYNCHRONOUS,
+              MasterConfigurations.CONFIGURATION_VALUE_DEFAULT_EVENT_DISPATCH_ASYNCHRONOUS);
+    }
+  }
+
+  /**
+   * Shut the manager down.
+   *
+   * <p>
+   * Events still waiting for listeners are thrown away.
+   */
+  public void shutdown() {
+    asynchronous = false;
+
+    for (ListenerDispatcher dispatcher : dispatchers) {
+      dispatcher.clear();
+    }
+  }
+
   @Override
   public void addListener(MasterEventListener listener) {
-    listeners.add(listener);
+    dispatchers.add(new ListenerDispatcher(listener));
   }
 
   @Override
   public void removeListener(MasterEventListener listener) {
-    listeners.remove(listener);
+    for (ListenerDispatcher dispatcher : dispatchers) {
+      if (dispatcher.listener == listener) {
+        dispatchers.remove(dispatcher);
+        dispatcher.clear();
+
+        return;
+      }
+    }
   }
 
   @Override
-  public void signalSpaceControllerConnectAttempted(ActiveSpaceController controller) {
-    for (MasterEventListener listener : listeners) {
-      try {
+  public void signalSpaceControllerConnectAttempted(final ActiveSpaceController controller) {
+    dispatch(new MasterEvent() {
+      @Override
+      public void deliver(MasterEventListener listener) {
         listener.onSpaceControllerConnectAttempted(controller);
-      } catch (Throwable e) {
-        log.error(String.format(
+      }
+
+      @Override
+      public String getErrorMessage() {
+        return String.format(
             "Exception while processing space controller connection attempt master event listener: %s",
-            controller.getDisplayName()), e);
+            controller.getDisplayName());
       }
-    }
+    });
   }
 
   @Override
-  public void signalSpaceControllerConnectFailed(ActiveSpaceController controller, long waitedTime) {
-    for (MasterEventListener listener : listeners) {
-      try {
+  public void signalSpaceControllerConnectFailed(final ActiveSpaceController controller, final long waitedTime) {
+    dispatch(new MasterEvent() {
+      @Override
+      public void deliver(MasterEventListener listener) {
         listener.onSpaceControllerConnectFailed(controller, waitedTime);
-      } catch (Throwable e) {
-        log.error(String.format(
+      }
+
+      @Override
+      public String getErrorMessage() {
+        return String.format(
             "Exception while processing space controller connection failure master event listener: %s",
-            controller.getDisplayName()), e);
+            controller.getDisplayName());
       }
-    }
+    });
   }
 
   @Override
-  public void signalSpaceControllerDisconnectAttempted(ActiveSpaceController controller) {
-    for (MasterEventListener listener : listeners) {
-      try {
+  public void signalSpaceControllerDisconnectAttempted(final ActiveSpaceController controller) {
+    dispatch(new MasterEvent() {
+      @Override
+      public void deliver(MasterEventListener listener) {
         listener.onSpaceControllerDisconnectAttempted(controller);
-      } catch (Throwable e) {
-        log.error(String.format(
+      }
+
+      @Override
+      public String getErrorMessage() {
+        return String.format(
             "Exception while processing space controller disconnection attempt master event listener: %s",
-            controller.getDisplayName()), e);
+            controller.getDisplayName());
       }
-    }
+    });
   }
 
   @Override
-  public void signalSpaceControllerHeartbeat(ActiveSpaceController controller, long timestamp) {
-    for (MasterEventListener listener : listeners) {
-      try {
+  public void signalSpaceControllerHeartbeat(final ActiveSpaceController controller, final long timestamp) {
+    dispatch(new MasterEvent() {
+      @Override
+      public void deliver(MasterEventListener listener) {
         listener.onSpaceControllerHeartbeat(controller, timestamp);
-      } catch (Throwable e) {
-        log.error(String.format("Exception while processing space controller heartbeat master event listener: %s",
-            controller.getDisplayName()), e);
       }
-    }
+
+      @Override
+      public String getErrorMessage() {
+        return String.format("Exception while processing space controller heartbeat master event listener: %s",
+            controller.getDisplayName());
+      }
+    });
   }
 
   @Override
-  public void signalSpaceControllerHeartbeatLost(ActiveSpaceController controller, long timeSinceLastHeartbeat) {
-    for (MasterEventListener listener : listeners) {
-      try {
+  public void signalSpaceControllerHeartbeatLost(final ActiveSpaceController controller,
+      final long timeSinceLastHeartbeat) {
+    dispatch(new MasterEvent() {
+      @Override
+      public void deliver(MasterEventListener listener) {
         listener.onSpaceControllerHeartbeatLost(controller, timeSinceLastHeartbeat);
-      } catch (Throwable e) {
-        log.error(String.format(
+      }
+
+      @Override
+      public String getErrorMessage() {
+        return String.format(
             "Exception while processing space controller heartbeat lost master event listener: %s",
-            controller.getDisplayName()), e);
+            controller.getDisplayName());
       }
-    }
+    });
   }
 
   @Override
-  public void signalSpaceControllerStatusChange(ActiveSpaceController controller, SpaceControllerState state) {
-    for (MasterEventListener listener : listeners) {
-      try {
+  public void signalSpaceControllerStatusChange(final ActiveSpaceController controller,
+      final SpaceControllerState state) {
+    dispatch(new MasterEvent() {
+      @Override
+      public void deliver(MasterEventListener listener) {
         listener.onSpaceControllerStatusChange(controller, state);
-      } catch (Throwable e) {
-        log.error(String.format(
+      }
+
+      @Override
+      public String getErrorMessage() {
+        return String.format(
             "Exception while processing space controller status change master event listener (%s): %s", state,
-            controller.getDisplayName()), e);
+            controller.getDisplayName());
       }
-    }
+    });
   }
 
   @Override
-  public void signalSpaceControllerShutdown(ActiveSpaceController controller) {
-    for (MasterEventListener listener : listeners) {
-      try {
+  public void signalSpaceControllerShutdown(final ActiveSpaceController controller) {
+    dispatch(new MasterEvent() {
+      @Override
+      public void deliver(MasterEventListener listener) {
         listener.onSpaceControllerShutdown(controller);
-      } catch (Throwable e) {
-        log.error(
-            String.format("Exception while processing space controller shutdown master event listener: %s",
-                controller.getDisplayName()), e);
       }
-    }
+
+      @Override
+      public String getErrorMessage() {
+        return String.format("Exception while processing space controller shutdown master event listener: %s",
+            controller.getDisplayName());
+      }
+    });
   }
 
   @Override
-  public void signalLiveActivityDeploy(ActiveLiveActivity liveActivity, LiveActivityDeploymentResponse result,
-      long timestamp) {
-    for (MasterEventListener listener : listeners) {
-      try {
+  public void signalLiveActivityDeploy(final ActiveLiveActivity liveActivity,
+      final LiveActivityDeploymentResponse result, final long timestamp) {
+    dispatch(new MasterEvent() {
+      @Override
+      public void deliver(MasterEventListener listener) {
         listener.onLiveActivityDeploy(liveActivity, result, timestamp);
-      } catch (Throwable e) {
-        log.error(String.format("Exception while processing live activity deploy master event listener (%s): %s",
-            result, liveActivity.getDisplayName()), e);
       }
-    }
+
+      @Override
+      public String getErrorMessage() {
+        return String.format("Exception while processing live activity deploy master event listener (%s): %s",
+            result, liveActivity.getDisplayName());
+      }
+    });
   }
 
   @Override
-  public void signalLiveActivityDelete(ActiveLiveActivity liveActivity, LiveActivityDeleteResponse result) {
-    for (MasterEventListener listener : listeners) {
-      try {
+  public void signalLiveActivityDelete(final ActiveLiveActivity liveActivity,
+      final LiveActivityDeleteResponse result) {
+    dispatch(new MasterEvent() {
+      @Override
+      public void deliver(MasterEventListener listener) {
         listener.onLiveActivityDelete(liveActivity, result);
-      } catch (Throwable e) {
-        log.error(String.format("Exception while processing live activity delete master event listener (%s): %s",
-            result, liveActivity.getDisplayName()), e);
       }
-    }
+
+      @Override
+      public String getErrorMessage() {
+        return String.format("Exception while processing live activity delete master event listener (%s): %s",
+            result, liveActivity.getDisplayName());
+      }
+    });
   }
 
   @Override
   public void signalLiveActivityRuntimeStateChange(ActiveLiveActivity liveActivity, ActivityState oldState,
       ActivityState newState) {
-    for (MasterEventListener listener : listeners) {
-      try {
-        listener.onLiveActivityStateChange(liveActivity, oldState, newState);
-      } catch (Throwable e) {
-        log.error(String.format(
-            "Exception while processing live activity deploy master event listener (%s to %s): %s", oldState,
-            newState, liveActivity.getDisplayName()), e);
-      }
+    // Each listener gets its own event since a waiting state change can be merged with later ones.
+    for (ListenerDispatcher dispatcher : dispatchers) {
+      dispatcher.signal(new LiveActivityStateChangeEvent(liveActivity, oldState, newState));
     }
   }
 
   @Override
   public void removeAllListeners() {
-    listeners.clear();
+    for (ListenerDispatcher dispatcher : dispatchers) {
+      dispatcher.clear();
+    }
+    dispatchers.clear();
+  }
+
+  /**
+   * Get the delivery metrics for all registered listeners.
+   *
+   * @return the metrics for each listener, in the order the listeners were added
+   */
+  public List<MasterEventListenerMetrics> getListenerMetrics() {
+    List<MasterEventListenerMetrics> metrics = Lists.newArrayList();
+    for (ListenerDispatcher dispatcher : dispatchers) {
+      metrics.add(dispatcher.metrics);
+    }
+
+    return metrics;
+  }
+
+  /**
+   * Send an event to all listeners.
+   *
+   * @param event
+   *          the event
+   */
+  private void dispatch(MasterEvent event) {
+    for (ListenerDispatcher dispatcher : dispatchers) {
+      dispatcher.signal(event);
+    }
+  }
+
+  /**
+   * Set the space environment to use.
+   *
+   * @param spaceEnvironment
+   *          the space environment
+   */
+  public void setSpaceEnvironment(InteractiveSpacesEnvironment spaceEnvironment) {
+    this.spaceEnvironment = spaceEnvironment;
   }
 
   /**
@@ -198,4 +363,358 @@ public class StandardMasterEventManager implements MasterEventManager {
   public void setLog(Log log) {
     this.log = log;
   }
+
+  /**
+   * An event for master event listeners.
+   *
+   * @author Keith M. Hughes
+   */
+  private abstract static class MasterEvent {
+
+    /**
+     * When the event was signaled, from {@link System#nanoTime()}.
+     */
+    private final long signalTime = System.nanoTime();
+
+    /**
+     * Deliver the event to a listener.
+     *
+     * @param listener
+     *          the listener
+     */
+    public abstract void deliver(MasterEventListener listener);
+
+    /**
+     * Get the message to log if a listener fails while handling the event.
+     *
+     * @return the error message
+     */
+    public abstract String getErrorMessage();
+  }
+
+  /**
+   * A runtime state change of a live activity.
+   *
+   * <p>
+   * Later state changes of the same live activity can be merged into the event until it is delivered. The event keeps
+   * its place in the queue when merged into.
+   *
+   * @author Keith M. Hughes
+   */
+  private static final class LiveActivityStateChangeEvent extends MasterEvent {
+
+    /**
+     * The live activity whose state changed.
+     */
+    private final ActiveLiveActivity liveActivity;
+
+    /**
+     * The state before the change.
+     */
+    private final ActivityState oldState;
+
+    /**
+     * The state after the latest change.
+     */
+    private ActivityState newState;
+
+    /**
+     * {@code true} once the event has been taken for delivery and can't be merged into any more.
+     */
+    private boolean taken;
+
+    /**
+     * Construct a new state change event.
+     *
+     * @param liveActivity
+     *          the live activity whose state changed
+     * @param oldState
+     *          the state before the change
+     * @param newState
+     *          the state after the change
+     */
+    public LiveActivityStateChangeEvent(ActiveLiveActivity liveActivity, ActivityState oldState,
+        ActivityState newState) {
+      this.liveActivity = liveActivity;
+      this.oldState = oldState;
+      this.newState = newState;
+    }
+
+    /**
+     * Merge a later state change into this one.
+     *
+     * @param event
+     *          the later state change
+     *
+     * @return {@code true} if the state change was merged, {@code false} if this event has already been taken for
+     *         delivery
+     */
+    public synchronized boolean merge(LiveActivityStateChangeEvent event) {
+      if (taken) {
+        return false;
+      }
+
+      newState = event.newState;
+
+      return true;
+    }
+
+    /**
+     * Take the event for delivery, no further changes are merged into it after this.
+     *
+     * @return the state after the latest change
+     */
+    public synchronized ActivityState take() {
+      taken = true;
+
+      return newState;
+    }
+
+    @Override
+    public void deliver(MasterEventListener listener) {
+      listener.onLiveActivityStateChange(liveActivity, oldState, take());
+    }
+
+    @Override
+    public String getErrorMessage() {
+      return String.format(
+          "Exception while processing live activity state change master event listener (%s to %s): %s", oldState,
+          newState, liveActivity.getDisplayName());
+    }
+  }
+
+  /**
+   * Delivers events to a single listener.
+   *
+   * <p>
+   * Only one executor task drains the queue of a listener at any time, so the listener sees events one at a time and
+   * in the order they were queued.
+   *
+   * @author Keith M. Hughes
+   */
+  private final class ListenerDispatcher implements Runnable {
+
+    /**
+     * The listener events are delivered to.
+     */
+    private final MasterEventListener listener;
+
+    /**
+     * The delivery metrics for the listener.
+     */
+    private final MasterEventListenerMetrics metrics;
+
+    /**
+     * The events waiting for the listener.
+     */
+    private final Queue<MasterEvent> queue = new ConcurrentLinkedQueue<MasterEvent>();
+
+    /**
+     * The state change events waiting for the listener, keyed by their live activity.
+     */
+    private final ConcurrentMap<ActiveLiveActivity, LiveActivityStateChangeEvent> waitingStateChanges =
+        Maps.newConcurrentMap();
+
+    /**
+     * {@code true} while an executor task is draining the queue.
+     */
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * {@code true} while signaling threads are waiting because the queue is full.
+     */
+    private final AtomicBoolean full = new AtomicBoolean();
+
+    /**
+     * Notified when events leave the queue, for signaling threads waiting for room.
+     */
+    private final Object queueSpace = new Object();
+
+    /**
+     * The number of signaling threads waiting for room in the queue.
+     */
+    private final AtomicInteger queueSpaceWaiters = new AtomicInteger();
+
+    /**
+     * Construct a new dispatcher.
+     *
+     * @param listener
+     *          the listener events are delivered to
+     */
+    public ListenerDispatcher(MasterEventListener listener) {
+      this.listener = listener;
+      this.metrics = new MasterEventListenerMetrics(listener.getClass().getName());
+    }
+
+    /**
+     * Send an event to the listener.
+     *
+     * @param event
+     *          the event
+     */
+    public void signal(MasterEvent event) {
+      if (!asynchronous) {
+        deliver(event);
+
+        return;
+      }
+
+      LiveActivityStateChangeEvent stateChange = null;
+      if (event instanceof LiveActivityStateChangeEvent) {
+        stateChange = (LiveActivityStateChangeEvent) event;
+        LiveActivityStateChangeEvent waitingStateChange = waitingStateChanges.get(stateChange.liveActivity);
+        if (waitingStateChange != null && waitingStateChange.merge(stateChange)) {
+          metrics.recordCoalesce();
+
+          return;
+        }
+      }
+
+      if (!reserveQueueSpace()) {
+        metrics.recordDrop();
+        log.warn(String.format("Interrupted while waiting for room in the master event queue for listener %s, "
+            + "event dropped", metrics.getListenerName()));
+
+        return;
+      }
+
+      if (stateChange != null) {
+        waitingStateChanges.put(stateChange.liveActivity, stateChange);
+      }
+      queue.offer(event);
+
+      scheduleDrain();
+    }
+
+    /**
+     * Take a place in the queue, waiting for room if it is full.
+     *
+     * <p>
+     * A thread which is delivering events never waits, it takes a place even if that puts the queue over capacity.
+     *
+     * @return {@code true} if a place was taken, {@code false} if the thread was interrupted while waiting
+     */
+    private boolean reserveQueueSpace() {
+      if (metrics.tryQueue(queueCapacity)) {
+        return true;
+      }
+
+      if (DELIVERING.get()) {
+        metrics.recordQueued();
+
+        return true;
+      }
+
+      if (full.compareAndSet(false, true)) {
+        log.warn(String.format("Master event queue for listener %s is full, signaling threads are waiting",
+            metrics.getListenerName()));
+      }
+
+      synchronized (queueSpace) {
+        queueSpaceWaiters.incrementAndGet();
+        try {
+          while (!metrics.tryQueue(queueCapacity)) {
+            queueSpace.wait();
+          }
+
+          return true;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+
+          return false;
+        } finally {
+          queueSpaceWaiters.decrementAndGet();
+        }
+      }
+    }
+
+    /**
+     * Events have left the queue, wake up any signaling threads waiting for room.
+     */
+    private void notifyQueueSpace() {
+      if (queueSpaceWaiters.get() > 0) {
+        synchronized (queueSpace) {
+          queueSpace.notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Make sure an executor task is draining the queue.
+     */
+    private void scheduleDrain() {
+      if (draining.compareAndSet(false, true)) {
+        try {
+          spaceEnvironment.getExecutorService().execute(this);
+        } catch (RejectedExecutionException e) {
+          // The executor is going away, so deliver on this thread.
+          run();
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      boolean wasDelivering = DELIVERING.get();
+      DELIVERING.set(true);
+
+      MasterEvent event = null;
+      try {
+        for (int i = 0; i < MAXIMUM_EVENTS_PER_DRAIN && (event = queue.poll()) != null; i++) {
+          metrics.recordDequeued();
+          notifyQueueSpace();
+          deliver(event);
+        }
+      } finally {
+        DELIVERING.set(wasDelivering);
+      }
+
+      if (event == null && full.compareAndSet(true, false)) {
+        log.warn(String.format("Master event queue for listener %s has caught up", metrics.getListenerName()));
+      }
+
+      draining.set(false);
+      if (!queue.isEmpty()) {
+        scheduleDrain();
+      }
+    }
+
+    /**
+     * Deliver an event to the listener.
+     *
+     * @param event
+     *          the event
+     */
+    private void deliver(MasterEvent event) {
+      if (event instanceof LiveActivityStateChangeEvent) {
+        LiveActivityStateChangeEvent stateChange = (LiveActivityStateChangeEvent) event;
+        waitingStateChanges.remove(stateChange.liveActivity, stateChange);
+      }
+
+      long startTime = System.nanoTime();
+      try {
+        event.deliver(listener);
+      } catch (Throwable e) {
+        log.error(event.getErrorMessage(), e);
+      }
+      long endTime = System.nanoTime();
+
+      metrics.recordDelivery(startTime - event.signalTime, endTime - startTime);
+    }
+
+    /**
+     * Throw away all events waiting for the listener.
+     */
+    public void clear() {
+      MasterEvent event;
+      while ((event = queue.poll()) != null) {
+        metrics.recordDequeued();
+        if (event instanceof LiveActivityStateChangeEvent) {
+          LiveActivityStateChangeEvent stateChange = (LiveActivityStateChangeEvent) event;
+          waitingStateChanges.remove(stateChange.liveActivity, stateChange);
+        }
+      }
+      notifyQueueSpace();
+    }
+  }
 }
@@ -30,7 +30,8 @@ import java.util.Set;
  * A {@link LiveActivity} which is active.
  *
  * <p>
- * This class is not thread safe in and of itself. It is assumed that whoever is calling it is thread safe.
+ * All changes to the state of the live activity are made under the lock of the active live activity. The runtime and
+ * deploy states can be read without locking, so queries never wait on status updates.
  *
  * @author Keith M. Hughes
  */
@@ -49,7 +50,7 @@ public class ActiveLiveActivity {
   /**
    * The activity which is now active.
    */
-  private LiveActivity activity;
+  private volatile LiveActivity activity;
 
   /**
    * The state of the active activity.
@@ -57,12 +58,12 @@ public class ActiveLiveActivity {
    * <p>
    * This is local knowledge about what is true about the remote version of the activity.
    */
-  private ActivityState runtimeState = ActivityState.UNKNOWN;
+  private volatile ActivityState runtimeState = ActivityState.UNKNOWN;
 
   /**
    * Detail about the runtime state, can be {@code null}.
    */
-  private String runtimeStateDetail;
+  private volatile String runtimeStateDetail;
 
   /**
    * The deploy state of the activity.
@@ -70,17 +71,17 @@ public class ActiveLiveActivity {
    * <p>
    * This is local knowledge about what is true about the remote version of the activity.
    */
-  private ActivityState deployState = ActivityState.UNKNOWN;
+  private volatile ActivityState deployState = ActivityState.UNKNOWN;
 
   /**
    * Detail message for the deploy state detail, if any.
    */
-  private String deployStateDetail;
+  private volatile String deployStateDetail;
 
   /**
    * The last state update. {@code null} means there hasn't been one yet.
    */
-  private Long lastStateUpdate;
+  private volatile Long lastStateUpdate;
 
   /**
    * Is the activity directRunning from a direct startup?
@@ -372,7 +373,7 @@ public class ActiveLiveActivity {
    * @param runtimeStateDetail
    *          detail about the runtime state, can be {@code null}
    */
-  public void setRuntimeState(ActivityState runtimeState, String runtimeStateDetail) {
+  public synchronized void setRuntimeState(ActivityState runtimeState, String runtimeStateDetail) {
     this.runtimeState = runtimeState;
     this.runtimeStateDetail = runtimeStateDetail;
 
@@ -439,7 +440,7 @@ public class ActiveLiveActivity {
    * @param deployStateDetail
    *          the state detail to set
    */
-  public void setDeployState(ActivityState deployState, String deployStateDetail) {
+  public synchronized void setDeployState(ActivityState deployState, String deployStateDetail) {
     this.deployState = deployState;
     this.deployStateDetail = deployStateDetail;
   }
@@ -27,8 +27,11 @@ public class ActiveLiveActivityGroup {
 
   /**
    * The activity group this represents.
+   *
+   * <p>
+   * Volatile so an update from one thread is seen by readers on other threads without locking.
    */
-  private LiveActivityGroup activityGroup;
+  private volatile LiveActivityGroup activityGroup;
 
   /**
    * ID of the activity group.
@@ -27,8 +27,11 @@ public class ActiveSpace {
 
   /**
    * The space which is instantiated.
+   *
+   * <p>
+   * Volatile so an update from one thread is seen by readers on other threads without locking.
    */
-  private Space space;
+  private volatile Space space;
 
   public ActiveSpace(Space space) {
     this.space = space;
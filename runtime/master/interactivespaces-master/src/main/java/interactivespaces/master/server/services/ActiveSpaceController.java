@@ -29,6 +29,10 @@ import java.util.Date;
  * <p>
  * "Active" means that the master knows about it.
  *
+ * <p>
+ * Status updates for the controller can come in on several threads at once. A state and its timestamp are changed
+ * together under the lock of the active controller, while all getters read without locking.
+ *
  * @author Keith M. Hughes
  */
 public class ActiveSpaceController {
@@ -36,32 +40,32 @@ public class ActiveSpaceController {
   /**
    * The controller being represented.
    */
-  private SpaceController controller;
+  private volatile SpaceController controller;
 
   /**
    * Current known state of the controller.
    */
-  private SpaceControllerState state = SpaceControllerState.UNKNOWN;
+  private volatile SpaceControllerState state = SpaceControllerState.UNKNOWN;
 
   /**
    * Timestamp of the last update.
    */
-  private Long lastStateUpdate;
+  private volatile Long lastStateUpdate;
 
   /**
    * Current known data bundle state of the controller.
    */
-  private DataBundleState dataBundleState = DataBundleState.NO_REQUEST;
+  private volatile DataBundleState dataBundleState = DataBundleState.NO_REQUEST;
 
   /**
    * Timestamp of the last data bundle state update.
    */
-  private Long lastDataBundleStateUpdate;
+  private volatile Long lastDataBundleStateUpdate;
 
   /**
    * Last timestamp for a heartbeat.
    */
-  private Long lastHeartbeatTimestamp;
+  private volatile Long lastHeartbeatTimestamp;
 
   /**
    * The time provider.
@@ -114,7 +118,7 @@ public class ActiveSpaceController {
    * @param state
    *          the state to set
    */
-  public void setState(SpaceControllerState state) {
+  public synchronized void setState(SpaceControllerState state) {
     this.state = state;
 
     lastStateUpdate = timeProvider.getCurrentTime();
@@ -153,7 +157,7 @@ public class ActiveSpaceController {
    * @param dataBundleState
    *          the data bundle state to set
    */
-  public void setDataBundleState(DataBundleState dataBundleState) {
+  public synchronized void setDataBundleState(DataBundleState dataBundleState) {
     this.dataBundleState = dataBundleState;
 
     lastDataBundleStateUpdate = timeProvider.getCurrentTime();
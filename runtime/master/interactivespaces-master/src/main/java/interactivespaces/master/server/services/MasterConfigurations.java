@@ -34,4 +34,43 @@ public class MasterConfigurations {
    * the space. Used to paint the Master webapp.
    */
   public static final String CONFIGURATION_VALUE_DEFAULT_SPACE_NAME = "My Interactive Space";
+
+  /**
+   * The configuration parameter that gives the maximum number of space controllers a space operation works on at the
+   * same time.
+   */
+  public static final String CONFIGURATION_NAME_SPACE_OPERATION_CONCURRENCY =
+      "interactivespaces.master.space.operation.concurrency";
+
+  /**
+   * The default value for the maximum number of space controllers a space operation works on at the same time.
+   */
+  public static final int CONFIGURATION_VALUE_DEFAULT_SPACE_OPERATION_CONCURRENCY = 8;
+
+  /**
+   * The configuration parameter that says whether master events are delivered to listeners on their own threads
+   * rather than on the thread which raised the event.
+   */
+  public static final String CONFIGURATION_NAME_EVENT_DISPATCH_ASYNCHRONOUS =
+      "interactivespaces.master.event.dispatch.asynchronous";
+
+  /**
+   * The default value for whether master events are delivered to listeners on their own threads.
+   *
+   * <p>
+   * Events are delivered on the signaling thread unless a deployment turns this on.
+   */
+  public static final boolean CONFIGURATION_VALUE_DEFAULT_EVENT_DISPATCH_ASYNCHRONOUS = false;
+
+  /**
+   * The configuration parameter that gives the maximum number of master events waiting for each listener when events
+   * are delivered asynchronously.
+   */
+  public static final String CONFIGURATION_NAME_EVENT_DISPATCH_QUEUE_CAPACITY =
+      "interactivespaces.master.event.dispatch.queue.capacity";
+
+  /**
+   * The default value for the maximum number of master events waiting for each listener.
+   */
+  public static final int CONFIGURATION_VALUE_DEFAULT_EVENT_DISPATCH_QUEUE_CAPACITY = 1000;
 }
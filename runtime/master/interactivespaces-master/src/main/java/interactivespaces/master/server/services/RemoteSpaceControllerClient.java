@@ -248,6 +248,30 @@ public interface RemoteSpaceControllerClient extends ManagedResource {
    */
   void cleanLiveActivityTempData(ActiveLiveActivity activity);
 
+  /**
+   * Start a batch of live activity requests for a controller.
+   *
+   * <p>
+   * Until {@link #endLiveActivityBatch(ActiveSpaceController)} is called, live activity runtime requests made on the
+   * calling thread for live activities on the controller are held back, and are then sent to the controller together
+   * in one request. Requests for other controllers or from other threads are sent as usual.
+   *
+   * @param controller
+   *          the controller the batch is for
+   */
+  void beginLiveActivityBatch(ActiveSpaceController controller);
+
+  /**
+   * End the batch of live activity requests started on the calling thread and send its requests.
+   *
+   * <p>
+   * Does nothing if there is no batch for the controller on the calling thread.
+   *
+   * @param controller
+   *          the controller the batch is for
+   */
+  void endLiveActivityBatch(ActiveSpaceController controller);
+
   /**
    * Add in a new event listener for events from the client.
    *
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.master.server.services.internal;
+
+/**
+ * The operations which can be done to all live activities in a space.
+ *
+ * @author Keith M. Hughes
+ */
+enum SpaceOperation {
+
+  /**
+   * Deploy the live activities.
+   */
+  DEPLOY("deployment", true),
+
+  /**
+   * Configure the live activities.
+   */
+  CONFIGURE("configuration", true),
+
+  /**
+   * Start up the live activities.
+   */
+  STARTUP("startup", false),
+
+  /**
+   * Activate the live activities.
+   */
+  ACTIVATE("activation", false),
+
+  /**
+   * Deactivate the live activities.
+   */
+  DEACTIVATE("deactivation", false),
+
+  /**
+   * Shut down the live activities.
+   */
+  SHUTDOWN("shutdown", false);
+
+  /**
+   * The description of the operation for logs.
+   */
+  private final String description;
+
+  /**
+   * {@code true} if the operation is done only once for a live activity, even if it is in more than one group.
+   */
+  private final boolean oncePerLiveActivity;
+
+  /**
+   * Construct a new operation.
+   *
+   * @param description
+   *          the description of the operation for logs
+   * @param oncePerLiveActivity
+   *          {@code true} if the operation is done only once for a live activity
+   */
+  private SpaceOperation(String description, boolean oncePerLiveActivity) {
+    this.description = description;
+    this.oncePerLiveActivity = oncePerLiveActivity;
+  }
+
+  /**
+   * Get the description of the operation.
+   *
+   * @return the description
+   */
+  public String getDescription() {
+    return description;
+  }
+
+  /**
+   * Is the operation done only once for a live activity?
+   *
+   * <p>
+   * Operations which aren't are done once for every group the live activity is in, so the group reference counts in
+   * the live activity stay right.
+   *
+   * @return {@code true} if the operation is done only once for a live activity
+   */
+  public boolean isOncePerLiveActivity() {
+    return oncePerLiveActivity;
+  }
+}
@@ -0,0 +1,502 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.master.server.services.internal;
+
+import interactivespaces.InteractiveSpacesExceptionUtils;
+import interactivespaces.domain.basic.GroupLiveActivity;
+import interactivespaces.domain.basic.LiveActivityGroup;
+import interactivespaces.domain.space.Space;
+import interactivespaces.logging.ExtendedLog;
+import interactivespaces.master.server.services.ActiveLiveActivity;
+import interactivespaces.master.server.services.ActiveLiveActivityGroup;
+import interactivespaces.master.server.services.ActiveSpaceController;
+import interactivespaces.master.server.services.RemoteSpaceControllerClient;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plans a space or live activity group operation and carries it out on all space controllers it uses.
+ *
+ * <p>
+ * The space or group is walked once to find every live activity the operation touches, and the steps are grouped by
+ * the space controller the live activity runs on. The steps for a controller are done in order on a single thread and
+ * their live activity requests are sent to the controller as one batch. Several controllers are worked on at the same
+ * time, so a slow or unreachable controller holds up only its own live activities.
+ *
+ * @author Keith M. Hughes
+ */
+class SpaceOperationPlanner {
+
+  /**
+   * The controller manager the operation is for.
+   */
+  private final StandardActiveSpaceControllerManager controllerManager;
+
+  /**
+   * The client for sending requests to the controllers.
+   */
+  private final RemoteSpaceControllerClient remoteSpaceControllerClient;
+
+  /**
+   * The executor for working on controllers at the same time.
+   */
+  private final Executor executor;
+
+  /**
+   * The maximum number of controllers worked on at the same time.
+   */
+  private final int concurrency;
+
+  /**
+   * The log for progress and failures.
+   */
+  private final ExtendedLog log;
+
+  /**
+   * Construct a new planner.
+   *
+   * @param controllerManager
+   *          the controller manager the operation is for
+   * @param remoteSpaceControllerClient
+   *          the client for sending requests to the controllers
+   * @param executor
+   *          the executor for working on controllers at the same time
+   * @param concurrency
+   *          the maximum number of controllers worked on at the same time
+   * @param log
+   *          the log for progress and failures
+   */
+  public SpaceOperationPlanner(StandardActiveSpaceControllerManager controllerManager,
+      RemoteSpaceControllerClient remoteSpaceControllerClient, Executor executor, int concurrency, ExtendedLog log) {
+    this.controllerManager = controllerManager;
+    this.remoteSpaceControllerClient = remoteSpaceControllerClient;
+    this.executor = executor;
+    this.concurrency = Math.max(1, concurrency);
+    this.log = log;
+  }
+
+  /**
+   * Plan an operation on a space and carry it out.
+   *
+   * <p>
+   * The method returns once every controller has been worked on.
+   *
+   * @param space
+   *          the space
+   * @param operation
+   *          the operation
+   *
+   * @return the results for each controller
+   */
+  public List<ControllerResult> perform(Space space, SpaceOperation operation) {
+    return dispatch(operation, plan(space, operation));
+  }
+
+  /**
+   * Plan an operation on a live activity group and carry it out.
+   *
+   * <p>
+   * The method returns once every controller has been worked on.
+   *
+   * @param activeActivityGroup
+   *          the live activity group
+   * @param operation
+   *          the operation
+   *
+   * @return the results for each controller
+   */
+  public List<ControllerResult> perform(ActiveLiveActivityGroup activeActivityGroup, SpaceOperation operation) {
+    return dispatch(operation, plan(activeActivityGroup, operation));
+  }
+
+  /**
+   * Plan an operation on a space.
+   *
+   * @param space
+   *          the space
+   * @param operation
+   *          the operation
+   *
+   * @return the steps of the operation in the order they are to be done, grouped by controller
+   */
+  public Map<ActiveSpaceController, List<Step>> plan(Space space, final SpaceOperation operation) {
+    final Map<ActiveSpaceController, List<Step>> plan = Maps.newLinkedHashMap();
+    final Set<ActiveLiveActivity> plannedActivities = Sets.newHashSet();
+
+    SpaceWalker walker = new SpaceWalker() {
+      @Override
+      protected void doVisit(Space space) {
+        for (LiveActivityGroup activityGroup : space.getActivityGroups()) {
+          addGroupSteps(controllerManager.getActiveLiveActivityGroup(activityGroup), operation, plan,
+              plannedActivities);
+        }
+      }
+    };
+    walker.walk(space);
+
+    return plan;
+  }
+
+  /**
+   * Plan an operation on a live activity group.
+   *
+   * @param activeActivityGroup
+   *          the live activity group
+   * @param operation
+   *          the operation
+   *
+   * @return the steps of the operation in the order they are to be done, grouped by controller
+   */
+  public Map<ActiveSpaceController, List<Step>> plan(ActiveLiveActivityGroup activeActivityGroup,
+      SpaceOperation operation) {
+    Map<ActiveSpaceController, List<Step>> plan = Maps.newLinkedHashMap();
+    addGroupSteps(activeActivityGroup, operation, plan, Sets.<ActiveLiveActivity> newHashSet());
+
+    return plan;
+  }
+
+  /**
+   * Add the steps for all live activities in a group to a plan.
+   *
+   * @param activeActivityGroup
+   *          the live activity group
+   * @param operation
+   *          the operation
+   * @param plan
+   *          the plan to add the steps to
+   * @param plannedActivities
+   *          the live activities already in the plan
+   */
+  private void addGroupSteps(ActiveLiveActivityGroup activeActivityGroup, SpaceOperation operation,
+      Map<ActiveSpaceController, List<Step>> plan, Set<ActiveLiveActivity> plannedActivities) {
+    for (GroupLiveActivity groupActivity : activeActivityGroup.getActivityGroup().getLiveActivities()) {
+      ActiveLiveActivity activeLiveActivity = controllerManager.getActiveLiveActivity(groupActivity.getActivity());
+      if (operation.isOncePerLiveActivity() && !plannedActivities.add(activeLiveActivity)) {
+        continue;
+      }
+
+      ActiveSpaceController activeController = activeLiveActivity.getActiveController();
+      List<Step> steps = plan.get(activeController);
+      if (steps == null) {
+        steps = Lists.newArrayList();
+        plan.put(activeController, steps);
+      }
+      steps.add(new Step(activeActivityGroup, activeLiveActivity));
+    }
+  }
+
+  /**
+   * Carry out a planned operation.
+   *
+   * <p>
+   * The calling thread works on controllers too, so the operation finishes even if the executor turns work away.
+   *
+   * @param operation
+   *          the operation
+   * @param plan
+   *          the steps of the operation, grouped by controller
+   *
+   * @return the results for each controller, in the order of the plan
+   */
+  public List<ControllerResult> dispatch(final SpaceOperation operation,
+      Map<ActiveSpaceController, List<Step>> plan) {
+    List<ControllerResult> results = Lists.newArrayList();
+    for (Map.Entry<ActiveSpaceController, List<Step>> entry : plan.entrySet()) {
+      results.add(new ControllerResult(entry.getKey(), entry.getValue()));
+    }
+    if (results.isEmpty()) {
+      return results;
+    }
+
+    log.formatInfo("Starting %s of %d live activity steps on %d space controllers",
+        operation.getDescription(), countSteps(plan), results.size());
+
+    final Queue<ControllerResult> pending = new ConcurrentLinkedQueue<ControllerResult>(results);
+    final CountDownLatch completed = new CountDownLatch(results.size());
+    final AtomicInteger completedCount = new AtomicInteger();
+    final int controllerCount = results.size();
+
+    Runnable worker = new Runnable() {
+      @Override
+      public void run() {
+        ControllerResult result;
+        while ((result = pending.poll()) != null) {
+          try {
+            performControllerSteps(operation, result);
+          } finally {
+            logControllerProgress(operation, result, completedCount.incrementAndGet(), controllerCount);
+            completed.countDown();
+          }
+        }
+      }
+    };
+
+    int workers = Math.min(concurrency, controllerCount);
+    for (int i = 1; i < workers; i++) {
+      try {
+        executor.execute(worker);
+      } catch (RejectedExecutionException e) {
+        break;
+      }
+    }
+    worker.run();
+
+    try {
+      completed.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.formatWarn("Interrupted while waiting for %s to finish, %d of %d space controllers done",
+          operation.getDescription(), completedCount.get(), controllerCount);
+    }
+
+    return results;
+  }
+
+  /**
+   * Do all steps for a controller.
+   *
+   * @param operation
+   *          the operation
+   * @param result
+   *          the result for the controller
+   */
+  private void performControllerSteps(SpaceOperation operation, ControllerResult result) {
+    long startTime = System.currentTimeMillis();
+
+    remoteSpaceControllerClient.beginLiveActivityBatch(result.activeController);
+    for (Step step : result.steps) {
+      ActiveLiveActivity activeLiveActivity = step.getActiveLiveActivity();
+      String groupId = step.getActiveLiveActivityGroup().getActivityGroup().getId();
+      try {
+        controllerManager.performSpaceOperationStep(operation, step.getActiveLiveActivityGroup(),
+            activeLiveActivity);
+      } catch (Throwable e) {
+        log.formatError(e, "Error during %s of live activity %s as part of live activity group %s",
+            operation.getDescription(), activeLiveActivity.getDisplayName(), groupId);
+
+        result.failures.put(activeLiveActivity, InteractiveSpacesExceptionUtils.getExceptionDetail(e));
+      }
+    }
+
+    try {
+      remoteSpaceControllerClient.endLiveActivityBatch(result.activeController);
+    } catch (Throwable e) {
+      log.formatError(e, "Could not send the live activity requests for %s to space controller %s",
+          operation.getDescription(), result.activeController.getDisplayName());
+
+      String detail = InteractiveSpacesExceptionUtils.getExceptionDetail(e);
+      for (Step step : result.steps) {
+        if (!result.failures.containsKey(step.getActiveLiveActivity())) {
+          result.failures.put(step.getActiveLiveActivity(), detail);
+        }
+      }
+    }
+
+    result.elapsedTime = System.currentTimeMillis() - startTime;
+  }
+
+  /**
+   * Log the progress of an operation after a controller has been worked on.
+   *
+   * @param operation
+   *          the operation
+   * @param result
+   *          the result for the controller
+   * @param completedCount
+   *          the number of controllers done so far
+   * @param controllerCount
+   *          the number of controllers in the operation
+   */
+  private void logControllerProgress(SpaceOperation operation, ControllerResult result, int completedCount,
+      int controllerCount) {
+    String controllerName = result.getActiveController().getDisplayName();
+    if (result.isSuccess()) {
+      log.formatInfo("Live activity %s on space controller %s finished %d steps in %d msec (%d of %d done)",
+          operation.getDescription(), controllerName, result.getSteps().size(), result.getElapsedTime(),
+          completedCount, controllerCount);
+    } else {
+      log.formatWarn("Live activity %s on space controller %s had %d of %d steps fail (%d of %d done)",
+          operation.getDescription(), controllerName, result.getFailures().size(), result.getSteps().size(),
+          completedCount, controllerCount);
+    }
+  }
+
+  /**
+   * Count the steps in a plan.
+   *
+   * @param plan
+   *          the plan
+   *
+   * @return the number of steps
+   */
+  private static int countSteps(Map<ActiveSpaceController, List<Step>> plan) {
+    int count = 0;
+    for (List<Step> steps : plan.values()) {
+      count += steps.size();
+    }
+
+    return count;
+  }
+
+  /**
+   * A step in a space operation, the operation on one live activity from one group.
+   *
+   * @author Keith M. Hughes
+   */
+  public static class Step {
+
+    /**
+     * The group the live activity is being operated on from.
+     */
+    private final ActiveLiveActivityGroup activeLiveActivityGroup;
+
+    /**
+     * The live activity.
+     */
+    private final ActiveLiveActivity activeLiveActivity;
+
+    /**
+     * Construct a new step.
+     *
+     * @param activeLiveActivityGroup
+     *          the group the live activity is being operated on from
+     * @param activeLiveActivity
+     *          the live activity
+     */
+    public Step(ActiveLiveActivityGroup activeLiveActivityGroup, ActiveLiveActivity activeLiveActivity) {
+      this.activeLiveActivityGroup = activeLiveActivityGroup;
+      this.activeLiveActivity = activeLiveActivity;
+    }
+
+    /**
+     * Get the group the live activity is being operated on from.
+     *
+     * @return the group
+     */
+    public ActiveLiveActivityGroup getActiveLiveActivityGroup() {
+      return activeLiveActivityGroup;
+    }
+
+    /**
+     * Get the live activity.
+     *
+     * @return the live activity
+     */
+    public ActiveLiveActivity getActiveLiveActivity() {
+      return activeLiveActivity;
+    }
+  }
+
+  /**
+   * The result of a space operation on one controller.
+   *
+   * @author Keith M. Hughes
+   */
+  public static class ControllerResult {
+
+    /**
+     * The controller.
+     */
+    private final ActiveSpaceController activeController;
+
+    /**
+     * The steps done on the controller.
+     */
+    private final List<Step> steps;
+
+    /**
+     * The details of the steps which failed, indexed by their live activity.
+     */
+    private final Map<ActiveLiveActivity, String> failures = Maps.newConcurrentMap();
+
+    /**
+     * How long the steps took, in milliseconds.
+     */
+    private volatile long elapsedTime;
+
+    /**
+     * Construct a new result.
+     *
+     * @param activeController
+     *          the controller
+     * @param steps
+     *          the steps done on the controller
+     */
+    public ControllerResult(ActiveSpaceController activeController, List<Step> steps) {
+      this.activeController = activeController;
+      this.steps = steps;
+    }
+
+    /**
+     * Get the controller.
+     *
+     * @return the controller
+     */
+    public ActiveSpaceController getActiveController() {
+      return activeController;
+    }
+
+    /**
+     * Get the steps done on the controller.
+     *
+     * @return the steps
+     */
+    public List<Step> getSteps() {
+      return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Get the failed steps.
+     *
+     * @return the details of the failures, indexed by their live activity
+     */
+    public Map<ActiveLiveActivity, String> getFailures() {
+      return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Did every step succeed?
+     *
+     * @return {@code true} if no step failed
+     */
+    public boolean isSuccess() {
+      return failures.isEmpty();
+    }
+
+    /**
+     * Get how long the steps took.
+     *
+     * @return the time, in milliseconds
+     */
+    public long getElapsedTime() {
+      return elapsedTime;
+    }
+  }
+}
@@ -17,6 +17,7 @@
 package interactivespaces.master.server.services.internal;
 
 import interactivespaces.InteractiveSpacesExceptionUtils;
+import interactivespaces.SimpleInteractiveSpacesException;
 import interactivespaces.activity.ActivityState;
 import interactivespaces.container.control.message.activity.LiveActivityDeleteResponse;
 import interactivespaces.container.control.message.activity.LiveActivityDeploymentResponse;
@@ -33,24 +34,28 @@ import interactivespaces.master.server.services.ActiveLiveActivityGroup;
 import interactivespaces.master.server.services.ActiveSpace;
 import interactivespaces.master.server.services.ActiveSpaceController;
 import interactivespaces.master.server.services.ActiveSpaceControllerManager;
+import interactivespaces.master.server.services.MasterConfigurations;
 import interactivespaces.master.server.services.RemoteSpaceControllerClient;
 import interactivespaces.master.server.services.RemoteSpaceControllerClientListener;
 import interactivespaces.system.InteractiveSpacesEnvironment;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * An implementation of the {@link ActiveSpaceControllerManager}.
  *
+ * <p>
+ * The tables of active entities are concurrent maps, so heartbeats, status updates and queries from different space
+ * controllers do not wait on each other. An active entity is created at most once per key, and changes to its state
+ * are made under the lock of that entity only.
+ *
  * @author Keith M. Hughes
  */
 public class StandardActiveSpaceControllerManager implements InternalActiveSpaceControllerManager,
@@ -59,27 +64,28 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
   /**
    * All active controllers keyed by their controller's UUID.
    */
-  private final Map<String, ActiveSpaceController> activeSpaceControllers = Maps.newHashMap();
+  private final ConcurrentMap<String, ActiveSpaceController> activeSpaceControllers = Maps.newConcurrentMap();
 
   /**
    * All active activities keyed by their live activity's UUID.
    */
-  private final Map<String, ActiveLiveActivity> activeLiveActivities = Maps.newHashMap();
+  private final ConcurrentMap<String, ActiveLiveActivity> activeLiveActivities = Maps.newConcurrentMap();
 
   /**
-   * Active live activities mapped by the ID of the controller which contains the live activity.
+   * Active live activities mapped by the UUID of the controller which contains the live activity.
    */
-  private final Multimap<String, ActiveLiveActivity> activeLiveActivitiesByController = HashMultimap.create();
+  private final ConcurrentMap<String, Set<ActiveLiveActivity>> activeLiveActivitiesByController =
+      Maps.newConcurrentMap();
 
   /**
    * All active activity groups keyed by their activity group's ID.
    */
-  private final Map<String, ActiveLiveActivityGroup> activeLiveActivityGroups = Maps.newHashMap();
+  private final ConcurrentMap<String, ActiveLiveActivityGroup> activeLiveActivityGroups = Maps.newConcurrentMap();
 
   /**
    * All active spaces keyed by their space's ID.
    */
-  private final Map<String, ActiveSpace> activeSpaces = Maps.newHashMap();
+  private final ConcurrentMap<String, ActiveSpace> activeSpaces = Maps.newConcurrentMap();
 
   /**
    * Listeners for events in the manager.
@@ -379,8 +385,9 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
    *          the space controller
    */
   private void cleanLiveActivityStateModels(SpaceController spaceController) {
-    synchronized (activeLiveActivitiesByController) {
-      for (ActiveLiveActivity activeLiveActivity : activeLiveActivitiesByController.get(spaceController.getId())) {
+    Set<ActiveLiveActivity> controllerLiveActivities = activeLiveActivitiesByController.get(spaceController.getUuid());
+    if (controllerLiveActivities != null) {
+      for (ActiveLiveActivity activeLiveActivity : controllerLiveActivities) {
         activeLiveActivity.clearRunningStateModel();
       }
     }
@@ -393,6 +400,25 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
 
   @Override
   public void deployActiveLiveActivity(ActiveLiveActivity activeLiveActivity) {
+    try {
+      attemptDeployActiveLiveActivity(activeLiveActivity);
+    } catch (Throwable e) {
+      spaceEnvironment.getExtendedLog().formatError(e, "could not deploy live activity to space controller %s: %s",
+          activeLiveActivity.getActiveController().getDisplayName(), activeLiveActivity.getDisplayName());
+    }
+  }
+
+  /**
+   * Attempt to deploy a live activity.
+   *
+   * <p>
+   * The deploy state of the live activity is set to a failure if the deployment request can't be sent, and the
+   * failure is passed on to the caller.
+   *
+   * @param activeLiveActivity
+   *          the live activity to deploy
+   */
+  private void attemptDeployActiveLiveActivity(ActiveLiveActivity activeLiveActivity) {
     spaceEnvironment.getExtendedLog().formatInfo("Deploying live activity to space controller %s: %s",
         activeLiveActivity.getActiveController().getDisplayName(), activeLiveActivity.getDisplayName());
 
@@ -404,8 +430,7 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
       activeLiveActivity.setDeployState(ActivityState.DEPLOY_FAILURE,
           InteractiveSpacesExceptionUtils.getExceptionDetail(e));
 
-      spaceEnvironment.getExtendedLog().formatError(e, "could not deploy live activity to space controller %s: %s",
-          activeLiveActivity.getActiveController().getDisplayName(), activeLiveActivity.getDisplayName());
+      throw e;
     }
   }
 
@@ -441,6 +466,25 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
 
   @Override
   public void configureActiveLiveActivity(ActiveLiveActivity activeLiveActivity) {
+    try {
+      attemptConfigureActiveLiveActivity(activeLiveActivity);
+    } catch (Throwable e) {
+      spaceEnvironment.getExtendedLog().formatError(e, "A live activity has failed to configure: %s",
+          activeLiveActivity.getDisplayName());
+    }
+  }
+
+  /**
+   * Attempt to configure a live activity.
+   *
+   * <p>
+   * The runtime state of the live activity is updated if the configuration request can't be sent, and the failure is
+   * passed on to the caller.
+   *
+   * @param activeLiveActivity
+   *          the live activity to configure
+   */
+  private void attemptConfigureActiveLiveActivity(ActiveLiveActivity activeLiveActivity) {
     spaceEnvironment.getExtendedLog().formatInfo("Requesting live activity configuration: %s",
         activeLiveActivity.getDisplayName());
 
@@ -448,10 +492,9 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
       try {
         remoteSpaceControllerClient.fullConfigureLiveActivity(activeLiveActivity);
       } catch (Throwable e) {
-        spaceEnvironment.getExtendedLog().formatError(e, "A live activity has failed to configure: %s",
-            activeLiveActivity.getDisplayName());
-
         updateLiveActivityStateForCommunicationFailure(activeLiveActivity, e);
+
+        throw e;
       }
     }
   }
@@ -722,20 +765,7 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
     String groupId = activeActivityGroup.getActivityGroup().getId();
     spaceEnvironment.getExtendedLog().formatInfo("Requesting activity group %s startup", groupId);
 
-    for (GroupLiveActivity groupActivity : activeActivityGroup.getActivityGroup().getLiveActivities()) {
-      ActiveLiveActivity activeLiveActivity = getActiveLiveActivity(groupActivity.getActivity());
-
-      spaceEnvironment.getExtendedLog().formatInfo("Starting up live activity %s from group %s",
-          activeLiveActivity.getDisplayName(), groupId);
-
-      try {
-        activeLiveActivity.startupFromLiveActivityGroup(activeActivityGroup);
-      } catch (Throwable e) {
-        spaceEnvironment.getExtendedLog().formatError(e,
-            "Error while starting up live activity %s as part of live activity group %s",
-            activeLiveActivity.getDisplayName(), activeActivityGroup.getActivityGroup().getId());
-      }
-    }
+    newSpaceOperationPlanner().perform(activeActivityGroup, SpaceOperation.STARTUP);
   }
 
   @Override
@@ -748,20 +778,7 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
     String groupId = activeActivityGroup.getActivityGroup().getId();
     spaceEnvironment.getExtendedLog().formatInfo("requesting activity group %s activation", groupId);
 
-    for (GroupLiveActivity groupActivity : activeActivityGroup.getActivityGroup().getLiveActivities()) {
-      ActiveLiveActivity activeLiveActivity = getActiveLiveActivity(groupActivity.getActivity());
-
-      spaceEnvironment.getExtendedLog().formatInfo("Activating live activity %s from group %s",
-          activeLiveActivity.getDisplayName(), groupId);
-
-      try {
-        activeLiveActivity.activateFromLiveActivityGroup(activeActivityGroup);
-      } catch (Throwable e) {
-        spaceEnvironment.getExtendedLog().formatError(e,
-            "Error while activating live activity %s as part of live activity group %s",
-            activeLiveActivity.getDisplayName(), groupId);
-      }
-    }
+    newSpaceOperationPlanner().perform(activeActivityGroup, SpaceOperation.ACTIVATE);
   }
 
   @Override
@@ -774,20 +791,7 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
     String groupId = activeActivityGroup.getActivityGroup().getId();
     spaceEnvironment.getExtendedLog().formatInfo("Requesting activity group %s deactivation", groupId);
 
-    for (GroupLiveActivity groupActivity : activeActivityGroup.getActivityGroup().getLiveActivities()) {
-      ActiveLiveActivity activeLiveActivity = getActiveLiveActivity(groupActivity.getActivity());
-
-      spaceEnvironment.getExtendedLog().formatInfo("Deactivating live activity %s from group %s",
-          activeLiveActivity.getDisplayName(), groupId);
-
-      try {
-        activeLiveActivity.deactivateFromLiveActivityGroup(activeActivityGroup);
-      } catch (Throwable e) {
-        spaceEnvironment.getExtendedLog().formatError(e,
-            "Error while deactivating live activity %s as part of live activity group %s",
-            activeLiveActivity.getDisplayName(), groupId);
-      }
-    }
+    newSpaceOperationPlanner().perform(activeActivityGroup, SpaceOperation.DEACTIVATE);
   }
 
   @Override
@@ -800,20 +804,7 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
     String groupId = activeActivityGroup.getActivityGroup().getId();
     spaceEnvironment.getExtendedLog().formatInfo("Requesting activity group %s shutdown", groupId);
 
-    for (GroupLiveActivity groupActivity : activeActivityGroup.getActivityGroup().getLiveActivities()) {
-      ActiveLiveActivity activeLiveActivity = getActiveLiveActivity(groupActivity.getActivity());
-
-      spaceEnvironment.getExtendedLog().formatInfo("Shut down live activity %s from group %s",
-          activeLiveActivity.getDisplayName(), groupId);
-
-      try {
-        activeLiveActivity.shutdownFromLiveActivityGroup(activeActivityGroup);
-      } catch (Throwable e) {
-        spaceEnvironment.getExtendedLog().formatError(e,
-            "Error while shutting down live activity %s as part of live activity group %s",
-            activeLiveActivity.getDisplayName(), groupId);
-      }
-    }
+    newSpaceOperationPlanner().perform(activeActivityGroup, SpaceOperation.SHUTDOWN);
   }
 
   /**
@@ -825,133 +816,153 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
    * @return the active space for the space
    */
   public ActiveSpace getActiveSpace(Space space) {
-    synchronized (activeSpaces) {
-      ActiveSpace aspace = activeSpaces.get(space.getId());
-
+    ActiveSpace aspace = activeSpaces.get(space.getId());
+    if (aspace == null) {
+      ActiveSpace newSpace = new ActiveSpace(space);
+      aspace = activeSpaces.putIfAbsent(space.getId(), newSpace);
       if (aspace == null) {
-        aspace = new ActiveSpace(space);
-        activeSpaces.put(space.getId(), aspace);
-      } else {
-        aspace.updateSpace(space);
+        return newSpace;
       }
-
-      return aspace;
     }
+
+    aspace.updateSpace(space);
+
+    return aspace;
   }
 
   @Override
   public void deploySpace(Space space) {
-    final Set<ActiveLiveActivity> deployedActivities = Sets.newHashSet();
-
-    SpaceWalker walker = new SpaceWalker() {
-      @Override
-      protected void doVisit(Space space) {
-        for (LiveActivityGroup activityGroup : space.getActivityGroups()) {
-          deployActiveLiveActivityGroupChecked(getActiveLiveActivityGroup(activityGroup), deployedActivities);
-        }
-      }
-    };
-
-    walker.walk(space);
+    performSpaceOperation(space, SpaceOperation.DEPLOY);
   }
 
   @Override
   public void configureSpace(Space space) {
-    final Set<ActiveLiveActivity> configuredActivities = Sets.newHashSet();
-
-    SpaceWalker walker = new SpaceWalker() {
-      @Override
-      protected void doVisit(Space space) {
-        for (LiveActivityGroup activityGroup : space.getActivityGroups()) {
-          configureActiveLiveActivityGroupChecked(getActiveLiveActivityGroup(activityGroup), configuredActivities);
-        }
-      }
-    };
-
-    walker.walk(space);
+    performSpaceOperation(space, SpaceOperation.CONFIGURE);
   }
 
   @Override
   public void startupSpace(Space space) {
-    SpaceWalker walker = new SpaceWalker() {
-      @Override
-      protected void doVisit(Space aspace) {
-        for (LiveActivityGroup activityGroup : aspace.getActivityGroups()) {
-          startupActiveActivityGroup(getActiveLiveActivityGroup(activityGroup));
-        }
-      }
-    };
-
-    walker.walk(space);
+    performSpaceOperation(space, SpaceOperation.STARTUP);
   }
 
   @Override
   public void shutdownSpace(Space space) {
-    SpaceWalker walker = new SpaceWalker() {
-      @Override
-      protected void doVisit(Space space) {
-        for (LiveActivityGroup activityGroup : space.getActivityGroups()) {
-          shutdownActiveActivityGroup(getActiveLiveActivityGroup(activityGroup));
-        }
-      }
-    };
-
-    walker.walk(space);
+    performSpaceOperation(space, SpaceOperation.SHUTDOWN);
   }
 
   @Override
   public void activateSpace(Space space) {
-    SpaceWalker walker = new SpaceWalker() {
-      @Override
-      protected void doVisit(Space space) {
-        for (LiveActivityGroup activityGroup : space.getActivityGroups()) {
-          activateActiveActivityGroup(getActiveLiveActivityGroup(activityGroup));
-        }
-      }
-    };
-
-    walker.walk(space);
+    performSpaceOperation(space, SpaceOperation.ACTIVATE);
   }
 
   @Override
   public void deactivateSpace(Space space) {
-    SpaceWalker walker = new SpaceWalker() {
-      @Override
-      protected void doVisit(Space space) {
-        for (LiveActivityGroup activityGroup : space.getActivityGroups()) {
-          deactivateActiveActivityGroup(getActiveLiveActivityGroup(activityGroup));
-        }
-      }
-    };
+    performSpaceOperation(space, SpaceOperation.DEACTIVATE);
+  }
 
-    walker.walk(space);
+  /**
+   * Perform an operation on all live activities in a space.
+   *
+   * <p>
+   * The live activities are grouped by their space controller, each controller gets its live activity requests in
+   * one batch, and several controllers are worked on at the same time.
+   *
+   * @param space
+   *          the space
+   * @param operation
+   *          the operation
+   *
+   * @return the results for each space controller
+   */
+  @VisibleForTesting
+  List<SpaceOperationPlanner.ControllerResult> performSpaceOperation(Space space, SpaceOperation operation) {
+    return newSpaceOperationPlanner().perform(space, operation);
+  }
+
+  /**
+   * Create a planner for space and live activity group operations.
+   *
+   * @return the planner
+   */
+  private SpaceOperationPlanner newSpaceOperationPlanner() {
+    int concurrency =
+        spaceEnvironment.getSystemConfiguration().getPropertyInteger(
+            MasterConfigurations.CONFIGURATION_NAME_SPACE_OPERATION_CONCURRENCY,
+            MasterConfigurations.CONFIGURATION_VALUE_DEFAULT_SPACE_OPERATION_CONCURRENCY);
+
+    return new SpaceOperationPlanner(this, remoteSpaceControllerClient, spaceEnvironment.getExecutorService(),
+        concurrency, spaceEnvironment.getExtendedLog());
+  }
+
+  /**
+   * Perform a step of a space operation on a live activity.
+   *
+   * <p>
+   * Any failure is passed on to the caller.
+   *
+   * @param operation
+   *          the operation
+   * @param activeLiveActivityGroup
+   *          the group the live activity is being operated on from
+   * @param activeLiveActivity
+   *          the live activity
+   */
+  void performSpaceOperationStep(SpaceOperation operation, ActiveLiveActivityGroup activeLiveActivityGroup,
+      ActiveLiveActivity activeLiveActivity) {
+    switch (operation) {
+      case DEPLOY:
+        attemptDeployActiveLiveActivity(activeLiveActivity);
+        break;
+
+      case CONFIGURE:
+        attemptConfigureActiveLiveActivity(activeLiveActivity);
+        break;
+
+      case STARTUP:
+        activeLiveActivity.startupFromLiveActivityGroup(activeLiveActivityGroup);
+        break;
+
+      case ACTIVATE:
+        activeLiveActivity.activateFromLiveActivityGroup(activeLiveActivityGroup);
+        break;
+
+      case DEACTIVATE:
+        activeLiveActivity.deactivateFromLiveActivityGroup(activeLiveActivityGroup);
+        break;
+
+      case SHUTDOWN:
+        activeLiveActivity.shutdownFromLiveActivityGroup(activeLiveActivityGroup);
+        break;
+
+      default:
+        throw new SimpleInteractiveSpacesException(String.format("Unknown space operation %s", operation));
+    }
   }
 
   @Override
   public ActiveSpaceController getActiveSpaceController(SpaceController spaceController) {
     String uuid = spaceController.getUuid();
-    synchronized (activeSpaceControllers) {
-      ActiveSpaceController activeController = activeSpaceControllers.get(uuid);
+    ActiveSpaceController activeController = activeSpaceControllers.get(uuid);
+    if (activeController == null) {
+      // Active space controller doesn't exist yet. Only one thread gets to add it.
+      ActiveSpaceController newController =
+          new ActiveSpaceController(spaceController, spaceEnvironment.getTimeProvider());
+      activeController = activeSpaceControllers.putIfAbsent(uuid, newController);
       if (activeController == null) {
-        // Active space controller doesn't exist yet.
-        activeController = new ActiveSpaceController(spaceController, spaceEnvironment.getTimeProvider());
-        activeSpaceControllers.put(spaceController.getUuid(), activeController);
-      } else {
-        activeController.updateController(spaceController);
+        return newController;
       }
-
-      return activeController;
     }
+
+    activeController.updateController(spaceController);
+
+    return activeController;
   }
 
   @Override
   public List<ActiveSpaceController> getActiveSpaceControllers(List<SpaceController> controllers) {
     List<ActiveSpaceController> results = Lists.newArrayList();
-
-    synchronized (activeSpaceControllers) {
-      for (SpaceController spaceController : controllers) {
-        results.add(getActiveSpaceController(spaceController));
-      }
+    for (SpaceController spaceController : controllers) {
+      results.add(getActiveSpaceController(spaceController));
     }
 
     return results;
@@ -959,51 +970,73 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
 
   @Override
   public ActiveLiveActivityGroup getActiveLiveActivityGroup(LiveActivityGroup liveActivityGroup) {
-    synchronized (activeLiveActivityGroups) {
-      ActiveLiveActivityGroup activeLiveActivityGroup = activeLiveActivityGroups.get(liveActivityGroup.getId());
+    String id = liveActivityGroup.getId();
+    ActiveLiveActivityGroup activeLiveActivityGroup = activeLiveActivityGroups.get(id);
+    if (activeLiveActivityGroup == null) {
+      ActiveLiveActivityGroup newGroup = new ActiveLiveActivityGroup(liveActivityGroup);
+      activeLiveActivityGroup = activeLiveActivityGroups.putIfAbsent(id, newGroup);
       if (activeLiveActivityGroup == null) {
-        activeLiveActivityGroup = new ActiveLiveActivityGroup(liveActivityGroup);
-        activeLiveActivityGroups.put(activeLiveActivityGroup.getActivityGroup().getId(), activeLiveActivityGroup);
-      } else {
-        activeLiveActivityGroup.updateLiveActivityGroup(liveActivityGroup);
+        return newGroup;
       }
-
-      return activeLiveActivityGroup;
     }
+
+    activeLiveActivityGroup.updateLiveActivityGroup(liveActivityGroup);
+
+    return activeLiveActivityGroup;
   }
 
   @Override
   public ActiveLiveActivity getActiveLiveActivity(LiveActivity activity) {
     String uuid = activity.getUuid();
-    synchronized (activeLiveActivities) {
-      ActiveLiveActivity active = activeLiveActivities.get(uuid);
+    ActiveLiveActivity active = activeLiveActivities.get(uuid);
+    if (active == null) {
+      // Active activity doesn't exist yet. Only one thread gets to add it.
+      SpaceController spaceController = activity.getController();
+      ActiveLiveActivity newActive =
+          new ActiveLiveActivity(getActiveSpaceController(spaceController), activity, remoteSpaceControllerClient,
+              spaceEnvironment.getTimeProvider());
+      active = activeLiveActivities.putIfAbsent(uuid, newActive);
       if (active == null) {
-        // Active activity doesn't exist yet.
-        SpaceController spaceController = activity.getController();
-        active =
-            new ActiveLiveActivity(getActiveSpaceController(spaceController), activity, remoteSpaceControllerClient,
-                spaceEnvironment.getTimeProvider());
-        activeLiveActivities.put(activity.getUuid(), active);
-        activeLiveActivitiesByController.put(spaceController.getId(), active);
-      } else {
-        active.updateLiveActivity(activity);
+        getControllerLiveActivities(spaceController.getUuid()).add(newActive);
+
+        return newActive;
       }
+    }
+
+    active.updateLiveActivity(activity);
+
+    return active;
+  }
 
-      return active;
+  /**
+   * Get the set of active live activities for a space controller, creating it if necessary.
+   *
+   * @param controllerUuid
+   *          the UUID of the space controller
+   *
+   * @return the set of active live activities on the controller
+   */
+  private Set<ActiveLiveActivity> getControllerLiveActivities(String controllerUuid) {
+    Set<ActiveLiveActivity> controllerLiveActivities = activeLiveActivitiesByController.get(controllerUuid);
+    if (controllerLiveActivities == null) {
+      Set<ActiveLiveActivity> newLiveActivities = Sets.newConcurrentHashSet();
+      controllerLiveActivities = activeLiveActivitiesByController.putIfAbsent(controllerUuid, newLiveActivities);
+      if (controllerLiveActivities == null) {
+        controllerLiveActivities = newLiveActivities;
+      }
     }
+
+    return controllerLiveActivities;
   }
 
   @Override
   public List<ActiveLiveActivity> getActiveLiveActivities(List<LiveActivity> iactivities) {
-    List<ActiveLiveActivity> activeLiveActivities = Lists.newArrayList();
-
-    synchronized (activeLiveActivities) {
-      for (LiveActivity iactivity : iactivities) {
-        activeLiveActivities.add(getActiveLiveActivity(iactivity));
-      }
+    List<ActiveLiveActivity> results = Lists.newArrayList();
+    for (LiveActivity iactivity : iactivities) {
+      results.add(getActiveLiveActivity(iactivity));
     }
 
-    return activeLiveActivities;
+    return results;
   }
 
   /**
@@ -1016,9 +1049,7 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
    */
   @VisibleForTesting
   ActiveSpaceController getActiveControllerByUuid(String uuid) {
-    synchronized (activeSpaceControllers) {
-      return activeSpaceControllers.get(uuid);
-    }
+    return activeSpaceControllers.get(uuid);
   }
 
   /**
@@ -1030,9 +1061,7 @@ public class StandardActiveSpaceControllerManager implements InternalActiveSpace
    * @return the active activity associated with the UUID or {@code null} if none
    */
   ActiveLiveActivity getActiveActivityByUuid(String uuid) {
-    synchronized (activeLiveActivities) {
-      return activeLiveActivities.get(uuid);
-    }
+    return activeLiveActivities.get(uuid);
   }
 
   @Override
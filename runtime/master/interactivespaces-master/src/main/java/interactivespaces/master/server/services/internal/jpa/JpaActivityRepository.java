@@ -27,6 +27,7 @@ import interactivespaces.domain.basic.SpaceController;
 import interactivespaces.domain.basic.pojo.SimpleLiveActivity;
 import interactivespaces.domain.space.Space;
 import interactivespaces.expression.FilterExpression;
+import interactivespaces.expression.OgnlFilterExpression;
 import interactivespaces.master.server.services.ActivityRepository;
 import interactivespaces.master.server.services.BaseActivityRepository;
 import interactivespaces.master.server.services.internal.jpa.domain.JpaActivity;
@@ -53,6 +54,30 @@ import java.util.Map;
  */
 public class JpaActivityRepository extends BaseActivityRepository {
 
+  /**
+   * Translator for filters on activities.
+   */
+  private static final JpaFilterExpressionTranslator ACTIVITY_FILTER_TRANSLATOR = new JpaFilterExpressionTranslator(
+      "JpaActivity", "id", "identifyingName", "version", "name", "description", "bundleContentHash");
+
+  /**
+   * Translator for filters on live activities.
+   */
+  private static final JpaFilterExpressionTranslator LIVE_ACTIVITY_FILTER_TRANSLATOR =
+      new JpaFilterExpressionTranslator("JpaLiveActivity", "id", "uuid", "name", "description");
+
+  /**
+   * Translator for filters on live activity groups.
+   */
+  private static final JpaFilterExpressionTranslator LIVE_ACTIVITY_GROUP_FILTER_TRANSLATOR =
+      new JpaFilterExpressionTranslator("JpaLiveActivityGroup", "id", "name", "description");
+
+  /**
+   * Translator for filters on spaces.
+   */
+  private static final JpaFilterExpressionTranslator SPACE_FILTER_TRANSLATOR = new JpaFilterExpressionTranslator(
+      "JpaSpace", "id", "name", "description");
+
   /**
    * The UUID generator to use.
    */
@@ -91,18 +116,7 @@ public class JpaActivityRepository extends BaseActivityRepository {
 
   @Override
   public List<Activity> getActivities(FilterExpression filter) {
-    @SuppressWarnings("unchecked")
-    List<Activity> activities = template.findByNamedQuery("activityAll");
-
-    List<Activity> results = Lists.newArrayList();
-
-    for (Activity activity : activities) {
-      if (filter.accept(activity)) {
-        results.add(activity);
-      }
-    }
-
-    return results;
+    return getFilteredEntities(filter, "activityAll", ACTIVITY_FILTER_TRANSLATOR);
   }
 
   @Override
@@ -179,18 +193,7 @@ public class JpaActivityRepository extends BaseActivityRepository {
 
   @Override
   public List<LiveActivity> getLiveActivities(FilterExpression filter) {
-    @SuppressWarnings("unchecked")
-    List<LiveActivity> activities = template.findByNamedQuery("liveActivityAll");
-
-    List<LiveActivity> results = Lists.newArrayList();
-
-    for (LiveActivity activity : activities) {
-      if (filter.accept(activity)) {
-        results.add(activity);
-      }
-    }
-
-    return results;
+    return getFilteredEntities(filter, "liveActivityAll", LIVE_ACTIVITY_FILTER_TRANSLATOR);
   }
 
   @Override
@@ -281,18 +284,7 @@ public class JpaActivityRepository extends BaseActivityRepository {
 
   @Override
   public List<LiveActivityGroup> getLiveActivityGroups(FilterExpression filter) {
-    @SuppressWarnings("unchecked")
-    List<LiveActivityGroup> groups = template.findByNamedQuery("liveActivityGroupAll");
-
-    List<LiveActivityGroup> results = Lists.newArrayList();
-
-    for (LiveActivityGroup group : groups) {
-      if (filter.accept(group)) {
-        results.add(group);
-      }
-    }
-
-    return results;
+    return getFilteredEntities(filter, "liveActivityGroupAll", LIVE_ACTIVITY_GROUP_FILTER_TRANSLATOR);
   }
 
   @Override
@@ -353,17 +345,7 @@ public class JpaActivityRepository extends BaseActivityRepository {
 
   @Override
   public List<Space> getSpaces(FilterExpression filter) {
-    @SuppressWarnings("unchecked")
-    List<Space> spaces = template.findByNamedQuery("spaceAll");
-
-    List<Space> results = Lists.newArrayList();
-
-    for (Space space : spaces) {
-      if (filter.accept(space)) {
-        results.add(space);
-      }
-    }
-    return results;
+    return getFilteredEntities(filter, "spaceAll", SPACE_FILTER_TRANSLATOR);
   }
 
   @Override
@@ -432,6 +414,52 @@ public class JpaActivityRepository extends BaseActivityRepository {
     }
   }
 
+  /**
+   * Get all entities of a type which pass a filter.
+   *
+   * <p>
+   * When the filter can be translated into a query only the entities matching it are loaded from the database,
+   * otherwise all of them are. Either way the filter is applied to every entity loaded.
+   *
+   * @param filter
+   *          the filter
+   * @param allQueryName
+   *          the name of the query for all entities of the type
+   * @param translator
+   *          the filter translator for the type
+   * @param <T>
+   *          the type of the entities
+   *
+   * @return the entities which pass the filter
+   */
+  private <T> List<T> getFilteredEntities(FilterExpression filter, String allQueryName,
+      JpaFilterExpressionTranslator translator) {
+    List<T> candidates = null;
+    if (filter instanceof OgnlFilterExpression) {
+      Map<String, Object> params = Maps.newHashMap();
+      String query = translator.translate(((OgnlFilterExpression) filter).getExpression(), params);
+      if (query != null) {
+        @SuppressWarnings("unchecked")
+        List<T> matches = template.findByNamedParams(query, params);
+        candidates = matches;
+      }
+    }
+    if (candidates == null) {
+      @SuppressWarnings("unchecked")
+      List<T> all = template.findByNamedQuery(allQueryName);
+      candidates = all;
+    }
+
+    List<T> results = Lists.newArrayList();
+    for (T candidate : candidates) {
+      if (filter.accept(candidate)) {
+        results.add(candidate);
+      }
+    }
+
+    return results;
+  }
+
   /**
    * @param uuidGenerator
    *          the uuidGenerator to set
@@ -0,0 +1,694 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.master.server.services.internal.jpa;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Translates the common subset of OGNL filter expressions into JPQL queries for an entity.
+ *
+ * <p>
+ * The subset understood is
+ *
+ * <ul>
+ * <li>{@code ==}, {@code eq}, {@code !=} and {@code neq} between a property and a string literal or {@code null}</li>
+ * <li>properties which are columns of the entity, e.g. {@code name}</li>
+ * <li>metadata lookups, e.g. {@code metadata.location} or {@code metadata['screen-id']}</li>
+ * <li>{@code &&}, {@code and}, {@code ||}, {@code or}, and {@code !} or {@code not} in front of parentheses</li>
+ * </ul>
+ *
+ * <p>
+ * Anything else makes the expression untranslatable and the caller should load all entities and filter them in memory.
+ * Strings are compared the way the database compares them, so the results of a translated query should still be given
+ * to the filter.
+ *
+ * @author Keith M. Hughes
+ */
+public class JpaFilterExpressionTranslator {
+
+  /**
+   * The property holding the metadata of an entity.
+   */
+  public static final String PROPERTY_METADATA = "metadata";
+
+  /**
+   * The alias of the entity in the generated queries.
+   */
+  private static final String ENTITY_ALIAS = "e";
+
+  /**
+   * Words OGNL reserves, which are never treated as property names or metadata keys.
+   */
+  private static final Set<String> OGNL_KEYWORDS = ImmutableSet.of("and", "or", "not", "eq", "neq", "lt", "lte", "gt",
+      "gte", "in", "instanceof", "shl", "shr", "ushr", "band", "bor", "xor", "null", "true", "false", "new");
+
+  /**
+   * Names OGNL treats as properties of a map rather than keys.
+   */
+  private static final Set<String> MAP_PROPERTY_NAMES = ImmutableSet.of("size", "isEmpty", "keys", "values",
+      "class");
+
+  /**
+   * The JPQL name of the entity.
+   */
+  private final String entityName;
+
+  /**
+   * The properties of the entity which are plain string columns.
+   */
+  private final Set<String> propertyNames;
+
+  /**
+   * Construct a new translator.
+   *
+   * @param entityName
+   *          the JPQL name of the entity, which must have a {@code metadata} collection of name/value items
+   * @param propertyNames
+   *          the properties of the entity which are plain string columns
+   */
+  public JpaFilterExpressionTranslator(String entityName, String... propertyNames) {
+    this.entityName = entityName;
+    this.propertyNames = ImmutableSet.copyOf(propertyNames);
+  }
+
+  /**
+   * Translate a filter expression into a query.
+   *
+   * @param expression
+   *          the OGNL filter expression
+   * @param parameters
+   *          the map to put the named parameters of the query into
+   *
+   * @return the JPQL query, or {@code null} if the expression can't be translated
+   */
+  public String translate(String expression, Map<String, Object> parameters) {
+    if (expression == null) {
+      return null;
+    }
+
+    try {
+      Translation translation = new Translation(tokenize(expression), parameters);
+      String condition = translation.parseOr();
+      if (translation.hasMoreTokens()) {
+        throw new UntranslatableException();
+      }
+
+      return String.format("select %s from %s %s where %s", ENTITY_ALIAS, entityName, ENTITY_ALIAS, condition);
+    } catch (UntranslatableException e) {
+      parameters.clear();
+
+      return null;
+    }
+  }
+
+  /**
+   * Split an expression into tokens.
+   *
+   * @param expression
+   *          the expression
+   *
+   * @return the tokens
+   *
+   * @throws UntranslatableException
+   *           the expression contains something outside of the understood subset
+   */
+  private List<Token> tokenize(String expression) throws UntranslatableException {
+    List<Token> tokens = Lists.newArrayList();
+
+    int length = expression.length();
+    int i = 0;
+    while (i < length) {
+      char c = expression.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (Character.isJavaIdentifierStart(c)) {
+        int start = i;
+        while (i < length && Character.isJavaIdentifierPart(expression.charAt(i))) {
+          i++;
+        }
+        tokens.add(new Token(TokenType.IDENTIFIER, expression.substring(start, i)));
+      } else if (c == '\'' || c == '"') {
+        int end = expression.indexOf(c, i + 1);
+        if (end < 0) {
+          throw new UntranslatableException();
+        }
+        String value = expression.substring(i + 1, end);
+        // Escapes aren't worth handling, and OGNL reads a single character in single quotes as a char.
+        if (value.indexOf('\\') >= 0 || (c == '\'' && value.length() == 1)) {
+          throw new UntranslatableException();
+        }
+        tokens.add(new Token(TokenType.STRING, value));
+        i = end + 1;
+      } else {
+        String symbol = getSymbol(expression, i);
+        tokens.add(new Token(TokenType.SYMBOL, symbol));
+        i += symbol.length();
+      }
+    }
+
+    return tokens;
+  }
+
+  /**
+   * Get the symbol starting at a position in an expression.
+   *
+   * @param expression
+   *          the expression
+   * @param position
+   *          the position of the symbol
+   *
+   * @return the symbol
+   *
+   * @throws UntranslatableException
+   *           there is no understood symbol at the position
+   */
+  private String getSymbol(String expression, int position) throws UntranslatableException {
+    for (String symbol : new String[] { "==", "!=", "&&", "||" }) {
+      if (expression.startsWith(symbol, position)) {
+        return symbol;
+      }
+    }
+
+    char c = expression.charAt(position);
+    if ("!().[]".indexOf(c) >= 0) {
+      return String.valueOf(c);
+    }
+
+    throw new UntranslatableException();
+  }
+
+  /**
+   * The state of a single translation.
+   *
+   * @author Keith M. Hughes
+   */
+  private final class Translation {
+
+    /**
+     * The tokens of the expression.
+     */
+    private final List<Token> tokens;
+
+    /**
+     * The parameters of the query being built.
+     */
+    private final Map<String, Object> parameters;
+
+    /**
+     * The position of the next token.
+     */
+    private int position;
+
+    /**
+     * The number of metadata subqueries generated so far.
+     */
+    private int numberSubqueries;
+
+    /**
+     * Construct a new translation.
+     *
+     * @param tokens
+     *          the tokens of the expression
+     * @param parameters
+     *          the parameters of the query being built
+     */
+    public Translation(List<Token> tokens, Map<String, Object> parameters) {
+      this.tokens = tokens;
+      this.parameters = parameters;
+    }
+
+    /**
+     * Are there tokens left?
+     *
+     * @return {@code true} if not all tokens were used
+     */
+    public boolean hasMoreTokens() {
+      return position < tokens.size();
+    }
+
+    /**
+     * Parse a disjunction.
+     *
+     * @return the JPQL condition
+     *
+     * @throws UntranslatableException
+     *           the expression can't be translated
+     */
+    public String parseOr() throws UntranslatableException {
+      String condition = parseAnd();
+      while (accept("||", "or")) {
+        condition = String.format("(%s or %s)", condition, parseAnd());
+      }
+
+      return condition;
+    }
+
+    /**
+     * Parse a conjunction.
+     *
+     * @return the JPQL condition
+     *
+     * @throws UntranslatableException
+     *           the expression can't be translated
+     */
+    private String parseAnd() throws UntranslatableException {
+      String condition = parseNot();
+      while (accept("&&", "and")) {
+        condition = String.format("(%s and %s)", condition, parseNot());
+      }
+
+      return condition;
+    }
+
+    /**
+     * Parse a negation, a parenthesized expression or a comparison.
+     *
+     * @return the JPQL condition
+     *
+     * @throws UntranslatableException
+     *           the expression can't be translated
+     */
+    private String parseNot() throws UntranslatableException {
+      if (accept("!", "not")) {
+        // OGNL binds a negation tighter than a comparison, so only a parenthesized operand negates a condition.
+        if (!peek("(") && !peek("!") && !peek("not")) {
+          throw new UntranslatableException();
+        }
+
+        return String.format("not (%s)", parseNot());
+      }
+
+      if (accept("(")) {
+        String condition = parseOr();
+        expect(")");
+
+        return String.format("(%s)", condition);
+      }
+
+      return parseComparison();
+    }
+
+    /**
+     * Parse a comparison between a property and a literal.
+     *
+     * @return the JPQL condition
+     *
+     * @throws UntranslatableException
+     *           the expression can't be translated
+     */
+    private String parseComparison() throws UntranslatableException {
+      Operand left = parseOperand();
+      boolean equal;
+      if (accept("==", "eq")) {
+        equal = true;
+      } else if (accept("!=", "neq")) {
+        equal = false;
+      } else {
+        throw new UntranslatableException();
+      }
+      Operand right = parseOperand();
+
+      Operand property;
+      Operand literal;
+      if (left.isProperty() && !right.isProperty()) {
+        property = left;
+        literal = right;
+      } else if (!left.isProperty() && right.isProperty()) {
+        property = right;
+        literal = left;
+      } else {
+        throw new UntranslatableException();
+      }
+
+      String condition;
+      if (property.metadataKey != null) {
+        condition = getMetadataCondition(property.metadataKey, literal.value);
+      } else {
+        condition = getPropertyCondition(property.propertyName, literal.value);
+      }
+
+      return equal ? condition : String.format("not (%s)", condition);
+    }
+
+    /**
+     * Get the condition for a property of the entity being equal to a value.
+     *
+     * <p>
+     * The condition is never unknown, even for {@code null} columns, so that it negates the way OGNL expects.
+     *
+     * @param propertyName
+     *          the name of the property
+     * @param value
+     *          the value, {@code null} if testing for no value
+     *
+     * @return the JPQL condition
+     */
+    private String getPropertyCondition(String propertyName, String value) {
+      String column = String.format("%s.%s", ENTITY_ALIAS, propertyName);
+      if (value == null) {
+        return String.format("(%s is null)", column);
+      }
+
+      return String.format("(%s is not null and %s = :%s)", column, column, addParameter(value));
+    }
+
+    /**
+     * Get the condition for a metadata item of the entity being equal to a value.
+     *
+     * @param key
+     *          the key of the metadata item
+     * @param value
+     *          the value, {@code null} if testing for no value
+     *
+     * @return the JPQL condition
+     */
+    private String getMetadataCondition(String key, String value) {
+      int subquery = numberSubqueries++;
+      String owner = "o" + subquery;
+      String item = "m" + subquery;
+
+      StringBuilder condition =
+          new StringBuilder().append(String.format("exists (select %s from %s %s join %s.%s %s where %s.id = %s.id",
+              item, entityName, owner, owner, PROPERTY_METADATA, item, owner, ENTITY_ALIAS));
+      condition.append(String.format(" and %s.name = :%s", item, addParameter(key)));
+      if (value != null) {
+        condition.append(String.format(" and %s.value = :%s", item, addParameter(value)));
+      }
+      condition.append(")");
+
+      // A missing item is the only way a metadata value can be null.
+      return (value != null) ? condition.toString() : String.format("not %s", condition);
+    }
+
+    /**
+     * Add a parameter to the query.
+     *
+     * @param value
+     *          the value of the parameter
+     *
+     * @return the name of the parameter
+     */
+    private String addParameter(String value) {
+      String name = "p" + parameters.size();
+      parameters.put(name, value);
+
+      return name;
+    }
+
+    /**
+     * Parse one side of a comparison.
+     *
+     * @return the operand
+     *
+     * @throws UntranslatableException
+     *           the expression can't be translated
+     */
+    private Operand parseOperand() throws UntranslatableException {
+      Token token = next();
+      if (token.type == TokenType.STRING) {
+        return Operand.newLiteral(token.text);
+      }
+      if (token.type != TokenType.IDENTIFIER) {
+        throw new UntranslatableException();
+      }
+      if ("null".equals(token.text)) {
+        return Operand.newLiteral(null);
+      }
+      if (OGNL_KEYWORDS.contains(token.text)) {
+        throw new UntranslatableException();
+      }
+
+      if (PROPERTY_METADATA.equals(token.text)) {
+        String key;
+        if (accept(".")) {
+          Token keyToken = next();
+          if (keyToken.type != TokenType.IDENTIFIER || OGNL_KEYWORDS.contains(keyToken.text)) {
+            throw new UntranslatableException();
+          }
+          key = keyToken.text;
+        } else if (accept("[")) {
+          Token keyToken = next();
+          if (keyToken.type != TokenType.STRING) {
+            throw new UntranslatableException();
+          }
+          key = keyToken.text;
+          expect("]");
+        } else {
+          throw new UntranslatableException();
+        }
+        if (MAP_PROPERTY_NAMES.contains(key) || peek(".") || peek("[") || peek("(")) {
+          throw new UntranslatableException();
+        }
+
+        return Operand.newMetadata(key);
+      }
+
+      if (!propertyNames.contains(token.text) || peek(".") || peek("[") || peek("(")) {
+        throw new UntranslatableException();
+      }
+
+      return Operand.newProperty(token.text);
+    }
+
+    /**
+     * Consume the next token if it is one of a set of symbols or words.
+     *
+     * @param texts
+     *          the symbols or words
+     *
+     * @return {@code true} if the token was consumed
+     */
+    private boolean accept(String... texts) {
+      for (String text : texts) {
+        if (peek(text)) {
+          position++;
+
+          return true;
+        }
+      }
+
+      return false;
+    }
+
+    /**
+     * Is the next token a given symbol or word?
+     *
+     * @param text
+     *          the symbol or word
+     *
+     * @return {@code true} if it is the next token
+     */
+    private boolean peek(String text) {
+      if (position < tokens.size()) {
+        Token token = tokens.get(position);
+
+        return token.type != TokenType.STRING && token.text.equals(text);
+      }
+
+      return false;
+    }
+
+    /**
+     * Consume a required symbol.
+     *
+     * @param text
+     *          the symbol
+     *
+     * @throws UntranslatableException
+     *           the next token is not the symbol
+     */
+    private void expect(String text) throws UntranslatableException {
+      if (!accept(text)) {
+        throw new UntranslatableException();
+      }
+    }
+
+    /**
+     * Consume the next token.
+     *
+     * @return the token
+     *
+     * @throws UntranslatableException
+     *           there are no tokens left
+     */
+    private Token next() throws UntranslatableException {
+      if (!hasMoreTokens()) {
+        throw new UntranslatableException();
+      }
+
+      return tokens.get(position++);
+    }
+  }
+
+  /**
+   * One side of a comparison.
+   *
+   * @author Keith M. Hughes
+   */
+  private static final class Operand {
+
+    /**
+     * Create a literal operand.
+     *
+     * @param value
+     *          the value, {@code null} for the null literal
+     *
+     * @return the operand
+     */
+    public static Operand newLiteral(String value) {
+      return new Operand(null, null, value);
+    }
+
+    /**
+     * Create an operand for a property of the entity.
+     *
+     * @param propertyName
+     *          the name of the property
+     *
+     * @return the operand
+     */
+    public static Operand newProperty(String propertyName) {
+      return new Operand(propertyName, null, null);
+    }
+
+    /**
+     * Create an operand for a metadata item of the entity.
+     *
+     * @param metadataKey
+     *          the key of the metadata item
+     *
+     * @return the operand
+     */
+    public static Operand newMetadata(String metadataKey) {
+      return new Operand(null, metadataKey, null);
+    }
+
+    /**
+     * The name of the property, {@code null} if not a property.
+     */
+    private final String propertyName;
+
+    /**
+     * The key of the metadata item, {@code null} if not a metadata item.
+     */
+    private final String metadataKey;
+
+    /**
+     * The value of a literal.
+     */
+    private final String value;
+
+    /**
+     * Construct a new operand.
+     *
+     * @param propertyName
+     *          the name of the property, {@code null} if not a property
+     * @param metadataKey
+     *          the key of the metadata item, {@code null} if not a metadata item
+     * @param value
+     *          the value of a literal
+     */
+    private Operand(String propertyName, String metadataKey, String value) {
+      this.propertyName = propertyName;
+      this.metadataKey = metadataKey;
+      this.value = value;
+    }
+
+    /**
+     * Is the operand a property or metadata item of the entity?
+     *
+     * @return {@code true} if not a literal
+     */
+    public boolean isProperty() {
+      return propertyName != null || metadataKey != null;
+    }
+  }
+
+  /**
+   * The types of tokens.
+   *
+   * @author Keith M. Hughes
+   */
+  private enum TokenType {
+
+    /**
+     * A name or word.
+     */
+    IDENTIFIER,
+
+    /**
+     * A quoted string.
+     */
+    STRING,
+
+    /**
+     * An operator or punctuation.
+     */
+    SYMBOL
+  }
+
+  /**
+   * A token of an expression.
+   *
+   * @author Keith M. Hughes
+   */
+  private static final class Token {
+
+    /**
+     * The type of the token.
+     */
+    private final TokenType type;
+
+    /**
+     * The text of the token, without quotes for strings.
+     */
+    private final String text;
+
+    /**
+     * Construct a new token.
+     *
+     * @param type
+     *          the type of the token
+     * @param text
+     *          the text of the token
+     */
+    public Token(TokenType type, String text) {
+      this.type = type;
+      this.text = text;
+    }
+  }
+
+  /**
+   * Thrown when an expression contains something the translator doesn't understand.
+   *
+   * @author Keith M. Hughes
+   */
+  private static final class UntranslatableException extends Exception {
+
+    /**
+     * Construct a new exception.
+     */
+    public UntranslatableException() {
+      super(null, null, false, false);
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package interactivespaces.master.server.services.internal.ros;
 
+import interactivespaces.InteractiveSpacesExceptionUtils;
 import interactivespaces.SimpleInteractiveSpacesException;
 import interactivespaces.activity.ActivityState;
 import interactivespaces.container.control.message.activity.LiveActivityDeleteRequest;
@@ -59,6 +60,8 @@ import interactivespaces_msgs.LiveActivityDeleteRequestMessage;
 import interactivespaces_msgs.LiveActivityDeleteResponseMessage;
 import interactivespaces_msgs.LiveActivityDeployRequestMessage;
 import interactivespaces_msgs.LiveActivityDeployResponseMessage;
+import interactivespaces_msgs.LiveActivityRuntimeBatchRequest;
+import interactivespaces_msgs.LiveActivityRuntimeBatchStatus;
 import interactivespaces_msgs.LiveActivityRuntimeRequest;
 import interactivespaces_msgs.LiveActivityRuntimeStatus;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -98,6 +101,12 @@ public class RosRemoteSpaceControllerClient implements RemoteSpaceControllerClie
    */
   private final Map<String, SpaceControllerCommunicator> controllerCommunicators = Maps.newHashMap();
 
+  /**
+   * The batch of live activity requests being collected on the current thread, if any.
+   */
+  private final ThreadLocal<LiveActivityRequestBatch> liveActivityRequestBatch =
+      new ThreadLocal<LiveActivityRequestBatch>();
+
   /**
    * Helps with listeners for activity events.
    */
@@ -148,6 +157,16 @@ public class RosRemoteSpaceControllerClient implements RemoteSpaceControllerClie
    */
   private MessageDeserializer<LiveActivityRuntimeStatus> liveActivityRuntimeStatusDeserializer;
 
+  /**
+   * Message serializer for live activity runtime batch requests.
+   */
+  private MessageSerializer<LiveActivityRuntimeBatchRequest> liveActivityRuntimeBatchRequestSerializer;
+
+  /**
+   * Message deserializer for live activity runtime batch statuses.
+   */
+  private MessageDeserializer<LiveActivityRuntimeBatchStatus> liveActivityRuntimeBatchStatusDeserializer;
+
   /**
    * ROS message serializer for a live activity deployment request.
    */
@@ -214,6 +233,12 @@ public class RosRemoteSpaceControllerClient implements RemoteSpaceControllerClie
     liveActivityRuntimeStatusDeserializer =
         messageSerializationFactory.newMessageDeserializer(LiveActivityRuntimeStatus._TYPE);
 
+    liveActivityRuntimeBatchRequestSerializer =
+        messageSerializationFactory.newMessageSerializer(LiveActivityRuntimeBatchRequest._TYPE);
+
+    liveActivityRuntimeBatchStatusDeserializer =
+        messageSerializationFactory.newMessageDeserializer(LiveActivityRuntimeBatchStatus._TYPE);
+
     liveActivityDeployRequestSerializer =
         messageSerializationFactory.newMessageSerializer(LiveActivityDeployRequestMessage._TYPE);
 
@@ -452,6 +477,53 @@ public class RosRemoteSpaceControllerClient implements RemoteSpaceControllerClie
     sendLiveActivityRuntimeRequest(activity, LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_CLEAN_DATA_TMP, null);
   }
 
+  @Override
+  public void beginLiveActivityBatch(ActiveSpaceController controller) {
+    LiveActivityRequestBatch batch = liveActivityRequestBatch.get();
+    if (batch != null) {
+      throw SimpleInteractiveSpacesException.newFormattedException(
+          "A live activity batch for space controller %s is already in progress on this thread",
+          batch.controller.getDisplayName());
+    }
+
+    LiveActivityRuntimeBatchRequest request = rosMessageFactory.newFromType(LiveActivityRuntimeBatchRequest._TYPE);
+    liveActivityRequestBatch.set(new LiveActivityRequestBatch(controller, request));
+  }
+
+  @Override
+  public void endLiveActivityBatch(ActiveSpaceController controller) {
+    LiveActivityRequestBatch batch = liveActivityRequestBatch.get();
+    if (batch == null || batch.controller != controller) {
+      return;
+    }
+    liveActivityRequestBatch.remove();
+
+    List<LiveActivityRuntimeRequest> requests = batch.request.getRequests();
+    if (requests.isEmpty()) {
+      return;
+    }
+
+    try {
+      if (requests.size() == 1) {
+        sendSpaceControllerRequest(controller, ControllerRequest.OPERATION_CONTROLLER_LIVE_ACTIVITY_RUNTIME_REQUEST,
+            liveActivityRuntimeRequestSerializer.serialize(requests.get(0)));
+      } else {
+        sendSpaceControllerRequest(controller,
+            ControllerRequest.OPERATION_CONTROLLER_LIVE_ACTIVITY_RUNTIME_BATCH_REQUEST,
+            liveActivityRuntimeBatchRequestSerializer.serialize(batch.request));
+      }
+    } catch (RuntimeException e) {
+      // None of the requests made it, so the state of the live activities is no longer known.
+      String detail = InteractiveSpacesExceptionUtils.getExceptionDetail(e);
+      for (LiveActivityRuntimeRequest request : requests) {
+        remoteControllerClientListeners.signalActivityStateChange(request.getLiveActivityUuid(),
+            ActivityState.UNKNOWN, detail);
+      }
+
+      throw e;
+    }
+  }
+
   @Override
   public RemoteSpaceControllerClientListenerCollection registerRemoteActivityDeploymentManager(
       RemoteActivityDeploymentManager remoteActivityDeploymentManager) {
@@ -505,7 +577,7 @@ public class RosRemoteSpaceControllerClient implements RemoteSpaceControllerClie
    * Send an activity runtime request to a controller.
    *
    * <p>
-   * The request is sent asynchronously.
+   * The request is sent asynchronously. It is held back if the calling thread has a batch open for the controller.
    *
    * @param activity
    *          the activity the request is being sent to
@@ -524,6 +596,13 @@ public class RosRemoteSpaceControllerClient implements RemoteSpaceControllerClie
 
     request.setOperation(operation);
 
+    LiveActivityRequestBatch batch = liveActivityRequestBatch.get();
+    if (batch != null && batch.controller == activity.getActiveController()) {
+      batch.request.getRequests().add(request);
+
+      return;
+    }
+
     sendSpaceControllerRequest(activity.getActiveController(),
         ControllerRequest.OPERATION_CONTROLLER_LIVE_ACTIVITY_RUNTIME_REQUEST,
         liveActivityRuntimeRequestSerializer.serialize(request));
@@ -574,6 +653,19 @@ public class RosRemoteSpaceControllerClient implements RemoteSpaceControllerClie
 
         break;
 
+      case ControllerStatus.STATUS_CONTROLLER_LIVE_ACTIVITY_RUNTIME_BATCH_STATUS:
+        LiveActivityRuntimeBatchStatus batchStatus =
+            liveActivityRuntimeBatchStatusDeserializer.deserialize(status.getPayload());
+        if (log.isDebugEnabled()) {
+          log.debug(String.format("Live activity batch status %s, %d activities", status.getControllerUuid(),
+              batchStatus.getLiveActivityStatuses().size()));
+        }
+        for (LiveActivityRuntimeStatus batchItemStatus : batchStatus.getLiveActivityStatuses()) {
+          handleRemoteLiveActivityStatusUpdate(batchItemStatus);
+        }
+
+        break;
+
       case ControllerStatus.STATUS_CONTROLLER_ACTIVITY_INSTALL:
         LiveActivityDeployResponseMessage deployResponse =
             liveActivityDeployResponseDeserializer.deserialize(status.getPayload());
@@ -948,4 +1040,35 @@ public class RosRemoteSpaceControllerClient implements RemoteSpaceControllerClie
       }
     }
   }
+
+  /**
+   * A batch of live activity requests for a controller.
+   *
+   * @author Keith M. Hughes
+   */
+  private static class LiveActivityRequestBatch {
+
+    /**
+     * The controller the batch is for.
+     */
+    private final ActiveSpaceController controller;
+
+    /**
+     * The request holding the batched live activity requests.
+     */
+    private final LiveActivityRuntimeBatchRequest request;
+
+    /**
+     * Construct a new batch.
+     *
+     * @param controller
+     *          the controller the batch is for
+     * @param request
+     *          the request holding the batched live activity requests
+     */
+    public LiveActivityRequestBatch(ActiveSpaceController controller, LiveActivityRuntimeBatchRequest request) {
+      this.controller = controller;
+      this.request = request;
+    }
+  }
 }
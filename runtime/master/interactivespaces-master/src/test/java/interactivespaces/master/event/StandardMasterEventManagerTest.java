@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.master.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import interactivespaces.activity.ActivityState;
+import interactivespaces.configuration.Configuration;
+import interactivespaces.master.server.services.ActiveLiveActivity;
+import interactivespaces.master.server.services.ActiveSpaceController;
+import interactivespaces.master.server.services.MasterConfigurations;
+import interactivespaces.system.InteractiveSpacesEnvironment;
+
+import com.google.common.collect.Lists;
+
+import org.apache.commons.logging.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the {@link StandardMasterEventManager}.
+ *
+ * @author Keith M. Hughes
+ */
+public class StandardMasterEventManagerTest {
+
+  private StandardMasterEventManager masterEventManager;
+  private ScheduledExecutorService executorService;
+  private Log log;
+
+  private ActiveSpaceController controller;
+  private ActiveLiveActivity liveActivity1;
+  private ActiveLiveActivity liveActivity2;
+
+  @Before
+  public void setup() {
+    executorService = Executors.newScheduledThreadPool(2);
+    log = Mockito.mock(Log.class);
+
+    Configuration configuration = Mockito.mock(Configuration.class);
+    Mockito.when(
+        configuration.getPropertyBoolean(MasterConfigurations.CONFIGURATION_NAME_EVENT_DISPATCH_ASYNCHRONOUS,
+            MasterConfigurations.CONFIGURATION_VALUE_DEFAULT_EVENT_DISPATCH_ASYNCHRONOUS)).thenReturn(true);
+    Mockito.when(
+        configuration.getPropertyInteger(MasterConfigurations.CONFIGURATION_NAME_EVENT_DISPATCH_QUEUE_CAPACITY,
+            MasterConfigurations.CONFIGURATION_VALUE_DEFAULT_EVENT_DISPATCH_QUEUE_CAPACITY)).thenReturn(3);
+
+    InteractiveSpacesEnvironment spaceEnvironment = Mockito.mock(InteractiveSpacesEnvironment.class);
+    Mockito.when(spaceEnvironment.getSystemConfiguration()).thenReturn(configuration);
+    Mockito.when(spaceEnvironment.getExecutorService()).thenReturn(executorService);
+
+    masterEventManager = new StandardMasterEventManager();
+    masterEventManager.setSpaceEnvironment(spaceEnvironment);
+    masterEventManager.setLog(log);
+
+    controller = Mockito.mock(ActiveSpaceController.class);
+    liveActivity1 = Mockito.mock(ActiveLiveActivity.class);
+    liveActivity2 = Mockito.mock(ActiveLiveActivity.class);
+  }
+
+  @After
+  public void cleanup() {
+    masterEventManager.shutdown();
+    executorService.shutdownNow();
+  }
+
+  /**
+   * Events are delivered on the signaling thread until the manager is started.
+   */
+  @Test
+  public void testSynchronousBeforeStartup() {
+    RecordingListener listener = new RecordingListener(null);
+    masterEventManager.addListener(listener);
+
+    masterEventManager.signalLiveActivityRuntimeStateChange(liveActivity1, ActivityState.READY,
+        ActivityState.STARTUP_ATTEMPT);
+
+    assertEquals(Lists.newArrayList(ActivityState.READY, ActivityState.STARTUP_ATTEMPT), listener.states);
+    assertEquals(1, masterEventManager.getListenerMetrics().get(0).getDeliveredCount());
+  }
+
+  /**
+   * State changes waiting for a busy listener are merged, other listeners are not held up until the queue of the busy
+   * listener is full, and then the signaling thread waits rather than dropping events.
+   */
+  @Test
+  public void testBusyListener() throws Exception {
+    masterEventManager.startup();
+
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingListener slowListener = new RecordingListener(release);
+    RecordingListener fastListener = new RecordingListener(null);
+    masterEventManager.addListener(slowListener);
+    masterEventManager.addListener(fastListener);
+
+    // The slow listener is stuck on the first heartbeat while the rest arrive.
+    masterEventManager.signalSpaceControllerHeartbeat(controller, 1);
+    assertTrue(slowListener.heartbeatStarted.await(5, TimeUnit.SECONDS));
+
+    masterEventManager.signalLiveActivityRuntimeStateChange(liveActivity1, ActivityState.READY,
+        ActivityState.STARTUP_ATTEMPT);
+    masterEventManager.signalLiveActivityRuntimeStateChange(liveActivity1, ActivityState.STARTUP_ATTEMPT,
+        ActivityState.RUNNING);
+    masterEventManager.signalLiveActivityRuntimeStateChange(liveActivity1, ActivityState.RUNNING,
+        ActivityState.ACTIVE);
+    masterEventManager.signalLiveActivityRuntimeStateChange(liveActivity2, ActivityState.READY,
+        ActivityState.STARTUP_ATTEMPT);
+
+    MasterEventListenerMetrics slowMetrics = masterEventManager.getListenerMetrics().get(0);
+    MasterEventListenerMetrics fastMetrics = masterEventManager.getListenerMetrics().get(1);
+    // The fast listener can also have state changes merged, depending on how quickly it keeps up. It catches up before
+    // the heartbeats so its own queue never fills.
+    waitForDeliveries(fastMetrics, 5 - fastMetrics.getCoalescedCount());
+
+    masterEventManager.signalSpaceControllerHeartbeat(controller, 2);
+    waitForDeliveries(fastMetrics, 6 - fastMetrics.getCoalescedCount());
+    assertEquals(3, slowMetrics.getQueueSize());
+
+    // The slow listener's queue is full, so the next heartbeat waits for room.
+    Thread signaler = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        masterEventManager.signalSpaceControllerHeartbeat(controller, 3);
+      }
+    });
+    signaler.start();
+    signaler.join(200);
+    assertTrue(signaler.isAlive());
+    assertEquals(Lists.newArrayList(1L, 2L), fastListener.heartbeats);
+
+    release.countDown();
+    signaler.join(5000);
+    waitForDeliveries(slowMetrics, 5);
+    waitForDeliveries(fastMetrics, 7 - fastMetrics.getCoalescedCount());
+
+    assertEquals(Lists.newArrayList(ActivityState.READY, ActivityState.ACTIVE, ActivityState.READY,
+        ActivityState.STARTUP_ATTEMPT), slowListener.states);
+    assertEquals(Lists.newArrayList(1L, 2L, 3L), slowListener.heartbeats);
+    assertEquals(2, slowMetrics.getCoalescedCount());
+    assertEquals(0, slowMetrics.getDropCount());
+    assertEquals(0, slowMetrics.getQueueSize());
+    assertTrue(slowMetrics.getLagTimes().getMaximum() > 0);
+
+    assertEquals(0, fastMetrics.getDropCount());
+    assertEquals(Lists.newArrayList(1L, 2L, 3L), fastListener.heartbeats);
+  }
+
+  /**
+   * Wait for a listener to have been given a number of events.
+   *
+   * @param metrics
+   *          the metrics for the listener
+   * @param count
+   *          the number of events
+   *
+   * @throws InterruptedException
+   *           the wait was interrupted
+   */
+  private void waitForDeliveries(MasterEventListenerMetrics metrics, long count) throws InterruptedException {
+    long endTime = System.currentTimeMillis() + 5000;
+    while (metrics.getDeliveredCount() < count && System.currentTimeMillis() < endTime) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, metrics.getDeliveredCount());
+  }
+
+  /**
+   * A listener which records heartbeats and state changes.
+   *
+   * @author Keith M. Hughes
+   */
+  private static class RecordingListener extends BaseMasterEventListener {
+
+    /**
+     * The heartbeat timestamps seen.
+     */
+    private final List<Long> heartbeats = Collections.synchronizedList(Lists.<Long> newArrayList());
+
+    /**
+     * The old and new states of every state change seen.
+     */
+    private final List<ActivityState> states = Collections.synchronizedList(Lists.<ActivityState> newArrayList());
+
+    /**
+     * Counted down when the first heartbeat arrives.
+     */
+    private final CountDownLatch heartbeatStarted = new CountDownLatch(1);
+
+    /**
+     * The latch the first heartbeat waits on, {@code null} if it doesn't wait.
+     */
+    private final CountDownLatch release;
+
+    /**
+     * Construct a new listener.
+     *
+     * @param release
+     *          the latch the first heartbeat waits on, {@code null} if it doesn't wait
+     */
+    public RecordingListener(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public void onSpaceControllerHeartbeat(ActiveSpaceController controller, long timestamp) {
+      heartbeats.add(timestamp);
+      heartbeatStarted.countDown();
+      if (release != null) {
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    @Override
+    public void onLiveActivityStateChange(ActiveLiveActivity liveActivity, ActivityState oldState,
+        ActivityState newState) {
+      states.add(oldState);
+      states.add(newState);
+    }
+  }
+}
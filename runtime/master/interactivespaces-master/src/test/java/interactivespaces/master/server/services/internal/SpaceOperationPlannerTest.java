@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.master.server.services.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import interactivespaces.SimpleInteractiveSpacesException;
+import interactivespaces.configuration.Configuration;
+import interactivespaces.domain.basic.LiveActivityGroup;
+import interactivespaces.domain.basic.SpaceController;
+import interactivespaces.domain.basic.pojo.SimpleLiveActivityGroup;
+import interactivespaces.domain.basic.pojo.SimpleSpaceController;
+import interactivespaces.domain.space.Space;
+import interactivespaces.logging.ExtendedLog;
+import interactivespaces.master.server.services.ActiveLiveActivity;
+import interactivespaces.master.server.services.ActiveSpaceController;
+import interactivespaces.master.server.services.MasterConfigurations;
+import interactivespaces.master.server.services.RemoteSpaceControllerClient;
+import interactivespaces.system.InteractiveSpacesEnvironment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Tests for the {@link SpaceOperationPlanner}.
+ *
+ * @author Keith M. Hughes
+ */
+public class SpaceOperationPlannerTest extends BaseSpaceTest {
+
+  private StandardActiveSpaceControllerManager activeControllerManager;
+  private ScheduledExecutorService executorService;
+
+  private SpaceController otherController;
+  private Space space;
+
+  @Before
+  public void setup() {
+    baseSetup();
+
+    remoteControllerClient = Mockito.mock(RemoteSpaceControllerClient.class);
+    executorService = Executors.newScheduledThreadPool(2);
+
+    Configuration configuration = Mockito.mock(Configuration.class);
+    Mockito.when(
+        configuration.getPropertyInteger(MasterConfigurations.CONFIGURATION_NAME_SPACE_OPERATION_CONCURRENCY,
+            MasterConfigurations.CONFIGURATION_VALUE_DEFAULT_SPACE_OPERATION_CONCURRENCY)).thenReturn(2);
+
+    InteractiveSpacesEnvironment spaceEnvironment = Mockito.mock(InteractiveSpacesEnvironment.class);
+    Mockito.when(spaceEnvironment.getTimeProvider()).thenReturn(timeProvider);
+    Mockito.when(spaceEnvironment.getExtendedLog()).thenReturn(Mockito.mock(ExtendedLog.class));
+    Mockito.when(spaceEnvironment.getSystemConfiguration()).thenReturn(configuration);
+    Mockito.when(spaceEnvironment.getExecutorService()).thenReturn(executorService);
+
+    activeControllerManager = new StandardActiveSpaceControllerManager();
+    activeControllerManager.setSpaceEnvironment(spaceEnvironment);
+    activeControllerManager.setRemoteSpaceControllerClient(remoteControllerClient);
+
+    otherController = new SimpleSpaceController();
+    otherController.setUuid("987-65-4321");
+    liveActivity(3).setController(otherController);
+
+    // Live activity 3 is on the other controller and in both groups.
+    space = space(0, group("group1", 1, 3)).addSpaces(space(1, group("group2", 2, 3)));
+  }
+
+  @After
+  public void cleanup() {
+    executorService.shutdownNow();
+  }
+
+  /**
+   * Steps are grouped by controller, and only repeated for a live activity when the operation counts groups.
+   */
+  @Test
+  public void testPlan() {
+    SpaceOperationPlanner planner =
+        new SpaceOperationPlanner(activeControllerManager, remoteControllerClient, executorService, 2, null);
+
+    Map<ActiveSpaceController, List<SpaceOperationPlanner.Step>> deployPlan =
+        planner.plan(space, SpaceOperation.DEPLOY);
+    assertEquals(2, deployPlan.size());
+    assertSteps(deployPlan.get(activeController(controller)), 1, 2);
+    assertSteps(deployPlan.get(activeController(otherController)), 3);
+
+    Map<ActiveSpaceController, List<SpaceOperationPlanner.Step>> startupPlan =
+        planner.plan(space, SpaceOperation.STARTUP);
+    assertEquals(2, startupPlan.size());
+    assertSteps(startupPlan.get(activeController(controller)), 1, 2);
+    assertSteps(startupPlan.get(activeController(otherController)), 3, 3);
+  }
+
+  /**
+   * A failure on one controller is reported for that controller and does not stop the others. Each controller gets its
+   * requests in one batch.
+   */
+  @Test
+  public void testPerformWithFailure() {
+    ActiveLiveActivity failingActivity = activeControllerManager.getActiveLiveActivity(liveActivity(2));
+    Mockito.doThrow(new SimpleInteractiveSpacesException("No route to controller")).when(remoteControllerClient)
+        .startupLiveActivity(failingActivity);
+
+    List<SpaceOperationPlanner.ControllerResult> results =
+        activeControllerManager.performSpaceOperation(space, SpaceOperation.STARTUP);
+    assertEquals(2, results.size());
+
+    SpaceOperationPlanner.ControllerResult result = results.get(0);
+    assertEquals(activeController(controller), result.getActiveController());
+    assertFalse(result.isSuccess());
+    assertEquals(1, result.getFailures().size());
+    assertTrue(result.getFailures().containsKey(failingActivity));
+
+    assertTrue(results.get(1).isSuccess());
+
+    Mockito.verify(remoteControllerClient).startupLiveActivity(
+        activeControllerManager.getActiveLiveActivity(liveActivity(1)));
+    Mockito.verify(remoteControllerClient).startupLiveActivity(
+        activeControllerManager.getActiveLiveActivity(liveActivity(3)));
+
+    for (ActiveSpaceController activeController : new ActiveSpaceController[] { activeController(controller),
+        activeController(otherController) }) {
+      Mockito.verify(remoteControllerClient).beginLiveActivityBatch(activeController);
+      Mockito.verify(remoteControllerClient).endLiveActivityBatch(activeController);
+    }
+  }
+
+  /**
+   * A batch which can't be sent fails every step for its controller.
+   */
+  @Test
+  public void testPerformWithBatchFailure() {
+    ActiveSpaceController failingController = activeController(otherController);
+    Mockito.doThrow(new SimpleInteractiveSpacesException("No connection to space controller"))
+        .when(remoteControllerClient).endLiveActivityBatch(failingController);
+
+    List<SpaceOperationPlanner.ControllerResult> results =
+        activeControllerManager.performSpaceOperation(space, SpaceOperation.ACTIVATE);
+    assertEquals(2, results.size());
+
+    assertTrue(results.get(0).isSuccess());
+
+    SpaceOperationPlanner.ControllerResult result = results.get(1);
+    assertEquals(failingController, result.getActiveController());
+    assertEquals(1, result.getFailures().size());
+    assertTrue(result.getFailures().containsKey(activeControllerManager.getActiveLiveActivity(liveActivity(3))));
+  }
+
+  /**
+   * Create a live activity group with an ID.
+   *
+   * @param id
+   *          the ID of the group
+   * @param liveActivityIds
+   *          the IDs of the live activities in the group
+   *
+   * @return the group
+   */
+  private LiveActivityGroup group(String id, int... liveActivityIds) {
+    LiveActivityGroup group = liveActivityGroup(liveActivityIds);
+    ((SimpleLiveActivityGroup) group).setId(id);
+
+    return group;
+  }
+
+  /**
+   * Get the active controller for a controller.
+   *
+   * @param spaceController
+   *          the controller
+   *
+   * @return the active controller
+   */
+  private ActiveSpaceController activeController(SpaceController spaceController) {
+    return activeControllerManager.getActiveSpaceController(spaceController);
+  }
+
+  /**
+   * Check the live activities of a list of steps.
+   *
+   * @param steps
+   *          the steps
+   * @param liveActivityIds
+   *          the IDs of the expected live activities, in order
+   */
+  private void assertSteps(List<SpaceOperationPlanner.Step> steps, int... liveActivityIds) {
+    assertEquals(liveActivityIds.length, steps.size());
+    for (int i = 0; i < liveActivityIds.length; i++) {
+      assertEquals(activeControllerManager.getActiveLiveActivity(liveActivity(liveActivityIds[i])),
+          steps.get(i).getActiveLiveActivity());
+    }
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.master.server.services.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import interactivespaces.activity.ActivityState;
+import interactivespaces.configuration.SimpleConfiguration;
+import interactivespaces.controller.SpaceControllerState;
+import interactivespaces.domain.basic.LiveActivity;
+import interactivespaces.domain.basic.SpaceController;
+import interactivespaces.domain.basic.pojo.SimpleLiveActivity;
+import interactivespaces.domain.basic.pojo.SimpleSpaceController;
+import interactivespaces.master.event.StandardMasterEventManager;
+import interactivespaces.master.server.services.ActiveLiveActivity;
+import interactivespaces.master.server.services.ActiveSpaceController;
+import interactivespaces.master.server.services.RemoteSpaceControllerClient;
+import interactivespaces.system.SimpleInteractiveSpacesEnvironment;
+import interactivespaces.time.LocalTimeProvider;
+
+import com.google.common.collect.Lists;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.impl.Jdk14Logger;
+import org.apache.commons.logging.impl.NoOpLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A contention benchmark for the {@link StandardActiveSpaceControllerManager}.
+ *
+ * <p>
+ * Simulated space controllers send heartbeats and live activity status updates on many threads at once while other
+ * threads query the manager, the way the master sees it with a large number of controllers. The test checks that no
+ * update is lost and that every active entity is created only once, and logs the update rate it saw.
+ *
+ * @author Keith M. Hughes
+ */
+public class StandardActiveSpaceControllerManagerContentionTest {
+
+  /**
+   * The number of simulated space controllers.
+   */
+  private static final int NUMBER_CONTROLLERS = 100;
+
+  /**
+   * The number of live activities on each simulated controller.
+   */
+  private static final int NUMBER_LIVE_ACTIVITIES_PER_CONTROLLER = 10;
+
+  /**
+   * The number of rounds of heartbeats and status updates each controller sends.
+   */
+  private static final int NUMBER_ROUNDS = 50;
+
+  /**
+   * The number of threads delivering controller messages.
+   */
+  private static final int NUMBER_CONTROLLER_THREADS = 16;
+
+  /**
+   * The number of threads making queries.
+   */
+  private static final int NUMBER_QUERY_THREADS = 4;
+
+  private StandardActiveSpaceControllerManager activeControllerManager;
+  private ExecutorService executorService;
+  private Log log;
+
+  private List<SpaceController> controllers;
+  private List<LiveActivity> liveActivities;
+
+  @Before
+  public void setup() {
+    log = new Jdk14Logger(getClass().getName());
+
+    // Only real collaborators here, mocks would serialize the threads on their own invocation records.
+    SimpleInteractiveSpacesEnvironment spaceEnvironment = new SimpleInteractiveSpacesEnvironment();
+    spaceEnvironment.setLog(new NoOpLog());
+    spaceEnvironment.setTimeProvider(new LocalTimeProvider());
+    spaceEnvironment.setSystemConfiguration(SimpleConfiguration.newConfiguration());
+
+    StandardMasterEventManager masterEventManager = new StandardMasterEventManager();
+    masterEventManager.setLog(new NoOpLog());
+
+    activeControllerManager = new StandardActiveSpaceControllerManager();
+    activeControllerManager.setSpaceEnvironment(spaceEnvironment);
+    activeControllerManager.setRemoteSpaceControllerClient(Mockito.mock(RemoteSpaceControllerClient.class));
+    activeControllerManager.setMasterEventManager(masterEventManager);
+
+    controllers = Lists.newArrayList();
+    liveActivities = Lists.newArrayList();
+    for (int i = 0; i < NUMBER_CONTROLLERS; i++) {
+      SimpleSpaceController controller = new SimpleSpaceController();
+      controller.setUuid("controller-" + i);
+      controllers.add(controller);
+
+      for (int j = 0; j < NUMBER_LIVE_ACTIVITIES_PER_CONTROLLER; j++) {
+        SimpleLiveActivity liveActivity = new SimpleLiveActivity();
+        liveActivity.setUuid(String.format("live-activity-%d-%d", i, j));
+        liveActivity.setController(controller);
+        liveActivities.add(liveActivity);
+      }
+    }
+
+    executorService = Executors.newFixedThreadPool(NUMBER_CONTROLLER_THREADS + NUMBER_QUERY_THREADS);
+  }
+
+  @After
+  public void cleanup() {
+    executorService.shutdownNow();
+  }
+
+  /**
+   * Deliver heartbeats and status updates from all simulated controllers while queries are running.
+   */
+  @Test
+  public void testConcurrentStatusUpdates() throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicBoolean updatesDone = new AtomicBoolean();
+    final AtomicLong queryCount = new AtomicLong();
+
+    List<Future<List<ActiveLiveActivity>>> controllerResults = Lists.newArrayList();
+    for (int i = 0; i < NUMBER_CONTROLLERS; i++) {
+      final SpaceController controller = controllers.get(i);
+      final List<LiveActivity> controllerLiveActivities =
+          liveActivities.subList(i * NUMBER_LIVE_ACTIVITIES_PER_CONTROLLER, (i + 1)
+              * NUMBER_LIVE_ACTIVITIES_PER_CONTROLLER);
+      controllerResults.add(executorService.submit(new Callable<List<ActiveLiveActivity>>() {
+        @Override
+        public List<ActiveLiveActivity> call() throws Exception {
+          start.await();
+
+          return simulateController(controller, controllerLiveActivities);
+        }
+      }));
+    }
+
+    List<Future<?>> queryResults = Lists.newArrayList();
+    for (int i = 0; i < NUMBER_QUERY_THREADS; i++) {
+      queryResults.add(executorService.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          start.await();
+          while (!updatesDone.get()) {
+            for (ActiveSpaceController activeController : activeControllerManager
+                .getActiveSpaceControllers(controllers)) {
+              assertNotNull(activeController.getState());
+            }
+            for (ActiveLiveActivity activeLiveActivity : activeControllerManager
+                .getActiveLiveActivities(liveActivities)) {
+              assertNotNull(activeLiveActivity.getRuntimeState());
+            }
+            queryCount.incrementAndGet();
+          }
+
+          return null;
+        }
+      }));
+    }
+
+    long startTime = System.nanoTime();
+    start.countDown();
+
+    List<ActiveLiveActivity> createdLiveActivities = Lists.newArrayList();
+    for (Future<List<ActiveLiveActivity>> result : controllerResults) {
+      createdLiveActivities.addAll(result.get(60, TimeUnit.SECONDS));
+    }
+    long elapsedTime = System.nanoTime() - startTime;
+
+    updatesDone.set(true);
+    for (Future<?> result : queryResults) {
+      result.get(60, TimeUnit.SECONDS);
+    }
+
+    long updates = (long) NUMBER_CONTROLLERS * NUMBER_ROUNDS * (NUMBER_LIVE_ACTIVITIES_PER_CONTROLLER + 1);
+    log.info(String.format("%d heartbeats and status updates from %d space controllers in %d msec (%d per second), "
+        + "%d full queries at the same time", updates, NUMBER_CONTROLLERS, TimeUnit.NANOSECONDS.toMillis(elapsedTime),
+        updates * TimeUnit.SECONDS.toNanos(1) / Math.max(1, elapsedTime), queryCount.get()));
+
+    for (SpaceController controller : controllers) {
+      assertEquals(SpaceControllerState.RUNNING, activeControllerManager.getActiveSpaceController(controller)
+          .getState());
+    }
+
+    assertEquals(liveActivities.size(), createdLiveActivities.size());
+    for (int i = 0; i < liveActivities.size(); i++) {
+      ActiveLiveActivity activeLiveActivity = activeControllerManager.getActiveLiveActivity(liveActivities.get(i));
+      assertSame(createdLiveActivities.get(i), activeLiveActivity);
+      assertEquals(ActivityState.RUNNING, activeLiveActivity.getRuntimeState());
+      assertTrue(activeLiveActivity.getLastStateUpdate() != null);
+    }
+  }
+
+  /**
+   * Simulate a space controller sending heartbeats and status updates for its live activities.
+   *
+   * <p>
+   * The last status sent for every live activity is {@link ActivityState#RUNNING}.
+   *
+   * @param controller
+   *          the controller being simulated
+   * @param controllerLiveActivities
+   *          the live activities on the controller
+   *
+   * @return the active live activities the simulated controller saw, in the order of the live activities
+   */
+  private List<ActiveLiveActivity> simulateController(SpaceController controller,
+      List<LiveActivity> controllerLiveActivities) {
+    // The query threads can be creating the same active entities at the same time.
+    activeControllerManager.getActiveSpaceController(controller);
+    List<ActiveLiveActivity> activeLiveActivities = Lists.newArrayList();
+    for (LiveActivity liveActivity : controllerLiveActivities) {
+      activeLiveActivities.add(activeControllerManager.getActiveLiveActivity(liveActivity));
+    }
+
+    for (int round = 0; round < NUMBER_ROUNDS; round++) {
+      activeControllerManager.onSpaceControllerHeartbeat(controller.getUuid(), System.currentTimeMillis());
+
+      ActivityState state = (round % 2 == 0) ? ActivityState.ACTIVE : ActivityState.RUNNING;
+      for (LiveActivity liveActivity : controllerLiveActivities) {
+        activeControllerManager.onLiveActivityRuntimeStateChange(liveActivity.getUuid(), state, null);
+      }
+    }
+
+    return activeLiveActivities;
+  }
+}
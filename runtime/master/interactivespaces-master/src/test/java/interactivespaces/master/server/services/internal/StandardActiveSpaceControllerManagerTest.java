@@ -19,6 +19,7 @@ package interactivespaces.master.server.services.internal;
 import static org.junit.Assert.assertEquals;
 
 import interactivespaces.activity.ActivityState;
+import interactivespaces.configuration.Configuration;
 import interactivespaces.container.control.message.activity.LiveActivityDeleteResponse;
 import interactivespaces.container.control.message.activity.LiveActivityDeleteResponse.LiveActivityDeleteStatus;
 import interactivespaces.container.control.message.activity.LiveActivityDeploymentResponse;
@@ -36,6 +37,7 @@ import interactivespaces.logging.ExtendedLog;
 import interactivespaces.master.event.MasterEventManager;
 import interactivespaces.master.server.services.ActiveLiveActivity;
 import interactivespaces.master.server.services.ActiveSpaceController;
+import interactivespaces.master.server.services.MasterConfigurations;
 import interactivespaces.master.server.services.RemoteSpaceControllerClient;
 import interactivespaces.system.InteractiveSpacesEnvironment;
 import interactivespaces.time.TimeProvider;
@@ -82,6 +84,13 @@ public class StandardActiveSpaceControllerManagerTest extends BaseSpaceTest {
     log = Mockito.mock(ExtendedLog.class);
     Mockito.when(spaceEnvironment.getExtendedLog()).thenReturn(log);
 
+    // Space and group operations work on one controller at a time on the calling thread.
+    Configuration configuration = Mockito.mock(Configuration.class);
+    Mockito.when(
+        configuration.getPropertyInteger(MasterConfigurations.CONFIGURATION_NAME_SPACE_OPERATION_CONCURRENCY,
+            MasterConfigurations.CONFIGURATION_VALUE_DEFAULT_SPACE_OPERATION_CONCURRENCY)).thenReturn(1);
+    Mockito.when(spaceEnvironment.getSystemConfiguration()).thenReturn(configuration);
+
     remoteControllerClient = Mockito.mock(RemoteSpaceControllerClient.class);
 
     remoteActivityDeploymentManager = Mockito.mock(RemoteActivityDeploymentManager.class);
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.master.server.services.internal.jpa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * Tests for the {@link JpaFilterExpressionTranslator}.
+ *
+ * @author Keith M. Hughes
+ */
+public class JpaFilterExpressionTranslatorTest {
+
+  private JpaFilterExpressionTranslator translator;
+  private Map<String, Object> parameters;
+
+  @Before
+  public void setup() {
+    translator = new JpaFilterExpressionTranslator("JpaLiveActivity", "uuid", "name");
+    parameters = Maps.newHashMap();
+  }
+
+  /**
+   * Column comparisons are safe to negate even when the column is null.
+   */
+  @Test
+  public void testProperties() {
+    assertEquals("select e from JpaLiveActivity e where (e.name is not null and e.name = :p0)",
+        translator.translate("name == 'Browser'", parameters));
+    assertEquals(ImmutableMap.of("p0", "Browser"), parameters);
+
+    parameters.clear();
+    assertEquals("select e from JpaLiveActivity e where not ((e.uuid is not null and e.uuid = :p0))",
+        translator.translate("\"abc\" neq uuid", parameters));
+    assertEquals(ImmutableMap.of("p0", "abc"), parameters);
+
+    parameters.clear();
+    assertEquals("select e from JpaLiveActivity e where (e.name is null)", translator.translate("name == null",
+        parameters));
+    assertTrue(parameters.isEmpty());
+  }
+
+  /**
+   * Both forms of metadata lookup become subqueries on the metadata items.
+   */
+  @Test
+  public void testMetadata() {
+    assertEquals("select e from JpaLiveActivity e where exists (select m0 from JpaLiveActivity o0 join o0.metadata m0"
+        + " where o0.id = e.id and m0.name = :p0 and m0.value = :p1)",
+        translator.translate("metadata.location == 'lobby'", parameters));
+    assertEquals(ImmutableMap.of("p0", "location", "p1", "lobby"), parameters);
+
+    parameters.clear();
+    assertEquals("select e from JpaLiveActivity e where not exists (select m0 from JpaLiveActivity o0 join o0.metadata"
+        + " m0 where o0.id = e.id and m0.name = :p0)", translator.translate("metadata['screen-id'] == null",
+        parameters));
+    assertEquals(ImmutableMap.of("p0", "screen-id"), parameters);
+  }
+
+  /**
+   * Boolean operators keep the OGNL precedence.
+   */
+  @Test
+  public void testBooleans() {
+    assertEquals("select e from JpaLiveActivity e where ((e.name is not null and e.name = :p0) or "
+        + "((e.uuid is not null and e.uuid = :p1) and not ((exists (select m0 from JpaLiveActivity o0 join "
+        + "o0.metadata m0 where o0.id = e.id and m0.name = :p2 and m0.value = :p3)))))",
+        translator.translate("name == 'ab' || uuid == \"b\" and !(metadata.wall == 'left')", parameters));
+    assertEquals(ImmutableMap.of("p0", "ab", "p1", "b", "p2", "wall", "p3", "left"), parameters);
+  }
+
+  /**
+   * Anything outside of the understood subset is left for in-memory filtering.
+   */
+  @Test
+  public void testUntranslatable() {
+    String[] expressions =
+        new String[] { "", "name", "name == 'ab' ||", "description == 'ab'", "name.length() == 'ab'",
+            "metadata.count == 3", "name == 'ab'.toUpperCase()", "metadata.size == '10'", "!name == 'ab'",
+            "name == 'x'", "name == 'a\\'b'", "name = 'ab'", "name == uuid", "(name == 'ab'", "name == 'ab')",
+            "metadata.and == 'ab'", "metadata == null", "#this.name == 'ab'" };
+    for (String expression : expressions) {
+      assertNull(expression, translator.translate(expression, parameters));
+      assertTrue(expression, parameters.isEmpty());
+    }
+  }
+}
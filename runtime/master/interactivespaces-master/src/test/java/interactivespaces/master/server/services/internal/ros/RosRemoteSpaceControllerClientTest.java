@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package interactivespaces.master.server.services.internal.ros;
+
+import interactivespaces.SimpleInteractiveSpacesException;
+import interactivespaces.activity.ActivityState;
+import interactivespaces.domain.basic.pojo.SimpleLiveActivity;
+import interactivespaces.domain.basic.pojo.SimpleSpaceController;
+import interactivespaces.logging.ExtendedLog;
+import interactivespaces.master.server.services.ActiveLiveActivity;
+import interactivespaces.master.server.services.ActiveSpaceController;
+import interactivespaces.master.server.services.RemoteSpaceControllerClientListener;
+import interactivespaces.master.server.services.internal.MasterDataBundleManager;
+import interactivespaces.time.TimeProvider;
+
+import com.google.common.collect.Lists;
+
+import interactivespaces_msgs.ControllerRequest;
+import interactivespaces_msgs.LiveActivityRuntimeBatchRequest;
+import interactivespaces_msgs.LiveActivityRuntimeRequest;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ros.message.MessageFactory;
+import org.ros.message.MessageSerializationFactory;
+import org.ros.message.MessageSerializer;
+import org.ros.node.ConnectedNode;
+
+/**
+ * Tests for the live activity batches of the {@link RosRemoteSpaceControllerClient}.
+ *
+ * @author Keith M. Hughes
+ */
+public class RosRemoteSpaceControllerClientTest {
+
+  private RosRemoteSpaceControllerClient client;
+
+  private MessageSerializer<LiveActivityRuntimeRequest> runtimeRequestSerializer;
+
+  private MessageSerializer<LiveActivityRuntimeBatchRequest> batchRequestSerializer;
+
+  private RemoteSpaceControllerClientListener listener;
+
+  private ActiveSpaceController controller;
+
+  private ActiveLiveActivity activity1;
+
+  private ActiveLiveActivity activity2;
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() {
+    MessageFactory messageFactory = Mockito.mock(MessageFactory.class);
+    Mockito.doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        String type = (String) invocation.getArguments()[0];
+        if (LiveActivityRuntimeBatchRequest._TYPE.equals(type)) {
+          LiveActivityRuntimeBatchRequest batchRequest = Mockito.mock(LiveActivityRuntimeBatchRequest.class);
+          Mockito.when(batchRequest.getRequests()).thenReturn(Lists.<LiveActivityRuntimeRequest> newArrayList());
+
+          return batchRequest;
+        } else if (LiveActivityRuntimeRequest._TYPE.equals(type)) {
+          final LiveActivityRuntimeRequest request = Mockito.mock(LiveActivityRuntimeRequest.class);
+          Mockito.doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+              Mockito.when(request.getLiveActivityUuid()).thenReturn((String) invocation.getArguments()[0]);
+              return null;
+            }
+          }).when(request).setLiveActivityUuid(Mockito.anyString());
+
+          return request;
+        }
+
+        throw new IllegalArgumentException(type);
+      }
+    }).when(messageFactory).newFromType(Mockito.anyString());
+
+    runtimeRequestSerializer = Mockito.mock(MessageSerializer.class);
+    Mockito.when(runtimeRequestSerializer.serialize(Mockito.any(LiveActivityRuntimeRequest.class))).thenReturn(
+        ChannelBuffers.EMPTY_BUFFER);
+    batchRequestSerializer = Mockito.mock(MessageSerializer.class);
+    Mockito.when(batchRequestSerializer.serialize(Mockito.any(LiveActivityRuntimeBatchRequest.class))).thenReturn(
+        ChannelBuffers.EMPTY_BUFFER);
+
+    MessageSerializationFactory messageSerializationFactory = Mockito.mock(MessageSerializationFactory.class);
+    Mockito.doReturn(runtimeRequestSerializer).when(messageSerializationFactory)
+        .newMessageSerializer(LiveActivityRuntimeRequest._TYPE);
+    Mockito.doReturn(batchRequestSerializer).when(messageSerializationFactory)
+        .newMessageSerializer(LiveActivityRuntimeBatchRequest._TYPE);
+
+    ConnectedNode node = Mockito.mock(ConnectedNode.class);
+    Mockito.when(node.getTopicMessageFactory()).thenReturn(messageFactory);
+    Mockito.when(node.getMessageSerializationFactory()).thenReturn(messageSerializationFactory);
+
+    MasterRosContext masterRosContext = Mockito.mock(MasterRosContext.class);
+    Mockito.when(masterRosContext.getMasterNode()).thenReturn(node);
+
+    RosRemoteSpaceControllerClient realClient = new RosRemoteSpaceControllerClient();
+    realClient.setMasterRosContext(masterRosContext);
+    realClient.setLog(Mockito.mock(ExtendedLog.class));
+    realClient.setMasterDataBundleManager(Mockito.mock(MasterDataBundleManager.class));
+    realClient.startup();
+
+    client = Mockito.spy(realClient);
+    Mockito.doNothing().when(client)
+        .sendSpaceControllerRequest(Mockito.any(ActiveSpaceController.class), Mockito.anyInt(),
+            Mockito.any(ChannelBuffer.class));
+
+    listener = Mockito.mock(RemoteSpaceControllerClientListener.class);
+    client.addRemoteSpaceControllerClientListener(listener);
+
+    TimeProvider timeProvider = Mockito.mock(TimeProvider.class);
+    controller = new ActiveSpaceController(new SimpleSpaceController(), timeProvider);
+    activity1 = newActiveLiveActivity("1", timeProvider);
+    activity2 = newActiveLiveActivity("2", timeProvider);
+  }
+
+  /**
+   * Requests made while a batch is open go out in a single batch request when the batch is closed.
+   */
+  @Test
+  public void testBatch() {
+    client.beginLiveActivityBatch(controller);
+    client.startupLiveActivity(activity1);
+    client.activateLiveActivity(activity2);
+
+    Mockito.verify(client, Mockito.never()).sendSpaceControllerRequest(Mockito.any(ActiveSpaceController.class),
+        Mockito.anyInt(), Mockito.any(ChannelBuffer.class));
+
+    client.endLiveActivityBatch(controller);
+
+    Mockito.verify(client).sendSpaceControllerRequest(controller,
+        ControllerRequest.OPERATION_CONTROLLER_LIVE_ACTIVITY_RUNTIME_BATCH_REQUEST, ChannelBuffers.EMPTY_BUFFER);
+    Mockito.verify(client, Mockito.times(1)).sendSpaceControllerRequest(Mockito.any(ActiveSpaceController.class),
+        Mockito.anyInt(), Mockito.any(ChannelBuffer.class));
+
+    ArgumentCaptor<LiveActivityRuntimeBatchRequest> batchRequest =
+        ArgumentCaptor.forClass(LiveActivityRuntimeBatchRequest.class);
+    Mockito.verify(batchRequestSerializer).serialize(batchRequest.capture());
+    Assert.assertEquals(2, batchRequest.getValue().getRequests().size());
+    Mockito.verify(batchRequest.getValue().getRequests().get(0)).setOperation(
+        LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_STARTUP);
+    Mockito.verify(batchRequest.getValue().getRequests().get(1)).setOperation(
+        LiveActivityRuntimeRequest.OPERATION_LIVE_ACTIVITY_ACTIVATE);
+
+    // The batch is closed, so requests go out on their own again.
+    client.shutdownLiveActivity(activity1);
+    Mockito.verify(client).sendSpaceControllerRequest(controller,
+        ControllerRequest.OPERATION_CONTROLLER_LIVE_ACTIVITY_RUNTIME_REQUEST, ChannelBuffers.EMPTY_BUFFER);
+  }
+
+  /**
+   * A batch with only one request sends it as a plain runtime request.
+   */
+  @Test
+  public void testBatchOneRequest() {
+    client.beginLiveActivityBatch(controller);
+    client.startupLiveActivity(activity1);
+    client.endLiveActivityBatch(controller);
+
+    Mockito.verify(client).sendSpaceControllerRequest(controller,
+        ControllerRequest.OPERATION_CONTROLLER_LIVE_ACTIVITY_RUNTIME_REQUEST, ChannelBuffers.EMPTY_BUFFER);
+    Mockito.verify(client, Mockito.times(1)).sendSpaceControllerRequest(Mockito.any(ActiveSpaceController.class),
+        Mockito.anyInt(), Mockito.any(ChannelBuffer.class));
+    Mockito.verify(batchRequestSerializer, Mockito.never()).serialize(
+        Mockito.any(LiveActivityRuntimeBatchRequest.class));
+  }
+
+  /**
+   * If the batch can't be sent, every live activity in it is reported as being in an unknown state.
+   */
+  @Test
+  public void testBatchSendFailure() {
+    SimpleInteractiveSpacesException failure = new SimpleInteractiveSpacesException("No connection");
+    Mockito.doThrow(failure).when(client)
+        .sendSpaceControllerRequest(Mockito.any(ActiveSpaceController.class), Mockito.anyInt(),
+            Mockito.any(ChannelBuffer.class));
+
+    client.beginLiveActivityBatch(controller);
+    client.startupLiveActivity(activity1);
+    client.startupLiveActivity(activity2);
+
+    try {
+      client.endLiveActivityBatch(controller);
+      Assert.fail();
+    } catch (SimpleInteractiveSpacesException e) {
+      Assert.assertSame(failure, e);
+    }
+
+    Mockito.verify(listener).onLiveActivityRuntimeStateChange(Mockito.eq("1"), Mockito.eq(ActivityState.UNKNOWN),
+        Mockito.anyString());
+    Mockito.verify(listener).onLiveActivityRuntimeStateChange(Mockito.eq("2"), Mockito.eq(ActivityState.UNKNOWN),
+        Mockito.anyString());
+
+    // A failed batch is still closed.
+    client.beginLiveActivityBatch(controller);
+    client.endLiveActivityBatch(controller);
+  }
+
+  /**
+   * Create a new active live activity on the test controller.
+   *
+   * @param uuid
+   *          uuid of the live activity
+   * @param timeProvider
+   *          the time provider for the live activity
+   *
+   * @return the active live activity
+   */
+  private ActiveLiveActivity newActiveLiveActivity(String uuid, TimeProvider timeProvider) {
+    SimpleLiveActivity liveActivity = new SimpleLiveActivity();
+    liveActivity.setUuid(uuid);
+
+    return new ActiveLiveActivity(controller, liveActivity, client, timeProvider);
+  }
+}
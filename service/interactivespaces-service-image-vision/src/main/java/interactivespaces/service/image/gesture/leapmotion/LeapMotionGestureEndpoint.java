@@ -37,6 +37,7 @@ import com.google.common.collect.Maps;
 
 import org.apache.commons.logging.Log;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -384,6 +385,11 @@ public class LeapMotionGestureEndpoint implements GestureEndpoint {
                 handleGestureData(data);
               }
 
+              @Override
+              public void onReceiveBinary(ByteBuffer data) {
+                // The Leap Motion daemon only sends JSON.
+              }
+
               @Override
               public void onConnect() {
                 handleLeapdConnect();